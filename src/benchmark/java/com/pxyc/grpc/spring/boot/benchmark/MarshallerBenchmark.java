@@ -0,0 +1,155 @@
+package com.pxyc.grpc.spring.boot.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcZeroCopyMarshaller;
+import io.grpc.*;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * 零拷贝 marshaller 基准测试, 通过 {@code gradle marshallerBenchmark} 运行.
+ * <p>
+ * 消息为带一个大 bytes 字段的 {@link BytesValue}, 对比默认 ProtoUtils marshaller 与 {@link DefaultGrpcZeroCopyMarshaller}:
+ * <ul>
+ *     <li>parse: 从与 Netty 相同的堆外缓冲区输入流解析, 统计当前线程的分配量</li>
+ *     <li>echo: 经本机 TCP 往返一次, 请求和响应各带一份负载, 统计进程内所有线程的分配量</li>
+ * </ul>
+ * 分配量以每 MB 负载分配的 MB 表示.
+ * <p>
+ * 参数: 负载大小(MB, 逗号分隔) 每种大小的测量次数, 默认 1,8,32 20
+ */
+public class MarshallerBenchmark {
+    public static void main(String[] args) throws Exception {
+        String[] sizes = (args.length > 0 ? args[0] : "1,8,32").split(",");
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        MethodDescriptor.Marshaller<BytesValue> defaultMarshaller = ProtoUtils.marshaller(BytesValue.getDefaultInstance());
+        MethodDescriptor.Marshaller<BytesValue> zeroCopyMarshaller = DefaultGrpcZeroCopyMarshaller.marshaller(defaultMarshaller);
+        MethodDescriptor<BytesValue, BytesValue> defaultMethod = method("Default", defaultMarshaller);
+        MethodDescriptor<BytesValue, BytesValue> zeroCopyMethod = method("ZeroCopy", zeroCopyMarshaller);
+        Server server = NettyServerBuilder
+            .forPort(0)
+            .maxInboundMessageSize(Integer.MAX_VALUE)
+            .addService(ServerServiceDefinition.builder(SERVICE_NAME)
+                                               .addMethod(defaultMethod, ServerCalls.asyncUnaryCall(MarshallerBenchmark::echo))
+                                               .addMethod(zeroCopyMethod, ServerCalls.asyncUnaryCall(MarshallerBenchmark::echo))
+                                               .build())
+            .build()
+            .start();
+        ManagedChannel channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext()
+                                                    .maxInboundMessageSize(Integer.MAX_VALUE).build();
+        try {
+            for(String size : sizes) {
+                int megabytes = Integer.parseInt(size.trim());
+                BytesValue message = payload(megabytes);
+                ByteBuffer serialized = ByteBuffer.allocateDirect(message.getSerializedSize());
+                serialized.put(message.toByteString().asReadOnlyByteBuffer());
+                serialized.flip();
+
+                // 预热
+                for(int i = 0; i < 5; i++) {
+                    parse(defaultMarshaller, serialized, iterations, megabytes);
+                    parse(zeroCopyMarshaller, serialized, iterations, megabytes);
+                    echo(channel, defaultMethod, message, 2, megabytes);
+                    echo(channel, zeroCopyMethod, message, 2, megabytes);
+                }
+                System.out.println(String.format("%4dMB parse  default: %s, zero-copy: %s", megabytes,
+                                                 parse(defaultMarshaller, serialized, iterations, megabytes),
+                                                 parse(zeroCopyMarshaller, serialized, iterations, megabytes)));
+                System.out.println(String.format("%4dMB echo   default: %s, zero-copy: %s", megabytes,
+                                                 echo(channel, defaultMethod, message, iterations, megabytes),
+                                                 echo(channel, zeroCopyMethod, message, iterations, megabytes)));
+            }
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    private static String parse(MethodDescriptor.Marshaller<BytesValue> marshaller, ByteBuffer serialized, int iterations,
+                                int megabytes) {
+        long startBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long startNanos = System.nanoTime();
+        long checksum = 0;
+        for(int i = 0; i < iterations; i++) {
+            checksum += marshaller.parse(ReadableBuffers.openStream(ReadableBuffers.wrap(serialized.duplicate()), true))
+                                  .getValue().size();
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+        check(checksum, (long) iterations * megabytes * MB);
+        return result(bytes, nanos, iterations, megabytes);
+    }
+
+    private static String echo(Channel channel, MethodDescriptor<BytesValue, BytesValue> method, BytesValue message,
+                               int iterations, int megabytes) {
+        long startBytes = allocatedBytes();
+        long startNanos = System.nanoTime();
+        long checksum = 0;
+        for(int i = 0; i < iterations; i++) {
+            checksum += ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, message).getValue().size();
+        }
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = allocatedBytes() - startBytes;
+        check(checksum, (long) iterations * megabytes * MB);
+        // 请求和响应各一份负载
+        return result(bytes, nanos, iterations, megabytes * 2);
+    }
+
+    private static void check(long checksum, long expected) {
+        if(checksum != expected) {
+            throw new IllegalStateException("Unexpected payload bytes " + checksum + ", expected " + expected);
+        }
+    }
+
+    private static String result(long bytes, long nanos, int iterations, int megabytes) {
+        return String.format("%.2f MB/MB, %.2f ms/call", (double) bytes / iterations / megabytes / MB,
+                             nanos / 1e6 / iterations);
+    }
+
+    private static long allocatedBytes() {
+        long[] ids = THREAD_MX_BEAN.getAllThreadIds();
+        long total = 0;
+        for(long allocated : THREAD_MX_BEAN.getThreadAllocatedBytes(ids)) {
+            if(allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    private static void echo(BytesValue request, StreamObserver<BytesValue> responseObserver) {
+        responseObserver.onNext(request);
+        responseObserver.onCompleted();
+    }
+
+    private static MethodDescriptor<BytesValue, BytesValue> method(String name, MethodDescriptor.Marshaller<BytesValue> marshaller) {
+        return MethodDescriptor.<BytesValue, BytesValue>newBuilder()
+                               .setType(MethodDescriptor.MethodType.UNARY)
+                               .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, name))
+                               .setRequestMarshaller(marshaller)
+                               .setResponseMarshaller(marshaller)
+                               .build();
+    }
+
+    private static BytesValue payload(int megabytes) {
+        byte[] bytes = new byte[megabytes * MB];
+        new Random(megabytes).nextBytes(bytes);
+        return BytesValue.newBuilder().setValue(ByteString.copyFrom(bytes)).build();
+    }
+
+    private static final int MB = 1024 * 1024;
+    private static final String SERVICE_NAME = "benchmark.Blob";
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+}
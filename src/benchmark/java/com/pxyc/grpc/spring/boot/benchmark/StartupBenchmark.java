@@ -0,0 +1,204 @@
+package com.pxyc.grpc.spring.boot.benchmark;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.*;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动耗时基准测试, 通过 {@code gradle startupBenchmark} 运行.
+ * <p>
+ * 每次启动都在新的 JVM 中进行, 应用包含若干业务服务和若干指向本进程中目标 Server 的 Channel,
+ * 分别统计从 JVM 启动到 Spring 启动完成, 以及到所有 Channel 完成首个调用的耗时, 对比默认配置与快速启动配置.
+ * <p>
+ * 参数: 启动次数 业务服务数 Channel 数, 默认 5 50 50
+ */
+public class StartupBenchmark {
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int services = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int channels = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        Server target = ServerBuilder.forPort(0).fallbackHandlerRegistry(new EchoRegistry()).build().start();
+        try {
+            Map<String, List<String>> modes = new LinkedHashMap<>();
+            modes.put("default", Collections.emptyList());
+            modes.put("fast", Arrays.asList("--best.grpc.server.reflection-enabled=false",
+                                            "--best.grpc.client.basic.connect-on-startup=true"));
+            for(Map.Entry<String, List<String>> mode : modes.entrySet()) {
+                // 首次启动预热操作系统文件缓存, 不计入结果
+                launch(target.getPort(), services, channels, mode.getValue());
+                long[][] samples = new long[iterations][];
+                for(int i = 0; i < iterations; i++) {
+                    samples[i] = launch(target.getPort(), services, channels, mode.getValue());
+                }
+                System.out.println(String.format("%-8s started: %s, first calls done: %s", mode.getKey(), summary(samples, 0),
+                                                 summary(samples, 1)));
+            }
+        } finally {
+            target.shutdownNow();
+        }
+    }
+
+    private static long[] launch(int targetPort, int services, int channels, List<String> extraArgs) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList(
+            System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+            "-cp", System.getProperty("java.class.path"), App.class.getName(),
+            String.valueOf(targetPort), String.valueOf(services), String.valueOf(channels)));
+        command.addAll(extraArgs);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long[] result = null;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.startsWith(RESULT_PREFIX)) {
+                    String[] parts = line.substring(RESULT_PREFIX.length()).trim().split(" ");
+                    result = new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+                }
+            }
+        }
+        if(!process.waitFor(1, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new RuntimeException("Benchmark app not exited in 1 minute");
+        }
+        if(result == null) {
+            throw new RuntimeException("Benchmark app failed, exit code [" + process.exitValue() + "]");
+        }
+        return result;
+    }
+
+    private static String summary(long[][] samples, int index) {
+        long[] values = new long[samples.length];
+        for(int i = 0; i < samples.length; i++) {
+            values[i] = samples[i][index];
+        }
+        Arrays.sort(values);
+        return String.format("median=%dms min=%dms max=%dms", values[values.length / 2], values[0], values[values.length - 1]);
+    }
+
+    /**
+     * 被测应用, 输出从 JVM 启动到 Spring 启动完成及到所有 Channel 完成首个调用的耗时
+     */
+    @SpringBootApplication
+    public static class App {
+        public static void main(String[] args) throws Exception {
+            int targetPort = Integer.parseInt(args[0]);
+            int services = Integer.parseInt(args[1]);
+            int channels = Integer.parseInt(args[2]);
+            List<String> springArgs = new ArrayList<>(Arrays.asList(
+                "--logging.level.root=WARN", "--best.grpc.server.enabled=true", "--best.grpc.server.port=0",
+                "--best.grpc.client.enabled=true", "--benchmark.services=" + services));
+            for(int i = 0; i < channels; i++) {
+                springArgs.add("--best.grpc.client.channels.c" + i + ".target=localhost:" + targetPort);
+            }
+            springArgs.addAll(Arrays.asList(args).subList(3, args.length));
+
+            int exitCode = 1;
+            try(ConfigurableApplicationContext context = new SpringApplication(App.class).run(springArgs.toArray(new String[0]))) {
+                long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+                long started = System.currentTimeMillis() - jvmStart;
+
+                List<ListenableFuture<byte[]>> futures = new ArrayList<>();
+                for(int i = 0; i < channels; i++) {
+                    Channel channel = context.getBean("c" + i + "Channel", Channel.class);
+                    futures.add(ClientCalls.futureUnaryCall(channel.newCall(method("bench.Target/Call"), CallOptions.DEFAULT),
+                                                            new byte[16]));
+                }
+                Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+                long firstCalls = System.currentTimeMillis() - jvmStart;
+
+                System.out.println(RESULT_PREFIX + " " + started + " " + firstCalls);
+                exitCode = 0;
+            } finally {
+                System.exit(exitCode);
+            }
+        }
+
+        @Bean
+        public static BeanDefinitionRegistryPostProcessor benchmarkServices(Environment environment) {
+            int services = environment.getProperty("benchmark.services", Integer.class, 0);
+            return new BeanDefinitionRegistryPostProcessor() {
+                @Override
+                public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+                    for(int i = 0; i < services; i++) {
+                        String serviceName = "bench.Service" + i;
+                        GenericBeanDefinition definition = new GenericBeanDefinition();
+                        definition.setBeanClass(ServerServiceDefinition.class);
+                        definition.setInstanceSupplier(() -> echoService(serviceName));
+                        registry.registerBeanDefinition("benchService" + i, definition);
+                    }
+                }
+
+                @Override
+                public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {}
+            };
+        }
+    }
+
+    private static ServerServiceDefinition echoService(String serviceName) {
+        return ServerServiceDefinition.builder(serviceName)
+                                      .addMethod(method(serviceName + "/Call"), ServerCalls.asyncUnaryCall((request, observer) -> {
+                                          observer.onNext(request);
+                                          observer.onCompleted();
+                                      }))
+                                      .build();
+    }
+
+    private static MethodDescriptor<byte[], byte[]> method(String fullMethodName) {
+        return MethodDescriptor.<byte[], byte[]>newBuilder()
+                               .setType(MethodDescriptor.MethodType.UNARY)
+                               .setFullMethodName(fullMethodName)
+                               .setRequestMarshaller(BYTES_MARSHALLER)
+                               .setResponseMarshaller(BYTES_MARSHALLER)
+                               .build();
+    }
+
+    /**
+     * 目标 Server 对任意方法原样返回请求
+     */
+    private static class EchoRegistry extends HandlerRegistry {
+        private final Map<String, ServerMethodDefinition<?, ?>> methods = new ConcurrentHashMap<>();
+
+        @Override
+        public ServerMethodDefinition<?, ?> lookupMethod(String methodName, String authority) {
+            return methods.computeIfAbsent(methodName, name -> echoService(MethodDescriptor.extractFullServiceName(name))
+                .getMethod(name));
+        }
+    }
+
+    private static final String RESULT_PREFIX = "STARTUP_RESULT";
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES_MARSHALLER = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+}
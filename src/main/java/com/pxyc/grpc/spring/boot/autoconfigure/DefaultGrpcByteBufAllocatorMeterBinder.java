@@ -0,0 +1,89 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufAllocatorMetric;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.grpc.netty.shaded.io.netty.buffer.PoolArenaMetric;
+import io.grpc.netty.shaded.io.netty.buffer.PooledByteBufAllocator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * 将进程堆外内存用量及 {@link DefaultGrpcByteBufAllocators} 创建的分配器用量导出到 Micrometer, 池化分配器按 arena 导出;
+ * 关闭时取消监听并移除已导出的指标
+ */
+public class DefaultGrpcByteBufAllocatorMeterBinder implements MeterBinder, AutoCloseable {
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean listening = new AtomicBoolean();
+    private final BiConsumer<String, ByteBufAllocator> listener = this::onCreate;
+
+    @Override
+    public void bindTo(@NotNull MeterRegistry registry) {
+        meters.add(Gauge.builder(METRIC_PREFIX + "direct.used", DefaultGrpcByteBufAllocators::usedDirectMemory)
+                        .baseUnit("bytes").description("Direct memory used by Netty and JDK direct buffers").register(registry));
+        meters.add(Gauge.builder(METRIC_PREFIX + "direct.max", DefaultGrpcByteBufAllocators::maxDirectMemory)
+                        .baseUnit("bytes").register(registry));
+        registries.add(registry);
+        if(listening.compareAndSet(false, true)) {
+            DefaultGrpcByteBufAllocators.addListener(listener);
+        } else {
+            DefaultGrpcByteBufAllocators.getAll().forEach((name, allocator) -> bind(name, allocator, registry));
+        }
+    }
+
+    @Override
+    public void close() {
+        if(listening.compareAndSet(true, false)) {
+            DefaultGrpcByteBufAllocators.removeListener(listener);
+        }
+        for(Meter meter : meters) {
+            for(MeterRegistry registry : registries) {
+                registry.remove(meter);
+            }
+        }
+        meters.clear();
+        registries.clear();
+    }
+
+    private void onCreate(String name, ByteBufAllocator allocator) {
+        for(MeterRegistry registry : registries) {
+            bind(name, allocator, registry);
+        }
+    }
+
+    private void bind(String name, ByteBufAllocator allocator, MeterRegistry registry) {
+        if(!(allocator instanceof ByteBufAllocatorMetricProvider)) {
+            return;
+        }
+        Tags tags = Tags.of("allocator", name);
+        ByteBufAllocatorMetric metric = ((ByteBufAllocatorMetricProvider) allocator).metric();
+        meters.add(Gauge.builder(METRIC_PREFIX + "allocator.used", metric, ByteBufAllocatorMetric::usedDirectMemory)
+                        .tags(tags.and("type", "direct")).baseUnit("bytes").register(registry));
+        meters.add(Gauge.builder(METRIC_PREFIX + "allocator.used", metric, ByteBufAllocatorMetric::usedHeapMemory)
+                        .tags(tags.and("type", "heap")).baseUnit("bytes").register(registry));
+        if(allocator instanceof PooledByteBufAllocator) {
+            bindArenas(((PooledByteBufAllocator) allocator).metric().directArenas(), tags.and("type", "direct"), registry);
+            bindArenas(((PooledByteBufAllocator) allocator).metric().heapArenas(), tags.and("type", "heap"), registry);
+        }
+    }
+
+    private void bindArenas(List<PoolArenaMetric> arenas, Tags tags, MeterRegistry registry) {
+        for(int i = 0; i < arenas.size(); i++) {
+            meters.add(Gauge.builder(METRIC_PREFIX + "arena.active", arenas.get(i), PoolArenaMetric::numActiveBytes)
+                            .tags(tags.and("arena", String.valueOf(i))).baseUnit("bytes")
+                            .description("Bytes of active allocations in the arena").register(registry));
+        }
+    }
+
+    private static final String METRIC_PREFIX = "grpc.netty.";
+}
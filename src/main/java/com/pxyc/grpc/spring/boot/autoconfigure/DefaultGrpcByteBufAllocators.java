@@ -0,0 +1,139 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.buffer.PooledByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.buffer.UnpooledByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * 按配置创建 Netty {@link ByteBufAllocator}, 并提供进程堆外内存用量.
+ * <p>
+ * 相同配置的 Server 与 Channel 共用同一个分配器实例, 避免每个 Channel 各自预留 arena.
+ */
+public final class DefaultGrpcByteBufAllocators {
+    private DefaultGrpcByteBufAllocators() {}
+
+    /**
+     * @return 配置为 {@link DefaultGrpcCommonConfigProps.AllocatorConfig.Type#DEFAULT DEFAULT} 时返回 null, 表示沿用 grpc-netty 默认分配器
+     */
+    public static ByteBufAllocator getOrCreate(DefaultGrpcCommonConfigProps.AllocatorConfig config) {
+        if(config == null || config.getType() == DefaultGrpcCommonConfigProps.AllocatorConfig.Type.DEFAULT) {
+            return null;
+        }
+        String name = nameOf(config);
+        ByteBufAllocator allocator = ALLOCATORS.get(name);
+        if(allocator != null) {
+            return allocator;
+        }
+        synchronized(ALLOCATORS) {
+            allocator = ALLOCATORS.get(name);
+            if(allocator == null) {
+                allocator = create(config);
+                ALLOCATORS.put(name, allocator);
+                LOGGER.info("Grpc ByteBuf allocator created [" + name + "]");
+                for(BiConsumer<String, ByteBufAllocator> listener : LISTENERS) {
+                    listener.accept(name, allocator);
+                }
+            }
+        }
+        return allocator;
+    }
+
+    /**
+     * 已创建的分配器, Key 为由配置生成的名称
+     */
+    public static Map<String, ByteBufAllocator> getAll() {
+        return Collections.unmodifiableMap(ALLOCATORS);
+    }
+
+    /**
+     * 监听分配器的创建, 添加时会先回放已创建的分配器
+     */
+    public static void addListener(BiConsumer<String, ByteBufAllocator> listener) {
+        synchronized(ALLOCATORS) {
+            LISTENERS.add(listener);
+            ALLOCATORS.forEach(listener);
+        }
+    }
+
+    /**
+     * 取消监听分配器的创建
+     */
+    public static void removeListener(BiConsumer<String, ByteBufAllocator> listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * 进程已使用的堆外内存, 包括 Netty 直接管理的 (无 Cleaner) 部分和 JDK {@link java.nio.ByteBuffer#allocateDirect(int)} 部分
+     */
+    public static long usedDirectMemory() {
+        long used = Math.max(0, PlatformDependent.usedDirectMemory());
+        if(DIRECT_BUFFER_POOL != null) {
+            used += DIRECT_BUFFER_POOL.getMemoryUsed();
+        }
+        return used;
+    }
+
+    /**
+     * 堆外内存上限, 即 -XX:MaxDirectMemorySize 或 -Dio.netty.maxDirectMemory
+     */
+    public static long maxDirectMemory() {
+        return PlatformDependent.maxDirectMemory();
+    }
+
+    private static ByteBufAllocator create(DefaultGrpcCommonConfigProps.AllocatorConfig config) {
+        boolean preferDirect = config.getPreferDirect() != null ? config.getPreferDirect() : PlatformDependent.directBufferPreferred();
+        if(config.getType() == DefaultGrpcCommonConfigProps.AllocatorConfig.Type.UNPOOLED) {
+            return new UnpooledByteBufAllocator(preferDirect);
+        }
+        return new PooledByteBufAllocator(
+            preferDirect,
+            orDefault(config.getHeapArenas(), PooledByteBufAllocator.defaultNumHeapArena()),
+            orDefault(config.getDirectArenas(), PooledByteBufAllocator.defaultNumDirectArena()),
+            orDefault(config.getPageSize(), PooledByteBufAllocator.defaultPageSize()),
+            orDefault(config.getMaxOrder(), PooledByteBufAllocator.defaultMaxOrder()),
+            orDefault(config.getSmallCacheSize(), PooledByteBufAllocator.defaultSmallCacheSize()),
+            orDefault(config.getNormalCacheSize(), PooledByteBufAllocator.defaultNormalCacheSize()),
+            config.getUseCacheForAllThreads() != null ? config.getUseCacheForAllThreads() :
+            PooledByteBufAllocator.defaultUseCacheForAllThreads());
+    }
+
+    private static String nameOf(DefaultGrpcCommonConfigProps.AllocatorConfig config) {
+        if(config.getType() == DefaultGrpcCommonConfigProps.AllocatorConfig.Type.UNPOOLED) {
+            return "unpooled(preferDirect=" + config.getPreferDirect() + ")";
+        }
+        return "pooled(preferDirect=" + config.getPreferDirect() + ", heapArenas=" + config.getHeapArenas() + ", directArenas=" +
+               config.getDirectArenas() + ", pageSize=" + config.getPageSize() + ", maxOrder=" + config.getMaxOrder() +
+               ", smallCacheSize=" + config.getSmallCacheSize() + ", normalCacheSize=" + config.getNormalCacheSize() +
+               ", useCacheForAllThreads=" + config.getUseCacheForAllThreads() + ")";
+    }
+
+    private static int orDefault(Integer value, int defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+
+    private static BufferPoolMXBean findDirectBufferPool() {
+        for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if("direct".equals(pool.getName())) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    private static final Map<String, ByteBufAllocator> ALLOCATORS = new ConcurrentHashMap<>();
+    private static final List<BiConsumer<String, ByteBufAllocator>> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final BufferPoolMXBean DIRECT_BUFFER_POOL = findDirectBufferPool();
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcByteBufAllocators.class);
+}
@@ -0,0 +1,58 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 调用日志采样, 按方法解析出的采样率在首次调用后缓存, 之后每次判断无内存分配
+ */
+public class DefaultGrpcCallLogSampler {
+    private final double defaultRate;
+    private final Map<String, Double> methodRates;
+    private final boolean alwaysLogErrors;
+    private final Map<String, Double> resolved = new ConcurrentHashMap<>();
+
+    public DefaultGrpcCallLogSampler(DefaultGrpcCommonConfigProps.CallLogConfig config) {
+        this.defaultRate = config.getSampleRate();
+        this.methodRates = config.getMethodSampleRates();
+        this.alwaysLogErrors = config.isAlwaysLogErrors();
+    }
+
+    /**
+     * @param fullMethodName 完整方法名, 如 {@code grpc.health.v1.Health/Check}
+     */
+    public boolean sample(String fullMethodName) {
+        double rate = getRate(fullMethodName);
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    public double getRate(String fullMethodName) {
+        Double rate = resolved.get(fullMethodName);
+        if(rate == null) {
+            rate = resolved.computeIfAbsent(fullMethodName, this::resolve);
+        }
+        return rate;
+    }
+
+    public boolean isAlwaysLogErrors() {
+        return alwaysLogErrors;
+    }
+
+    private Double resolve(String fullMethodName) {
+        if(methodRates != null) {
+            Double rate = methodRates.get(fullMethodName);
+            if(rate != null) {
+                return rate;
+            }
+            int index = fullMethodName.lastIndexOf('/');
+            if(index > 0) {
+                rate = methodRates.get(fullMethodName.substring(0, index));
+                if(rate != null) {
+                    return rate;
+                }
+            }
+        }
+        return defaultRate;
+    }
+}
@@ -0,0 +1,261 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步调用日志写入器.
+ * <p>
+ * 调用线程只把原始字段写入预分配的环形缓冲区槽位, 不做格式化; 由单独的写入线程格式化并输出到 SLF4J.
+ * 缓冲区为无锁的多生产者单消费者队列, 每个槽位带序号, 生产者 CAS 抢占写入位置, 消费者按序号判断槽位是否已发布.
+ * 缓冲区写满时直接丢弃并计数, 不阻塞调用线程.
+ * <p>
+ * 写入线程在首次提交日志时启动, 缓冲区为空时挂起, 由生产者在发布后唤醒;
+ * {@link #close()} 输出剩余日志后停止写入线程, 之后再提交日志时重新启动.
+ */
+public final class DefaultGrpcCallLogWriter {
+    private final Event[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder droppedCount = new LongAdder();
+    private final AtomicInteger state = new AtomicInteger(STOPPED);
+    private volatile Thread thread;
+    private final StringBuilder buffer = new StringBuilder(256);
+    private long head;
+    private long reportedDropped;
+
+    DefaultGrpcCallLogWriter(int capacity) {
+        if(Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of 2, got [" + capacity + "]");
+        }
+        this.slots = new Event[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for(int i = 0; i < capacity; i++) {
+            slots[i] = new Event();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 进程内共用的写入器
+     */
+    public static DefaultGrpcCallLogWriter getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 提交一条调用日志
+     *
+     * @param logger         输出日志使用的 Logger, 状态为 OK 时以 INFO 输出, 否则以 WARN 输出
+     * @param side           server 或 client
+     * @param latencyNanos   调用耗时
+     * @param requestBytes   请求消息序列化后的总字节数, 无法计算时为负数
+     * @param responseBytes  响应消息序列化后的总字节数, 无法计算时为负数
+     * @return 缓冲区已满被丢弃时返回 false
+     */
+    public boolean publish(Logger logger, String side, String fullMethodName, Status status, long latencyNanos,
+                           int requestCount, long requestBytes, int responseCount, long responseBytes, SocketAddress peer) {
+        long pos;
+        int index;
+        while(true) {
+            pos = tail.get();
+            index = (int) (pos & mask);
+            long sequence = sequences.get(index);
+            if(sequence == pos) {
+                if(tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if(sequence < pos) {
+                droppedCount.increment();
+                return false;
+            }
+        }
+        Event event = slots[index];
+        event.logger = logger;
+        event.side = side;
+        event.fullMethodName = fullMethodName;
+        event.status = status;
+        event.latencyNanos = latencyNanos;
+        event.requestCount = requestCount;
+        event.requestBytes = requestBytes;
+        event.responseCount = responseCount;
+        event.responseBytes = responseBytes;
+        event.peer = peer;
+        // 与写入线程挂起前的检查构成先写后读, 需要 volatile 写保证写入线程不会错过唤醒
+        sequences.set(index, pos + 1);
+        signal();
+        return true;
+    }
+
+    /**
+     * 输出已提交的日志后停止写入线程, 最多等待 {@value #CLOSE_TIMEOUT_MILLIS} 毫秒; 之后提交的日志会重新启动写入线程
+     */
+    public void close() {
+        while(true) {
+            int current = state.get();
+            if(current == STOPPED) {
+                return;
+            }
+            if(current == STOPPING || state.compareAndSet(current, STOPPING)) {
+                break;
+            }
+        }
+        Thread writerThread = thread;
+        if(writerThread == null) {
+            return;
+        }
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 因缓冲区已满被丢弃的日志数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * 已提交但尚未输出的日志数
+     */
+    public long getPendingCount() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    private void signal() {
+        int current = state.get();
+        if(current == WAITING) {
+            if(state.compareAndSet(WAITING, RUNNING)) {
+                LockSupport.unpark(thread);
+            }
+        } else if(current == STOPPED && state.compareAndSet(STOPPED, RUNNING)) {
+            Thread writerThread = new Thread(this::drainLoop, "GrpcCallLogWriter");
+            writerThread.setDaemon(true);
+            thread = writerThread;
+            writerThread.start();
+        }
+    }
+
+    private void drainLoop() {
+        while(true) {
+            int index = (int) (head & mask);
+            if(sequences.get(index) == head + 1) {
+                Event event = slots[index];
+                try {
+                    write(event);
+                } catch(Throwable t) {
+                    LOGGER.warn("Write call log error", t);
+                }
+                event.clear();
+                sequences.lazySet(index, head + slots.length);
+                head++;
+                continue;
+            }
+            long dropped = droppedCount.sum();
+            if(dropped != reportedDropped) {
+                LOGGER.warn((dropped - reportedDropped) + " call logs dropped due to full buffer, total " + dropped);
+                reportedDropped = dropped;
+            }
+            if(state.get() == STOPPING) {
+                state.set(STOPPED);
+                // 停止前已占位的日志由本线程或生产者新启动的线程继续输出
+                if(tail.get() == head || !state.compareAndSet(STOPPED, RUNNING)) {
+                    return;
+                }
+                continue;
+            }
+            if(state.compareAndSet(RUNNING, WAITING)) {
+                if(sequences.get(index) == head + 1) {
+                    state.compareAndSet(WAITING, RUNNING);
+                    continue;
+                }
+                while(state.get() == WAITING) {
+                    LockSupport.park(this);
+                }
+            }
+        }
+    }
+
+    private void write(Event event) {
+        boolean ok = event.status.isOk();
+        if(ok ? !event.logger.isInfoEnabled() : !event.logger.isWarnEnabled()) {
+            return;
+        }
+        StringBuilder sb = buffer;
+        sb.setLength(0);
+        sb.append('[').append(event.side).append("] /").append(event.fullMethodName).append(' ').append(event.status.getCode());
+        if(event.status.getDescription() != null) {
+            sb.append('(').append(event.status.getDescription()).append(')');
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(event.latencyNanos);
+        sb.append(' ').append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if(fraction < 100) {
+            sb.append(fraction < 10 ? "00" : "0");
+        }
+        sb.append(fraction).append("ms req=").append(event.requestCount);
+        appendBytes(sb, event.requestBytes);
+        sb.append(" resp=").append(event.responseCount);
+        appendBytes(sb, event.responseBytes);
+        if(event.peer != null) {
+            sb.append(" peer=").append(event.peer);
+        }
+        if(ok) {
+            event.logger.info(sb.toString());
+        } else {
+            event.logger.warn(sb.toString());
+        }
+    }
+
+    private static void appendBytes(StringBuilder sb, long bytes) {
+        if(bytes >= 0) {
+            sb.append('/').append(bytes).append('B');
+        }
+    }
+
+    private static final class Event {
+        Logger logger;
+        String side;
+        String fullMethodName;
+        Status status;
+        long latencyNanos;
+        int requestCount;
+        long requestBytes;
+        int responseCount;
+        long responseBytes;
+        SocketAddress peer;
+
+        void clear() {
+            logger = null;
+            status = null;
+            peer = null;
+        }
+    }
+
+    private static final class Holder {
+        private static final DefaultGrpcCallLogWriter INSTANCE = new DefaultGrpcCallLogWriter(DEFAULT_CAPACITY);
+    }
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final int RUNNING = 0;
+    private static final int WAITING = 1;
+    private static final int STOPPING = 2;
+    private static final int STOPPED = 3;
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcCallLogWriter.class);
+}
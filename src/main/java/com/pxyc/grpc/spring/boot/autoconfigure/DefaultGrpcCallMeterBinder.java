@@ -0,0 +1,110 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 将 {@link DefaultGrpcCallMetrics} 导出到 Micrometer, 以 method 标签区分方法, 指标前缀为 {@code grpc.server.} 或 {@code grpc.client.}.
+ * 绑定之后新出现的方法及状态码也会自动导出; 关闭时取消监听并移除已导出的指标.
+ */
+public class DefaultGrpcCallMeterBinder implements MeterBinder, DefaultGrpcCallMetrics.Listener, AutoCloseable {
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean listening = new AtomicBoolean();
+
+    @Override
+    public void bindTo(@NotNull MeterRegistry registry) {
+        registries.add(registry);
+        if(listening.compareAndSet(false, true)) {
+            DefaultGrpcCallMetrics.addListener(this);
+        } else {
+            for(DefaultGrpcCallMetrics.Side side : DefaultGrpcCallMetrics.Side.values()) {
+                for(DefaultGrpcCallMetrics metrics : DefaultGrpcCallMetrics.getAll(side)) {
+                    bind(metrics, registry);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if(listening.compareAndSet(true, false)) {
+            DefaultGrpcCallMetrics.removeListener(this);
+        }
+        for(Meter meter : meters) {
+            for(MeterRegistry registry : registries) {
+                registry.remove(meter);
+            }
+        }
+        meters.clear();
+        registries.clear();
+    }
+
+    @Override
+    public void onRegister(DefaultGrpcCallMetrics metrics) {
+        for(MeterRegistry registry : registries) {
+            bind(metrics, registry);
+        }
+    }
+
+    @Override
+    public void onStatus(DefaultGrpcCallMetrics metrics, Status.Code code) {
+        for(MeterRegistry registry : registries) {
+            bindStatus(metrics, code, registry);
+        }
+    }
+
+    private void bind(DefaultGrpcCallMetrics metrics, MeterRegistry registry) {
+        String prefix = prefixOf(metrics);
+        Tags tags = Tags.of("method", metrics.getFullMethodName());
+        List<Meter> bound = new ArrayList<>();
+        bound.add(Gauge.builder(prefix + "active", metrics, DefaultGrpcCallMetrics::getActiveCount)
+                       .tags(tags).description("Calls currently in progress").register(registry));
+        bound.addAll(DefaultGrpcExecutorMeterBinder.bindHistogram(prefix + "latency", metrics, metrics.getLatencyMicros(), tags, registry));
+        bound.addAll(bindSizeHistogram(prefix + "request.size", metrics.getRequestBytes(), tags, registry));
+        bound.addAll(bindSizeHistogram(prefix + "response.size", metrics.getResponseBytes(), tags, registry));
+        meters.addAll(bound);
+        for(Status.Code code : Status.Code.values()) {
+            if(metrics.hasStatus(code)) {
+                bindStatus(metrics, code, registry);
+            }
+        }
+    }
+
+    private void bindStatus(DefaultGrpcCallMetrics metrics, Status.Code code, MeterRegistry registry) {
+        meters.add(FunctionCounter.builder(prefixOf(metrics) + "calls", metrics, m -> m.getStatusCount(code))
+                                  .tags("method", metrics.getFullMethodName(), "status", code.name())
+                                  .description("Completed calls by status code")
+                                  .register(registry));
+    }
+
+    private static List<Meter> bindSizeHistogram(String name, LatencyHistogram histogram, Tags tags, MeterRegistry registry) {
+        List<Meter> bound = new ArrayList<>();
+        bound.add(FunctionCounter.builder(name + ".total", histogram, LatencyHistogram::getSum)
+                                 .tags(tags).baseUnit("bytes").register(registry));
+        LatencyHistogram.WindowedSnapshot window =
+            new LatencyHistogram.WindowedSnapshot(histogram, DefaultGrpcExecutorMeterBinder.PERCENTILE_WINDOW);
+        for(double percentile : SIZE_PERCENTILES) {
+            bound.add(Gauge.builder(name + ".percentile", histogram, h -> window.get().getValueAtPercentile(percentile))
+                           .tags(tags.and("percentile", String.valueOf(percentile)))
+                           .baseUnit("bytes")
+                           .register(registry));
+        }
+        bound.add(Gauge.builder(name + ".max", histogram, h -> window.get().getMax()).tags(tags).baseUnit("bytes").register(registry));
+        return bound;
+    }
+
+    private static String prefixOf(DefaultGrpcCallMetrics metrics) {
+        return "grpc." + metrics.getSide().name().toLowerCase(Locale.ROOT) + ".";
+    }
+
+    private static final double[] SIZE_PERCENTILES = {50, 99};
+}
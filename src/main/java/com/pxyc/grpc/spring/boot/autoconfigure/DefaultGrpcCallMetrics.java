@@ -0,0 +1,170 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.grpc.Status;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个方法的调用统计, 包括耗时、请求及响应大小分布、各状态码计数和进行中的调用数.
+ * <p>
+ * 耗时单位为微秒, 大小为消息序列化后的字节数. 每个方法首次调用时创建, 之后记录只涉及直方图和 {@link LongAdder} 累加.
+ * 存活统计可通过 {@link #getAll()} 获取.
+ */
+public class DefaultGrpcCallMetrics {
+    private final Side side;
+    private final String fullMethodName;
+    private final LatencyHistogram latencyMicros = new LatencyHistogram();
+    private final LatencyHistogram requestBytes = new LatencyHistogram();
+    private final LatencyHistogram responseBytes = new LatencyHistogram();
+    private final LongAdder[] statusCounts = new LongAdder[STATUS_CODES.length];
+    private final AtomicInteger seenStatus = new AtomicInteger();
+    private final LongAdder activeCount = new LongAdder();
+
+    private DefaultGrpcCallMetrics(Side side, String fullMethodName) {
+        this.side = side;
+        this.fullMethodName = fullMethodName;
+        for(int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 获取方法的统计, 不存在时创建
+     *
+     * @param fullMethodName 完整方法名, 如 {@code grpc.health.v1.Health/Check}
+     */
+    public static DefaultGrpcCallMetrics of(Side side, String fullMethodName) {
+        Map<String, DefaultGrpcCallMetrics> registry = side == Side.SERVER ? SERVER_REGISTRY : CLIENT_REGISTRY;
+        DefaultGrpcCallMetrics metrics = registry.get(fullMethodName);
+        if(metrics != null) {
+            return metrics;
+        }
+        DefaultGrpcCallMetrics created = new DefaultGrpcCallMetrics(side, fullMethodName);
+        metrics = registry.putIfAbsent(fullMethodName, created);
+        if(metrics != null) {
+            return metrics;
+        }
+        for(Listener listener : LISTENERS) {
+            listener.onRegister(created);
+        }
+        return created;
+    }
+
+    public void callStarted() {
+        activeCount.increment();
+    }
+
+    /**
+     * 记录一次结束的调用
+     *
+     * @param requestSize  请求消息总字节数, 为负数时不记录
+     * @param responseSize 响应消息总字节数, 为负数时不记录
+     */
+    public void callEnded(Status.Code code, long latencyMicros, long requestSize, long responseSize) {
+        activeCount.decrement();
+        this.latencyMicros.record(latencyMicros);
+        if(requestSize >= 0) {
+            requestBytes.record(requestSize);
+        }
+        if(responseSize >= 0) {
+            responseBytes.record(responseSize);
+        }
+        int ordinal = code.ordinal();
+        statusCounts[ordinal].increment();
+        int bit = 1 << ordinal;
+        int seen = seenStatus.get();
+        if((seen & bit) == 0 && (seenStatus.getAndUpdate(s -> s | bit) & bit) == 0) {
+            for(Listener listener : LISTENERS) {
+                listener.onStatus(this, code);
+            }
+        }
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public String getFullMethodName() {
+        return fullMethodName;
+    }
+
+    public LatencyHistogram getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public LatencyHistogram getRequestBytes() {
+        return requestBytes;
+    }
+
+    public LatencyHistogram getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getStatusCount(Status.Code code) {
+        return statusCounts[code.ordinal()].sum();
+    }
+
+    /**
+     * 出现过的状态码
+     */
+    public boolean hasStatus(Status.Code code) {
+        return (seenStatus.get() & (1 << code.ordinal())) != 0;
+    }
+
+    public long getActiveCount() {
+        return activeCount.sum();
+    }
+
+    /**
+     * 状态不为 OK 的调用占比
+     */
+    public double getErrorRate() {
+        long total = latencyMicros.getCount();
+        return total == 0 ? 0 : (double) (total - getStatusCount(Status.Code.OK)) / total;
+    }
+
+    public static Collection<DefaultGrpcCallMetrics> getAll(Side side) {
+        return Collections.unmodifiableCollection((side == Side.SERVER ? SERVER_REGISTRY : CLIENT_REGISTRY).values());
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+        for(Side side : Side.values()) {
+            for(DefaultGrpcCallMetrics metrics : getAll(side)) {
+                listener.onRegister(metrics);
+            }
+        }
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    public enum Side {
+        SERVER, CLIENT
+    }
+
+    public interface Listener {
+        /**
+         * 方法首次调用
+         */
+        void onRegister(DefaultGrpcCallMetrics metrics);
+
+        /**
+         * 方法首次出现某个状态码
+         */
+        void onStatus(DefaultGrpcCallMetrics metrics, Status.Code code);
+    }
+
+    private static final Status.Code[] STATUS_CODES = Status.Code.values();
+    private static final Map<String, DefaultGrpcCallMetrics> SERVER_REGISTRY = new ConcurrentHashMap<>();
+    private static final Map<String, DefaultGrpcCallMetrics> CLIENT_REGISTRY = new ConcurrentHashMap<>();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+}
@@ -0,0 +1,113 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CoDel (Controlled Delay) 等待队列, 用排队耗时而不是队列长度判断过载.
+ * <p>
+ * 每个 interval 内观测到的最小排队耗时都超过 target 时, 说明队列已形成常驻积压, 进入过载状态:
+ * <ul>
+ *     <li>出队改为后进先出, 优先处理刚到达、调用方仍在等待的任务, 积压的旧任务不再拖累所有请求的尾延迟</li>
+ *     <li>排队超过 2 倍 target 的 {@link GrpcDeadlineTask} 被丢弃, 调用方尽快收到失败而不是等到超时</li>
+ * </ul>
+ * 最小排队耗时回落到 target 以下后恢复先进先出. 队列长度上限仍为 waitQueueSize.
+ */
+public class DefaultGrpcCodelBlockingQueue extends LinkedBlockingDeque<Runnable> implements GrpcTaskQueue {
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final Object lock = new Object();
+    private long intervalEndNanos;
+    /**
+     * 当前 interval 内的最小排队耗时; 首个 interval 尚无观测, 记为 0 以免首次出队即判定过载
+     */
+    private long minDelayNanos;
+    private volatile boolean overloaded;
+
+    public DefaultGrpcCodelBlockingQueue(int capacity, Duration target, Duration interval) {
+        super(capacity);
+        this.targetNanos = target.toNanos();
+        this.intervalNanos = interval.toNanos();
+        this.intervalEndNanos = System.nanoTime() + intervalNanos;
+    }
+
+    @Override
+    public Runnable newEntry(Runnable task, Runnable command) {
+        return new Entry(task, command, System.nanoTime());
+    }
+
+    /**
+     * 是否处于过载状态
+     */
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    @NotNull
+    @Override
+    public Runnable take() throws InterruptedException {
+        Runnable task = overloaded ? pollLast() : null;
+        return onDequeue(task != null ? task : takeFirst());
+    }
+
+    @Override
+    public Runnable poll(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        Runnable task = overloaded ? pollLast() : null;
+        return onDequeue(task != null ? task : pollFirst(timeout, unit));
+    }
+
+    @Override
+    public Runnable poll() {
+        return onDequeue(overloaded ? pollLast() : pollFirst());
+    }
+
+    private Runnable onDequeue(Runnable task) {
+        if(!(task instanceof Entry)) {
+            return task;
+        }
+        Entry entry = (Entry) task;
+        long now = System.nanoTime();
+        long delayNanos = now - entry.enqueueNanos;
+        synchronized(lock) {
+            if(now - intervalEndNanos >= 0) {
+                // 超过一个 interval 没有出队说明期间空闲, 不沿用过期的观测结果
+                overloaded = minDelayNanos > targetNanos && now - intervalEndNanos < intervalNanos;
+                minDelayNanos = delayNanos;
+                intervalEndNanos = now + intervalNanos;
+            } else if(delayNanos < minDelayNanos) {
+                minDelayNanos = delayNanos;
+            }
+        }
+        if(overloaded && delayNanos > SLOUGH_FACTOR * targetNanos && entry.command instanceof GrpcDeadlineTask) {
+            ((GrpcDeadlineTask) entry.command).shed();
+        }
+        return entry;
+    }
+
+    private static class Entry implements Runnable {
+        private final Runnable task;
+        private final Runnable command;
+        private final long enqueueNanos;
+
+        Entry(Runnable task, Runnable command, long enqueueNanos) {
+            this.task = task;
+            this.command = command;
+            this.enqueueNanos = enqueueNanos;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    private static final int SLOUGH_FACTOR = 2;
+}
@@ -1,12 +1,19 @@
 package com.pxyc.grpc.spring.boot.autoconfigure;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
-import java.util.concurrent.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * gRPC 共用自动配置
@@ -26,31 +33,91 @@ public class DefaultGrpcCommonAutoConfiguration {
     }
 
     /**
-     * 默认提供的线程池执行器
+     * 默认提供的执行器, 用于服务端业务处理和客户端 offload,
+     * 默认为平台线程池, 可通过 {@code best.grpc.common.thread-pool.mode=virtual} 切换为虚拟线程
      */
     @Bean(name = BEAN_NAME_EXECUTOR, destroyMethod = "shutdown")
     @ConditionalOnMissingBean(name = BEAN_NAME_EXECUTOR)
-    public ThreadPoolExecutor executor() {
+    public ExecutorService executor() {
         DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig executorConfig = configProps().getThreadPool();
+        return DefaultGrpcExecutors.newExecutor(executorConfig, executorConfig.getThreadNamePrefix());
+    }
+
+    /**
+     * Server 与所有 Client Channel 共用的 Netty 事件循环, 通过 {@code best.grpc.common.event-loop.shared=true} 开启
+     */
+    @Bean(name = BEAN_NAME_EVENT_LOOP_GROUPS, destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = BEAN_NAME_EVENT_LOOP_GROUPS)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".event-loop.shared", havingValue = "true")
+    public DefaultGrpcEventLoopGroups eventLoopGroups() {
+        return new DefaultGrpcEventLoopGroups(configProps().getEventLoop());
+    }
 
-        BlockingQueue<Runnable> queue;
-        if(executorConfig.getWaitQueueSize() == 0) {
-            queue = new SynchronousQueue<>();
-        } else if(executorConfig.getWaitQueueSize() < 0 || executorConfig.getWaitQueueSize() == Integer.MAX_VALUE) {
-            queue = new LinkedBlockingQueue<>();
-        } else {
-            queue = new ArrayBlockingQueue<>(executorConfig.getWaitQueueSize());
+    /**
+     * Server 与 Client 调用日志共用的异步写入器, 容器关闭时输出剩余日志并停止写入线程
+     */
+    @Bean(name = BEAN_NAME_CALL_LOG_WRITER, destroyMethod = "close")
+    @ConditionalOnMissingBean(name = BEAN_NAME_CALL_LOG_WRITER)
+    public DefaultGrpcCallLogWriter callLogWriter() {
+        return DefaultGrpcCallLogWriter.getInstance();
+    }
+
+    /**
+     * 存在 Micrometer 时导出执行器统计、堆外内存用量、调用统计和压缩统计
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"io.micrometer.core.instrument.binder.MeterBinder"})
+    static class MicrometerConfiguration {
+        @Bean(name = BEAN_NAME_EXECUTOR_METER_BINDER, destroyMethod = "close")
+        @ConditionalOnMissingBean(name = BEAN_NAME_EXECUTOR_METER_BINDER)
+        public DefaultGrpcExecutorMeterBinder executorMeterBinder() {
+            return new DefaultGrpcExecutorMeterBinder();
         }
 
-        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(executorConfig.getCorePoolSize(), executorConfig.getMaximumPoolSize(),
-                                                               executorConfig.getKeepAliveTime().toMillis(), TimeUnit.MILLISECONDS, queue,
-                                                               new DefaultGrpcExecutorThreadFactory(executorConfig.getThreadNamePrefix(),
-                                                                                                    executorConfig.isDaemon()));
-        threadPool.allowCoreThreadTimeOut(executorConfig.isAllowCoreThreadTimeOut());
-        return threadPool;
+        @Bean(name = BEAN_NAME_BYTE_BUF_ALLOCATOR_METER_BINDER, destroyMethod = "close")
+        @ConditionalOnMissingBean(name = BEAN_NAME_BYTE_BUF_ALLOCATOR_METER_BINDER)
+        public DefaultGrpcByteBufAllocatorMeterBinder byteBufAllocatorMeterBinder() {
+            return new DefaultGrpcByteBufAllocatorMeterBinder();
+        }
+
+        @Bean(name = BEAN_NAME_CALL_METER_BINDER, destroyMethod = "close")
+        @ConditionalOnMissingBean(name = BEAN_NAME_CALL_METER_BINDER)
+        public DefaultGrpcCallMeterBinder callMeterBinder() {
+            return new DefaultGrpcCallMeterBinder();
+        }
+
+        @Bean(BEAN_NAME_COMPRESSION_METER_BINDER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_COMPRESSION_METER_BINDER)
+        public DefaultGrpcCompressionMeterBinder compressionMeterBinder() {
+            return new DefaultGrpcCompressionMeterBinder();
+        }
+    }
+
+    /**
+     * 存在 Spring Cloud 时, 配置刷新后在运行时调整共用线程池容量;
+     * 嵌套配置类先于外层的 bean 注册, 不能用 {@code @ConditionalOnBean} 判断外层的执行器, 改为按需获取
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.cloud.context.environment.EnvironmentChangeEvent"})
+    static class RefreshConfiguration {
+        @Bean(BEAN_NAME_EXECUTOR_REFRESH_LISTENER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_EXECUTOR_REFRESH_LISTENER)
+        public DefaultGrpcExecutorRefreshListener executorRefreshListener(
+            Environment environment, @Qualifier(BEAN_NAME_EXECUTOR) ObjectProvider<ExecutorService> executor) {
+            Map<String, ExecutorService> executors = new HashMap<>();
+            executor.ifAvailable(service -> executors.put(CONFIG_PROPS_PREFIX + ".thread-pool", service));
+            return new DefaultGrpcExecutorRefreshListener(environment, executors);
+        }
     }
 
     public static final String BEAN_NAME_EXECUTOR = "defaultGrpcExecutor";
+    public static final String BEAN_NAME_EVENT_LOOP_GROUPS = "defaultGrpcEventLoopGroups";
+    public static final String BEAN_NAME_CALL_LOG_WRITER = "defaultGrpcCallLogWriter";
+    public static final String BEAN_NAME_EXECUTOR_METER_BINDER = "defaultGrpcExecutorMeterBinder";
+    public static final String BEAN_NAME_BYTE_BUF_ALLOCATOR_METER_BINDER = "defaultGrpcByteBufAllocatorMeterBinder";
+    public static final String BEAN_NAME_CALL_METER_BINDER = "defaultGrpcCallMeterBinder";
+    public static final String BEAN_NAME_COMPRESSION_METER_BINDER = "defaultGrpcCompressionMeterBinder";
+    public static final String BEAN_NAME_EXECUTOR_REFRESH_LISTENER = "defaultGrpcExecutorRefreshListener";
     public static final String BEAN_NAME_CONFIG_PROPS = "defaultGrpcCommonConfigProps";
     public static final String CONFIG_PROPS_PREFIX = "best.grpc.common";
 }
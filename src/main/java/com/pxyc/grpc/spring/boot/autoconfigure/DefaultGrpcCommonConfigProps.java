@@ -1,6 +1,8 @@
 package com.pxyc.grpc.spring.boot.autoconfigure;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -16,6 +18,11 @@ public class DefaultGrpcCommonConfigProps {
      */
     private ThreadPoolExecutorConfig threadPool = new ThreadPoolExecutorConfig();
 
+    /**
+     * Server 与 Client 共用的 Netty 事件循环配置
+     */
+    private EventLoopConfig eventLoop = new EventLoopConfig();
+
     public ThreadPoolExecutorConfig getThreadPool() {
         return threadPool;
     }
@@ -24,14 +31,348 @@ public class DefaultGrpcCommonConfigProps {
         this.threadPool = threadPool;
     }
 
+    public EventLoopConfig getEventLoop() {
+        return eventLoop;
+    }
+
+    public void setEventLoop(EventLoopConfig eventLoop) {
+        this.eventLoop = eventLoop;
+    }
+
+    public static class AllocatorConfig {
+        /**
+         * 分配器类型
+         *
+         * @see DefaultGrpcByteBufAllocators
+         */
+        private Type type = Type.DEFAULT;
+
+        /**
+         * 是否优先分配堆外内存, 以下参数为空时使用 Netty 默认值
+         */
+        private Boolean preferDirect;
+
+        /**
+         * 堆内 arena 数量, 仅 pooled 有效
+         */
+        private Integer heapArenas;
+
+        /**
+         * 堆外 arena 数量, 仅 pooled 有效; arena 越多竞争越少, 但预留的内存也越多
+         */
+        private Integer directArenas;
+
+        /**
+         * 页大小, 仅 pooled 有效
+         */
+        private Integer pageSize;
+
+        /**
+         * chunk 大小为 pageSize << maxOrder, 仅 pooled 有效; 调小可以降低每个 arena 的内存占用
+         */
+        private Integer maxOrder;
+
+        /**
+         * 线程本地缓存的小块内存数量, 仅 pooled 有效
+         */
+        private Integer smallCacheSize;
+
+        /**
+         * 线程本地缓存的普通内存块数量, 仅 pooled 有效
+         */
+        private Integer normalCacheSize;
+
+        /**
+         * 非事件循环线程是否也使用线程本地缓存, 仅 pooled 有效
+         */
+        private Boolean useCacheForAllThreads;
+
+        public Type getType() {
+            return type;
+        }
+
+        public void setType(Type type) {
+            this.type = type;
+        }
+
+        public Boolean getPreferDirect() {
+            return preferDirect;
+        }
+
+        public void setPreferDirect(Boolean preferDirect) {
+            this.preferDirect = preferDirect;
+        }
+
+        public Integer getHeapArenas() {
+            return heapArenas;
+        }
+
+        public void setHeapArenas(Integer heapArenas) {
+            this.heapArenas = heapArenas;
+        }
+
+        public Integer getDirectArenas() {
+            return directArenas;
+        }
+
+        public void setDirectArenas(Integer directArenas) {
+            this.directArenas = directArenas;
+        }
+
+        public Integer getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(Integer pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        public Integer getMaxOrder() {
+            return maxOrder;
+        }
+
+        public void setMaxOrder(Integer maxOrder) {
+            this.maxOrder = maxOrder;
+        }
+
+        public Integer getSmallCacheSize() {
+            return smallCacheSize;
+        }
+
+        public void setSmallCacheSize(Integer smallCacheSize) {
+            this.smallCacheSize = smallCacheSize;
+        }
+
+        public Integer getNormalCacheSize() {
+            return normalCacheSize;
+        }
+
+        public void setNormalCacheSize(Integer normalCacheSize) {
+            this.normalCacheSize = normalCacheSize;
+        }
+
+        public Boolean getUseCacheForAllThreads() {
+            return useCacheForAllThreads;
+        }
+
+        public void setUseCacheForAllThreads(Boolean useCacheForAllThreads) {
+            this.useCacheForAllThreads = useCacheForAllThreads;
+        }
+
+        public enum Type {
+            /**
+             * 使用 grpc-netty 默认的分配器
+             */
+            DEFAULT,
+
+            /**
+             * 池化分配器, 可调整 arena 数量、chunk 大小和线程缓存
+             */
+            POOLED,
+
+            /**
+             * 非池化分配器, 内存占用最小但分配开销较大
+             */
+            UNPOOLED,
+            ;
+        }
+    }
+
+    public static class CallLogConfig {
+        /**
+         * 默认采样率, 取值 [0, 1]
+         */
+        private double sampleRate = 1.0;
+
+        /**
+         * 按方法指定的采样率, Key 为完整方法名 (如 {@code grpc.health.v1.Health/Check}) 或服务名 (如 {@code grpc.health.v1.Health}),
+         * 完整方法名优先
+         */
+        private Map<String, Double> methodSampleRates = new HashMap<>();
+
+        /**
+         * 状态不为 OK 的调用是否不受采样率限制, 全部记录
+         */
+        private boolean alwaysLogErrors = true;
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Map<String, Double> getMethodSampleRates() {
+            return methodSampleRates;
+        }
+
+        public void setMethodSampleRates(Map<String, Double> methodSampleRates) {
+            this.methodSampleRates = methodSampleRates;
+        }
+
+        public boolean isAlwaysLogErrors() {
+            return alwaysLogErrors;
+        }
+
+        public void setAlwaysLogErrors(boolean alwaysLogErrors) {
+            this.alwaysLogErrors = alwaysLogErrors;
+        }
+    }
+
+    /**
+     * 按方法的消息压缩策略, 只压缩本端发出的消息, 对端需在 grpc-accept-encoding 中声明支持该编码
+     *
+     * @see DefaultGrpcCompressionPolicy
+     */
+    public static class CompressionConfig {
+        /**
+         * 默认编码, 为空时不压缩; 可选 gzip, deflate, 以及 classpath 中存在对应库时的 zstd, snappy, lz4
+         *
+         * @see DefaultGrpcCompressionCodecs
+         */
+        private String encoding;
+
+        /**
+         * 按方法指定的编码, Key 为完整方法名或服务名, 完整方法名优先; identity 表示不压缩
+         */
+        private Map<String, String> methodEncodings = new HashMap<>();
+
+        /**
+         * 序列化后不小于该字节数的消息才压缩, 小消息压缩收益低于 CPU 开销; 无法得知大小的消息总是压缩
+         */
+        private int minMessageSize = 1024;
+
+        /**
+         * 按方法指定的压缩阈值, Key 同 methodEncodings
+         */
+        private Map<String, Integer> methodMinMessageSizes = new HashMap<>();
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public void setEncoding(String encoding) {
+            this.encoding = encoding;
+        }
+
+        public Map<String, String> getMethodEncodings() {
+            return methodEncodings;
+        }
+
+        public void setMethodEncodings(Map<String, String> methodEncodings) {
+            this.methodEncodings = methodEncodings;
+        }
+
+        public int getMinMessageSize() {
+            return minMessageSize;
+        }
+
+        public void setMinMessageSize(int minMessageSize) {
+            this.minMessageSize = minMessageSize;
+        }
+
+        public Map<String, Integer> getMethodMinMessageSizes() {
+            return methodMinMessageSizes;
+        }
+
+        public void setMethodMinMessageSizes(Map<String, Integer> methodMinMessageSizes) {
+            this.methodMinMessageSizes = methodMinMessageSizes;
+        }
+    }
+
+    public static class EventLoopConfig {
+        /**
+         * 是否由 Server 与所有 Client Channel 共用一组事件循环, 关闭时沿用 grpc-netty 的默认事件循环
+         *
+         * @see DefaultGrpcEventLoopGroups
+         */
+        private boolean shared = false;
+
+        /**
+         * 传输类型
+         */
+        private Transport transport = Transport.AUTO;
+
+        /**
+         * Server 接受连接的线程数
+         */
+        private int bossThreads = 1;
+
+        /**
+         * I/O 线程数, 0 表示使用 Netty 默认值 (CPU 核数 * 2)
+         */
+        private int workerThreads = 0;
+
+        public boolean isShared() {
+            return shared;
+        }
+
+        public void setShared(boolean shared) {
+            this.shared = shared;
+        }
+
+        public Transport getTransport() {
+            return transport;
+        }
+
+        public void setTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        public int getBossThreads() {
+            return bossThreads;
+        }
+
+        public void setBossThreads(int bossThreads) {
+            this.bossThreads = bossThreads;
+        }
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+
+        public enum Transport {
+            /**
+             * Linux 上 native epoll 可用时使用 epoll, 否则使用 NIO
+             */
+            AUTO,
+
+            /**
+             * native epoll, 仅支持 Linux, 不可用时启动失败
+             */
+            EPOLL,
+
+            /**
+             * JDK NIO
+             */
+            NIO,
+            ;
+        }
+    }
+
     public static class ThreadPoolExecutorConfig {
+        /**
+         * 执行器模式
+         *
+         * @see DefaultGrpcExecutors#newExecutor(ThreadPoolExecutorConfig, String)
+         */
+        private Mode mode = Mode.PLATFORM;
+
         /**
          * @see ThreadPoolExecutor#ThreadPoolExecutor(int, int, long, TimeUnit, BlockingQueue, ThreadFactory)
          */
         private int corePoolSize = 1024;
 
         /**
+         * 虚拟线程模式下为同时运行的最大任务数
+         *
          * @see ThreadPoolExecutor#ThreadPoolExecutor(int, int, long, TimeUnit, BlockingQueue, ThreadFactory)
+         * @see DefaultGrpcVirtualThreadExecutor
          */
         private int maximumPoolSize = 1024;
 
@@ -41,11 +382,23 @@ public class DefaultGrpcCommonConfigProps {
         private Duration keepAliveTime = Duration.ofSeconds(60);
 
         /**
+         * 虚拟线程模式下为等待并发许可的最大任务数
+         *
          * @see DefaultGrpcCommonAutoConfiguration#executor()
          * @see ThreadPoolExecutor#ThreadPoolExecutor(int, int, long, TimeUnit, BlockingQueue, ThreadFactory)
          */
         private int waitQueueSize = 8192;
 
+        /**
+         * 等待队列的排队策略, 仅对平台线程池且 waitQueueSize 不为 0 时生效
+         */
+        private QueueMode queueMode = QueueMode.FIFO;
+
+        /**
+         * CoDel 队列配置, 仅在 queueMode 为 {@link QueueMode#CODEL} 时生效
+         */
+        private CodelConfig codel = new CodelConfig();
+
         /**
          * @see DefaultGrpcExecutorThreadFactory
          */
@@ -64,6 +417,37 @@ public class DefaultGrpcCommonConfigProps {
          */
         private String threadNamePrefix = "DefaultGrpcExecutorThreadPool";
 
+        /**
+         * 自适应容量配置, 仅对平台线程池生效
+         *
+         * @see DefaultGrpcExecutorAutoSizer
+         */
+        private AdaptiveConfig adaptive = new AdaptiveConfig();
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        public QueueMode getQueueMode() {
+            return queueMode;
+        }
+
+        public void setQueueMode(QueueMode queueMode) {
+            this.queueMode = queueMode;
+        }
+
+        public CodelConfig getCodel() {
+            return codel;
+        }
+
+        public void setCodel(CodelConfig codel) {
+            this.codel = codel;
+        }
+
         public int getCorePoolSize() {
             return corePoolSize;
         }
@@ -119,5 +503,146 @@ public class DefaultGrpcCommonConfigProps {
         public void setThreadNamePrefix(String threadNamePrefix) {
             this.threadNamePrefix = threadNamePrefix;
         }
+
+        public AdaptiveConfig getAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(AdaptiveConfig adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public static class AdaptiveConfig {
+            /**
+             * 是否开启自适应容量, 开启后线程数在 [minPoolSize, maximumPoolSize] 之间自动调整, corePoolSize 被忽略
+             */
+            private boolean enabled = false;
+
+            /**
+             * 自适应线程数下界
+             */
+            private int minPoolSize = 8;
+
+            /**
+             * 调整周期
+             */
+            private Duration interval = Duration.ofSeconds(5);
+
+            /**
+             * 在 Little's law 估算的需求线程数之上预留的余量比例
+             */
+            private double headroom = 0.2;
+
+            /**
+             * 目标 CPU 使用率, 用于结合任务阻塞比例计算线程数上限
+             */
+            private double targetCpuUtilization = 0.8;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMinPoolSize() {
+                return minPoolSize;
+            }
+
+            public void setMinPoolSize(int minPoolSize) {
+                this.minPoolSize = minPoolSize;
+            }
+
+            public Duration getInterval() {
+                return interval;
+            }
+
+            public void setInterval(Duration interval) {
+                this.interval = interval;
+            }
+
+            public double getHeadroom() {
+                return headroom;
+            }
+
+            public void setHeadroom(double headroom) {
+                this.headroom = headroom;
+            }
+
+            public double getTargetCpuUtilization() {
+                return targetCpuUtilization;
+            }
+
+            public void setTargetCpuUtilization(double targetCpuUtilization) {
+                this.targetCpuUtilization = targetCpuUtilization;
+            }
+        }
+
+        public enum Mode {
+            /**
+             * 平台线程池 {@link ThreadPoolExecutor}
+             */
+            PLATFORM,
+
+            /**
+             * 每个任务一个虚拟线程, 需要 JDK 21+, 低版本 JDK 自动退化为 {@link #PLATFORM}
+             *
+             * @see DefaultGrpcVirtualThreadExecutor
+             */
+            VIRTUAL,
+            ;
+        }
+
+        public enum QueueMode {
+            /**
+             * 先进先出
+             */
+            FIFO,
+
+            /**
+             * 按调用的 deadline 排序, deadline 最早的先执行, 没有 deadline 的调用排在最后并保持先进先出;
+             * 开始执行前调用已超时或已取消则直接丢弃
+             *
+             * @see DefaultGrpcDeadlineBlockingQueue
+             */
+            DEADLINE,
+
+            /**
+             * 排队耗时持续超过目标值时转为后进先出, 并丢弃积压过久的调用
+             *
+             * @see DefaultGrpcCodelBlockingQueue
+             */
+            CODEL,
+            ;
+        }
+
+        public static class CodelConfig {
+            /**
+             * 目标排队耗时
+             */
+            private Duration target = Duration.ofMillis(5);
+
+            /**
+             * 观测窗口, 窗口内最小排队耗时超过 target 即认为过载
+             */
+            private Duration interval = Duration.ofMillis(100);
+
+            public Duration getTarget() {
+                return target;
+            }
+
+            public void setTarget(Duration target) {
+                this.target = target;
+            }
+
+            public Duration getInterval() {
+                return interval;
+            }
+
+            public void setInterval(Duration interval) {
+                this.interval = interval;
+            }
+        }
     }
 }
@@ -0,0 +1,398 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Server 与所有 Client Channel 共用的消息压缩编码注册表.
+ * <p>
+ * 除 gRPC 自带的 gzip 外提供:
+ * <ul>
+ *     <li>deflate: JDK 自带的 zlib 格式, 使用最快的压缩级别, 比 gzip 默认级别快数倍而压缩率略低; Deflater/Inflater 池化复用,
+ *     省去每条消息初始化 zlib 的开销</li>
+ *     <li>zstd, snappy, lz4: classpath 中存在 zstd-jni、snappy-java 或 lz4-java 时注册, 通过反射创建流, 不引入依赖;
+ *     snappy 和 lz4 使用各自的 framed 格式, 对端须使用相同格式</li>
+ * </ul>
+ * 所有编码都在 grpc-accept-encoding 中声明, 对端可以按需选用; 每个编码按压缩和解压分别统计, 见 {@link #getMetrics()}.
+ */
+public final class DefaultGrpcCompressionCodecs {
+    private DefaultGrpcCompressionCodecs() {}
+
+    public static CompressorRegistry compressorRegistry() {
+        return COMPRESSOR_REGISTRY;
+    }
+
+    public static DecompressorRegistry decompressorRegistry() {
+        return DECOMPRESSOR_REGISTRY;
+    }
+
+    /**
+     * 可用的编码, 不含 identity
+     */
+    public static Set<String> getEncodings() {
+        return CODECS.keySet();
+    }
+
+    /**
+     * 编码是否可用, identity 总是可用
+     */
+    public static boolean isAvailable(String encoding) {
+        return IDENTITY.equals(encoding) || CODECS.containsKey(encoding);
+    }
+
+    public static Collection<DefaultGrpcCompressionMetrics> getMetrics() {
+        return METRICS;
+    }
+
+    private static Map<String, MeteredCodec> createCodecs() {
+        ImmutableMap.Builder<String, MeteredCodec> builder = ImmutableMap.builder();
+        builder.put(GZIP, new MeteredCodec(new Codec.Gzip()));
+        builder.put(DEFLATE, new MeteredCodec(new DeflateCodec()));
+        addIfPresent(builder, "zstd", "com.github.luben.zstd.ZstdOutputStream", "com.github.luben.zstd.ZstdInputStream");
+        addIfPresent(builder, "snappy", "org.xerial.snappy.SnappyFramedOutputStream", "org.xerial.snappy.SnappyFramedInputStream");
+        addIfPresent(builder, "lz4", "net.jpountz.lz4.LZ4FrameOutputStream", "net.jpountz.lz4.LZ4FrameInputStream");
+        return builder.build();
+    }
+
+    private static void addIfPresent(ImmutableMap.Builder<String, MeteredCodec> builder, String encoding, String outputStreamClassName,
+                                     String inputStreamClassName) {
+        ClassLoader classLoader = DefaultGrpcCompressionCodecs.class.getClassLoader();
+        try {
+            Constructor<? extends OutputStream> outputStreamConstructor =
+                Class.forName(outputStreamClassName, false, classLoader).asSubclass(OutputStream.class).getConstructor(OutputStream.class);
+            Constructor<? extends InputStream> inputStreamConstructor =
+                Class.forName(inputStreamClassName, false, classLoader).asSubclass(InputStream.class).getConstructor(InputStream.class);
+            builder.put(encoding, new MeteredCodec(new StreamCodec(encoding, outputStreamConstructor, inputStreamConstructor)));
+            LOGGER.info("grpc compression encoding [" + encoding + "] registered");
+        } catch(ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            LOGGER.debug("grpc compression encoding [" + encoding + "] unavailable: " + e);
+        }
+    }
+
+    /**
+     * zlib 格式, 最快压缩级别
+     */
+    private static class DeflateCodec implements Codec {
+        @Override
+        public String getMessageEncoding() {
+            return DEFLATE;
+        }
+
+        @Override
+        public OutputStream compress(OutputStream os) {
+            Deflater deflater = DEFLATERS.poll();
+            if(deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            Deflater pooled = deflater;
+            return new DeflaterOutputStream(os, pooled, BUFFER_SIZE) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if(closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        pooled.reset();
+                        if(!DEFLATERS.offer(pooled)) {
+                            pooled.end();
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream is) {
+            Inflater inflater = INFLATERS.poll();
+            if(inflater == null) {
+                inflater = new Inflater();
+            }
+            Inflater pooled = inflater;
+            return new InflaterInputStream(is, pooled, BUFFER_SIZE) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if(closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        pooled.reset();
+                        if(!INFLATERS.offer(pooled)) {
+                            pooled.end();
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * 由第三方库的流实现的编码
+     */
+    private static class StreamCodec implements Codec {
+        private final String encoding;
+        private final Constructor<? extends OutputStream> outputStreamConstructor;
+        private final Constructor<? extends InputStream> inputStreamConstructor;
+
+        StreamCodec(String encoding, Constructor<? extends OutputStream> outputStreamConstructor,
+                    Constructor<? extends InputStream> inputStreamConstructor) {
+            this.encoding = encoding;
+            this.outputStreamConstructor = outputStreamConstructor;
+            this.inputStreamConstructor = inputStreamConstructor;
+        }
+
+        @Override
+        public String getMessageEncoding() {
+            return encoding;
+        }
+
+        @Override
+        public OutputStream compress(OutputStream os) throws IOException {
+            return newInstance(outputStreamConstructor, os);
+        }
+
+        @Override
+        public InputStream decompress(InputStream is) throws IOException {
+            return newInstance(inputStreamConstructor, is);
+        }
+
+        private <T> T newInstance(Constructor<T> constructor, Object stream) throws IOException {
+            try {
+                return constructor.newInstance(stream);
+            } catch(InvocationTargetException e) {
+                if(e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to create [" + encoding + "] stream", e.getCause());
+            } catch(ReflectiveOperationException e) {
+                throw new IOException("Failed to create [" + encoding + "] stream", e);
+            }
+        }
+    }
+
+    /**
+     * 在编解码流外统计字节数和读写耗时, 流关闭时计入
+     */
+    private static class MeteredCodec implements Codec {
+        private final Codec delegate;
+        private final DefaultGrpcCompressionMetrics compressMetrics;
+        private final DefaultGrpcCompressionMetrics decompressMetrics;
+
+        MeteredCodec(Codec delegate) {
+            this.delegate = delegate;
+            this.compressMetrics = new DefaultGrpcCompressionMetrics(delegate.getMessageEncoding(),
+                                                                     DefaultGrpcCompressionMetrics.Operation.COMPRESS);
+            this.decompressMetrics = new DefaultGrpcCompressionMetrics(delegate.getMessageEncoding(),
+                                                                       DefaultGrpcCompressionMetrics.Operation.DECOMPRESS);
+        }
+
+        @Override
+        public String getMessageEncoding() {
+            return delegate.getMessageEncoding();
+        }
+
+        @Override
+        public OutputStream compress(OutputStream os) throws IOException {
+            CountingOutputStream compressed = new CountingOutputStream(os);
+            long startNanos = System.nanoTime();
+            OutputStream compressing = delegate.compress(compressed);
+            return new MeteredOutputStream(compressing, compressed, compressMetrics, System.nanoTime() - startNanos);
+        }
+
+        @Override
+        public InputStream decompress(InputStream is) throws IOException {
+            CountingInputStream compressed = new CountingInputStream(is);
+            long startNanos = System.nanoTime();
+            InputStream decompressing = delegate.decompress(compressed);
+            return new MeteredInputStream(decompressing, compressed, decompressMetrics, System.nanoTime() - startNanos);
+        }
+    }
+
+    private static class MeteredOutputStream extends FilterOutputStream {
+        private final CountingOutputStream compressed;
+        private final DefaultGrpcCompressionMetrics metrics;
+        private long uncompressed;
+        private long nanos;
+        private boolean closed;
+
+        MeteredOutputStream(OutputStream out, CountingOutputStream compressed, DefaultGrpcCompressionMetrics metrics, long nanos) {
+            super(out);
+            this.compressed = compressed;
+            this.metrics = metrics;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long startNanos = System.nanoTime();
+            out.write(b);
+            nanos += System.nanoTime() - startNanos;
+            uncompressed++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long startNanos = System.nanoTime();
+            out.write(b, off, len);
+            nanos += System.nanoTime() - startNanos;
+            uncompressed += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long startNanos = System.nanoTime();
+            out.flush();
+            nanos += System.nanoTime() - startNanos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            long startNanos = System.nanoTime();
+            try {
+                out.close();
+            } finally {
+                metrics.record(uncompressed, compressed.getCount(), nanos + System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private static class MeteredInputStream extends FilterInputStream {
+        private final CountingInputStream compressed;
+        private final DefaultGrpcCompressionMetrics metrics;
+        private long uncompressed;
+        private long nanos;
+        private boolean closed;
+
+        MeteredInputStream(InputStream in, CountingInputStream compressed, DefaultGrpcCompressionMetrics metrics, long nanos) {
+            super(in);
+            this.compressed = compressed;
+            this.metrics = metrics;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long startNanos = System.nanoTime();
+            int b = in.read();
+            nanos += System.nanoTime() - startNanos;
+            if(b >= 0) {
+                uncompressed++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long startNanos = System.nanoTime();
+            int n = in.read(b, off, len);
+            nanos += System.nanoTime() - startNanos;
+            if(n > 0) {
+                uncompressed += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long startNanos = System.nanoTime();
+            long skipped = in.skip(n);
+            nanos += System.nanoTime() - startNanos;
+            uncompressed += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            try {
+                in.close();
+            } finally {
+                metrics.record(uncompressed, compressed.getCount(), nanos);
+            }
+        }
+    }
+
+    private static CompressorRegistry createCompressorRegistry() {
+        CompressorRegistry registry = CompressorRegistry.newEmptyInstance();
+        registry.register(Codec.Identity.NONE);
+        CODECS.values().forEach(registry::register);
+        return registry;
+    }
+
+    private static DecompressorRegistry createDecompressorRegistry() {
+        DecompressorRegistry registry = DecompressorRegistry.emptyInstance().with(Codec.Identity.NONE, false);
+        for(MeteredCodec codec : CODECS.values()) {
+            registry = registry.with(codec, true);
+        }
+        return registry;
+    }
+
+    private static List<DefaultGrpcCompressionMetrics> collectMetrics() {
+        List<DefaultGrpcCompressionMetrics> metrics = new ArrayList<>();
+        for(MeteredCodec codec : CODECS.values()) {
+            metrics.add(codec.compressMetrics);
+            metrics.add(codec.decompressMetrics);
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcCompressionCodecs.class);
+    private static final String IDENTITY = "identity";
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final int BUFFER_SIZE = 8192;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final Queue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final Queue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final Map<String, MeteredCodec> CODECS = createCodecs();
+    private static final CompressorRegistry COMPRESSOR_REGISTRY = createCompressorRegistry();
+    private static final DecompressorRegistry DECOMPRESSOR_REGISTRY = createDecompressorRegistry();
+    private static final List<DefaultGrpcCompressionMetrics> METRICS = collectMetrics();
+}
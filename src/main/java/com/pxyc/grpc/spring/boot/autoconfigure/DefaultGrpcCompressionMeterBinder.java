@@ -0,0 +1,35 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * 将 {@link DefaultGrpcCompressionMetrics} 导出到 Micrometer, 以 encoding 和 operation (compress/decompress) 标签区分
+ */
+public class DefaultGrpcCompressionMeterBinder implements MeterBinder {
+    @Override
+    public void bindTo(@NotNull MeterRegistry registry) {
+        for(DefaultGrpcCompressionMetrics metrics : DefaultGrpcCompressionCodecs.getMetrics()) {
+            Tags tags = Tags.of("encoding", metrics.getEncoding(), "operation", metrics.getOperation().name().toLowerCase(Locale.ROOT));
+            FunctionCounter.builder(METRIC_PREFIX + "messages", metrics, DefaultGrpcCompressionMetrics::getMessageCount)
+                           .tags(tags).register(registry);
+            FunctionCounter.builder(METRIC_PREFIX + "uncompressed", metrics, DefaultGrpcCompressionMetrics::getUncompressedBytes)
+                           .tags(tags).baseUnit("bytes").register(registry);
+            FunctionCounter.builder(METRIC_PREFIX + "compressed", metrics, DefaultGrpcCompressionMetrics::getCompressedBytes)
+                           .tags(tags).baseUnit("bytes").register(registry);
+            FunctionCounter.builder(METRIC_PREFIX + "time", metrics, m -> m.getNanos() / 1e9)
+                           .tags(tags).baseUnit("seconds").description("Time spent in codec streams, approximately CPU time")
+                           .register(registry);
+            Gauge.builder(METRIC_PREFIX + "ratio", metrics, DefaultGrpcCompressionMetrics::getRatio)
+                 .tags(tags).description("Uncompressed bytes / compressed bytes").register(registry);
+        }
+    }
+
+    private static final String METRIC_PREFIX = "grpc.compression.";
+}
@@ -0,0 +1,67 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个编码单方向的压缩统计, 包括消息数、压缩前后的字节数和耗时.
+ * <p>
+ * 耗时为编解码流读写调用内的时间, 数据都在内存中, 近似于 CPU 时间; 不含消息序列化和反序列化本身.
+ *
+ * @see DefaultGrpcCompressionCodecs#getMetrics()
+ */
+public class DefaultGrpcCompressionMetrics {
+    private final String encoding;
+    private final Operation operation;
+    private final LongAdder messageCount = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    DefaultGrpcCompressionMetrics(String encoding, Operation operation) {
+        this.encoding = encoding;
+        this.operation = operation;
+    }
+
+    void record(long uncompressed, long compressed, long elapsedNanos) {
+        messageCount.increment();
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+        nanos.add(elapsedNanos);
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getMessageCount() {
+        return messageCount.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * 压缩比, 即压缩前字节数 / 压缩后字节数, 尚无数据时为 0
+     */
+    public double getRatio() {
+        long compressed = getCompressedBytes();
+        return compressed == 0 ? 0 : (double) getUncompressedBytes() / compressed;
+    }
+
+    public enum Operation {
+        COMPRESS, DECOMPRESS
+    }
+}
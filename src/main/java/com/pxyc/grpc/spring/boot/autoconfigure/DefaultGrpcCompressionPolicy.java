@@ -0,0 +1,160 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import com.google.protobuf.MessageLite;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按方法解析压缩编码和阈值, 解析结果在首次调用后缓存
+ *
+ * @see DefaultGrpcCommonConfigProps.CompressionConfig
+ */
+public class DefaultGrpcCompressionPolicy {
+    private final MethodPolicy defaultPolicy;
+    private final Map<String, String> methodEncodings;
+    private final Map<String, Integer> methodMinMessageSizes;
+    private final boolean enabled;
+    private final Map<String, MethodPolicy> resolved = new ConcurrentHashMap<>();
+
+    public DefaultGrpcCompressionPolicy(DefaultGrpcCommonConfigProps.CompressionConfig config) {
+        this.methodEncodings = config.getMethodEncodings();
+        this.methodMinMessageSizes = config.getMethodMinMessageSizes();
+        this.defaultPolicy = MethodPolicy.of(checkEncoding(config.getEncoding()), config.getMinMessageSize());
+        boolean anyEncoding = defaultPolicy.encoding != null;
+        if(methodEncodings != null) {
+            for(String encoding : methodEncodings.values()) {
+                anyEncoding |= checkEncoding(encoding) != null;
+            }
+        }
+        this.enabled = anyEncoding;
+    }
+
+    /**
+     * 是否有方法需要压缩
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param fullMethodName 完整方法名, 如 {@code grpc.health.v1.Health/Check}
+     */
+    public MethodPolicy resolve(String fullMethodName) {
+        MethodPolicy policy = resolved.get(fullMethodName);
+        if(policy == null) {
+            policy = resolved.computeIfAbsent(fullMethodName, this::doResolve);
+        }
+        return policy;
+    }
+
+    /**
+     * grpc-accept-encoding 是否包含指定编码, 逐个比较逗号分隔的各项, 不产生内存分配
+     */
+    public static boolean accepts(String acceptEncoding, String encoding) {
+        if(acceptEncoding == null) {
+            return false;
+        }
+        int length = acceptEncoding.length();
+        int start = 0;
+        while(start < length) {
+            int end = acceptEncoding.indexOf(',', start);
+            if(end < 0) {
+                end = length;
+            }
+            int tokenStart = start;
+            int tokenEnd = end;
+            while(tokenStart < tokenEnd && acceptEncoding.charAt(tokenStart) == ' ') {
+                tokenStart++;
+            }
+            while(tokenEnd > tokenStart && acceptEncoding.charAt(tokenEnd - 1) == ' ') {
+                tokenEnd--;
+            }
+            if(tokenEnd - tokenStart == encoding.length() && acceptEncoding.regionMatches(tokenStart, encoding, 0, encoding.length())) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * 消息是否达到压缩阈值; 非 protobuf 或 byte[] 的消息无法得知大小, 总是压缩
+     */
+    public static boolean shouldCompress(Object message, int minMessageSize) {
+        if(minMessageSize <= 0) {
+            return true;
+        }
+        if(message instanceof MessageLite) {
+            // 序列化大小会被缓存, 发送时不再重复计算
+            return ((MessageLite) message).getSerializedSize() >= minMessageSize;
+        }
+        return !(message instanceof byte[]) || ((byte[]) message).length >= minMessageSize;
+    }
+
+    private MethodPolicy doResolve(String fullMethodName) {
+        int index = fullMethodName.lastIndexOf('/');
+        String serviceName = index > 0 ? fullMethodName.substring(0, index) : null;
+        String encoding = lookup(methodEncodings, fullMethodName, serviceName);
+        Integer minMessageSize = lookup(methodMinMessageSizes, fullMethodName, serviceName);
+        if(encoding == null && minMessageSize == null) {
+            return defaultPolicy;
+        }
+        return MethodPolicy.of(encoding == null ? defaultPolicy.encoding : checkEncoding(encoding),
+                               minMessageSize == null ? defaultPolicy.minMessageSize : minMessageSize);
+    }
+
+    private static <T> T lookup(Map<String, T> values, String fullMethodName, String serviceName) {
+        if(values == null) {
+            return null;
+        }
+        T value = values.get(fullMethodName);
+        return value != null || serviceName == null ? value : values.get(serviceName);
+    }
+
+    /**
+     * identity 或空串视为不压缩, 返回 null
+     */
+    private static String checkEncoding(String encoding) {
+        if(encoding == null || encoding.isEmpty() || IDENTITY.equals(encoding)) {
+            return null;
+        }
+        if(!DefaultGrpcCompressionCodecs.isAvailable(encoding)) {
+            throw new RuntimeException("Compression encoding [" + encoding + "] unavailable, available encodings " +
+                                       DefaultGrpcCompressionCodecs.getEncodings());
+        }
+        return encoding;
+    }
+
+    /**
+     * 单个方法的压缩策略
+     */
+    public static final class MethodPolicy {
+        private final String encoding;
+        private final int minMessageSize;
+
+        private MethodPolicy(String encoding, int minMessageSize) {
+            this.encoding = encoding;
+            this.minMessageSize = minMessageSize;
+        }
+
+        static MethodPolicy of(String encoding, int minMessageSize) {
+            return encoding == null ? NONE : new MethodPolicy(encoding, minMessageSize);
+        }
+
+        /**
+         * 编码, 不压缩时为 null
+         */
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public int getMinMessageSize() {
+            return minMessageSize;
+        }
+
+        private static final MethodPolicy NONE = new MethodPolicy(null, 0);
+    }
+
+    private static final String IDENTITY = "identity";
+}
@@ -0,0 +1,101 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 deadline 排序 (EDF) 的有界等待队列, deadline 相同或没有 deadline 的任务按提交顺序执行.
+ * <p>
+ * 队列元素由 {@link DefaultGrpcThreadPoolExecutor} 通过 {@link #newEntry(Runnable, Runnable)} 包装,
+ * 原始任务实现 {@link GrpcDeadlineTask} 时取其 deadline. 与 {@link DefaultGrpcResizableBlockingQueue} 相同,
+ * 容量检查与入队之间不加锁, 并发提交时可能短暂超出容量少许.
+ */
+public class DefaultGrpcDeadlineBlockingQueue extends PriorityBlockingQueue<Runnable> implements GrpcTaskQueue {
+    private final int capacity;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public DefaultGrpcDeadlineBlockingQueue(int capacity) {
+        super(INITIAL_CAPACITY, DefaultGrpcDeadlineBlockingQueue::compare);
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, got [" + capacity + "]");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Runnable newEntry(Runnable task, Runnable command) {
+        long deadlineNanos = command instanceof GrpcDeadlineTask ? ((GrpcDeadlineTask) command).getDeadlineNanos() :
+                             GrpcDeadlineTask.NO_DEADLINE;
+        return new Entry(task, deadlineNanos, sequence.getAndIncrement());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean offer(Runnable e) {
+        return size() < capacity && super.offer(e);
+    }
+
+    @Override
+    public boolean offer(Runnable e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public boolean add(Runnable e) {
+        if(offer(e)) {
+            return true;
+        }
+        throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public void put(Runnable e) {
+        add(e);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    private static int compare(Runnable a, Runnable b) {
+        long deadlineA = a instanceof Entry ? ((Entry) a).deadlineNanos : GrpcDeadlineTask.NO_DEADLINE;
+        long deadlineB = b instanceof Entry ? ((Entry) b).deadlineNanos : GrpcDeadlineTask.NO_DEADLINE;
+        if(deadlineA != deadlineB) {
+            return deadlineA < deadlineB ? -1 : 1;
+        }
+        long sequenceA = a instanceof Entry ? ((Entry) a).sequence : 0;
+        long sequenceB = b instanceof Entry ? ((Entry) b).sequence : 0;
+        return Long.compare(sequenceA, sequenceB);
+    }
+
+    private static class Entry implements Runnable {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final long sequence;
+
+        Entry(Runnable task, long deadlineNanos, long sequence) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+}
@@ -0,0 +1,105 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.grpc.netty.shaded.io.netty.channel.Channel;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server 与所有 Client Channel 共用的一组 Netty 事件循环线程.
+ * <p>
+ * grpc-netty 默认 Server 和 Channel 各自使用内部的共享线程池, 同时是服务端和客户端的进程会多出一套事件循环线程;
+ * 共用后线程数和上下文切换都更少. 外部提供的事件循环不会被 Server/Channel 关闭, 由本 bean 销毁时统一关闭.
+ *
+ * @see DefaultGrpcCommonConfigProps.EventLoopConfig
+ */
+public class DefaultGrpcEventLoopGroups {
+    private final DefaultGrpcCommonConfigProps.EventLoopConfig.Transport transport;
+    private final EventLoopGroup bossGroup;
+    private final EventLoopGroup workerGroup;
+    private final Class<? extends ServerChannel> serverChannelType;
+    private final Class<? extends Channel> channelType;
+
+    public DefaultGrpcEventLoopGroups(DefaultGrpcCommonConfigProps.EventLoopConfig config) {
+        this.transport = resolveTransport(config.getTransport());
+        if(transport == DefaultGrpcCommonConfigProps.EventLoopConfig.Transport.EPOLL) {
+            this.bossGroup = new EpollEventLoopGroup(config.getBossThreads(), new DefaultThreadFactory(BOSS_THREAD_NAME, true));
+            this.workerGroup = new EpollEventLoopGroup(config.getWorkerThreads(), new DefaultThreadFactory(WORKER_THREAD_NAME, true));
+            this.serverChannelType = EpollServerSocketChannel.class;
+            this.channelType = EpollSocketChannel.class;
+        } else {
+            this.bossGroup = new NioEventLoopGroup(config.getBossThreads(), new DefaultThreadFactory(BOSS_THREAD_NAME, true));
+            this.workerGroup = new NioEventLoopGroup(config.getWorkerThreads(), new DefaultThreadFactory(WORKER_THREAD_NAME, true));
+            this.serverChannelType = NioServerSocketChannel.class;
+            this.channelType = NioSocketChannel.class;
+        }
+        LOGGER.info("Grpc shared event loop groups created, transport=" + transport + ", bossThreads=" + config.getBossThreads() +
+                    ", workerThreads=" + (config.getWorkerThreads() > 0 ? config.getWorkerThreads() : "default"));
+    }
+
+    private static DefaultGrpcCommonConfigProps.EventLoopConfig.Transport resolveTransport(
+            DefaultGrpcCommonConfigProps.EventLoopConfig.Transport transport) {
+        switch(transport) {
+            case EPOLL:
+                if(!Epoll.isAvailable()) {
+                    throw new RuntimeException("Epoll transport not available", Epoll.unavailabilityCause());
+                }
+                return transport;
+            case AUTO:
+                return Epoll.isAvailable() ? DefaultGrpcCommonConfigProps.EventLoopConfig.Transport.EPOLL :
+                       DefaultGrpcCommonConfigProps.EventLoopConfig.Transport.NIO;
+            default:
+                return transport;
+        }
+    }
+
+    /**
+     * 实际使用的传输类型, 不会是 {@link DefaultGrpcCommonConfigProps.EventLoopConfig.Transport#AUTO AUTO}
+     */
+    public DefaultGrpcCommonConfigProps.EventLoopConfig.Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Server 接受连接的事件循环
+     */
+    public EventLoopGroup getBossGroup() {
+        return bossGroup;
+    }
+
+    /**
+     * Server 连接及所有 Client Channel 的 I/O 事件循环
+     */
+    public EventLoopGroup getWorkerGroup() {
+        return workerGroup;
+    }
+
+    public Class<? extends ServerChannel> getServerChannelType() {
+        return serverChannelType;
+    }
+
+    public Class<? extends Channel> getChannelType() {
+        return channelType;
+    }
+
+    public void shutdown() {
+        bossGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        workerGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static final String BOSS_THREAD_NAME = "GrpcBossEventLoop";
+    private static final String WORKER_THREAD_NAME = "GrpcWorkerEventLoop";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcEventLoopGroups.class);
+}
@@ -0,0 +1,158 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池自适应容量调整.
+ * <p>
+ * 周期性地根据任务提交速率 λ、平均执行耗时 W 和阻塞比例 B 计算目标线程数:
+ * <ul>
+ *     <li>需求线程数按 Little's law 估算: {@code λ * W * (1 + headroom)}</li>
+ *     <li>CPU 上限: {@code 核数 * 目标 CPU 使用率 / (1 - B)}, 超过后增加线程只会加剧 CPU 争抢</li>
+ * </ul>
+ * 取两者较小值并限制在 [minPoolSize, maxPoolSize] 之间, 平滑后设置为线程池的核心及最大线程数.
+ */
+public class DefaultGrpcExecutorAutoSizer {
+    private final DefaultGrpcThreadPoolExecutor executor;
+    private final double headroom;
+    private final double targetCpuUtilization;
+    private volatile int minPoolSize;
+    private volatile int maxPoolSize;
+    private ScheduledFuture<?> future;
+
+    private long lastTickNanos;
+    private long lastSubmitted;
+    private long lastCompleted;
+    private long lastExecutionMicros;
+    private long lastCpuNanos;
+    private double smoothedTarget;
+    private volatile double blockingRatio;
+    private volatile double arrivalRate;
+
+    DefaultGrpcExecutorAutoSizer(DefaultGrpcThreadPoolExecutor executor,
+                                 DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.AdaptiveConfig config, int maxPoolSize) {
+        this.executor = executor;
+        this.headroom = config.getHeadroom();
+        this.targetCpuUtilization = config.getTargetCpuUtilization();
+        setBounds(config.getMinPoolSize(), maxPoolSize);
+        this.smoothedTarget = executor.getMaximumPoolSize();
+    }
+
+    synchronized void start(long intervalMillis) {
+        executor.getMetrics().setCpuTimeTracking(true);
+        DefaultGrpcExecutorMetrics metrics = executor.getMetrics();
+        lastTickNanos = System.nanoTime();
+        lastSubmitted = metrics.getSubmittedCount();
+        lastCompleted = metrics.getCompletedCount();
+        lastExecutionMicros = metrics.getExecutionMicros().getSum();
+        lastCpuNanos = metrics.getCpuNanos();
+        future = SCHEDULER.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if(future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    /**
+     * 调整自适应的上下界, 当前线程数超出新边界时立即收敛
+     */
+    public void setBounds(int minPoolSize, int maxPoolSize) {
+        if(minPoolSize <= 0 || maxPoolSize < minPoolSize) {
+            throw new IllegalArgumentException("Illegal bounds [" + minPoolSize + ", " + maxPoolSize + "]");
+        }
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        int current = executor.getMaximumPoolSize();
+        if(current < minPoolSize || current > maxPoolSize) {
+            executor.setPoolSize(Math.min(maxPoolSize, Math.max(minPoolSize, current)));
+        }
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * 最近一个周期观测到的任务阻塞比例, 即 1 - CPU 耗时 / 执行耗时
+     */
+    public double getBlockingRatio() {
+        return blockingRatio;
+    }
+
+    /**
+     * 最近一个周期观测到的任务提交速率, 单位: 个/秒
+     */
+    public double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    private synchronized void tick() {
+        try {
+            DefaultGrpcExecutorMetrics metrics = executor.getMetrics();
+            long now = System.nanoTime();
+            long submitted = metrics.getSubmittedCount();
+            long completed = metrics.getCompletedCount();
+            long executionMicros = metrics.getExecutionMicros().getSum();
+            long cpuNanos = metrics.getCpuNanos();
+            double seconds = (now - lastTickNanos) / 1e9;
+            long completedDelta = completed - lastCompleted;
+            long executionMicrosDelta = executionMicros - lastExecutionMicros;
+
+            arrivalRate = (submitted - lastSubmitted) / seconds;
+            double demand = 0;
+            if(completedDelta > 0 && executionMicrosDelta > 0) {
+                double avgExecutionSeconds = executionMicrosDelta / 1e6 / completedDelta;
+                blockingRatio = Math.min(MAX_BLOCKING_RATIO, Math.max(0, 1 - (cpuNanos - lastCpuNanos) / (executionMicrosDelta * 1e3)));
+                demand = arrivalRate * avgExecutionSeconds * (1 + headroom);
+            } else {
+                // 周期内没有任务完成, 可能是任务普遍耗时超过周期, 按当前在途任务数估算, 避免在饱和时缩容
+                demand = executor.getActiveCount() + executor.getQueue().size();
+            }
+            double cpuCap = CPU_COUNT * targetCpuUtilization / (1 - blockingRatio);
+            double target = Math.min(maxPoolSize, Math.max(minPoolSize, Math.min(demand, cpuCap)));
+
+            smoothedTarget = target > smoothedTarget ? target : smoothedTarget * SHRINK_BETA + target * (1 - SHRINK_BETA);
+            int newSize = Math.min(maxPoolSize, Math.max(minPoolSize, (int) Math.ceil(smoothedTarget)));
+            int current = executor.getMaximumPoolSize();
+            if(newSize != current) {
+                executor.setPoolSize(newSize);
+                LOGGER.debug("Executor [" + metrics.getName() + "] resized " + current + " -> " + newSize + ", arrivalRate=" +
+                             String.format("%.1f", arrivalRate) + "/s, blockingRatio=" + String.format("%.2f", blockingRatio));
+            }
+
+            lastTickNanos = now;
+            lastSubmitted = submitted;
+            lastCompleted = completed;
+            lastExecutionMicros = executionMicros;
+            lastCpuNanos = cpuNanos;
+        } catch(Throwable t) {
+            LOGGER.warn("Executor auto sizing error", t);
+        }
+    }
+
+    /**
+     * 扩容立即生效, 缩容按此系数平滑, 避免流量抖动时频繁回收和创建线程
+     */
+    private static final double SHRINK_BETA = 0.7;
+    private static final double MAX_BLOCKING_RATIO = 0.99;
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcExecutorAutoSizer.class);
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "GrpcExecutorAutoSizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+}
@@ -0,0 +1,109 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 将 {@link DefaultGrpcExecutorMetrics} 导出到 Micrometer, 以 name 标签区分执行器.
+ * 绑定之后新创建的执行器也会自动导出, 执行器终止后移除对应指标; 关闭时取消监听并移除已导出的指标.
+ */
+public class DefaultGrpcExecutorMeterBinder implements MeterBinder, DefaultGrpcExecutorMetrics.Listener, AutoCloseable {
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+    private final Map<DefaultGrpcExecutorMetrics, List<Meter>> meters = new ConcurrentHashMap<>();
+    private final AtomicBoolean listening = new AtomicBoolean();
+
+    @Override
+    public void bindTo(@NotNull MeterRegistry registry) {
+        registries.add(registry);
+        if(listening.compareAndSet(false, true)) {
+            DefaultGrpcExecutorMetrics.addListener(this);
+        } else {
+            for(DefaultGrpcExecutorMetrics metrics : DefaultGrpcExecutorMetrics.getAll()) {
+                bind(metrics, registry);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if(listening.compareAndSet(true, false)) {
+            DefaultGrpcExecutorMetrics.removeListener(this);
+        }
+        for(DefaultGrpcExecutorMetrics metrics : new ArrayList<>(meters.keySet())) {
+            onUnregister(metrics);
+        }
+        registries.clear();
+    }
+
+    @Override
+    public void onRegister(DefaultGrpcExecutorMetrics metrics) {
+        for(MeterRegistry registry : registries) {
+            bind(metrics, registry);
+        }
+    }
+
+    @Override
+    public void onUnregister(DefaultGrpcExecutorMetrics metrics) {
+        List<Meter> removed = meters.remove(metrics);
+        if(removed == null) {
+            return;
+        }
+        for(Meter meter : removed) {
+            for(MeterRegistry registry : registries) {
+                registry.remove(meter);
+            }
+        }
+    }
+
+    private void bind(DefaultGrpcExecutorMetrics metrics, MeterRegistry registry) {
+        Tags tags = Tags.of("name", metrics.getName());
+        List<Meter> bound = new ArrayList<>();
+        bound.add(Gauge.builder(METRIC_PREFIX + "active", metrics, DefaultGrpcExecutorMetrics::getActiveCount)
+                       .tags(tags).description("Tasks currently running").register(registry));
+        bound.add(Gauge.builder(METRIC_PREFIX + "queued", metrics, DefaultGrpcExecutorMetrics::getQueueSize)
+                       .tags(tags).description("Tasks waiting to run").register(registry));
+        bound.add(Gauge.builder(METRIC_PREFIX + "pool.size", metrics, DefaultGrpcExecutorMetrics::getPoolSize)
+                       .tags(tags).register(registry));
+        bound.add(Gauge.builder(METRIC_PREFIX + "pool.max", metrics, DefaultGrpcExecutorMetrics::getMaximumPoolSize)
+                       .tags(tags).register(registry));
+        bound.add(FunctionCounter.builder(METRIC_PREFIX + "rejected", metrics, DefaultGrpcExecutorMetrics::getRejectedCount)
+                                 .tags(tags).description("Tasks rejected because the executor is saturated").register(registry));
+        bound.add(FunctionCounter.builder(METRIC_PREFIX + "shed", metrics, DefaultGrpcExecutorMetrics::getShedCount)
+                                 .tags(tags).description("Tasks dropped before running because the call expired or was cancelled")
+                                 .register(registry));
+        bound.addAll(bindHistogram(METRIC_PREFIX + "queue.wait", metrics, metrics.getQueueWaitMicros(), tags, registry));
+        bound.addAll(bindHistogram(METRIC_PREFIX + "execution", metrics, metrics.getExecutionMicros(), tags, registry));
+        meters.computeIfAbsent(metrics, key -> new CopyOnWriteArrayList<>()).addAll(bound);
+    }
+
+    static List<Meter> bindHistogram(String name, Object owner, LatencyHistogram histogram, Tags tags, MeterRegistry registry) {
+        List<Meter> bound = new ArrayList<>();
+        bound.add(FunctionTimer.builder(name, owner, o -> histogram.getCount(), o -> histogram.getSum(), TimeUnit.MICROSECONDS)
+                               .tags(tags).register(registry));
+        // 直方图只增不减, 百分位和最大值按窗口计算, 否则反映的是进程启动以来的分布
+        LatencyHistogram.WindowedSnapshot window = new LatencyHistogram.WindowedSnapshot(histogram, PERCENTILE_WINDOW);
+        for(double percentile : PERCENTILES) {
+            bound.add(Gauge.builder(name + ".percentile", histogram, h -> window.get().getValueAtPercentile(percentile))
+                           .tags(tags.and("percentile", String.valueOf(percentile)))
+                           .baseUnit("microseconds")
+                           .register(registry));
+        }
+        bound.add(Gauge.builder(name + ".max", histogram, h -> window.get().getMax())
+                       .tags(tags).baseUnit("microseconds").register(registry));
+        return bound;
+    }
+
+    private static final String METRIC_PREFIX = "grpc.executor.";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    static final Duration PERCENTILE_WINDOW = Duration.ofMinutes(1);
+}
@@ -0,0 +1,218 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 单个执行器的饱和度与耗时统计, 本 starter 创建的所有执行器均自动记录.
+ * <p>
+ * 排队耗时为任务提交到开始执行之间的时间, 执行耗时为任务本身的运行时间, 单位均为微秒.
+ * 存活执行器的统计可通过 {@link #getAll()} 获取.
+ */
+public class DefaultGrpcExecutorMetrics {
+    private final String name;
+    private final IntSupplier activeCount;
+    private final IntSupplier queueSize;
+    private final IntSupplier poolSize;
+    private final IntSupplier maximumPoolSize;
+    private final LatencyHistogram queueWaitMicros = new LatencyHistogram();
+    private final LatencyHistogram executionMicros = new LatencyHistogram();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder shedCount = new LongAdder();
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private volatile boolean cpuTimeTracking;
+
+    public DefaultGrpcExecutorMetrics(String name, IntSupplier activeCount, IntSupplier queueSize, IntSupplier poolSize,
+                                      IntSupplier maximumPoolSize) {
+        this.name = name;
+        this.activeCount = activeCount;
+        this.queueSize = queueSize;
+        this.poolSize = poolSize;
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    /**
+     * 包装任务, 在任务开始和结束时记录排队耗时和执行耗时
+     */
+    public Runnable wrap(Runnable task) {
+        submittedCount.increment();
+        return new InstrumentedTask(task, System.nanoTime());
+    }
+
+    public void recordRejected() {
+        rejectedCount.increment();
+    }
+
+    /**
+     * 记录一个因已超时或已取消而未执行即被丢弃的任务
+     */
+    public void recordShed() {
+        shedCount.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 正在执行任务的线程数
+     */
+    public int getActiveCount() {
+        return activeCount.getAsInt();
+    }
+
+    /**
+     * 排队等待执行的任务数
+     */
+    public int getQueueSize() {
+        return queueSize.getAsInt();
+    }
+
+    /**
+     * 当前线程数, 虚拟线程模式下为正在运行的任务数
+     */
+    public int getPoolSize() {
+        return poolSize.getAsInt();
+    }
+
+    /**
+     * 最大线程数, 虚拟线程模式下为最大并发数
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize.getAsInt();
+    }
+
+    public LatencyHistogram getQueueWaitMicros() {
+        return queueWaitMicros;
+    }
+
+    public LatencyHistogram getExecutionMicros() {
+        return executionMicros;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getShedCount() {
+        return shedCount.sum();
+    }
+
+    public long getCompletedCount() {
+        return executionMicros.getCount();
+    }
+
+    /**
+     * 累计提交的任务数, 包含被拒绝的任务
+     */
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    /**
+     * 累计的任务 CPU 耗时, 仅在开启 {@link #setCpuTimeTracking(boolean) CPU 耗时统计} 后记录
+     */
+    public long getCpuNanos() {
+        return cpuNanos.sum();
+    }
+
+    /**
+     * 是否统计任务的 CPU 耗时, 用于计算任务的阻塞比例; 每个任务会额外读取两次线程 CPU 时间, 默认关闭
+     */
+    public void setCpuTimeTracking(boolean cpuTimeTracking) {
+        this.cpuTimeTracking = cpuTimeTracking && THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+    }
+
+    /**
+     * 饱和度, 即 (正在执行 + 排队) / 最大线程数
+     */
+    public double getSaturation() {
+        int max = getMaximumPoolSize();
+        return max <= 0 ? 0 : (double) (getActiveCount() + getQueueSize()) / max;
+    }
+
+    /**
+     * 当前进程内所有存活执行器的统计
+     */
+    public static Collection<DefaultGrpcExecutorMetrics> getAll() {
+        return Collections.unmodifiableSet(REGISTRY);
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+        for(DefaultGrpcExecutorMetrics metrics : REGISTRY) {
+            listener.onRegister(metrics);
+        }
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    static void register(DefaultGrpcExecutorMetrics metrics) {
+        if(REGISTRY.add(metrics)) {
+            for(Listener listener : LISTENERS) {
+                listener.onRegister(metrics);
+            }
+        }
+    }
+
+    static void unregister(DefaultGrpcExecutorMetrics metrics) {
+        if(REGISTRY.remove(metrics)) {
+            for(Listener listener : LISTENERS) {
+                listener.onUnregister(metrics);
+            }
+        }
+    }
+
+    public interface Listener {
+        void onRegister(DefaultGrpcExecutorMetrics metrics);
+
+        void onUnregister(DefaultGrpcExecutorMetrics metrics);
+    }
+
+    private class InstrumentedTask implements Runnable {
+        private final Runnable task;
+        private final long submitNanos;
+
+        InstrumentedTask(Runnable task, long submitNanos) {
+            this.task = task;
+            this.submitNanos = submitNanos;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            queueWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(startNanos - submitNanos));
+            boolean trackCpu = cpuTimeTracking;
+            long startCpuNanos = trackCpu ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+            try {
+                task.run();
+            } finally {
+                executionMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+                if(trackCpu) {
+                    cpuNanos.add(THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpuNanos);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final Set<DefaultGrpcExecutorMetrics> REGISTRY = ConcurrentHashMap.newKeySet();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+}
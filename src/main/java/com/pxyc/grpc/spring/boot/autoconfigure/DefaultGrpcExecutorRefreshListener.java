@@ -0,0 +1,75 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * 配置中心刷新线程池配置后, 在运行时调整对应执行器的线程数和等待队列长度, 无需重启.
+ * <p>
+ * 依赖 Spring Cloud 的 {@link EnvironmentChangeEvent}, 仅对平台线程池生效;
+ * 开启自适应容量时调整的是自适应的上下界 (adaptive.min-pool-size, maximum-pool-size).
+ */
+public class DefaultGrpcExecutorRefreshListener implements ApplicationListener<EnvironmentChangeEvent> {
+    private final Environment environment;
+    private final Map<String, ExecutorService> executors;
+
+    /**
+     * @param executors Key 为线程池配置的属性前缀, 如 {@code best.grpc.common.thread-pool}
+     */
+    public DefaultGrpcExecutorRefreshListener(Environment environment, Map<String, ExecutorService> executors) {
+        this.environment = environment;
+        this.executors = ImmutableMap.copyOf(executors);
+    }
+
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        boolean changed = false;
+        for(String key : event.getKeys()) {
+            if(key.startsWith(PROPERTY_PREFIX)) {
+                changed = true;
+                break;
+            }
+        }
+        if(!changed) {
+            return;
+        }
+        Binder binder = Binder.get(environment);
+        executors.forEach((prefix, executor) -> {
+            if(!(executor instanceof DefaultGrpcThreadPoolExecutor)) {
+                return;
+            }
+            DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig config =
+                binder.bind(prefix, DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.class).orElse(null);
+            if(config == null) {
+                return;
+            }
+            refresh(prefix, (DefaultGrpcThreadPoolExecutor) executor, config);
+        });
+    }
+
+    private void refresh(String prefix, DefaultGrpcThreadPoolExecutor executor,
+                         DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig config) {
+        int corePoolSize = executor.getAutoSizer() == null ? config.getCorePoolSize() : config.getAdaptive().getMinPoolSize();
+        int waitQueueSize = config.getWaitQueueSize();
+        int queueCapacity = waitQueueSize <= 0 || waitQueueSize == Integer.MAX_VALUE ? -1 : waitQueueSize;
+        try {
+            executor.resize(corePoolSize, config.getMaximumPoolSize(), queueCapacity);
+            LOGGER.info("Executor [" + prefix + "] refreshed, corePoolSize=" + corePoolSize + ", maximumPoolSize=" +
+                        config.getMaximumPoolSize() + ", waitQueueSize=" + waitQueueSize);
+        } catch(RuntimeException e) {
+            LOGGER.warn("Executor [" + prefix + "] refresh failed", e);
+        }
+    }
+
+    private static final String PROPERTY_PREFIX = "best.grpc.";
+    private static final Logger LOGGER = getLogger(DefaultGrpcExecutorRefreshListener.class);
+}
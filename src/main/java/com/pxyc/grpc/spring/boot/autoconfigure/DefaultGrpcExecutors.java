@@ -0,0 +1,94 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+
+/**
+ * 本 starter 所创建执行器的统一构建入口, 共用线程池与服务端隔离线程池均由此创建
+ */
+public final class DefaultGrpcExecutors {
+    private DefaultGrpcExecutors() {}
+
+    /**
+     * 根据配置的 {@link DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig#getMode() 模式} 创建执行器,
+     * 虚拟线程模式在不支持的 JDK 上退化为平台线程池
+     *
+     * @param executorConfig 线程池配置
+     * @param name           执行器名称, 用于线程命名、统计及拒绝时的错误信息
+     */
+    public static ExecutorService newExecutor(DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig executorConfig, String name) {
+        if(executorConfig.getMode() == DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.Mode.VIRTUAL) {
+            DefaultGrpcVirtualThreadExecutor executor = DefaultGrpcVirtualThreadExecutor.create(
+                    name, executorConfig.getMaximumPoolSize(), executorConfig.getWaitQueueSize());
+            if(executor != null) {
+                LOGGER.info("Executor [" + name + "] using virtual threads, maxConcurrency=" + executorConfig.getMaximumPoolSize());
+                return executor;
+            }
+            LOGGER.warn("Virtual threads not supported by current JVM [" + System.getProperty("java.version") +
+                        "], executor [" + name + "] falls back to platform thread pool");
+        }
+        return newThreadPoolExecutor(executorConfig, name);
+    }
+
+    /**
+     * 根据配置创建平台线程池执行器
+     *
+     * @param executorConfig 线程池配置
+     * @param name           执行器名称, 用于线程命名、统计及拒绝时的错误信息
+     */
+    public static DefaultGrpcThreadPoolExecutor newThreadPoolExecutor(DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig executorConfig,
+                                                           String name) {
+        BlockingQueue<Runnable> queue;
+        if(executorConfig.getWaitQueueSize() == 0) {
+            queue = new SynchronousQueue<>();
+        } else if(executorConfig.getQueueMode() == DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.QueueMode.DEADLINE) {
+            queue = new DefaultGrpcDeadlineBlockingQueue(executorConfig.getWaitQueueSize() < 0 ? Integer.MAX_VALUE :
+                                                         executorConfig.getWaitQueueSize());
+        } else if(executorConfig.getQueueMode() == DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.QueueMode.CODEL) {
+            queue = new DefaultGrpcCodelBlockingQueue(executorConfig.getWaitQueueSize() < 0 ? Integer.MAX_VALUE :
+                                                      executorConfig.getWaitQueueSize(),
+                                                      executorConfig.getCodel().getTarget(), executorConfig.getCodel().getInterval());
+        } else if(executorConfig.getWaitQueueSize() < 0 || executorConfig.getWaitQueueSize() == Integer.MAX_VALUE) {
+            queue = new LinkedBlockingQueue<>();
+        } else {
+            queue = new DefaultGrpcResizableBlockingQueue<>(executorConfig.getWaitQueueSize());
+        }
+
+        DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.AdaptiveConfig adaptiveConfig = executorConfig.getAdaptive();
+        int initialPoolSize = adaptiveConfig.isEnabled() ? adaptiveConfig.getMinPoolSize() : executorConfig.getCorePoolSize();
+        int initialMaxPoolSize = adaptiveConfig.isEnabled() ? adaptiveConfig.getMinPoolSize() : executorConfig.getMaximumPoolSize();
+        DefaultGrpcThreadPoolExecutor threadPool = new DefaultGrpcThreadPoolExecutor(
+                name, initialPoolSize, initialMaxPoolSize,
+                executorConfig.getKeepAliveTime().toMillis(), TimeUnit.MILLISECONDS, queue,
+                new DefaultGrpcExecutorThreadFactory(name, executorConfig.isDaemon()), new SaturationReportingAbortPolicy(name));
+        threadPool.allowCoreThreadTimeOut(executorConfig.isAllowCoreThreadTimeOut());
+        if(adaptiveConfig.isEnabled()) {
+            threadPool.enableAutoSizing(adaptiveConfig, executorConfig.getMaximumPoolSize());
+            LOGGER.info("Executor [" + name + "] adaptive sizing between [" + adaptiveConfig.getMinPoolSize() + ", " +
+                        executorConfig.getMaximumPoolSize() + "]");
+        }
+        return threadPool;
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcExecutors.class);
+
+    /**
+     * 与 {@link ThreadPoolExecutor.AbortPolicy} 相同, 但在异常信息中带上执行器名称和饱和状态, 便于定位是哪个线程池被打满
+     */
+    private static class SaturationReportingAbortPolicy implements RejectedExecutionHandler {
+        private final String name;
+
+        SaturationReportingAbortPolicy(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            throw new RejectedExecutionException("Executor [" + name + "] saturated, active=" + executor.getActiveCount() +
+                                                 ", poolSize=" + executor.getPoolSize() + "/" + executor.getMaximumPoolSize() +
+                                                 ", queued=" + executor.getQueue().size());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import com.google.common.collect.ImmutableSet;
+import io.grpc.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 按方法替换 marshaller 的公共逻辑, 服务端改写服务定义, 客户端通过拦截器改写方法描述
+ *
+ * @see DefaultGrpcSharedMessages
+ * @see DefaultGrpcZeroCopyMarshaller
+ */
+public final class DefaultGrpcMarshallers {
+    private DefaultGrpcMarshallers() {}
+
+    /**
+     * 包装 marshaller, 不适用时原样返回
+     */
+    public interface Decorator {
+        <T> MethodDescriptor.Marshaller<T> decorate(MethodDescriptor.Marshaller<T> marshaller);
+    }
+
+    /**
+     * 按服务或方法全名匹配, {@code *} 表示全部
+     */
+    public static Predicate<String> methodFilter(Collection<String> names) {
+        if(names == null || names.isEmpty()) {
+            return fullMethodName -> false;
+        }
+        if(names.contains(ANY)) {
+            return fullMethodName -> true;
+        }
+        Set<String> nameSet = ImmutableSet.copyOf(names);
+        return fullMethodName -> nameSet.contains(fullMethodName) ||
+                                 nameSet.contains(MethodDescriptor.extractFullServiceName(fullMethodName));
+    }
+
+    public static <ReqT, RespT> MethodDescriptor<ReqT, RespT> decorate(MethodDescriptor<ReqT, RespT> method, Decorator decorator) {
+        MethodDescriptor.Marshaller<ReqT> requestMarshaller = decorator.decorate(method.getRequestMarshaller());
+        MethodDescriptor.Marshaller<RespT> responseMarshaller = decorator.decorate(method.getResponseMarshaller());
+        if(requestMarshaller == method.getRequestMarshaller() && responseMarshaller == method.getResponseMarshaller()) {
+            return method;
+        }
+        return method.toBuilder(requestMarshaller, responseMarshaller).build();
+    }
+
+    /**
+     * 改写服务中匹配的方法, 没有方法匹配时原样返回
+     *
+     * @param methodFilter 参数为方法全名
+     */
+    public static ServerServiceDefinition decorate(ServerServiceDefinition service, Predicate<String> methodFilter, Decorator decorator) {
+        return rewrite(service, method -> methodFilter.test(method.getMethodDescriptor().getFullMethodName()) ?
+                                          decorate(method, decorator) : method);
+    }
+
+    /**
+     * 逐个方法改写服务定义, 并按改写后的方法描述重建服务描述; 所有方法都原样返回时返回原服务定义
+     *
+     * @param transform 返回改写后的方法定义, 不改写时返回参数本身
+     */
+    public static ServerServiceDefinition rewrite(ServerServiceDefinition service,
+                                                  UnaryOperator<ServerMethodDefinition<?, ?>> transform) {
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        boolean rewritten = false;
+        for(ServerMethodDefinition<?, ?> method : service.getMethods()) {
+            ServerMethodDefinition<?, ?> transformed = transform.apply(method);
+            rewritten |= transformed != method;
+            methods.add(transformed);
+        }
+        if(!rewritten) {
+            return service;
+        }
+        ServiceDescriptor original = service.getServiceDescriptor();
+        ServiceDescriptor.Builder descriptorBuilder =
+            ServiceDescriptor.newBuilder(original.getName()).setSchemaDescriptor(original.getSchemaDescriptor());
+        for(ServerMethodDefinition<?, ?> method : methods) {
+            descriptorBuilder.addMethod(method.getMethodDescriptor());
+        }
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptorBuilder.build());
+        for(ServerMethodDefinition<?, ?> method : methods) {
+            builder.addMethod(method);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 创建客户端拦截器, 改写匹配方法的方法描述; 需添加在最内层, 即最先添加, 其他拦截器看到的仍是原方法描述
+     *
+     * @param methodFilter 参数为方法全名
+     */
+    public static ClientInterceptor clientInterceptor(Predicate<String> methodFilter, Decorator decorator) {
+        return new DecoratingClientInterceptor(methodFilter, decorator);
+    }
+
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> decorate(ServerMethodDefinition<ReqT, RespT> method,
+                                                                             Decorator decorator) {
+        MethodDescriptor<ReqT, RespT> descriptor = decorate(method.getMethodDescriptor(), decorator);
+        return descriptor == method.getMethodDescriptor() ? method : ServerMethodDefinition.create(descriptor, method.getServerCallHandler());
+    }
+
+    private static class DecoratingClientInterceptor implements ClientInterceptor {
+        private final Predicate<String> methodFilter;
+        private final Decorator decorator;
+        /**
+         * Key 为原方法描述, stub 中的方法描述为静态常量, 数量有限
+         */
+        private final Map<MethodDescriptor<?, ?>, MethodDescriptor<?, ?>> decoratedMethods = new ConcurrentHashMap<>();
+
+        DecoratingClientInterceptor(Predicate<String> methodFilter, Decorator decorator) {
+            this.methodFilter = methodFilter;
+            this.decorator = decorator;
+        }
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                                   Channel next) {
+            MethodDescriptor<?, ?> decorated = decoratedMethods.get(method);
+            if(decorated == null) {
+                decorated = decoratedMethods.computeIfAbsent(
+                    method, m -> methodFilter.test(m.getFullMethodName()) ? decorate(m, decorator) : m);
+            }
+            @SuppressWarnings("unchecked") MethodDescriptor<ReqT, RespT> decoratedMethod = (MethodDescriptor<ReqT, RespT>) decorated;
+            return next.newCall(decoratedMethod, callOptions);
+        }
+    }
+
+    private static final String ANY = "*";
+}
@@ -0,0 +1,26 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import com.google.protobuf.MessageLite;
+
+/**
+ * 调用日志与调用统计共用的消息大小计算
+ */
+public final class DefaultGrpcMessageSizes {
+    private DefaultGrpcMessageSizes() {}
+
+    /**
+     * 累加消息序列化后的字节数, protobuf 消息的 getSerializedSize 有缓存, 序列化时会复用; 非 protobuf 消息记为未知
+     *
+     * @param total 已累加的字节数, 小于 0 表示未知
+     * @return 累加后的字节数, 未知时返回 -1
+     */
+    public static long add(long total, Object message) {
+        if(total < 0) {
+            return total;
+        }
+        if(message instanceof MessageLite) {
+            return total + ((MessageLite) message).getSerializedSize();
+        }
+        return message instanceof byte[] ? total + ((byte[]) message).length : -1;
+    }
+}
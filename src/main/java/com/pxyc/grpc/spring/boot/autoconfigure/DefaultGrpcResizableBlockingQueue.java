@@ -0,0 +1,60 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 容量可在运行时调整的有界队列, 供线程池在不重启的情况下调整等待队列长度.
+ * <p>
+ * 容量检查与入队之间不加锁, 并发提交时可能短暂超出容量少许, 以换取与 {@link LinkedBlockingQueue} 相同的入队性能.
+ * {@link java.util.concurrent.ThreadPoolExecutor} 只使用非阻塞的 {@link #offer(Object)} 入队.
+ *
+ * @see java.util.concurrent.ThreadPoolExecutor
+ */
+public class DefaultGrpcResizableBlockingQueue<E> extends LinkedBlockingQueue<E> {
+    private volatile int capacity;
+
+    public DefaultGrpcResizableBlockingQueue(int capacity) {
+        super(Integer.MAX_VALUE);
+        setCapacity(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 调小容量不会丢弃已在队列中的任务, 只是在队列回落到新容量以下之前拒绝新任务
+     */
+    public void setCapacity(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, got [" + capacity + "]");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean offer(@NotNull E e) {
+        return size() < capacity && super.offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return size() < capacity && super.offer(e, timeout, unit);
+    }
+
+    @Override
+    public boolean add(@NotNull E e) {
+        if(offer(e)) {
+            return true;
+        }
+        throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+}
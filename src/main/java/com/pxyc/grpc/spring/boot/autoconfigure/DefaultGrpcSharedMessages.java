@@ -0,0 +1,124 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Predicate;
+
+/**
+ * 同一 JVM 内 in-process 调用时按引用传递消息, 跳过序列化和反序列化.
+ * <p>
+ * 发送方的 {@link MethodDescriptor.Marshaller#stream(Object)} 返回持有消息对象的流,
+ * 接收方同样经过本类包装的 marshaller 解析时直接取出该对象; 流被当作普通字节流读取时才按原 marshaller 序列化,
+ * 因此只有一方包装时结果仍然正确.
+ * <p>
+ * 调用双方拿到的是同一个对象, 只适用于不可变或调用后不再修改的消息. protobuf 消息经 in-process 传输时本身已按引用传递,
+ * 无需配置.
+ */
+public final class DefaultGrpcSharedMessages {
+    private DefaultGrpcSharedMessages() {}
+
+    /**
+     * 包装 marshaller, 已包装时原样返回
+     */
+    public static <T> MethodDescriptor.Marshaller<T> marshaller(MethodDescriptor.Marshaller<T> delegate) {
+        return delegate instanceof SharedMessageMarshaller ? delegate : new SharedMessageMarshaller<>(delegate);
+    }
+
+    /**
+     * 包装服务中匹配的方法, 没有方法匹配时原样返回
+     *
+     * @param methodFilter 参数为方法全名
+     */
+    public static ServerServiceDefinition share(ServerServiceDefinition service, Predicate<String> methodFilter) {
+        return DefaultGrpcMarshallers.decorate(service, methodFilter, DECORATOR);
+    }
+
+    /**
+     * 创建客户端拦截器, 匹配的方法按引用发送请求、接收响应; 需添加在最内层, 即最先添加
+     *
+     * @param methodFilter 参数为方法全名
+     */
+    public static ClientInterceptor clientInterceptor(Predicate<String> methodFilter) {
+        return DefaultGrpcMarshallers.clientInterceptor(methodFilter, DECORATOR);
+    }
+
+    private static class SharedMessageMarshaller<T> implements MethodDescriptor.Marshaller<T> {
+        private final MethodDescriptor.Marshaller<T> delegate;
+
+        SharedMessageMarshaller(MethodDescriptor.Marshaller<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public InputStream stream(T value) {
+            return new SharedMessageStream(value, delegate);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T parse(InputStream stream) {
+            if(stream instanceof SharedMessageStream) {
+                SharedMessageStream sharedStream = (SharedMessageStream) stream;
+                if(sharedStream.serialized == null) {
+                    return (T) sharedStream.message;
+                }
+            }
+            return delegate.parse(stream);
+        }
+    }
+
+    /**
+     * 持有消息对象的流, 首次按字节读取时才序列化
+     */
+    private static class SharedMessageStream extends InputStream {
+        private final Object message;
+        private final MethodDescriptor.Marshaller<Object> marshaller;
+        private InputStream serialized;
+
+        @SuppressWarnings("unchecked")
+        SharedMessageStream(Object message, MethodDescriptor.Marshaller<?> marshaller) {
+            this.message = message;
+            this.marshaller = (MethodDescriptor.Marshaller<Object>) marshaller;
+        }
+
+        private InputStream serialized() {
+            if(serialized == null) {
+                serialized = marshaller.stream(message);
+            }
+            return serialized;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return serialized().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return serialized().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return serialized().available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(serialized != null) {
+                serialized.close();
+            }
+        }
+    }
+
+    private static final DefaultGrpcMarshallers.Decorator DECORATOR = new DefaultGrpcMarshallers.Decorator() {
+        @Override
+        public <T> MethodDescriptor.Marshaller<T> decorate(MethodDescriptor.Marshaller<T> marshaller) {
+            return marshaller(marshaller);
+        }
+    };
+}
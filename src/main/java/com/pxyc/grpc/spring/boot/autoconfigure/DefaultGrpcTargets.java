@@ -0,0 +1,21 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+/**
+ * 客户端建立连接与服务端判断 target 是否指向本进程共用的 target 解析
+ */
+public final class DefaultGrpcTargets {
+    private DefaultGrpcTargets() {}
+
+    /**
+     * 解析 {@code unix:path}, {@code unix:/absolute/path} 及 {@code unix:///absolute/path} 形式的 target, 其他 target 返回 null
+     */
+    public static String domainSocketPath(String target) {
+        if(target == null || !target.startsWith(DOMAIN_SOCKET_SCHEME)) {
+            return null;
+        }
+        String path = target.substring(DOMAIN_SOCKET_SCHEME.length());
+        return path.startsWith("//") ? path.substring(2) : path;
+    }
+
+    private static final String DOMAIN_SOCKET_SCHEME = "unix:";
+}
@@ -0,0 +1,124 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+
+/**
+ * 带统计的平台线程池, 提交的任务会被包装以记录排队耗时与执行耗时
+ *
+ * @see DefaultGrpcExecutorMetrics
+ */
+public class DefaultGrpcThreadPoolExecutor extends ThreadPoolExecutor {
+    private final DefaultGrpcExecutorMetrics metrics;
+    private volatile DefaultGrpcExecutorAutoSizer autoSizer;
+
+    public DefaultGrpcThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                         BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory,
+                                         RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+        this.metrics = new DefaultGrpcExecutorMetrics(name, this::getActiveCount, () -> getQueue().size(), this::getPoolSize,
+                                                      this::getMaximumPoolSize);
+        DefaultGrpcExecutorMetrics.register(metrics);
+    }
+
+    @Override
+    public void execute(@NotNull Runnable command) {
+        try {
+            Runnable task = metrics.wrap(command);
+            BlockingQueue<Runnable> queue = getQueue();
+            if(queue instanceof GrpcTaskQueue) {
+                task = ((GrpcTaskQueue) queue).newEntry(task, command);
+            }
+            super.execute(task);
+        } catch(RejectedExecutionException e) {
+            metrics.recordRejected();
+            throw e;
+        }
+    }
+
+    public DefaultGrpcExecutorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 等待队列是否感知调用的 deadline, 即按 deadline 排序或在过载时丢弃积压的调用
+     *
+     * @see DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.QueueMode
+     */
+    public boolean isDeadlineAware() {
+        return getQueue() instanceof GrpcTaskQueue;
+    }
+
+    /**
+     * 运行时调整线程数和等待队列长度, 开启自适应容量时线程数调整为自适应的上下界
+     *
+     * @param corePoolSize    核心线程数, 自适应模式下为线程数下界
+     * @param maximumPoolSize 最大线程数, 自适应模式下为线程数上界
+     * @param queueCapacity   等待队列长度, 仅 {@link DefaultGrpcResizableBlockingQueue} 支持调整, 传入当前值或负数表示不调整;
+     *                        其他队列 (如 DEADLINE / CODEL) 只调整线程数, 队列长度需重启后生效
+     */
+    public synchronized void resize(int corePoolSize, int maximumPoolSize, int queueCapacity) {
+        DefaultGrpcExecutorAutoSizer sizer = autoSizer;
+        if(sizer != null) {
+            sizer.setBounds(corePoolSize, maximumPoolSize);
+        } else {
+            setPoolSize(corePoolSize, maximumPoolSize);
+        }
+        if(queueCapacity >= 0) {
+            BlockingQueue<Runnable> queue = getQueue();
+            if(queue instanceof DefaultGrpcResizableBlockingQueue) {
+                ((DefaultGrpcResizableBlockingQueue<Runnable>) queue).setCapacity(queueCapacity);
+            } else if(queueCapacity != queue.size() + queue.remainingCapacity()) {
+                LOGGER.warn("Queue of executor [" + metrics.getName() + "] is not resizable, capacity [" + queueCapacity +
+                            "] takes effect after restart");
+            }
+        }
+    }
+
+    /**
+     * 自适应容量调整器, 未开启时为 null
+     */
+    public DefaultGrpcExecutorAutoSizer getAutoSizer() {
+        return autoSizer;
+    }
+
+    synchronized void enableAutoSizing(DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig.AdaptiveConfig config,
+                                       int maxPoolSize) {
+        if(autoSizer != null) {
+            return;
+        }
+        DefaultGrpcExecutorAutoSizer sizer = new DefaultGrpcExecutorAutoSizer(this, config, maxPoolSize);
+        sizer.start(config.getInterval().toMillis());
+        autoSizer = sizer;
+    }
+
+    void setPoolSize(int poolSize) {
+        setPoolSize(poolSize, poolSize);
+    }
+
+    private synchronized void setPoolSize(int corePoolSize, int maximumPoolSize) {
+        // 先放宽再收紧, 避免调整过程中出现 core > max 的非法中间状态
+        if(maximumPoolSize >= getCorePoolSize()) {
+            setMaximumPoolSize(maximumPoolSize);
+            setCorePoolSize(corePoolSize);
+        } else {
+            setCorePoolSize(corePoolSize);
+            setMaximumPoolSize(maximumPoolSize);
+        }
+    }
+
+    @Override
+    protected void terminated() {
+        DefaultGrpcExecutorAutoSizer sizer = autoSizer;
+        if(sizer != null) {
+            sizer.stop();
+        }
+        DefaultGrpcExecutorMetrics.unregister(metrics);
+        super.terminated();
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcThreadPoolExecutor.class);
+}
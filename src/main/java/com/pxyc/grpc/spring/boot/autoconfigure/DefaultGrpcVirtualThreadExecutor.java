@@ -0,0 +1,167 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个任务一个虚拟线程的执行器 (JDK 21+), 并用信号量限制同时运行的任务数.
+ * <p>
+ * 超出并发上限的任务在各自的虚拟线程上等待许可, 等待中的任务数超过 waitQueueSize 时拒绝,
+ * 与 {@link ThreadPoolExecutor} 的 maximumPoolSize/waitQueueSize 语义保持一致, 而且调用方(如 Netty 事件循环线程)永不阻塞.
+ * <p>
+ * 虚拟线程 API 通过反射访问, 以保持本项目 Java 8 的编译基线.
+ */
+public class DefaultGrpcVirtualThreadExecutor extends AbstractExecutorService {
+    private final String name;
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final int admitLimit;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final DefaultGrpcExecutorMetrics metrics;
+
+    private DefaultGrpcVirtualThreadExecutor(String name, ExecutorService delegate, int maxConcurrency, int waitQueueSize) {
+        this.name = name;
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        this.admitLimit = waitQueueSize < 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, (long) maxConcurrency + waitQueueSize);
+        this.metrics = new DefaultGrpcExecutorMetrics(name, this::getActiveCount, this::getQueueSize, this::getActiveCount,
+                                                      this::getMaxConcurrency);
+        DefaultGrpcExecutorMetrics.register(metrics);
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @return 当前运行时不支持虚拟线程(如 JDK 21 以下, 或 JDK 19/20 未开启预览特性)时返回 null
+     */
+    public static DefaultGrpcVirtualThreadExecutor create(String name, int maxConcurrency, int waitQueueSize) {
+        if(!isSupported()) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_NAME.invoke(builder, name + "-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            ExecutorService delegate = (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+            return new DefaultGrpcVirtualThreadExecutor(name, delegate, maxConcurrency, waitQueueSize);
+        } catch(ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(@NotNull Runnable command) {
+        if(admitted.incrementAndGet() > admitLimit) {
+            admitted.decrementAndGet();
+            metrics.recordRejected();
+            throw new RejectedExecutionException("Executor [" + name + "] saturated, active=" + getActiveCount() +
+                                                 ", maxConcurrency=" + maxConcurrency + ", queued=" + getQueueSize());
+        }
+        Runnable task = metrics.wrap(command);
+        try {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch(InterruptedException e) {
+                    admitted.decrementAndGet();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                    admitted.decrementAndGet();
+                }
+            });
+        } catch(RuntimeException e) {
+            admitted.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 正在运行的任务数
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * 等待并发许可的任务数
+     */
+    public int getQueueSize() {
+        return Math.max(0, admitted.get() - getActiveCount());
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public DefaultGrpcExecutorMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void shutdown() {
+        DefaultGrpcExecutorMetrics.unregister(metrics);
+        delegate.shutdown();
+    }
+
+    @NotNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        DefaultGrpcExecutorMetrics.unregister(metrics);
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch(ClassNotFoundException | NoSuchMethodException ignored) {
+            newThreadPerTaskExecutor = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+}
@@ -0,0 +1,124 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.ClientInterceptor;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Predicate;
+
+/**
+ * 面向大 bytes 字段的 protobuf marshaller.
+ * <p>
+ * 默认的 ProtoUtils marshaller 解析时先把消息复制到线程本地的临时数组 (超过 4MB 时改为分段流式读取),
+ * 再为每个 bytes 字段各复制一份 ByteString. 本 marshaller 把收到的消息一次性复制到恰好等长、只属于该消息的数组,
+ * 以 {@link UnsafeByteOperations} 包装后开启 aliasing 解析, bytes 字段直接引用该数组, 不再复制.
+ * 发送时沿用默认实现, 由消息直接写入传输层缓冲区.
+ * <p>
+ * 解析出的 bytes 字段共用整条消息的数组, 只保留其中一小段时整个数组都无法回收, 适用于整体处理后即丢弃的大消息.
+ * 未复用 Netty 的缓冲区是因为其内存在调用结束后即被回收复用, 而消息的生命周期由应用决定.
+ */
+public class DefaultGrpcZeroCopyMarshaller<T extends MessageLite> implements MethodDescriptor.PrototypeMarshaller<T> {
+    private final MethodDescriptor.PrototypeMarshaller<T> delegate;
+    private final Parser<T> parser;
+
+    @SuppressWarnings("unchecked")
+    DefaultGrpcZeroCopyMarshaller(MethodDescriptor.PrototypeMarshaller<T> delegate) {
+        this.delegate = delegate;
+        this.parser = (Parser<T>) delegate.getMessagePrototype().getParserForType();
+    }
+
+    /**
+     * 包装 protobuf marshaller, 非 protobuf 或已包装时原样返回
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> MethodDescriptor.Marshaller<T> marshaller(MethodDescriptor.Marshaller<T> marshaller) {
+        if(marshaller instanceof DefaultGrpcZeroCopyMarshaller || !(marshaller instanceof MethodDescriptor.PrototypeMarshaller) ||
+           !(((MethodDescriptor.PrototypeMarshaller<T>) marshaller).getMessagePrototype() instanceof MessageLite)) {
+            return marshaller;
+        }
+        return new DefaultGrpcZeroCopyMarshaller((MethodDescriptor.PrototypeMarshaller) marshaller);
+    }
+
+    /**
+     * 改写服务中匹配的方法, 没有方法匹配时原样返回
+     *
+     * @param methodFilter 参数为方法全名
+     */
+    public static ServerServiceDefinition apply(ServerServiceDefinition service, Predicate<String> methodFilter) {
+        return DefaultGrpcMarshallers.decorate(service, methodFilter, DECORATOR);
+    }
+
+    /**
+     * 创建客户端拦截器, 匹配的方法使用本 marshaller; 需添加在最内层, 即最先添加
+     *
+     * @param methodFilter 参数为方法全名
+     */
+    public static ClientInterceptor clientInterceptor(Predicate<String> methodFilter) {
+        return DefaultGrpcMarshallers.clientInterceptor(methodFilter, DECORATOR);
+    }
+
+    @Override
+    public Class<T> getMessageClass() {
+        return delegate.getMessageClass();
+    }
+
+    @Override
+    public T getMessagePrototype() {
+        return delegate.getMessagePrototype();
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return delegate.stream(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        // 发送方的序列化流 (如 in-process 传输) 交给默认实现, 可直接取出消息对象
+        if(stream instanceof Drainable) {
+            return delegate.parse(stream);
+        }
+        try {
+            byte[] bytes;
+            if(stream instanceof KnownLength) {
+                int size = stream.available();
+                if(size == 0) {
+                    return delegate.getMessagePrototype();
+                }
+                bytes = new byte[size];
+                ByteStreams.readFully(stream, bytes);
+            } else {
+                bytes = ByteStreams.toByteArray(stream);
+            }
+            CodedInputStream input = UnsafeByteOperations.unsafeWrap(bytes).newCodedInput();
+            input.enableAliasing(true);
+            input.setSizeLimit(Integer.MAX_VALUE);
+            T message = parser.parseFrom(input, ExtensionRegistryLite.getEmptyRegistry());
+            input.checkLastTagWas(0);
+            return message;
+        } catch(InvalidProtocolBufferException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        } catch(IOException e) {
+            throw Status.INTERNAL.withDescription("Failed to read message").withCause(e).asRuntimeException();
+        }
+    }
+
+    private static final DefaultGrpcMarshallers.Decorator DECORATOR = new DefaultGrpcMarshallers.Decorator() {
+        @Override
+        public <M> MethodDescriptor.Marshaller<M> decorate(MethodDescriptor.Marshaller<M> marshaller) {
+            return marshaller(marshaller);
+        }
+    };
+}
@@ -0,0 +1,21 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+/**
+ * 带截止时间且可被丢弃的任务, 按 deadline 排序的线程池据此决定执行顺序, CoDel 队列过载时据此丢弃积压任务
+ *
+ * @see DefaultGrpcDeadlineBlockingQueue
+ * @see DefaultGrpcCodelBlockingQueue
+ */
+public interface GrpcDeadlineTask extends Runnable {
+    /**
+     * 基于 {@link System#nanoTime()} 的截止时间, 没有截止时间时返回 {@link #NO_DEADLINE}
+     */
+    long getDeadlineNanos();
+
+    /**
+     * 标记任务已被丢弃, 任务随后仍会被执行, 但只应完成必要的清理并让调用方尽快收到失败
+     */
+    void shed();
+
+    long NO_DEADLINE = Long.MAX_VALUE;
+}
@@ -0,0 +1,12 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+/**
+ * 需要感知原始任务的等待队列, 由 {@link DefaultGrpcThreadPoolExecutor} 在入队前包装任务
+ */
+interface GrpcTaskQueue {
+    /**
+     * @param task    实际执行的任务
+     * @param command 提交到线程池的原始任务, 实现 {@link GrpcDeadlineTask} 时可读取 deadline 或将其丢弃
+     */
+    Runnable newEntry(Runnable task, Runnable command);
+}
@@ -0,0 +1,178 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的对数线性直方图 (HdrHistogram 风格), 用于记录耗时、大小等非负数值.
+ * <p>
+ * 每个 2 的幂区间再等分为 {@value #SUB_BUCKET_COUNT} 个子桶, 相对误差不超过 1/{@value #SUB_BUCKET_COUNT};
+ * 记录只涉及一次数组原子自增和少量 {@link LongAdder} 累加, 可在生产环境常开.
+ */
+public class LatencyHistogram {
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile 百分位, 取值 [0, 100]
+     */
+    public long getValueAtPercentile(double percentile) {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+
+    /**
+     * 复制当前各桶计数, 供多次计算百分位时使用
+     */
+    public Snapshot snapshot() {
+        long[] copied = new long[BUCKET_COUNT];
+        long total = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            copied[i] = counts.get(i);
+            total += copied[i];
+        }
+        return new Snapshot(copied, total, getMax());
+    }
+
+    static int bucketIndex(long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * 桶内最大值, 百分位取桶上界以避免低估尾延迟
+     */
+    static long bucketUpperBound(int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 快照内最大值所在桶的上界, 不超过直方图记录过的最大值
+         */
+        public long getMax() {
+            for(int i = counts.length - 1; i >= 0; i--) {
+                if(counts[i] > 0) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param percentile 百分位, 取值 [0, 100]
+         */
+        public long getValueAtPercentile(double percentile) {
+            if(count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+            long cumulative = 0;
+            for(int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if(cumulative >= target) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * 与较早快照之差, 即两次快照之间记录的数值分布
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] delta = new long[counts.length];
+            long total = 0;
+            for(int i = 0; i < counts.length; i++) {
+                delta[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                total += delta[i];
+            }
+            return new Snapshot(delta, total, max);
+        }
+    }
+
+    /**
+     * 按固定窗口轮换的快照: 距上次轮换超过窗口时, 以当前快照与上次轮换时快照之差作为新的窗口分布,
+     * 读到的是最近一个完整窗口内记录的数值, 用于导出随当前负载变化的百分位
+     */
+    public static class WindowedSnapshot {
+        private final LatencyHistogram histogram;
+        private final long windowNanos;
+        private Snapshot last;
+        private Snapshot windowed;
+        private long rotateAtNanos;
+
+        public WindowedSnapshot(LatencyHistogram histogram, Duration window) {
+            this.histogram = histogram;
+            this.windowNanos = window.toNanos();
+            this.last = histogram.snapshot();
+            this.windowed = last.minus(last);
+            this.rotateAtNanos = System.nanoTime() + windowNanos;
+        }
+
+        public synchronized Snapshot get() {
+            long now = System.nanoTime();
+            if(now - rotateAtNanos >= 0) {
+                Snapshot snapshot = histogram.snapshot();
+                windowed = snapshot.minus(last);
+                last = snapshot;
+                rotateAtNanos = now + windowNanos;
+            }
+            return windowed;
+        }
+    }
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+}
@@ -0,0 +1,102 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 滑动窗口计数器, 窗口由固定数量的时间桶组成, 每个桶记录累计值和次数.
+ * <p>
+ * 计数使用 {@link LongAdder}, 仅在桶轮转时短暂加锁重置; 重置与写入并发时允许少量统计误差.
+ */
+public class RollingWindow {
+    private final Bucket[] buckets;
+    private final long bucketNanos;
+
+    public RollingWindow(int size, Duration interval) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("size must be positive, got [" + size + "]");
+        }
+        this.buckets = new Bucket[size];
+        for(int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.bucketNanos = Math.max(1, interval.toNanos());
+    }
+
+    public void add(long value) {
+        add(value, System.nanoTime());
+    }
+
+    void add(long value, long nowNanos) {
+        long epoch = Math.floorDiv(nowNanos, bucketNanos);
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) buckets.length)];
+        if(bucket.epoch != epoch) {
+            synchronized(bucket) {
+                if(bucket.epoch != epoch) {
+                    bucket.sum.reset();
+                    bucket.count.reset();
+                    bucket.epoch = epoch;
+                }
+            }
+        }
+        bucket.sum.add(value);
+        bucket.count.increment();
+    }
+
+    /**
+     * 依次访问窗口内仍然有效的桶
+     *
+     * @param ignoreCurrent 是否跳过当前尚未写满的桶
+     */
+    public void reduce(boolean ignoreCurrent, BucketVisitor visitor) {
+        reduce(ignoreCurrent, visitor, System.nanoTime());
+    }
+
+    void reduce(boolean ignoreCurrent, BucketVisitor visitor, long nowNanos) {
+        long epoch = Math.floorDiv(nowNanos, bucketNanos);
+        long oldest = epoch - buckets.length + 1;
+        for(Bucket bucket : buckets) {
+            long bucketEpoch = bucket.epoch;
+            if(bucketEpoch < oldest || bucketEpoch > epoch || (ignoreCurrent && bucketEpoch == epoch)) {
+                continue;
+            }
+            visitor.visit(bucket.sum.sum(), bucket.count.sum());
+        }
+    }
+
+    /**
+     * 窗口内所有有效桶的累计值之和
+     */
+    public long sum() {
+        long[] total = new long[1];
+        reduce(false, (sum, count) -> total[0] += sum);
+        return total[0];
+    }
+
+    /**
+     * 窗口内所有有效桶的次数之和
+     */
+    public long count() {
+        long[] total = new long[1];
+        reduce(false, (sum, count) -> total[0] += count);
+        return total[0];
+    }
+
+    /**
+     * 每秒包含的桶数量
+     */
+    public double bucketsPerSecond() {
+        return 1_000_000_000.0 / bucketNanos;
+    }
+
+    @FunctionalInterface
+    public interface BucketVisitor {
+        void visit(long sum, long count);
+    }
+
+    private static class Bucket {
+        private final LongAdder sum = new LongAdder();
+        private final LongAdder count = new LongAdder();
+        private volatile long epoch = Long.MIN_VALUE;
+    }
+}
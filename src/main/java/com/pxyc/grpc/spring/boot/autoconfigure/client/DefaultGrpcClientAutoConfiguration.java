@@ -2,8 +2,12 @@ package com.pxyc.grpc.spring.boot.autoconfigure.client;
 
 import com.google.common.collect.ImmutableMap;
 import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonAutoConfiguration;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcEventLoopGroups;
+import com.pxyc.grpc.spring.boot.autoconfigure.server.DefaultGrpcServerAutoConfiguration;
+import com.pxyc.grpc.spring.boot.autoconfigure.server.DefaultGrpcServerInProcessEndpoint;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -41,8 +45,11 @@ public class DefaultGrpcClientAutoConfiguration {
     @ConditionalOnMissingBean(name = BEAN_NAME_DEFAULT_CHANNEL_BUILDER_FACTORY)
     @ConditionalOnClass(name = {"io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder"})
     public GrpcClientDefaultChannelBuilderFactory defaultChannelBuilderFactory(
-            @Autowired List<? extends GrpcClientInternalConfigurer> internalConfigurerList) {
-        return new GrpcClientDefaultChannelBuilderFactory(internalConfigurerList);
+            @Autowired List<? extends GrpcClientInternalConfigurer> internalConfigurerList,
+            @Qualifier(DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS) ObjectProvider<DefaultGrpcEventLoopGroups> eventLoopGroups,
+            @Qualifier(DefaultGrpcServerAutoConfiguration.BEAN_NAME_IN_PROCESS_ENDPOINT) ObjectProvider<DefaultGrpcServerInProcessEndpoint> inProcessEndpoint) {
+        return new GrpcClientDefaultChannelBuilderFactory(internalConfigurerList, eventLoopGroups.getIfAvailable(),
+                                                          inProcessEndpoint.getIfAvailable());
     }
 
     /**
@@ -74,6 +81,37 @@ public class DefaultGrpcClientAutoConfiguration {
         return channelBuilder -> channelBuilder.directExecutor().offloadExecutor(executor);
     }
 
+    /**
+     * 使用共用的事件循环
+     */
+    @Bean(BEAN_NAME_EVENT_LOOP_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_EVENT_LOOP_CONFIGURER)
+    @ConditionalOnBean(name = DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS)
+    @Order(50)
+    public GrpcClientInternalConfigurer eventLoopConfigurer(
+            @Autowired @Qualifier(DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS) DefaultGrpcEventLoopGroups eventLoopGroups) {
+        return channelBuilder -> {
+            if(channelBuilder instanceof NettyChannelBuilder) {
+                ((NettyChannelBuilder) channelBuilder).eventLoopGroup(eventLoopGroups.getWorkerGroup())
+                                                      .channelType(eventLoopGroups.getChannelType());
+            }
+        };
+    }
+
+    /**
+     * 调用统计拦截器配置器, 默认开启
+     */
+    @Bean(BEAN_NAME_METRICS_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_METRICS_CONFIGURER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".metrics.enabled", havingValue = "true", matchIfMissing = true)
+    @Order(200)
+    public GrpcClientInternalConfigurer metricsConfigurer() {
+        DefaultGrpcClientMetricsInterceptor interceptor = new DefaultGrpcClientMetricsInterceptor();
+        return channelBuilder -> channelBuilder.intercept(interceptor);
+    }
+
+    public static final String BEAN_NAME_METRICS_CONFIGURER = "defaultGrpcClientMetricsConfigurer";
+    public static final String BEAN_NAME_EVENT_LOOP_CONFIGURER = "defaultGrpcClientEventLoopConfigurer";
     public static final String BEAN_NAME_EXECUTOR_CONFIGURER = "defaultGrpcClientExecutorConfigurer";
     public static final String BEAN_NAME_CHANNEL_BUILDER_MAP = "defaultGrpcClientChannelBuilderMap";
     public static final String BEAN_NAME_DEFAULT_CHANNEL_BUILDER_FACTORY = "grpcClientDefaultChannelBuilderFactory";
@@ -0,0 +1,88 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCallLogSampler;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCallLogWriter;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMessageSizes;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 客户端调用日志拦截器, 记录方法、状态、耗时、请求及响应的消息数和字节数、对端地址.
+ * <p>
+ * 调用线程只做计数, 格式化和输出由 {@link DefaultGrpcCallLogWriter} 异步完成;
+ * 按 {@link DefaultGrpcCallLogSampler} 采样, 未采样且状态为 OK 的调用不输出.
+ */
+public class DefaultGrpcClientCallLoggingInterceptor implements ClientInterceptor {
+    private final DefaultGrpcCallLogSampler sampler;
+    private final DefaultGrpcCallLogWriter writer;
+
+    public DefaultGrpcClientCallLoggingInterceptor(DefaultGrpcCommonConfigProps.CallLogConfig config) {
+        this.sampler = new DefaultGrpcCallLogSampler(config);
+        this.writer = DefaultGrpcCallLogWriter.getInstance();
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        boolean sampled = LOGGER.isInfoEnabled() && sampler.sample(method.getFullMethodName());
+        if(!sampled && !(sampler.isAlwaysLogErrors() && LOGGER.isWarnEnabled())) {
+            return next.newCall(method, callOptions);
+        }
+        return new LoggingClientCall<>(next.newCall(method, callOptions), method.getFullMethodName(), sampled);
+    }
+
+    private class LoggingClientCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+        private final String fullMethodName;
+        private final boolean sampled;
+        private long startNanos;
+        private int requestCount;
+        private long requestBytes;
+        private int responseCount;
+        private long responseBytes;
+
+        LoggingClientCall(ClientCall<ReqT, RespT> delegate, String fullMethodName, boolean sampled) {
+            super(delegate);
+            this.fullMethodName = fullMethodName;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            startNanos = System.nanoTime();
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                @Override
+                public void onMessage(RespT message) {
+                    responseCount++;
+                    responseBytes = DefaultGrpcMessageSizes.add(responseBytes, message);
+                    super.onMessage(message);
+                }
+
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    log(status);
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            requestCount++;
+            requestBytes = DefaultGrpcMessageSizes.add(requestBytes, message);
+            super.sendMessage(message);
+        }
+
+        private void log(Status status) {
+            if(!sampled && status.isOk()) {
+                return;
+            }
+            writer.publish(LOGGER, SIDE, fullMethodName, status, System.nanoTime() - startNanos, requestCount, requestBytes,
+                           responseCount, responseBytes, getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR));
+        }
+    }
+
+    private static final String SIDE = "client";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcClientCallLoggingInterceptor.class);
+}
@@ -0,0 +1,28 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import io.grpc.Context;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 客户端拦截器在本地直接结束调用时的公共逻辑
+ */
+final class DefaultGrpcClientCalls {
+    private DefaultGrpcClientCalls() {}
+
+    /**
+     * 异步执行对 Listener 的回调, 与 gRPC 自身失败的调用一致, 不在 start() 等方法内同步回调调用方.
+     * 调用指定了执行器时使用该执行器, 未指定时 (如 async stub 使用 directExecutor 的 Channel) 交给共用的后台线程
+     */
+    static void executeCallback(Executor executor, Runnable callback) {
+        (executor == null ? CALLBACK_EXECUTOR : executor).execute(Context.current().wrap(callback));
+    }
+
+    private static final ExecutorService CALLBACK_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "GrpcClientLocalCallback");
+        thread.setDaemon(true);
+        return thread;
+    });
+}
@@ -1,6 +1,7 @@
 package com.pxyc.grpc.spring.boot.autoconfigure.client;
 
 import io.grpc.Channel;
+import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -37,6 +38,7 @@ public class DefaultGrpcClientChannelRegistrar implements BeanDefinitionRegistry
         boolean basicRegChanBdr =
                 props.getBasic().getAutoRegisterChannelBuilderBean() == null || props.getBasic().getAutoRegisterChannelBuilderBean();
         boolean basicRegChan = props.getBasic().getAutoRegisterChannelBean() == null || props.getBasic().getAutoRegisterChannelBean();
+        boolean basicConnect = props.getBasic().getConnectOnStartup() != null && props.getBasic().getConnectOnStartup();
 
         props.getChannels().forEach((name, config) -> {
             String channelBuilderBeanName = name + "ChannelBuilder";
@@ -65,6 +67,7 @@ public class DefaultGrpcClientChannelRegistrar implements BeanDefinitionRegistry
                 channelBean.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_CONSTRUCTOR);
                 ConstructorArgumentValues channelArg0 = new ConstructorArgumentValues();
                 channelArg0.addIndexedArgumentValue(0, name);
+                channelArg0.addIndexedArgumentValue(1, config.getConnectOnStartup() == null ? basicConnect : config.getConnectOnStartup());
                 channelBean.setConstructorArgumentValues(channelArg0);
                 channelBean.setLazyInit(false);
                 channelBean.setDestroyMethodName("shutdown");
@@ -83,8 +86,13 @@ public class DefaultGrpcClientChannelRegistrar implements BeanDefinitionRegistry
     }
 
     @SuppressWarnings("unused")
-    public Object getChannel(String name) {
-        return applicationContext.getBean(name + "ChannelBuilder", ManagedChannelBuilder.class).build();
+    public Object getChannel(String name, boolean connectOnStartup) {
+        ManagedChannel channel = applicationContext.getBean(name + "ChannelBuilder", ManagedChannelBuilder.class).build();
+        if(connectOnStartup) {
+            // 连接在 Channel 自己的线程上异步建立, 不阻塞后续 bean 的创建
+            channel.getState(true);
+        }
+        return channel;
     }
 
     @Override
@@ -0,0 +1,185 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.RollingWindow;
+import io.grpc.*;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应熔断 (Google SRE 客户端自适应限流), 每个 Channel 使用单独的实例, 按方法分别统计.
+ * <p>
+ * 滑动窗口内记录发出的请求数 requests 和被服务端接受的请求数 accepts, 以概率
+ * {@code max(0, (requests - k * accepts) / (requests + 1))} 在本地直接拒绝调用. 服务端正常时 requests 约等于 accepts, 不拒绝;
+ * 服务端持续失败时拒绝概率随之上升, 不再向其发送只会加重负载的请求, 只有少量请求作为探测发出.
+ * <p>
+ * 与 SRE 原文不同, 本地拒绝的调用不计入 requests: 计入时服务端恢复后拒绝概率每个窗口只能按 k 倍回落, 需要十几个窗口才能恢复,
+ * 且服务端固定比例失败时拒绝概率会趋近 1. 不计入时探测请求成功后一个窗口内即可恢复.
+ * <p>
+ * 调用以 {@link DefaultGrpcClientConfigProps.CircuitBreakerConfig#getFailureCodes() 失败状态码} 结束时视为未被接受,
+ * 其他状态码 (如 INVALID_ARGUMENT、NOT_FOUND) 是业务结果, 视为已接受.
+ * 本地拒绝的调用以 UNAVAILABLE 结束, unary 调用配置了 {@link GrpcClientFallback} 时改为返回降级响应.
+ */
+public class DefaultGrpcClientCircuitBreakerInterceptor implements ClientInterceptor {
+    private final DefaultGrpcClientConfigProps.CircuitBreakerConfig config;
+    private final Set<Status.Code> failureCodes;
+    private final GrpcClientFallback fallback;
+    private final Map<String, RollingWindow> windows = new ConcurrentHashMap<>();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param fallback 降级实现, 为空时本地拒绝的调用直接失败
+     */
+    public DefaultGrpcClientCircuitBreakerInterceptor(DefaultGrpcClientConfigProps.CircuitBreakerConfig config, GrpcClientFallback fallback) {
+        this.config = config;
+        this.failureCodes = config.getFailureCodes() == null || config.getFailureCodes().isEmpty() ?
+                            EnumSet.noneOf(Status.Code.class) : EnumSet.copyOf(config.getFailureCodes());
+        this.fallback = fallback;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        RollingWindow window = window(method.getFullMethodName());
+        double dropRatio = dropRatio(window);
+        if(dropRatio > 0 && ThreadLocalRandom.current().nextDouble() < dropRatio) {
+            rejectedCount.increment();
+            Status status = Status.UNAVAILABLE.withDescription(
+                "Circuit breaker rejected [" + method.getFullMethodName() + "], drop ratio [" + String.format("%.2f", dropRatio) + "]");
+            return new RejectedClientCall<>(method, status, method.getType() == MethodDescriptor.MethodType.UNARY ? fallback : null,
+                                            callOptions.getExecutor());
+        }
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        window.add(failureCodes.contains(status.getCode()) ? 0 : 1);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    /**
+     * 方法当前的本地拒绝概率, 取值 [0, 1)
+     *
+     * @param fullMethodName 完整方法名, 如 {@code grpc.health.v1.Health/Check}
+     */
+    public double getDropRatio(String fullMethodName) {
+        RollingWindow window = windows.get(fullMethodName);
+        return window == null ? 0 : dropRatio(window);
+    }
+
+    /**
+     * 本地拒绝的调用总数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private RollingWindow window(String fullMethodName) {
+        RollingWindow window = windows.get(fullMethodName);
+        if(window == null) {
+            window = windows.computeIfAbsent(fullMethodName, name -> new RollingWindow(
+                config.getBuckets(), config.getWindow().dividedBy(config.getBuckets())));
+        }
+        return window;
+    }
+
+    /**
+     * 窗口中 count 为请求数, sum 为接受数
+     */
+    private double dropRatio(RollingWindow window) {
+        long[] totals = new long[2];
+        window.reduce(false, (sum, count) -> {
+            totals[0] += sum;
+            totals[1] += count;
+        });
+        long accepts = totals[0];
+        long requests = totals[1];
+        if(requests < config.getMinRequests()) {
+            return 0;
+        }
+        return Math.max(0, (requests - config.getK() * accepts) / (requests + 1));
+    }
+
+    /**
+     * 不发送请求的调用; 有降级实现时在 halfClose 后以降级响应正常结束, 否则启动后直接以拒绝状态结束, 对 Listener 的回调均异步执行
+     */
+    private static class RejectedClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final Status status;
+        private final GrpcClientFallback fallback;
+        private final Executor executor;
+        private Listener<RespT> listener;
+        private ReqT request;
+        private boolean closed;
+
+        RejectedClientCall(MethodDescriptor<ReqT, RespT> method, Status status, GrpcClientFallback fallback, Executor executor) {
+            this.method = method;
+            this.status = status;
+            this.fallback = fallback;
+            this.executor = executor;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            listener = responseListener;
+            if(fallback == null) {
+                close(status, null);
+            }
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            close(Status.CANCELLED.withDescription(message).withCause(cause), null);
+        }
+
+        @Override
+        public void halfClose() {
+            if(closed || listener == null) {
+                return;
+            }
+            RespT response;
+            try {
+                response = fallback.fallback(method, request, status);
+            } catch(RuntimeException e) {
+                close(Status.INTERNAL.withDescription("Fallback of [" + method.getFullMethodName() + "] failed").withCause(e), null);
+                return;
+            }
+            close(response == null ? status : Status.OK, response);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            request = message;
+        }
+
+        private void close(Status closeStatus, RespT response) {
+            if(closed || listener == null) {
+                return;
+            }
+            closed = true;
+            Listener<RespT> responseListener = listener;
+            DefaultGrpcClientCalls.executeCallback(executor, () -> {
+                if(response != null) {
+                    responseListener.onHeaders(new Metadata());
+                    responseListener.onMessage(response);
+                }
+                responseListener.onClose(closeStatus, new Metadata());
+            });
+        }
+    }
+}
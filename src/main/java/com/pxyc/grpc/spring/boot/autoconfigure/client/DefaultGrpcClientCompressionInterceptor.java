@@ -0,0 +1,86 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionPolicy;
+import io.grpc.*;
+
+/**
+ * 按方法压缩请求消息, 小于阈值的消息单独关闭压缩.
+ * <p>
+ * 客户端发送请求前无法得知服务端支持哪些编码, 因此从本 Channel 最近一次响应的 grpc-accept-encoding 获知,
+ * 服务端声明支持所配编码之后才开始压缩, 此前的请求不压缩. 每个 Channel 使用单独的实例.
+ * 调用方已通过 {@link CallOptions#withCompression(String)} 指定编码时不做修改.
+ */
+public class DefaultGrpcClientCompressionInterceptor implements ClientInterceptor {
+    private final DefaultGrpcCompressionPolicy policy;
+    private volatile String serverAcceptEncoding;
+
+    public DefaultGrpcClientCompressionInterceptor(DefaultGrpcCompressionPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        DefaultGrpcCompressionPolicy.MethodPolicy methodPolicy = policy.resolve(method.getFullMethodName());
+        String encoding = methodPolicy.getEncoding();
+        if(encoding == null || callOptions.getCompressor() != null) {
+            return next.newCall(method, callOptions);
+        }
+        if(!DefaultGrpcCompressionPolicy.accepts(serverAcceptEncoding, encoding)) {
+            return new CompressionClientCall<>(next.newCall(method, callOptions), -1);
+        }
+        return new CompressionClientCall<>(next.newCall(method, callOptions.withCompression(encoding)), methodPolicy.getMinMessageSize());
+    }
+
+    private void updateServerAcceptEncoding(Metadata metadata) {
+        String acceptEncoding = metadata.get(ACCEPT_ENCODING_KEY);
+        if(acceptEncoding != null && !acceptEncoding.equals(serverAcceptEncoding)) {
+            serverAcceptEncoding = acceptEncoding;
+        }
+    }
+
+    private class CompressionClientCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+        /**
+         * 为负数时本次调用未压缩
+         */
+        private final int minMessageSize;
+
+        CompressionClientCall(ClientCall<ReqT, RespT> delegate, int minMessageSize) {
+            super(delegate);
+            this.minMessageSize = minMessageSize;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                private boolean headersReceived;
+
+                @Override
+                public void onHeaders(Metadata headers) {
+                    headersReceived = true;
+                    updateServerAcceptEncoding(headers);
+                    super.onHeaders(headers);
+                }
+
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    // 只有 trailers 的响应 (如服务端直接返回错误) 同样带有 grpc-accept-encoding
+                    if(!headersReceived) {
+                        updateServerAcceptEncoding(trailers);
+                    }
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            if(minMessageSize >= 0) {
+                delegate().setMessageCompression(DefaultGrpcCompressionPolicy.shouldCompress(message, minMessageSize));
+            }
+            super.sendMessage(message);
+        }
+    }
+
+    private static final Metadata.Key<String> ACCEPT_ENCODING_KEY = Metadata.Key.of("grpc-accept-encoding", Metadata.ASCII_STRING_MARSHALLER);
+}
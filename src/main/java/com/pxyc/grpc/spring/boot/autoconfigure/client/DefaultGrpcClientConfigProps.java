@@ -1,14 +1,18 @@
 package com.pxyc.grpc.spring.boot.autoconfigure.client;
 
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
 import io.grpc.Channel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import io.grpc.netty.shaded.io.grpc.netty.NegotiationType;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -48,7 +52,8 @@ public class DefaultGrpcClientConfigProps implements Cloneable {
         /**
          * @see ManagedChannelBuilder#forTarget(String)
          * @see NettyChannelBuilder#forTarget(String)
-         * 直连请使用 localhost:{port}
+         * 直连请使用 localhost:{port}; 以 {@code unix:} 开头时连接 Unix domain socket, 如 {@code unix:///var/run/app/grpc.sock},
+         * 需要共用事件循环 (best.grpc.common.event-loop.shared) 及 epoll 传输
          */
         private String target;
 
@@ -154,15 +159,87 @@ public class DefaultGrpcClientConfigProps implements Cloneable {
         private Boolean serviceConfigLookUp;
 
         /**
-         * 默认超时时间
+         * unary 调用的默认超时时间, 调用方未指定超时时使用; 流式调用不设默认超时
+         *
+         * @see DefaultGrpcClientDeadlineInterceptor
          */
         private Duration defaultTimeout;
 
+        /**
+         * 按服务或方法全名配置的超时时间, 完整方法名优先, 同样适用于流式调用; 为 0 表示该方法不设默认超时
+         */
+        private Map<String, Duration> methodTimeouts;
+
+        /**
+         * 在 gRPC 服务端处理调用时发起调用, 将上游的截止时间减去该余量后作为本次调用的截止时间, 为空时不扣除
+         */
+        private Duration deadlineMargin;
+
+        /**
+         * 发起调用所需的最小剩余时间, 不足时不发送请求直接以 DEADLINE_EXCEEDED 结束; 为空时只在已超时时直接结束
+         */
+        private Duration minDeadlineBudget;
+
         /**
          * 是否启用 grpc 客户端调用日志
+         *
+         * @see DefaultGrpcClientCallLoggingInterceptor
          */
         private Boolean callLogEnabled;
 
+        /**
+         * 调用日志采样配置, 为空时全部记录
+         */
+        private DefaultGrpcCommonConfigProps.CallLogConfig callLog;
+
+        /**
+         * ByteBuf 分配器配置, 为空时使用 grpc-netty 默认分配器
+         */
+        private DefaultGrpcCommonConfigProps.AllocatorConfig allocator;
+
+        /**
+         * 创建 Channel 后立即在后台开始连接, 各 Channel 并行建连, 首个调用无需等待连接建立; 默认在首个调用时才连接
+         *
+         * @see io.grpc.ManagedChannel#getState(boolean)
+         */
+        private Boolean connectOnStartup;
+
+        /**
+         * target 指向本进程开启了 in-process 的 gRPC Server 时是否改用 in-process 传输, 默认 true
+         *
+         * @see com.pxyc.grpc.spring.boot.autoconfigure.server.DefaultGrpcServerInProcessEndpoint
+         */
+        private Boolean inProcessEnabled;
+
+        /**
+         * 使用零拷贝 marshaller 的服务或方法全名, {@code *} 表示全部, 适用于带大 bytes 字段的 protobuf 消息
+         *
+         * @see com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcZeroCopyMarshaller
+         */
+        private String[] zeroCopyMethods;
+
+        /**
+         * 请求消息压缩策略, 为空时不压缩; 响应消息按服务端所用编码解压, 支持的编码见
+         * {@link com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionCodecs}
+         *
+         * @see DefaultGrpcClientCompressionInterceptor
+         */
+        private DefaultGrpcCommonConfigProps.CompressionConfig compression;
+
+        /**
+         * 自适应熔断, 为空时不熔断
+         *
+         * @see DefaultGrpcClientCircuitBreakerInterceptor
+         */
+        private CircuitBreakerConfig circuitBreaker;
+
+        /**
+         * 按实际耗时自适应的对冲请求, 为空时不对冲; 与 {@link #maxHedgedAttempts} 所用的 service config 对冲相互独立
+         *
+         * @see DefaultGrpcClientHedgingInterceptor
+         */
+        private HedgingConfig hedging;
+
         /**
          * 此 {@link ManagedChannelBuilder ChannelBuilder} 配置器的 beanName,
          * 配置器 bean 的类型必须为 {@code Consumer<ManagedChannelBuilder<?>>}
@@ -289,6 +366,18 @@ public class DefaultGrpcClientConfigProps implements Cloneable {
             this.defaultTimeout = defaultTimeout;
         }
 
+        public Map<String, Duration> getMethodTimeouts() { return methodTimeouts; }
+
+        public void setMethodTimeouts(Map<String, Duration> methodTimeouts) { this.methodTimeouts = methodTimeouts; }
+
+        public Duration getDeadlineMargin() { return deadlineMargin; }
+
+        public void setDeadlineMargin(Duration deadlineMargin) { this.deadlineMargin = deadlineMargin; }
+
+        public Duration getMinDeadlineBudget() { return minDeadlineBudget; }
+
+        public void setMinDeadlineBudget(Duration minDeadlineBudget) { this.minDeadlineBudget = minDeadlineBudget; }
+
         public Boolean getCallLogEnabled() {
             return callLogEnabled;
         }
@@ -297,6 +386,38 @@ public class DefaultGrpcClientConfigProps implements Cloneable {
             this.callLogEnabled = callLogEnabled;
         }
 
+        public DefaultGrpcCommonConfigProps.CallLogConfig getCallLog() { return callLog; }
+
+        public void setCallLog(DefaultGrpcCommonConfigProps.CallLogConfig callLog) { this.callLog = callLog; }
+
+        public DefaultGrpcCommonConfigProps.AllocatorConfig getAllocator() { return allocator; }
+
+        public void setAllocator(DefaultGrpcCommonConfigProps.AllocatorConfig allocator) { this.allocator = allocator; }
+
+        public Boolean getConnectOnStartup() { return connectOnStartup; }
+
+        public void setConnectOnStartup(Boolean connectOnStartup) { this.connectOnStartup = connectOnStartup; }
+
+        public Boolean getInProcessEnabled() { return inProcessEnabled; }
+
+        public void setInProcessEnabled(Boolean inProcessEnabled) { this.inProcessEnabled = inProcessEnabled; }
+
+        public String[] getZeroCopyMethods() { return zeroCopyMethods; }
+
+        public void setZeroCopyMethods(String[] zeroCopyMethods) { this.zeroCopyMethods = zeroCopyMethods; }
+
+        public DefaultGrpcCommonConfigProps.CompressionConfig getCompression() { return compression; }
+
+        public void setCompression(DefaultGrpcCommonConfigProps.CompressionConfig compression) { this.compression = compression; }
+
+        public CircuitBreakerConfig getCircuitBreaker() { return circuitBreaker; }
+
+        public void setCircuitBreaker(CircuitBreakerConfig circuitBreaker) { this.circuitBreaker = circuitBreaker; }
+
+        public HedgingConfig getHedging() { return hedging; }
+
+        public void setHedging(HedgingConfig hedging) { this.hedging = hedging; }
+
         public String[] getConfigurerBeanNames() { return configurerBeanNames; }
 
         public void setConfigurerBeanNames(String[] configurerBeanNames) {
@@ -353,13 +474,34 @@ public class DefaultGrpcClientConfigProps implements Cloneable {
             if(otherConfig.maxTraceEvents != null) { maxTraceEvents = otherConfig.maxTraceEvents; }
             if(otherConfig.serviceConfigLookUp != null) { serviceConfigLookUp = otherConfig.serviceConfigLookUp; }
             if(otherConfig.defaultTimeout != null) { defaultTimeout = otherConfig.defaultTimeout; }
+            if(otherConfig.methodTimeouts != null) {
+                Map<String, Duration> newMethodTimeouts = new HashMap<>();
+                if(methodTimeouts != null) { newMethodTimeouts.putAll(methodTimeouts); }
+                newMethodTimeouts.putAll(otherConfig.methodTimeouts);
+                methodTimeouts = newMethodTimeouts;
+            }
+            if(otherConfig.deadlineMargin != null) { deadlineMargin = otherConfig.deadlineMargin; }
+            if(otherConfig.minDeadlineBudget != null) { minDeadlineBudget = otherConfig.minDeadlineBudget; }
             if(otherConfig.callLogEnabled != null) { callLogEnabled = otherConfig.callLogEnabled; }
+            if(otherConfig.callLog != null) { callLog = otherConfig.callLog; }
+            if(otherConfig.allocator != null) { allocator = otherConfig.allocator; }
+            if(otherConfig.connectOnStartup != null) { connectOnStartup = otherConfig.connectOnStartup; }
+            if(otherConfig.inProcessEnabled != null) { inProcessEnabled = otherConfig.inProcessEnabled; }
+            if(otherConfig.compression != null) { compression = otherConfig.compression; }
+            if(otherConfig.circuitBreaker != null) { circuitBreaker = otherConfig.circuitBreaker; }
+            if(otherConfig.hedging != null) { hedging = otherConfig.hedging; }
             if(otherConfig.configurerBeanNames != null) {
                 HashSet<String> newBeanNameSet = new HashSet<>();
                 if(configurerBeanNames != null) { newBeanNameSet.addAll(Arrays.asList(configurerBeanNames)); }
                 newBeanNameSet.addAll(Arrays.asList(otherConfig.configurerBeanNames));
                 configurerBeanNames = newBeanNameSet.toArray(new String[0]);
             }
+            if(otherConfig.zeroCopyMethods != null) {
+                HashSet<String> newMethodSet = new HashSet<>();
+                if(zeroCopyMethods != null) { newMethodSet.addAll(Arrays.asList(zeroCopyMethods)); }
+                newMethodSet.addAll(Arrays.asList(otherConfig.zeroCopyMethods));
+                zeroCopyMethods = newMethodSet.toArray(new String[0]);
+            }
             if(otherConfig.autoRegisterChannelBuilderBean != null) {
                 autoRegisterChannelBuilderBean = otherConfig.autoRegisterChannelBuilderBean;
             }
@@ -368,4 +510,145 @@ public class DefaultGrpcClientConfigProps implements Cloneable {
             }
         }
     }
+
+    public static class CircuitBreakerConfig {
+        /**
+         * 是否启用自适应熔断
+         */
+        private boolean enabled = true;
+
+        /**
+         * 公式中的 k, 请求数超过接受数的 k 倍后开始本地拒绝; 越小越激进, 越大越宽松
+         */
+        private double k = 1.5;
+
+        /**
+         * 统计请求数和接受数的滑动窗口长度
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * 滑动窗口的桶数量
+         */
+        private int buckets = 40;
+
+        /**
+         * 窗口内请求数少于该值时不拒绝, 避免低流量时个别失败触发熔断
+         */
+        private int minRequests = 20;
+
+        /**
+         * 视为服务端未接受请求的状态码
+         */
+        private List<Status.Code> failureCodes = new ArrayList<>(Arrays.asList(
+            Status.Code.UNAVAILABLE, Status.Code.RESOURCE_EXHAUSTED, Status.Code.DEADLINE_EXCEEDED, Status.Code.INTERNAL,
+            Status.Code.UNKNOWN));
+
+        /**
+         * 降级实现的 beanName, 类型须为 {@link GrpcClientFallback}, 只用于 unary 调用; 为空时本地拒绝的调用以 UNAVAILABLE 失败
+         */
+        private String fallbackBeanName;
+
+        public boolean isEnabled() { return enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getK() { return k; }
+
+        public void setK(double k) { this.k = k; }
+
+        public Duration getWindow() { return window; }
+
+        public void setWindow(Duration window) { this.window = window; }
+
+        public int getBuckets() { return buckets; }
+
+        public void setBuckets(int buckets) { this.buckets = buckets; }
+
+        public int getMinRequests() { return minRequests; }
+
+        public void setMinRequests(int minRequests) { this.minRequests = minRequests; }
+
+        public List<Status.Code> getFailureCodes() { return failureCodes; }
+
+        public void setFailureCodes(List<Status.Code> failureCodes) { this.failureCodes = failureCodes; }
+
+        public String getFallbackBeanName() { return fallbackBeanName; }
+
+        public void setFallbackBeanName(String fallbackBeanName) { this.fallbackBeanName = fallbackBeanName; }
+    }
+
+    public static class HedgingConfig {
+        /**
+         * 是否启用自适应对冲
+         */
+        private boolean enabled = true;
+
+        /**
+         * 对冲的服务或方法全名, {@code *} 表示全部 unary 方法; 同一请求可能被处理两次, 只能配置幂等方法
+         */
+        private List<String> methods = new ArrayList<>();
+
+        /**
+         * 以窗口内耗时的该百分位作为对冲延迟, 取值 (0, 100]
+         */
+        private double percentile = 95;
+
+        /**
+         * 计算百分位的窗口长度, 每个窗口更新一次对冲延迟
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * 窗口内样本数少于该值时沿用上一窗口的对冲延迟
+         */
+        private int minSamples = 100;
+
+        /**
+         * 对冲延迟下限
+         */
+        private Duration minDelay = Duration.ofMillis(1);
+
+        /**
+         * 对冲请求占调用数的比例上限
+         */
+        private double budgetRatio = 0.05;
+
+        /**
+         * 令牌桶容量, 即可连续发出的对冲请求数
+         */
+        private double budgetBurst = 10;
+
+        public boolean isEnabled() { return enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public List<String> getMethods() { return methods; }
+
+        public void setMethods(List<String> methods) { this.methods = methods; }
+
+        public double getPercentile() { return percentile; }
+
+        public void setPercentile(double percentile) { this.percentile = percentile; }
+
+        public Duration getWindow() { return window; }
+
+        public void setWindow(Duration window) { this.window = window; }
+
+        public int getMinSamples() { return minSamples; }
+
+        public void setMinSamples(int minSamples) { this.minSamples = minSamples; }
+
+        public Duration getMinDelay() { return minDelay; }
+
+        public void setMinDelay(Duration minDelay) { this.minDelay = minDelay; }
+
+        public double getBudgetRatio() { return budgetRatio; }
+
+        public void setBudgetRatio(double budgetRatio) { this.budgetRatio = budgetRatio; }
+
+        public double getBudgetBurst() { return budgetBurst; }
+
+        public void setBudgetBurst(double budgetBurst) { this.budgetBurst = budgetBurst; }
+    }
 }
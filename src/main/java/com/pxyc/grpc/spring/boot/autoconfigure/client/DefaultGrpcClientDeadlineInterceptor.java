@@ -0,0 +1,129 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import io.grpc.*;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 级联超时: 为调用设置默认超时, 并将上游调用的剩余时间扣除余量后传递给下游.
+ * <p>
+ * 调用方未指定超时时, 按服务或方法配置的超时设置, 未配置时 unary 调用使用 Channel 的默认超时, 流式调用不设默认超时.
+ * 在 gRPC 服务端处理调用的 {@link Context} 中发起调用时, 上游的截止时间减去余量后与上述超时取较早者,
+ * 余量用于留出本服务处理下游响应并返回上游的时间. 调用方指定或从上游继承的剩余时间不足最小值时,
+ * 直接以 DEADLINE_EXCEEDED 结束调用, 不发送请求.
+ * <p>
+ * 切换线程后 {@link Context} 不会自动传递, 需使用 {@link Context#wrap(Runnable)} 或 {@link Context#currentContextExecutor(Executor)}.
+ */
+public class DefaultGrpcClientDeadlineInterceptor implements ClientInterceptor {
+    private final long defaultTimeoutNanos;
+    private final Map<String, Duration> methodTimeouts;
+    private final long marginNanos;
+    private final long minBudgetNanos;
+    private final Map<String, Long> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultTimeout unary 调用的默认超时, 为空时不设置
+     * @param methodTimeouts 按服务或方法全名配置的超时, 完整方法名优先
+     * @param margin         传递上游截止时间时扣除的余量, 为空时不扣除
+     * @param minBudget      发起调用所需的最小剩余时间, 为空时只在已超时时直接结束
+     */
+    public DefaultGrpcClientDeadlineInterceptor(Duration defaultTimeout, Map<String, Duration> methodTimeouts, Duration margin,
+                                                Duration minBudget) {
+        this.defaultTimeoutNanos = defaultTimeout == null || defaultTimeout.isNegative() || defaultTimeout.isZero() ?
+                                   NO_TIMEOUT : defaultTimeout.toNanos();
+        this.methodTimeouts = methodTimeouts == null ? Collections.emptyMap() : methodTimeouts;
+        this.marginNanos = margin == null ? 0 : margin.toNanos();
+        this.minBudgetNanos = minBudget == null ? 0 : minBudget.toNanos();
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        // 调用方指定或从上游继承的截止时间, 只对这部分检查剩余时间, 本拦截器设置的默认超时总是足够
+        Deadline deadline = callOptions.getDeadline();
+        Deadline upstreamDeadline = Context.current().getDeadline();
+        if(upstreamDeadline != null) {
+            Deadline propagated = marginNanos > 0 ? upstreamDeadline.offset(-marginNanos, TimeUnit.NANOSECONDS) : upstreamDeadline;
+            deadline = deadline == null ? propagated : deadline.minimum(propagated);
+        }
+        if(deadline != null) {
+            long remainingNanos = deadline.timeRemaining(TimeUnit.NANOSECONDS);
+            if(remainingNanos <= 0 || remainingNanos < minBudgetNanos) {
+                return new FailingClientCall<>(Status.DEADLINE_EXCEEDED.withDescription(
+                    "Remaining deadline [" + TimeUnit.NANOSECONDS.toMillis(remainingNanos) + "ms] less than [" +
+                    TimeUnit.NANOSECONDS.toMillis(minBudgetNanos) + "ms] before calling [" + method.getFullMethodName() + "]"),
+                                               callOptions.getExecutor());
+            }
+        }
+        if(callOptions.getDeadline() == null) {
+            long timeoutNanos = resolve(method);
+            if(timeoutNanos != NO_TIMEOUT) {
+                Deadline timeout = Deadline.after(timeoutNanos, TimeUnit.NANOSECONDS);
+                deadline = deadline == null ? timeout : deadline.minimum(timeout);
+            }
+        }
+        if(deadline == null || deadline == callOptions.getDeadline()) {
+            return next.newCall(method, callOptions);
+        }
+        return next.newCall(method, callOptions.withDeadline(deadline));
+    }
+
+    private long resolve(MethodDescriptor<?, ?> method) {
+        String fullMethodName = method.getFullMethodName();
+        Long timeoutNanos = resolved.get(fullMethodName);
+        if(timeoutNanos == null) {
+            timeoutNanos = resolved.computeIfAbsent(fullMethodName, name -> {
+                Duration timeout = methodTimeouts.get(name);
+                if(timeout == null && method.getServiceName() != null) {
+                    timeout = methodTimeouts.get(method.getServiceName());
+                }
+                if(timeout != null) {
+                    return timeout.isNegative() || timeout.isZero() ? NO_TIMEOUT : timeout.toNanos();
+                }
+                return method.getType() == MethodDescriptor.MethodType.UNARY ? defaultTimeoutNanos : NO_TIMEOUT;
+            });
+        }
+        return timeoutNanos;
+    }
+
+    /**
+     * 不发送请求, 启动后异步以指定状态结束的调用
+     */
+    private static class FailingClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final Status status;
+        private final Executor executor;
+
+        FailingClientCall(Status status, Executor executor) {
+            this.status = status;
+            this.executor = executor;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            DefaultGrpcClientCalls.executeCallback(executor, () -> responseListener.onClose(status, new Metadata()));
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+        }
+
+        @Override
+        public void halfClose() {
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+        }
+    }
+
+    private static final long NO_TIMEOUT = -1;
+}
@@ -0,0 +1,331 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMarshallers;
+import com.pxyc.grpc.spring.boot.autoconfigure.LatencyHistogram;
+import io.grpc.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 按实际耗时自适应的对冲请求, 每个 Channel 使用单独的实例, 只用于配置的 unary 方法.
+ * <p>
+ * 按方法记录耗时, 每个窗口以窗口内耗时的百分位 (默认 p95) 作为对冲延迟: 调用超过该延迟仍未完成时再发送一次相同的请求,
+ * 先成功返回的结果生效, 另一次调用被取消. 窗口内样本不足时沿用上一窗口的延迟, 从未有足够样本时不对冲.
+ * <p>
+ * 对冲由令牌桶限制额外负载: 每个调用积累 budget-ratio 个令牌, 每次对冲消耗 1 个, 额外请求不超过调用数的 budget-ratio.
+ * 对冲获胜时慢的首次调用被取消, 其已耗时作为下限计入耗时统计, 避免对冲本身拉低百分位.
+ * <p>
+ * 同一请求可能被服务端处理两次, 只能用于幂等方法.
+ */
+public class DefaultGrpcClientHedgingInterceptor implements ClientInterceptor {
+    private final DefaultGrpcClientConfigProps.HedgingConfig config;
+    private final Predicate<String> methodFilter;
+    private final Map<String, MethodStats> methodStats = new ConcurrentHashMap<>();
+    private final long maxTokens;
+    private final long tokensPerCall;
+    private final AtomicLong tokens;
+    private final LongAdder hedgedCount = new LongAdder();
+    private final LongAdder hedgeWonCount = new LongAdder();
+
+    public DefaultGrpcClientHedgingInterceptor(DefaultGrpcClientConfigProps.HedgingConfig config) {
+        this.config = config;
+        this.methodFilter = DefaultGrpcMarshallers.methodFilter(config.getMethods());
+        this.maxTokens = Math.max(TOKEN_UNIT, (long) (config.getBudgetBurst() * TOKEN_UNIT));
+        this.tokensPerCall = (long) (config.getBudgetRatio() * TOKEN_UNIT);
+        this.tokens = new AtomicLong(maxTokens);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        if(method.getType() != MethodDescriptor.MethodType.UNARY || !methodFilter.test(method.getFullMethodName())) {
+            return next.newCall(method, callOptions);
+        }
+        MethodStats stats = methodStats.computeIfAbsent(method.getFullMethodName(), name -> new MethodStats());
+        long delayNanos = stats.hedgeDelayNanos();
+        if(tokensPerCall > 0) {
+            tokens.updateAndGet(current -> Math.min(maxTokens, current + tokensPerCall));
+        }
+        return new HedgingClientCall<>(method, callOptions, next, stats, delayNanos);
+    }
+
+    /**
+     * 方法当前的对冲延迟, 未开始对冲时为 -1
+     */
+    public long getHedgeDelayMicros(String fullMethodName) {
+        MethodStats stats = methodStats.get(fullMethodName);
+        return stats == null || stats.delayNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(stats.delayNanos);
+    }
+
+    /**
+     * 发出的对冲请求数
+     */
+    public long getHedgedCount() {
+        return hedgedCount.sum();
+    }
+
+    /**
+     * 对冲请求先于首次调用成功的次数
+     */
+    public long getHedgeWonCount() {
+        return hedgeWonCount.sum();
+    }
+
+    private boolean tryAcquireToken() {
+        long current;
+        do {
+            current = tokens.get();
+            if(current < TOKEN_UNIT) {
+                return false;
+            }
+        } while(!tokens.compareAndSet(current, current - TOKEN_UNIT));
+        return true;
+    }
+
+    /**
+     * 单个方法的耗时统计, 直方图只增不减, 以相邻两个窗口快照之差计算窗口内的百分位
+     */
+    private class MethodStats {
+        private final LatencyHistogram latencyMicros = new LatencyHistogram();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile LatencyHistogram.Snapshot lastSnapshot = latencyMicros.snapshot();
+        private volatile long nextRefreshNanos = System.nanoTime() + config.getWindow().toNanos();
+        private volatile long delayNanos = -1;
+
+        long hedgeDelayNanos() {
+            long now = System.nanoTime();
+            if(now - nextRefreshNanos >= 0 && refreshing.compareAndSet(false, true)) {
+                try {
+                    LatencyHistogram.Snapshot snapshot = latencyMicros.snapshot();
+                    LatencyHistogram.Snapshot windowed = snapshot.minus(lastSnapshot);
+                    if(windowed.getCount() >= config.getMinSamples()) {
+                        long percentileNanos = TimeUnit.MICROSECONDS.toNanos(windowed.getValueAtPercentile(config.getPercentile()));
+                        delayNanos = Math.max(config.getMinDelay().toNanos(), percentileNanos);
+                    }
+                    lastSnapshot = snapshot;
+                    nextRefreshNanos = now + config.getWindow().toNanos();
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+            return delayNanos;
+        }
+
+        void record(long elapsedNanos) {
+            latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        }
+    }
+
+    /**
+     * 对外表现为一次调用, 内部可能包含首次调用和一次对冲调用; 各调用的响应先缓存, 生效的调用结束时再交给调用方.
+     * 调用方线程、各调用的回调线程及对冲定时任务都会操作内部调用, 对内部调用的操作均以本对象加锁, 交给调用方的回调在锁外执行
+     */
+    private class HedgingClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private final MethodStats stats;
+        private final long delayNanos;
+        private final Context context = Context.current();
+        private final List<Attempt> attempts = new ArrayList<>(2);
+        private Listener<RespT> listener;
+        private Metadata headers;
+        private ReqT request;
+        private int requested;
+        private boolean halfClosed;
+        private boolean cancelled;
+        private boolean committed;
+        private ScheduledFuture<?> hedgeTimer;
+
+        HedgingClientCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next, MethodStats stats, long delayNanos) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+            this.stats = stats;
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public synchronized void start(Listener<RespT> responseListener, Metadata headers) {
+            this.listener = responseListener;
+            // 发起调用时 headers 会被修改, 对冲调用使用启动前的副本
+            this.headers = new Metadata();
+            this.headers.merge(headers);
+            Attempt primary = new Attempt(false);
+            attempts.add(primary);
+            primary.call.start(primary, headers);
+            if(delayNanos >= 0) {
+                hedgeTimer = HEDGE_TIMER.schedule(context.wrap(this::hedge), delayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public synchronized void request(int numMessages) {
+            requested += numMessages;
+            for(Attempt attempt : attempts) {
+                if(!attempt.cancelled) {
+                    attempt.call.request(numMessages);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void sendMessage(ReqT message) {
+            request = message;
+            for(Attempt attempt : attempts) {
+                if(!attempt.cancelled) {
+                    attempt.call.sendMessage(message);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void halfClose() {
+            halfClosed = true;
+            for(Attempt attempt : attempts) {
+                if(!attempt.cancelled) {
+                    attempt.call.halfClose();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void cancel(String message, Throwable cause) {
+            cancelled = true;
+            cancelTimer();
+            for(Attempt attempt : attempts) {
+                if(!attempt.cancelled) {
+                    attempt.cancelled = true;
+                    attempt.call.cancel(message, cause);
+                }
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        private void cancelTimer() {
+            if(hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+                hedgeTimer = null;
+            }
+        }
+
+        /**
+         * 首次调用仍未完成且请求已完整发出时发送对冲请求, 令牌不足时放弃
+         */
+        private synchronized void hedge() {
+            hedgeTimer = null;
+            if(committed || cancelled || !halfClosed || request == null || attempts.size() > 1 || !tryAcquireToken()) {
+                return;
+            }
+            Attempt hedge = new Attempt(true);
+            attempts.add(hedge);
+            hedgedCount.increment();
+            Metadata hedgeHeaders = new Metadata();
+            hedgeHeaders.merge(headers);
+            hedgeHeaders.put(PREVIOUS_ATTEMPTS_KEY, "1");
+            hedge.call.start(hedge, hedgeHeaders);
+            hedge.call.request(requested);
+            hedge.call.sendMessage(request);
+            hedge.call.halfClose();
+        }
+
+        /**
+         * 成功的调用或最后一个结束的调用生效, 取消其他调用
+         */
+        private void onAttemptClosed(Attempt attempt, Status status, Metadata trailers) {
+            synchronized(this) {
+                attempt.closed = true;
+                if(committed) {
+                    return;
+                }
+                boolean pending = false;
+                for(Attempt other : attempts) {
+                    pending |= !other.closed;
+                }
+                // 对冲定时任务尚未执行时首次调用已失败, 不再对冲, 直接结束
+                if(!status.isOk() && pending) {
+                    return;
+                }
+                committed = true;
+                cancelTimer();
+                Attempt primary = attempts.get(0);
+                if(attempt != primary || status.isOk()) {
+                    // 对冲获胜时首次调用的已耗时为其耗时下限
+                    stats.record(System.nanoTime() - primary.startNanos);
+                }
+                for(Attempt other : attempts) {
+                    if(other != attempt && !other.closed && !other.cancelled) {
+                        other.cancelled = true;
+                        other.call.cancel("Hedged call completed by another attempt", null);
+                    }
+                }
+            }
+            if(attempt.hedge && status.isOk()) {
+                hedgeWonCount.increment();
+            }
+            if(attempt.headers != null) {
+                listener.onHeaders(attempt.headers);
+            }
+            if(attempt.message != null) {
+                listener.onMessage(attempt.message);
+            }
+            listener.onClose(status, trailers);
+        }
+
+        private class Attempt extends Listener<RespT> {
+            private final ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+            private final long startNanos = System.nanoTime();
+            private final boolean hedge;
+            private Metadata headers;
+            private RespT message;
+            private boolean closed;
+            private boolean cancelled;
+
+            Attempt(boolean hedge) {
+                this.hedge = hedge;
+            }
+
+            @Override
+            public void onHeaders(Metadata headers) {
+                this.headers = headers;
+            }
+
+            @Override
+            public void onMessage(RespT message) {
+                this.message = message;
+            }
+
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                onAttemptClosed(this, status, trailers);
+            }
+        }
+    }
+
+    private static final long TOKEN_UNIT = 1000;
+    private static final Metadata.Key<String> PREVIOUS_ATTEMPTS_KEY = Metadata.Key.of("grpc-previous-rpc-attempts", Metadata.ASCII_STRING_MARSHALLER);
+    private static final ScheduledThreadPoolExecutor HEDGE_TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "GrpcClientHedgeTimer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // 绝大部分调用在对冲延迟内完成, 取消的定时任务需立即移除
+        HEDGE_TIMER.setRemoveOnCancelPolicy(true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCallMetrics;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMessageSizes;
+import io.grpc.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 客户端调用统计拦截器, 按方法记录到 {@link DefaultGrpcCallMetrics}
+ */
+public class DefaultGrpcClientMetricsInterceptor implements ClientInterceptor {
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                                               Channel next) {
+        DefaultGrpcCallMetrics metrics = DefaultGrpcCallMetrics.of(DefaultGrpcCallMetrics.Side.CLIENT, method.getFullMethodName());
+        return new MetricsClientCall<>(next.newCall(method, callOptions), metrics);
+    }
+
+    private static class MetricsClientCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+        private final DefaultGrpcCallMetrics metrics;
+        volatile int ended;
+        private long startNanos;
+        private long requestBytes;
+        private long responseBytes;
+
+        MetricsClientCall(ClientCall<ReqT, RespT> delegate, DefaultGrpcCallMetrics metrics) {
+            super(delegate);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            startNanos = System.nanoTime();
+            metrics.callStarted();
+            try {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        responseBytes = DefaultGrpcMessageSizes.add(responseBytes, message);
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        end(status.getCode());
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            } catch(RuntimeException | Error e) {
+                // start 抛出异常时不会再回调 onClose, 在此结束统计, 否则进行中的调用数不会减少
+                end(Status.fromThrowable(e).getCode());
+                throw e;
+            }
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            requestBytes = DefaultGrpcMessageSizes.add(requestBytes, message);
+            super.sendMessage(message);
+        }
+
+        private void end(Status.Code code) {
+            if(ENDED_UPDATER.compareAndSet(this, 0, 1)) {
+                metrics.callEnded(code, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos), requestBytes, responseBytes);
+            }
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<MetricsClientCall> ENDED_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(MetricsClientCall.class, "ended");
+}
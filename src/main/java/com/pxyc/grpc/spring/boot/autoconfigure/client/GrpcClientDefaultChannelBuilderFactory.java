@@ -1,8 +1,23 @@
 package com.pxyc.grpc.spring.boot.autoconfigure.client;
 
 
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcByteBufAllocators;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionCodecs;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionPolicy;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcEventLoopGroups;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMarshallers;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcSharedMessages;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcTargets;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcZeroCopyMarshaller;
+import com.pxyc.grpc.spring.boot.autoconfigure.server.DefaultGrpcServerInProcessEndpoint;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.unix.DomainSocketAddress;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +25,7 @@ import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
@@ -18,22 +34,89 @@ import java.util.function.Consumer;
 public class GrpcClientDefaultChannelBuilderFactory
         implements BiFunction<String, DefaultGrpcClientConfigProps.ChannelBuilderConfig, ManagedChannelBuilder<?>>, ApplicationContextAware {
     private final List<? extends GrpcClientInternalConfigurer> internalConfigurerList;
+    private final DefaultGrpcEventLoopGroups eventLoopGroups;
+    private final DefaultGrpcServerInProcessEndpoint inProcessEndpoint;
     private ApplicationContext applicationContext;
 
     public GrpcClientDefaultChannelBuilderFactory(List<? extends GrpcClientInternalConfigurer> internalConfigurerList) {
+        this(internalConfigurerList, null, null);
+    }
+
+    /**
+     * @param eventLoopGroups   共用的事件循环, 为空时不支持 {@code unix:} target
+     * @param inProcessEndpoint 本进程 gRPC Server 的 in-process 入口, 为空时不改用 in-process 传输
+     */
+    public GrpcClientDefaultChannelBuilderFactory(List<? extends GrpcClientInternalConfigurer> internalConfigurerList,
+                                                  DefaultGrpcEventLoopGroups eventLoopGroups,
+                                                  DefaultGrpcServerInProcessEndpoint inProcessEndpoint) {
         this.internalConfigurerList = internalConfigurerList;
+        this.eventLoopGroups = eventLoopGroups;
+        this.inProcessEndpoint = inProcessEndpoint;
     }
 
     @Override
     public ManagedChannelBuilder<?> apply(String name, DefaultGrpcClientConfigProps.ChannelBuilderConfig config) {
-        NettyChannelBuilder channelBuilder = NettyChannelBuilder.forTarget(config.getTarget());
+        if(inProcessEndpoint != null && (config.getInProcessEnabled() == null || config.getInProcessEnabled()) &&
+           inProcessEndpoint.matches(config.getTarget())) {
+            InProcessChannelBuilder channelBuilder = InProcessChannelBuilder.forName(inProcessEndpoint.getName());
+            if(inProcessEndpoint.isMessageSharingEnabled()) {
+                // 最先添加, 位于最内层, 其他拦截器看到的仍是原方法描述
+                channelBuilder.intercept(DefaultGrpcSharedMessages.clientInterceptor(inProcessEndpoint::isMessageSharing));
+            }
+            configZeroCopy(channelBuilder, config);
+            configCircuitBreaker(channelBuilder, config);
+            for(GrpcClientInternalConfigurer configurer : internalConfigurerList) {
+                configurer.accept(channelBuilder);
+            }
+            configChannelBuilder(channelBuilder, config);
+            LOGGER.info("Channel [" + name + "] target [" + config.getTarget() + "] served by local grpc server, using in-process transport");
+            return channelBuilder;
+        }
+
+        String domainSocketPath = DefaultGrpcTargets.domainSocketPath(config.getTarget());
+        NettyChannelBuilder channelBuilder = domainSocketPath == null ? NettyChannelBuilder.forTarget(config.getTarget()) :
+                                             NettyChannelBuilder.forAddress(new DomainSocketAddress(domainSocketPath));
+        configZeroCopy(channelBuilder, config);
+        configCircuitBreaker(channelBuilder, config);
         for(GrpcClientInternalConfigurer configurer : internalConfigurerList) {
             configurer.accept(channelBuilder);
         }
+        if(domainSocketPath != null) {
+            if(eventLoopGroups == null || eventLoopGroups.getTransport() != DefaultGrpcCommonConfigProps.EventLoopConfig.Transport.EPOLL) {
+                throw new RuntimeException("Channel [" + name + "] target [" + config.getTarget() +
+                                           "] requires shared event loop with epoll transport");
+            }
+            channelBuilder.eventLoopGroup(eventLoopGroups.getWorkerGroup()).channelType(EpollDomainSocketChannel.class);
+            // 默认 authority 为 socket 文件路径, 不是合法的 authority
+            channelBuilder.overrideAuthority(DOMAIN_SOCKET_AUTHORITY);
+        }
         configChannelBuilder(channelBuilder, config);
         return channelBuilder;
     }
 
+    /**
+     * 零拷贝 marshaller 拦截器需位于最内层, 在其他拦截器之前添加; in-process 时位于按引用传递之外, 由其包装
+     */
+    private static void configZeroCopy(ManagedChannelBuilder<?> channelBuilder, DefaultGrpcClientConfigProps.ChannelBuilderConfig config) {
+        if(config.getZeroCopyMethods() != null && config.getZeroCopyMethods().length > 0) {
+            channelBuilder.intercept(DefaultGrpcZeroCopyMarshaller.clientInterceptor(
+                DefaultGrpcMarshallers.methodFilter(Arrays.asList(config.getZeroCopyMethods()))));
+        }
+    }
+
+    /**
+     * 熔断拦截器在调用统计等内部配置器之前添加, 位于其内层, 本地拒绝的调用同样计入统计
+     */
+    private void configCircuitBreaker(ManagedChannelBuilder<?> channelBuilder, DefaultGrpcClientConfigProps.ChannelBuilderConfig config) {
+        DefaultGrpcClientConfigProps.CircuitBreakerConfig circuitBreaker = config.getCircuitBreaker();
+        if(circuitBreaker == null || !circuitBreaker.isEnabled()) {
+            return;
+        }
+        GrpcClientFallback fallback = circuitBreaker.getFallbackBeanName() == null ? null :
+                                      applicationContext.getBean(circuitBreaker.getFallbackBeanName(), GrpcClientFallback.class);
+        channelBuilder.intercept(new DefaultGrpcClientCircuitBreakerInterceptor(circuitBreaker, fallback));
+    }
+
     @Override
     public void setApplicationContext(@NotNull ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
@@ -41,23 +124,32 @@ public class GrpcClientDefaultChannelBuilderFactory
 
     private void configChannelBuilder(ManagedChannelBuilder<?> channelBuilder, DefaultGrpcClientConfigProps.ChannelBuilderConfig config) {
         if(config.getCallLogEnabled() != null && config.getCallLogEnabled()) {
-            boolean needLog = true;
-            try {
-                Class.forName("org.apache.logging.log4j.Logger");
-//                channelBuilder.intercept(Log4j2ClientCallLoggingInterceptor.INSTANCE);
-                needLog = false;
-                LOGGER.info("grpc client using Log4j2ClientCallLoggingInterceptor");
-            } catch(ClassNotFoundException ignored) {}
-            if(needLog) {
-                try {
-                    Class.forName("org.slf4j.Logger");
-//                    channelBuilder.intercept(Slf4jClientCallLoggingInterceptor.INSTANCE);
-                    needLog = false;
-                    LOGGER.info("grpc client using Slf4jClientCallLoggingInterceptor");
-                } catch(ClassNotFoundException ignored) {}
+            channelBuilder.intercept(new DefaultGrpcClientCallLoggingInterceptor(
+                config.getCallLog() == null ? new DefaultGrpcCommonConfigProps.CallLogConfig() : config.getCallLog()));
+            LOGGER.info("grpc client using DefaultGrpcClientCallLoggingInterceptor");
+        }
+
+        channelBuilder.compressorRegistry(DefaultGrpcCompressionCodecs.compressorRegistry())
+                      .decompressorRegistry(DefaultGrpcCompressionCodecs.decompressorRegistry());
+        if(config.getCompression() != null) {
+            DefaultGrpcCompressionPolicy compressionPolicy = new DefaultGrpcCompressionPolicy(config.getCompression());
+            if(compressionPolicy.isEnabled()) {
+                channelBuilder.intercept(new DefaultGrpcClientCompressionInterceptor(compressionPolicy));
             }
         }
 
+        // 在熔断和调用统计之外添加, 首次调用和对冲调用分别计入; 在级联超时之内添加, 两次调用共用同一截止时间
+        if(config.getHedging() != null && config.getHedging().isEnabled() && !config.getHedging().getMethods().isEmpty()) {
+            channelBuilder.intercept(new DefaultGrpcClientHedgingInterceptor(config.getHedging()));
+        }
+
+        // 在调用日志、统计等拦截器之外添加, 剩余时间不足直接结束的调用不经过它们
+        if(config.getDefaultTimeout() != null || config.getMethodTimeouts() != null || config.getDeadlineMargin() != null ||
+           config.getMinDeadlineBudget() != null) {
+            channelBuilder.intercept(new DefaultGrpcClientDeadlineInterceptor(config.getDefaultTimeout(), config.getMethodTimeouts(),
+                                                                              config.getDeadlineMargin(), config.getMinDeadlineBudget()));
+        }
+
         if(channelBuilder instanceof NettyChannelBuilder) {
             NettyChannelBuilder nettyChannelBuilder = (NettyChannelBuilder) channelBuilder;
             if(config.getInitialFlowControlWindow() != null) {
@@ -69,6 +161,10 @@ public class GrpcClientDefaultChannelBuilderFactory
             if(config.getNegotiationType() != null) {
                 nettyChannelBuilder.negotiationType(config.getNegotiationType());
             }
+            ByteBufAllocator allocator = DefaultGrpcByteBufAllocators.getOrCreate(config.getAllocator());
+            if(allocator != null) {
+                nettyChannelBuilder.withOption(ChannelOption.ALLOCATOR, allocator);
+            }
         }
 
         if(config.getMaxInboundMetadataSize() != null) {
@@ -128,10 +224,6 @@ public class GrpcClientDefaultChannelBuilderFactory
             channelBuilder.disableServiceConfigLookUp();
         }
 
-//        if(config.getDefaultTimeout() != null && !config.getDefaultTimeout().isNegative()) {
-//            channelBuilder.intercept(new UnaryCallDefaultTimeoutClientInterceptor(config.getDefaultTimeout()));
-//        }
-
         if(config.getConfigurerBeanNames() != null) {
             for(String configurerBeanName : config.getConfigurerBeanNames()) {
                 @SuppressWarnings("unchecked") Consumer<? super ManagedChannelBuilder<?>> configurer =
@@ -141,5 +233,6 @@ public class GrpcClientDefaultChannelBuilderFactory
         }
     }
 
+    private static final String DOMAIN_SOCKET_AUTHORITY = "localhost";
     private static final Logger LOGGER = LoggerFactory.getLogger(GrpcClientDefaultChannelBuilderFactory.class);
 }
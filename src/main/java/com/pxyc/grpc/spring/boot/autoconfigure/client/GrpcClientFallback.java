@@ -0,0 +1,18 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * 熔断降级, unary 调用被熔断器在本地拒绝时返回降级响应; 方法带有类型参数, 需以类实现, 不能使用 lambda
+ *
+ * @see DefaultGrpcClientCircuitBreakerInterceptor
+ * @see DefaultGrpcClientConfigProps.CircuitBreakerConfig#getFallbackBeanName()
+ */
+public interface GrpcClientFallback {
+    /**
+     * @param status 本地拒绝的状态
+     * @return 降级响应, 返回 null 时调用以 status 失败
+     */
+    <ReqT, RespT> RespT fallback(MethodDescriptor<ReqT, RespT> method, ReqT request, Status status);
+}
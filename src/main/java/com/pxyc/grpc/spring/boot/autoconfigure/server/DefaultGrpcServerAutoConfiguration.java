@@ -1,7 +1,16 @@
 package com.pxyc.grpc.spring.boot.autoconfigure.server;
 
 import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonAutoConfiguration;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcEventLoopGroups;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcExecutorRefreshListener;
 import io.grpc.ServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -11,10 +20,15 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
 
@@ -37,8 +51,12 @@ public class DefaultGrpcServerAutoConfiguration {
     @Bean(BEAN_NAME_LIFE_CYCLE)
     @ConditionalOnMissingBean(name = BEAN_NAME_LIFE_CYCLE)
     public DefaultGrpcServerLifecycle lifecycle(@Autowired @Qualifier(BEAN_NAME_BUILDER_FACTORY) Supplier<ServerBuilder<?>> builderSupplier,
+                                                @Qualifier(BEAN_NAME_DOMAIN_SOCKET_BUILDER_FACTORY) ObjectProvider<Supplier<ServerBuilder<?>>> domainSocketBuilderSupplier,
+                                                @Qualifier(BEAN_NAME_IN_PROCESS_BUILDER_FACTORY) ObjectProvider<Supplier<ServerBuilder<?>>> inProcessBuilderSupplier,
                                                 @Autowired List<? extends GrpcServerLifecycleCallback> callbacks) {
-        return new DefaultGrpcServerLifecycle(builderSupplier, callbacks);
+        return new DefaultGrpcServerLifecycle(configProps().getDomainSocket().isTcpEnabled() ? builderSupplier : null,
+                                              domainSocketBuilderSupplier.getIfAvailable(), inProcessBuilderSupplier.getIfAvailable(),
+                                              callbacks, configProps().isReflectionEnabled(), configProps().getShutdown());
     }
 
     /**
@@ -50,31 +68,354 @@ public class DefaultGrpcServerAutoConfiguration {
         return new DefaultGrpcServerBuilderSupplier(configProps(), internalConfigurers);
     }
 
+    /**
+     * 监听 Unix domain socket 的 gRPC ServerBuilder 工厂, 配置了 domain-socket.path 时创建
+     */
+    @Bean(BEAN_NAME_DOMAIN_SOCKET_BUILDER_FACTORY)
+    @ConditionalOnMissingBean(name = BEAN_NAME_DOMAIN_SOCKET_BUILDER_FACTORY)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".domain-socket.path")
+    public Supplier<ServerBuilder<?>> domainSocketServerBuilderFactory(
+        @Autowired List<? extends GrpcServerInternalConfigurer> internalConfigurers,
+        @Qualifier(DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS) ObjectProvider<DefaultGrpcEventLoopGroups> eventLoopGroups) {
+        return new DefaultGrpcServerBuilderSupplier(configProps(), internalConfigurers, eventLoopGroups.getIfAvailable());
+    }
+
+    /**
+     * 本进程 Server 的 in-process 入口, 客户端 target 指向本 Server 时据此改用 in-process 传输, 默认关闭
+     */
+    @Bean(BEAN_NAME_IN_PROCESS_ENDPOINT)
+    @ConditionalOnMissingBean(name = BEAN_NAME_IN_PROCESS_ENDPOINT)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".in-process.enabled", havingValue = "true")
+    public DefaultGrpcServerInProcessEndpoint inProcessEndpoint() {
+        return new DefaultGrpcServerInProcessEndpoint(configProps());
+    }
+
+    /**
+     * in-process gRPC ServerBuilder 工厂
+     */
+    @Bean(BEAN_NAME_IN_PROCESS_BUILDER_FACTORY)
+    @ConditionalOnMissingBean(name = BEAN_NAME_IN_PROCESS_BUILDER_FACTORY)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".in-process.enabled", havingValue = "true")
+    public Supplier<ServerBuilder<?>> inProcessServerBuilderFactory(
+        @Autowired List<? extends GrpcServerInternalConfigurer> internalConfigurers,
+        @Autowired @Qualifier(BEAN_NAME_IN_PROCESS_ENDPOINT) DefaultGrpcServerInProcessEndpoint endpoint) {
+        return new DefaultGrpcServerBuilderSupplier(configProps(), internalConfigurers, endpoint);
+    }
+
     /**
      * 默认的业务服务发现配置器
      */
     @Bean(BEAN_NAME_BIZ_SERVICE_FINDER)
     @ConditionalOnMissingBean(name = BEAN_NAME_BIZ_SERVICE_FINDER)
     @Order(100)
-    public DefaultGrpcServerBizServiceFinder bizServiceFinder() {
-        return new DefaultGrpcServerBizServiceFinder();
+    public DefaultGrpcServerBizServiceFinder bizServiceFinder(@Autowired ObjectProvider<DefaultGrpcServerExecutorRouter> executorRouter,
+                                                              @Autowired ObjectProvider<DefaultGrpcServerResponseCache> responseCache,
+                                                              @Autowired ObjectProvider<DefaultGrpcServerRequestCoalescer> requestCoalescer,
+                                                              @Autowired ObjectProvider<DefaultGrpcServerInProcessEndpoint> inProcessEndpoint) {
+        return new DefaultGrpcServerBizServiceFinder(executorRouter, responseCache, requestCoalescer, inProcessEndpoint,
+                                                     configProps().getZeroCopyMethods());
+    }
+
+    /**
+     * 响应缓存, 默认关闭
+     */
+    @Bean(BEAN_NAME_RESPONSE_CACHE)
+    @ConditionalOnMissingBean(name = BEAN_NAME_RESPONSE_CACHE)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".response-cache.enabled", havingValue = "true")
+    public DefaultGrpcServerResponseCache responseCache() {
+        return new DefaultGrpcServerResponseCache(configProps().getResponseCache());
     }
 
     /**
-     * 默认的 gRPC Server 的执行器配置器
+     * 相同请求合并执行, 默认关闭
      */
-    @Bean(BEAN_NAME_EXECUTOR_CONFIGURER)
+    @Bean(BEAN_NAME_REQUEST_COALESCER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_REQUEST_COALESCER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".coalescing.enabled", havingValue = "true")
+    public DefaultGrpcServerRequestCoalescer requestCoalescer() {
+        return new DefaultGrpcServerRequestCoalescer(configProps().getCoalescing());
+    }
+
+    /**
+     * 默认的 gRPC Server 的执行器配置器, 按服务/方法绑定将调用分派到共用线程池、隔离线程池或事件循环线程
+     */
+    @Bean(name = BEAN_NAME_EXECUTOR_CONFIGURER, destroyMethod = "shutdown")
     @ConditionalOnMissingBean(name = BEAN_NAME_EXECUTOR_CONFIGURER)
     @ConditionalOnBean(name = DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EXECUTOR)
     @Order(200)
-    public GrpcServerInternalConfigurer executorConfigurer(
-        @Autowired @Qualifier(DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EXECUTOR) Executor executor) {
-        return serverBuilder -> serverBuilder.executor(executor);
+    public DefaultGrpcServerExecutorRouter executorConfigurer(
+        @Autowired @Qualifier(DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EXECUTOR) Executor executor,
+        @Qualifier(BEAN_NAME_RATE_LIMITER) ObjectProvider<DefaultGrpcServerRateLimiter> rateLimiter) {
+        return new DefaultGrpcServerExecutorRouter(executor, configProps(), rateLimiter.getIfAvailable());
+    }
+
+    /**
+     * 使用共用的事件循环
+     */
+    @Bean(BEAN_NAME_EVENT_LOOP_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_EVENT_LOOP_CONFIGURER)
+    @ConditionalOnBean(name = DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS)
+    @Order(50)
+    public GrpcServerInternalConfigurer eventLoopConfigurer(
+        @Autowired @Qualifier(DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS) DefaultGrpcEventLoopGroups eventLoopGroups) {
+        return serverBuilder -> {
+            if(serverBuilder instanceof NettyServerBuilder) {
+                ((NettyServerBuilder) serverBuilder).bossEventLoopGroup(eventLoopGroups.getBossGroup())
+                                                    .workerEventLoopGroup(eventLoopGroups.getWorkerGroup())
+                                                    .channelType(eventLoopGroups.getServerChannelType());
+            }
+        };
+    }
+
+    /**
+     * 以 SO_REUSEPORT 在同一端口上打开多个监听 socket, 默认关闭
+     */
+    @Bean(BEAN_NAME_REUSE_PORT_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_REUSE_PORT_CONFIGURER)
+    @ConditionalOnBean(name = DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".reuse-port.enabled", havingValue = "true")
+    @Order(60)
+    public GrpcServerInternalConfigurer reusePortConfigurer(
+        @Autowired @Qualifier(DefaultGrpcCommonAutoConfiguration.BEAN_NAME_EVENT_LOOP_GROUPS) DefaultGrpcEventLoopGroups eventLoopGroups) {
+        return new DefaultGrpcServerReusePortConfigurer(eventLoopGroups, configProps());
+    }
+
+    /**
+     * 进程 CPU 使用率采样器, 延迟到自适应降载或负载上报使用时才创建, 两者均关闭时不启动采样线程
+     */
+    @Bean(name = BEAN_NAME_CPU_USAGE_SAMPLER, destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = BEAN_NAME_CPU_USAGE_SAMPLER)
+    @Lazy
+    public DefaultGrpcServerCpuUsageSampler cpuUsageSampler() {
+        return new DefaultGrpcServerCpuUsageSampler(configProps().getLoadShedding().getCpuSampleInterval());
+    }
+
+    /**
+     * 自适应降载拦截器, 默认开启
+     */
+    @Bean(BEAN_NAME_LOAD_SHEDDING_INTERCEPTOR)
+    @ConditionalOnMissingBean(name = BEAN_NAME_LOAD_SHEDDING_INTERCEPTOR)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".load-shedding.enabled", havingValue = "true", matchIfMissing = true)
+    public DefaultGrpcServerLoadSheddingInterceptor loadSheddingInterceptor(
+        @Autowired @Qualifier(BEAN_NAME_CPU_USAGE_SAMPLER) DefaultGrpcServerCpuUsageSampler cpuUsageSampler) {
+        return new DefaultGrpcServerLoadSheddingInterceptor(cpuUsageSampler, configProps().getLoadShedding());
+    }
+
+    /**
+     * 自适应降载拦截器配置器
+     */
+    @Bean(BEAN_NAME_LOAD_SHEDDING_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_LOAD_SHEDDING_CONFIGURER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".load-shedding.enabled", havingValue = "true", matchIfMissing = true)
+    @Order(300)
+    public GrpcServerInternalConfigurer loadSheddingConfigurer(
+        @Autowired @Qualifier(BEAN_NAME_LOAD_SHEDDING_INTERCEPTOR) DefaultGrpcServerLoadSheddingInterceptor interceptor) {
+        return serverBuilder -> serverBuilder.intercept(interceptor);
+    }
+
+    /**
+     * 堆外内存保护拦截器, 默认关闭
+     */
+    @Bean(BEAN_NAME_DIRECT_MEMORY_GUARD_INTERCEPTOR)
+    @ConditionalOnMissingBean(name = BEAN_NAME_DIRECT_MEMORY_GUARD_INTERCEPTOR)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".direct-memory-guard.enabled", havingValue = "true")
+    public DefaultGrpcServerDirectMemoryGuardInterceptor directMemoryGuardInterceptor() {
+        return new DefaultGrpcServerDirectMemoryGuardInterceptor(configProps().getDirectMemoryGuard());
+    }
+
+    /**
+     * 堆外内存保护拦截器配置器, 最后添加以最先执行
+     */
+    @Bean(BEAN_NAME_DIRECT_MEMORY_GUARD_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_DIRECT_MEMORY_GUARD_CONFIGURER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".direct-memory-guard.enabled", havingValue = "true")
+    @Order(400)
+    public GrpcServerInternalConfigurer directMemoryGuardConfigurer(
+        @Autowired @Qualifier(BEAN_NAME_DIRECT_MEMORY_GUARD_INTERCEPTOR) DefaultGrpcServerDirectMemoryGuardInterceptor interceptor) {
+        return serverBuilder -> serverBuilder.intercept(interceptor);
+    }
+
+    /**
+     * 令牌桶限流拦截器, 默认关闭
+     */
+    @Bean(BEAN_NAME_RATE_LIMITER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_RATE_LIMITER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".rate-limit.enabled", havingValue = "true")
+    public DefaultGrpcServerRateLimiter rateLimiter() {
+        return new DefaultGrpcServerRateLimiter(configProps().getRateLimit());
+    }
+
+    /**
+     * 令牌桶限流拦截器配置器, 在其他拒绝类拦截器之前执行, 执行器分派前已判断的结果也由它结束调用
+     */
+    @Bean(BEAN_NAME_RATE_LIMIT_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_RATE_LIMIT_CONFIGURER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".rate-limit.enabled", havingValue = "true")
+    @Order(450)
+    public GrpcServerInternalConfigurer rateLimitConfigurer(
+        @Autowired @Qualifier(BEAN_NAME_RATE_LIMITER) DefaultGrpcServerRateLimiter rateLimiter) {
+        return serverBuilder -> serverBuilder.intercept(rateLimiter);
+    }
+
+    /**
+     * ORCA 负载上报, 默认关闭; 作为生命周期回调在启动后取得健康状态
+     */
+    @Bean(name = BEAN_NAME_LOAD_REPORTER, destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = BEAN_NAME_LOAD_REPORTER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".load-report.enabled", havingValue = "true")
+    public DefaultGrpcServerLoadReporter loadReporter(
+        @Autowired @Qualifier(BEAN_NAME_CPU_USAGE_SAMPLER) DefaultGrpcServerCpuUsageSampler cpuUsageSampler) {
+        return new DefaultGrpcServerLoadReporter(cpuUsageSampler, configProps().getLoadReport());
+    }
+
+    /**
+     * ORCA 负载上报配置器, 在拒绝类拦截器之外添加, 被拒绝的调用同样计入并附带负载
+     */
+    @Bean(BEAN_NAME_LOAD_REPORT_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_LOAD_REPORT_CONFIGURER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".load-report.enabled", havingValue = "true")
+    @Order(490)
+    public GrpcServerInternalConfigurer loadReportConfigurer(
+        @Autowired @Qualifier(BEAN_NAME_LOAD_REPORTER) DefaultGrpcServerLoadReporter loadReporter) {
+        return serverBuilder -> {
+            serverBuilder.intercept(loadReporter);
+            if(configProps().getLoadReport().isOobEnabled()) {
+                serverBuilder.addService(loadReporter.getOobService());
+            }
+        };
+    }
+
+    /**
+     * 调用日志拦截器配置器, 默认关闭; 在拒绝类拦截器之外添加, 被限流、降载等拒绝的调用同样按非 OK 记录
+     */
+    @Bean(BEAN_NAME_CALL_LOG_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_CALL_LOG_CONFIGURER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".call-log-enabled", havingValue = "true")
+    @Order(495)
+    public GrpcServerInternalConfigurer callLogConfigurer() {
+        DefaultGrpcServerCallLoggingInterceptor interceptor = new DefaultGrpcServerCallLoggingInterceptor(configProps().getCallLog());
+        return serverBuilder -> serverBuilder.intercept(interceptor);
+    }
+
+    /**
+     * 调用统计拦截器配置器, 默认开启; 最外层添加, 被其他拦截器拒绝的调用同样计入
+     */
+    @Bean(BEAN_NAME_METRICS_CONFIGURER)
+    @ConditionalOnMissingBean(name = BEAN_NAME_METRICS_CONFIGURER)
+    @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".metrics.enabled", havingValue = "true", matchIfMissing = true)
+    @Order(500)
+    public GrpcServerInternalConfigurer metricsConfigurer() {
+        DefaultGrpcServerMetricsInterceptor interceptor = new DefaultGrpcServerMetricsInterceptor();
+        return serverBuilder -> serverBuilder.intercept(interceptor);
+    }
+
+    /**
+     * 存在 Micrometer 时导出响应缓存的命中率、请求合并、限流及负载统计;
+     * 嵌套配置类先于外层的 bean 注册, 与被统计的 bean 使用相同的开关条件, 不能用 {@code @ConditionalOnBean}
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"io.micrometer.core.instrument.binder.MeterBinder"})
+    static class MicrometerConfiguration {
+        @Bean(BEAN_NAME_RESPONSE_CACHE_METER_BINDER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_RESPONSE_CACHE_METER_BINDER)
+        @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".response-cache.enabled", havingValue = "true")
+        public MeterBinder responseCacheMeterBinder(
+            @Autowired @Qualifier(BEAN_NAME_RESPONSE_CACHE) DefaultGrpcServerResponseCache responseCache) {
+            return registry -> responseCache.getCaches().forEach(
+                (method, cache) -> GuavaCacheMetrics.monitor(registry, cache, "grpc.server.response", Tags.of("method", method)));
+        }
+
+        @Bean(BEAN_NAME_REQUEST_COALESCER_METER_BINDER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_REQUEST_COALESCER_METER_BINDER)
+        @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".coalescing.enabled", havingValue = "true")
+        public MeterBinder requestCoalescerMeterBinder(
+            @Autowired @Qualifier(BEAN_NAME_REQUEST_COALESCER) DefaultGrpcServerRequestCoalescer requestCoalescer) {
+            return registry -> {
+                FunctionCounter.builder("grpc.server.coalescing.executions", requestCoalescer,
+                                        DefaultGrpcServerRequestCoalescer::getExecutionCount)
+                               .description("Handler executions shared by coalesced calls").register(registry);
+                FunctionCounter.builder("grpc.server.coalescing.coalesced", requestCoalescer,
+                                        DefaultGrpcServerRequestCoalescer::getCoalescedCount)
+                               .description("Calls that joined an in-flight execution").register(registry);
+            };
+        }
+
+        @Bean(BEAN_NAME_RATE_LIMITER_METER_BINDER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_RATE_LIMITER_METER_BINDER)
+        @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".rate-limit.enabled", havingValue = "true")
+        public MeterBinder rateLimiterMeterBinder(@Autowired @Qualifier(BEAN_NAME_RATE_LIMITER) DefaultGrpcServerRateLimiter rateLimiter) {
+            return registry -> FunctionCounter.builder("grpc.server.rate.limited", rateLimiter, DefaultGrpcServerRateLimiter::getRejectedCount)
+                                              .description("Calls rejected by rate limit").register(registry);
+        }
+
+        @Bean(BEAN_NAME_LOAD_REPORTER_METER_BINDER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_LOAD_REPORTER_METER_BINDER)
+        @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".load-report.enabled", havingValue = "true")
+        public MeterBinder loadReporterMeterBinder(@Autowired @Qualifier(BEAN_NAME_LOAD_REPORTER) DefaultGrpcServerLoadReporter loadReporter) {
+            return registry -> {
+                Gauge.builder("grpc.server.load.in.flight", loadReporter, DefaultGrpcServerLoadReporter::getInFlight)
+                     .description("Calls in flight").register(registry);
+                Gauge.builder("grpc.server.load.qps", loadReporter, r -> r.getSnapshot().getQps())
+                     .description("Calls per second reported to load balancers").register(registry);
+                Gauge.builder("grpc.server.load.overloaded", loadReporter, r -> r.isOverloaded() ? 1 : 0)
+                     .description("1 if health status was set to NOT_SERVING due to sustained overload").register(registry);
+            };
+        }
+    }
+
+    /**
+     * 存在 Spring Cloud 时, 配置刷新后在运行时调整隔离线程池容量及限流规则;
+     * 嵌套配置类先于外层的 bean 注册, 不能用 {@code @ConditionalOnBean} 判断外层的 bean
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"org.springframework.cloud.context.environment.EnvironmentChangeEvent"})
+    static class RefreshConfiguration {
+        @Bean(BEAN_NAME_EXECUTOR_REFRESH_LISTENER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_EXECUTOR_REFRESH_LISTENER)
+        public DefaultGrpcExecutorRefreshListener executorRefreshListener(
+            Environment environment, @Qualifier(BEAN_NAME_EXECUTOR_CONFIGURER) ObjectProvider<DefaultGrpcServerExecutorRouter> router) {
+            Map<String, ExecutorService> executors = new HashMap<>();
+            router.ifAvailable(r -> r.getExecutors().forEach(
+                (name, executor) -> executors.put(CONFIG_PROPS_PREFIX + ".executors." + name, executor)));
+            return new DefaultGrpcExecutorRefreshListener(environment, executors);
+        }
+
+        @Bean(BEAN_NAME_RATE_LIMIT_REFRESH_LISTENER)
+        @ConditionalOnMissingBean(name = BEAN_NAME_RATE_LIMIT_REFRESH_LISTENER)
+        @ConditionalOnProperty(name = CONFIG_PROPS_PREFIX + ".rate-limit.enabled", havingValue = "true")
+        public DefaultGrpcServerRateLimitRefreshListener rateLimitRefreshListener(
+            Environment environment, @Autowired @Qualifier(BEAN_NAME_RATE_LIMITER) DefaultGrpcServerRateLimiter rateLimiter) {
+            return new DefaultGrpcServerRateLimitRefreshListener(environment, rateLimiter);
+        }
     }
 
     public static final String BEAN_NAME_BUILDER_FACTORY = "defaultGrpcServerBuilderFactory";
+    public static final String BEAN_NAME_DOMAIN_SOCKET_BUILDER_FACTORY = "defaultGrpcServerDomainSocketBuilderFactory";
+    public static final String BEAN_NAME_IN_PROCESS_ENDPOINT = "defaultGrpcServerInProcessEndpoint";
+    public static final String BEAN_NAME_IN_PROCESS_BUILDER_FACTORY = "defaultGrpcServerInProcessBuilderFactory";
     public static final String BEAN_NAME_LIFE_CYCLE = "defaultGrpcServerLifecycle";
     public static final String BEAN_NAME_BIZ_SERVICE_FINDER = "defaultGrpcServerBizServiceFinder";
+    public static final String BEAN_NAME_RESPONSE_CACHE = "defaultGrpcServerResponseCache";
+    public static final String BEAN_NAME_RESPONSE_CACHE_METER_BINDER = "defaultGrpcServerResponseCacheMeterBinder";
+    public static final String BEAN_NAME_REQUEST_COALESCER = "defaultGrpcServerRequestCoalescer";
+    public static final String BEAN_NAME_REQUEST_COALESCER_METER_BINDER = "defaultGrpcServerRequestCoalescerMeterBinder";
     public static final String BEAN_NAME_EXECUTOR_CONFIGURER = "defaultGrpcServerExecutorConfigurer";
+    public static final String BEAN_NAME_EVENT_LOOP_CONFIGURER = "defaultGrpcServerEventLoopConfigurer";
+    public static final String BEAN_NAME_REUSE_PORT_CONFIGURER = "defaultGrpcServerReusePortConfigurer";
+    public static final String BEAN_NAME_CPU_USAGE_SAMPLER = "defaultGrpcServerCpuUsageSampler";
+    public static final String BEAN_NAME_LOAD_SHEDDING_INTERCEPTOR = "defaultGrpcServerLoadSheddingInterceptor";
+    public static final String BEAN_NAME_LOAD_SHEDDING_CONFIGURER = "defaultGrpcServerLoadSheddingConfigurer";
+    public static final String BEAN_NAME_DIRECT_MEMORY_GUARD_INTERCEPTOR = "defaultGrpcServerDirectMemoryGuardInterceptor";
+    public static final String BEAN_NAME_DIRECT_MEMORY_GUARD_CONFIGURER = "defaultGrpcServerDirectMemoryGuardConfigurer";
+    public static final String BEAN_NAME_RATE_LIMITER = "defaultGrpcServerRateLimiter";
+    public static final String BEAN_NAME_RATE_LIMIT_CONFIGURER = "defaultGrpcServerRateLimitConfigurer";
+    public static final String BEAN_NAME_RATE_LIMITER_METER_BINDER = "defaultGrpcServerRateLimiterMeterBinder";
+    public static final String BEAN_NAME_RATE_LIMIT_REFRESH_LISTENER = "defaultGrpcServerRateLimitRefreshListener";
+    public static final String BEAN_NAME_LOAD_REPORTER = "defaultGrpcServerLoadReporter";
+    public static final String BEAN_NAME_LOAD_REPORT_CONFIGURER = "defaultGrpcServerLoadReportConfigurer";
+    public static final String BEAN_NAME_LOAD_REPORTER_METER_BINDER = "defaultGrpcServerLoadReporterMeterBinder";
+    public static final String BEAN_NAME_CALL_LOG_CONFIGURER = "defaultGrpcServerCallLogConfigurer";
+    public static final String BEAN_NAME_METRICS_CONFIGURER = "defaultGrpcServerMetricsConfigurer";
+    public static final String BEAN_NAME_EXECUTOR_REFRESH_LISTENER = "defaultGrpcServerExecutorRefreshListener";
     public static final String CONFIG_PROPS_PREFIX = "best.grpc.server";
 }
@@ -1,20 +1,44 @@
 package com.pxyc.grpc.spring.boot.autoconfigure.server;
 
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMarshallers;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcZeroCopyMarshaller;
 import io.grpc.BindableService;
 import io.grpc.ServerBuilder;
 import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessServerBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
+import java.util.List;
+import java.util.function.Predicate;
+
 import static org.slf4j.LoggerFactory.getLogger;
 
 
 class DefaultGrpcServerBizServiceFinder implements GrpcServerInternalConfigurer, ApplicationContextAware {
+    private final ObjectProvider<DefaultGrpcServerExecutorRouter> executorRouter;
+    private final ObjectProvider<DefaultGrpcServerResponseCache> responseCache;
+    private final ObjectProvider<DefaultGrpcServerRequestCoalescer> requestCoalescer;
+    private final ObjectProvider<DefaultGrpcServerInProcessEndpoint> inProcessEndpoint;
+    private final List<String> zeroCopyMethods;
     private ApplicationContext applicationContext;
 
+    DefaultGrpcServerBizServiceFinder(ObjectProvider<DefaultGrpcServerExecutorRouter> executorRouter,
+                                      ObjectProvider<DefaultGrpcServerResponseCache> responseCache,
+                                      ObjectProvider<DefaultGrpcServerRequestCoalescer> requestCoalescer,
+                                      ObjectProvider<DefaultGrpcServerInProcessEndpoint> inProcessEndpoint,
+                                      List<String> zeroCopyMethods) {
+        this.executorRouter = executorRouter;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.inProcessEndpoint = inProcessEndpoint;
+        this.zeroCopyMethods = zeroCopyMethods;
+    }
+
     @Override
     public void setApplicationContext(@NotNull ApplicationContext applicationContext) throws BeansException {
         this.applicationContext = applicationContext;
@@ -22,16 +46,53 @@ class DefaultGrpcServerBizServiceFinder implements GrpcServerInternalConfigurer,
 
     @Override
     public void accept(ServerBuilder<?> serverBuilder) {
+        DefaultGrpcServerExecutorRouter router = executorRouter.getIfAvailable();
+        DefaultGrpcServerResponseCache cache = responseCache.getIfAvailable();
+        DefaultGrpcServerRequestCoalescer coalescer = requestCoalescer.getIfAvailable();
+        // 按引用传递消息只用于 in-process Server
+        DefaultGrpcServerInProcessEndpoint endpoint = serverBuilder instanceof InProcessServerBuilder ? inProcessEndpoint.getIfAvailable() : null;
+        Predicate<String> zeroCopyMethodFilter = zeroCopyMethods == null || zeroCopyMethods.isEmpty() ? null :
+                                                 DefaultGrpcMarshallers.methodFilter(zeroCopyMethods);
         for(ServerServiceDefinition serverServiceDefinition : applicationContext.getBeansOfType(ServerServiceDefinition.class).values()) {
+            serverServiceDefinition = wrap(serverServiceDefinition, cache, coalescer, endpoint, zeroCopyMethodFilter);
+            if(router != null) {
+                router.bind(serverServiceDefinition);
+            }
             serverBuilder.addService(serverServiceDefinition);
             LOGGER.info("Grpc add biz service [" + serverServiceDefinition.getServiceDescriptor().getName() + "]");
         }
         for(BindableService bindableService : applicationContext.getBeansOfType(BindableService.class).values()) {
             ServerServiceDefinition serverServiceDefinition = bindableService.bindService();
+            serverServiceDefinition = wrap(serverServiceDefinition, cache, coalescer, endpoint, zeroCopyMethodFilter);
+            if(router != null) {
+                router.bind(serverServiceDefinition);
+            }
             serverBuilder.addService(serverServiceDefinition);
             LOGGER.info("Grpc add biz service [" + serverServiceDefinition.getServiceDescriptor().getName() + "], added to grpc server");
         }
     }
 
+    /**
+     * 先合并再缓存: 缓存命中的调用无需进入合并, 未命中的相同调用合并为一次执行.
+     * 零拷贝 marshaller 及按引用传递消息在最内层, 响应缓存、请求合并改写的方法需要序列化后的字节, 仍按字节传递
+     */
+    private static ServerServiceDefinition wrap(ServerServiceDefinition serverServiceDefinition, DefaultGrpcServerResponseCache cache,
+                                                DefaultGrpcServerRequestCoalescer coalescer, DefaultGrpcServerInProcessEndpoint endpoint,
+                                                Predicate<String> zeroCopyMethodFilter) {
+        if(zeroCopyMethodFilter != null) {
+            serverServiceDefinition = DefaultGrpcZeroCopyMarshaller.apply(serverServiceDefinition, zeroCopyMethodFilter);
+        }
+        if(endpoint != null) {
+            serverServiceDefinition = endpoint.shareMessages(serverServiceDefinition);
+        }
+        if(coalescer != null) {
+            serverServiceDefinition = coalescer.wrap(serverServiceDefinition);
+        }
+        if(cache != null) {
+            serverServiceDefinition = cache.wrap(serverServiceDefinition);
+        }
+        return serverServiceDefinition;
+    }
+
     private static final Logger LOGGER = getLogger(DefaultGrpcServerBizServiceFinder.class);
 }
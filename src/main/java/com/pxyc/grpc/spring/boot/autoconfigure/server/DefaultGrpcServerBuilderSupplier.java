@@ -2,8 +2,18 @@ package com.pxyc.grpc.spring.boot.autoconfigure.server;
 
 import com.google.common.base.Strings;
 
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcByteBufAllocators;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionCodecs;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionPolicy;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcEventLoopGroups;
 import io.grpc.ServerBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.buffer.ByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.unix.DomainSocketAddress;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,46 +21,110 @@ import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
-
+/**
+ * 应用配置创建 ServerBuilder, 监听 {@link DefaultGrpcServerConfigProps#getHost() host}:{@link DefaultGrpcServerConfigProps#getPort() port}、
+ * {@link DefaultGrpcServerConfigProps.DomainSocketConfig#getPath() Unix domain socket} 或 {@link DefaultGrpcServerInProcessEndpoint in-process 名称}
+ */
 class DefaultGrpcServerBuilderSupplier implements Supplier<ServerBuilder<?>>, ApplicationContextAware {
     private final DefaultGrpcServerConfigProps props;
     private final List<? extends GrpcServerInternalConfigurer> internalConfigurers;
+    private final DefaultGrpcEventLoopGroups domainSocketEventLoopGroups;
+    private final DefaultGrpcServerInProcessEndpoint inProcessEndpoint;
     private ApplicationContext applicationContext;
 
     public DefaultGrpcServerBuilderSupplier(DefaultGrpcServerConfigProps props,
                                             List<? extends GrpcServerInternalConfigurer> internalConfigurers) {
         this.props = props;
         this.internalConfigurers = internalConfigurers;
+        this.domainSocketEventLoopGroups = null;
+        this.inProcessEndpoint = null;
+    }
+
+    /**
+     * 监听 Unix domain socket 的 ServerBuilder 工厂
+     *
+     * @param eventLoopGroups 共用的事件循环, 必须为 epoll 传输
+     */
+    public DefaultGrpcServerBuilderSupplier(DefaultGrpcServerConfigProps props,
+                                            List<? extends GrpcServerInternalConfigurer> internalConfigurers,
+                                            DefaultGrpcEventLoopGroups eventLoopGroups) {
+        if(eventLoopGroups == null || eventLoopGroups.getTransport() != DefaultGrpcCommonConfigProps.EventLoopConfig.Transport.EPOLL) {
+            throw new RuntimeException("Unix domain socket listener requires shared event loop with epoll transport");
+        }
+        this.props = props;
+        this.internalConfigurers = internalConfigurers;
+        this.domainSocketEventLoopGroups = eventLoopGroups;
+        this.inProcessEndpoint = null;
+    }
+
+    /**
+     * 同一 JVM 内调用的 in-process ServerBuilder 工厂, 只应用与传输无关的配置
+     */
+    public DefaultGrpcServerBuilderSupplier(DefaultGrpcServerConfigProps props,
+                                            List<? extends GrpcServerInternalConfigurer> internalConfigurers,
+                                            DefaultGrpcServerInProcessEndpoint inProcessEndpoint) {
+        this.props = props;
+        this.internalConfigurers = internalConfigurers;
+        this.domainSocketEventLoopGroups = null;
+        this.inProcessEndpoint = inProcessEndpoint;
     }
 
     @Override
     public ServerBuilder<?> get() {
-        NettyServerBuilder builder = Strings.isNullOrEmpty(props.getHost()) ? NettyServerBuilder.forPort(props.getPort()) :
-                                     NettyServerBuilder.forAddress(new InetSocketAddress(props.getHost(), props.getPort()));
-        if(props.getCallLogEnabled() != null && props.getCallLogEnabled()) {
-            boolean needLog = true;
-            try {
-                Class.forName("org.apache.logging.log4j.Logger");
-//                builder.intercept(Log4j2ServerCallLoggingInterceptor.INSTANCE);
-                needLog = false;
-                LOGGER.info("grpc server using Log4j2ServerCallLoggingInterceptor");
-            } catch(ClassNotFoundException ignored) {}
-            if(needLog) {
-                try {
-                    Class.forName("org.slf4j.Logger");
-//                    builder.intercept(Slf4jServerCallLoggingInterceptor.INSTANCE);
-                    needLog = false;
-                    LOGGER.info("grpc client using Slf4jServerCallLoggingInterceptor");
-                } catch(ClassNotFoundException ignored) {}
+        ServerBuilder<?> builder = inProcessEndpoint == null ? newNettyServerBuilder() :
+                                   InProcessServerBuilder.forName(inProcessEndpoint.getName());
+        builder.compressorRegistry(DefaultGrpcCompressionCodecs.compressorRegistry())
+               .decompressorRegistry(DefaultGrpcCompressionCodecs.decompressorRegistry());
+        DefaultGrpcCompressionPolicy compressionPolicy = new DefaultGrpcCompressionPolicy(props.getCompression());
+        if(compressionPolicy.isEnabled()) {
+            builder.intercept(new DefaultGrpcServerCompressionInterceptor(compressionPolicy));
+        }
+        if(props.getMaxInboundMetadataSize() != null) {
+            builder.maxInboundMetadataSize(props.getMaxInboundMetadataSize());
+        }
+
+        boolean tcp = inProcessEndpoint == null && domainSocketEventLoopGroups == null;
+        for(GrpcServerInternalConfigurer configurer : internalConfigurers) {
+            // 多监听 socket 只适用于 TCP 端口
+            if(!tcp && configurer instanceof DefaultGrpcServerReusePortConfigurer) {
+                continue;
             }
+            configurer.accept(builder);
+        }
+        if(domainSocketEventLoopGroups != null) {
+            ((NettyServerBuilder) builder).bossEventLoopGroup(domainSocketEventLoopGroups.getBossGroup())
+                                          .workerEventLoopGroup(domainSocketEventLoopGroups.getWorkerGroup())
+                                          .channelType(EpollServerDomainSocketChannel.class);
         }
 
+        if(props.getConfigurerBeanNames() != null) {
+            for(String configurerBeanName : props.getConfigurerBeanNames()) {
+                @SuppressWarnings("unchecked") Consumer<ServerBuilder<?>> configurer =
+                        applicationContext.getBean(configurerBeanName, Consumer.class);
+                configurer.accept(builder);
+            }
+        }
+
+        return builder;
+    }
+
+    private NettyServerBuilder newNettyServerBuilder() {
+        NettyServerBuilder builder;
+        if(domainSocketEventLoopGroups != null) {
+            builder = NettyServerBuilder.forAddress(new DomainSocketAddress(deleteStaleSocketFile(props.getDomainSocket().getPath())));
+        } else {
+            builder = Strings.isNullOrEmpty(props.getHost()) ? NettyServerBuilder.forPort(props.getPort()) :
+                      NettyServerBuilder.forAddress(new InetSocketAddress(props.getHost(), props.getPort()));
+        }
         if(props.getMaxConcurrentCallsPerConnection() != null) {
             builder.maxConcurrentCallsPerConnection(props.getMaxConcurrentCallsPerConnection());
         }
@@ -63,9 +137,6 @@ class DefaultGrpcServerBuilderSupplier implements Supplier<ServerBuilder<?>>, Ap
         if(props.getMaxInboundMessageSize() != null) {
             builder.maxInboundMessageSize(props.getMaxInboundMessageSize());
         }
-        if(props.getMaxInboundMetadataSize() != null) {
-            builder.maxInboundMetadataSize(props.getMaxInboundMetadataSize());
-        }
         if(props.getKeepAliveTime() != null) {
             builder.keepAliveTime(props.getKeepAliveTime().toMillis(), TimeUnit.MILLISECONDS);
         }
@@ -90,20 +161,22 @@ class DefaultGrpcServerBuilderSupplier implements Supplier<ServerBuilder<?>>, Ap
         if(props.getHandshakeTimeout() != null) {
             builder.handshakeTimeout(props.getHandshakeTimeout().toMillis(), TimeUnit.MILLISECONDS);
         }
-
-        for(GrpcServerInternalConfigurer configurer : internalConfigurers) {
-            configurer.accept(builder);
+        ByteBufAllocator allocator = DefaultGrpcByteBufAllocators.getOrCreate(props.getAllocator());
+        if(allocator != null) {
+            builder.withOption(ChannelOption.ALLOCATOR, allocator).withChildOption(ChannelOption.ALLOCATOR, allocator);
         }
+        return builder;
+    }
 
-        if(props.getConfigurerBeanNames() != null) {
-            for(String configurerBeanName : props.getConfigurerBeanNames()) {
-                @SuppressWarnings("unchecked") Consumer<ServerBuilder<?>> configurer =
-                        applicationContext.getBean(configurerBeanName, Consumer.class);
-                configurer.accept(builder);
+    private static String deleteStaleSocketFile(String path) {
+        try {
+            if(Files.deleteIfExists(Paths.get(path))) {
+                LOGGER.info("Stale unix domain socket file [" + path + "] deleted");
             }
+        } catch(IOException e) {
+            throw new RuntimeException("Failed to delete unix domain socket file [" + path + "]", e);
         }
-
-        return builder;
+        return path;
     }
 
     @Override
@@ -0,0 +1,110 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCallLogSampler;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCallLogWriter;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMessageSizes;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 服务端调用日志拦截器, 记录方法、状态、耗时、请求及响应的消息数和字节数、对端地址.
+ * <p>
+ * 调用线程只做计数, 格式化和输出由 {@link DefaultGrpcCallLogWriter} 异步完成;
+ * 按 {@link DefaultGrpcCallLogSampler} 采样, 未采样且状态为 OK 的调用不输出.
+ */
+public class DefaultGrpcServerCallLoggingInterceptor implements ServerInterceptor {
+    private final DefaultGrpcCallLogSampler sampler;
+    private final DefaultGrpcCallLogWriter writer;
+
+    public DefaultGrpcServerCallLoggingInterceptor(DefaultGrpcCommonConfigProps.CallLogConfig config) {
+        this.sampler = new DefaultGrpcCallLogSampler(config);
+        this.writer = DefaultGrpcCallLogWriter.getInstance();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        boolean sampled = LOGGER.isInfoEnabled() && sampler.sample(call.getMethodDescriptor().getFullMethodName());
+        if(!sampled && !(sampler.isAlwaysLogErrors() && LOGGER.isWarnEnabled())) {
+            return next.startCall(call, headers);
+        }
+        LoggingServerCall<ReqT, RespT> loggingCall = new LoggingServerCall<>(call, sampled);
+        return new LoggingListener<>(next.startCall(loggingCall, headers), loggingCall);
+    }
+
+    private class LoggingServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+        private final boolean sampled;
+        private final long startNanos = System.nanoTime();
+        volatile int logged;
+        private int requestCount;
+        private long requestBytes;
+        private int responseCount;
+        private long responseBytes;
+
+        LoggingServerCall(ServerCall<ReqT, RespT> delegate, boolean sampled) {
+            super(delegate);
+            this.sampled = sampled;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            responseCount++;
+            responseBytes = DefaultGrpcMessageSizes.add(responseBytes, message);
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            log(status);
+            super.close(status, trailers);
+        }
+
+        void onRequest(Object message) {
+            requestCount++;
+            requestBytes = DefaultGrpcMessageSizes.add(requestBytes, message);
+        }
+
+        void log(Status status) {
+            if(!LOGGED_UPDATER.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            if(!sampled && status.isOk()) {
+                return;
+            }
+            writer.publish(LOGGER, SIDE, getMethodDescriptor().getFullMethodName(), status, System.nanoTime() - startNanos,
+                           requestCount, requestBytes, responseCount, responseBytes,
+                           getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR));
+        }
+    }
+
+    private static class LoggingListener<ReqT> extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+        private final LoggingServerCall<ReqT, ?> call;
+
+        LoggingListener(ServerCall.Listener<ReqT> delegate, LoggingServerCall<ReqT, ?> call) {
+            super(delegate);
+            this.call = call;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            call.onRequest(message);
+            super.onMessage(message);
+        }
+
+        @Override
+        public void onCancel() {
+            call.log(Status.CANCELLED);
+            super.onCancel();
+        }
+    }
+
+    private static final String SIDE = "server";
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<LoggingServerCall> LOGGED_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(LoggingServerCall.class, "logged");
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcServerCallLoggingInterceptor.class);
+}
@@ -0,0 +1,47 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionPolicy;
+import io.grpc.*;
+
+/**
+ * 按方法压缩响应消息, 客户端的 grpc-accept-encoding 不包含所配编码时不压缩; 小于阈值的消息单独关闭压缩.
+ * <p>
+ * 请求消息的解压由 ServerBuilder 上注册的 {@link com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionCodecs 编码} 完成, 与本拦截器无关.
+ */
+public class DefaultGrpcServerCompressionInterceptor implements ServerInterceptor {
+    private final DefaultGrpcCompressionPolicy policy;
+
+    public DefaultGrpcServerCompressionInterceptor(DefaultGrpcCompressionPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        DefaultGrpcCompressionPolicy.MethodPolicy methodPolicy = policy.resolve(call.getMethodDescriptor().getFullMethodName());
+        String encoding = methodPolicy.getEncoding();
+        if(encoding == null || !DefaultGrpcCompressionPolicy.accepts(headers.get(ACCEPT_ENCODING_KEY), encoding)) {
+            return next.startCall(call, headers);
+        }
+        // 须在发送响应头之前设置
+        call.setCompression(encoding);
+        return next.startCall(new CompressionServerCall<>(call, methodPolicy.getMinMessageSize()), headers);
+    }
+
+    private static class CompressionServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+        private final int minMessageSize;
+
+        CompressionServerCall(ServerCall<ReqT, RespT> delegate, int minMessageSize) {
+            super(delegate);
+            this.minMessageSize = minMessageSize;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            delegate().setMessageCompression(DefaultGrpcCompressionPolicy.shouldCompress(message, minMessageSize));
+            super.sendMessage(message);
+        }
+    }
+
+    private static final Metadata.Key<String> ACCEPT_ENCODING_KEY = Metadata.Key.of("grpc-accept-encoding", Metadata.ASCII_STRING_MARSHALLER);
+}
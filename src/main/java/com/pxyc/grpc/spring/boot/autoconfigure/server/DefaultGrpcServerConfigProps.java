@@ -1,10 +1,15 @@
 package com.pxyc.grpc.spring.boot.autoconfigure.server;
 
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
 import io.grpc.ServerBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 
 import java.net.SocketAddress;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 
@@ -96,10 +101,128 @@ public class DefaultGrpcServerConfigProps {
     private Duration handshakeTimeout;
 
     /**
-     * 是否启用 grpc 客户端调用日志
+     * Unix domain socket 监听配置
+     */
+    private DomainSocketConfig domainSocket = new DomainSocketConfig();
+
+    /**
+     * 同一 JVM 内调用的 in-process 配置
+     *
+     * @see DefaultGrpcServerInProcessEndpoint
+     */
+    private InProcessConfig inProcess = new InProcessConfig();
+
+    /**
+     * 同一端口多个监听 socket 配置
+     *
+     * @see DefaultGrpcServerReusePortConfigurer
+     */
+    private ReusePortConfig reusePort = new ReusePortConfig();
+
+    /**
+     * 服务隔离线程池, Key 为线程池名称, 供 {@link #executorBindings} 引用
+     *
+     * @see DefaultGrpcServerExecutorRouter
+     */
+    private Map<String, DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig> executors = new HashMap<>();
+
+    /**
+     * 服务/方法与执行器的绑定, 未绑定的服务使用共用线程池.
+     * Key 为服务全名(如 {@code [helloworld.Greeter]}) 或方法全名(如 {@code [helloworld.Greeter/SayHello]}), 方法级优先;
+     * Value 为 {@link #executors} 中的线程池名称, 或 {@value DefaultGrpcServerExecutorRouter#DIRECT} 表示直接在 Netty 事件循环线程上执行
+     *
+     * @see DefaultGrpcServerExecutorRouter
+     */
+    private Map<String, String> executorBindings = new HashMap<>();
+
+    /**
+     * 自适应降载配置
+     *
+     * @see DefaultGrpcServerLoadSheddingInterceptor
+     */
+    private LoadSheddingConfig loadShedding = new LoadSheddingConfig();
+
+    /**
+     * ByteBuf 分配器配置
+     */
+    private DefaultGrpcCommonConfigProps.AllocatorConfig allocator = new DefaultGrpcCommonConfigProps.AllocatorConfig();
+
+    /**
+     * 堆外内存保护配置
+     *
+     * @see DefaultGrpcServerDirectMemoryGuardInterceptor
+     */
+    private DirectMemoryGuardConfig directMemoryGuard = new DirectMemoryGuardConfig();
+
+    /**
+     * 响应缓存配置
+     *
+     * @see DefaultGrpcServerResponseCache
+     */
+    private ResponseCacheConfig responseCache = new ResponseCacheConfig();
+
+    /**
+     * 相同请求合并执行配置
+     *
+     * @see DefaultGrpcServerRequestCoalescer
+     */
+    private CoalescingConfig coalescing = new CoalescingConfig();
+
+    /**
+     * 令牌桶限流配置, 支持配置中心刷新
+     *
+     * @see DefaultGrpcServerRateLimiter
+     */
+    private RateLimitConfig rateLimit = new RateLimitConfig();
+
+    /**
+     * 使用零拷贝 marshaller 的服务或方法全名, {@code *} 表示全部, 适用于带大 bytes 字段的 protobuf 消息
+     *
+     * @see com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcZeroCopyMarshaller
+     */
+    private List<String> zeroCopyMethods = new ArrayList<>();
+
+    /**
+     * 响应消息压缩策略, 默认不压缩; 请求消息按客户端所用编码解压, 支持的编码见
+     * {@link com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCompressionCodecs}
+     *
+     * @see DefaultGrpcServerCompressionInterceptor
+     */
+    private DefaultGrpcCommonConfigProps.CompressionConfig compression = new DefaultGrpcCommonConfigProps.CompressionConfig();
+
+    /**
+     * ORCA 负载上报及按负载切换健康状态
+     *
+     * @see DefaultGrpcServerLoadReporter
+     */
+    private LoadReportConfig loadReport = new LoadReportConfig();
+
+    /**
+     * 是否注册 gRPC 反射服务, 生产环境不需要时可关闭以减少启动工作及暴露的接口
+     *
+     * @see io.grpc.protobuf.services.ProtoReflectionService
+     */
+    private boolean reflectionEnabled = true;
+
+    /**
+     * 停止时的优雅下线配置
+     *
+     * @see DefaultGrpcServerLifecycle
+     */
+    private ShutdownConfig shutdown = new ShutdownConfig();
+
+    /**
+     * 是否启用 grpc 服务端调用日志
+     *
+     * @see DefaultGrpcServerCallLoggingInterceptor
      */
     private Boolean callLogEnabled;
 
+    /**
+     * 调用日志采样配置
+     */
+    private DefaultGrpcCommonConfigProps.CallLogConfig callLog = new DefaultGrpcCommonConfigProps.CallLogConfig();
+
     /**
      * 此 {@link ServerBuilder} 配置器的 beanName,
      * 配置器 bean 的类型必须为 {@code Consumer<ServerBuilder<?>>}
@@ -228,6 +351,134 @@ public class DefaultGrpcServerConfigProps {
         this.handshakeTimeout = handshakeTimeout;
     }
 
+    public Map<String, DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig> getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(Map<String, DefaultGrpcCommonConfigProps.ThreadPoolExecutorConfig> executors) {
+        this.executors = executors;
+    }
+
+    public Map<String, String> getExecutorBindings() {
+        return executorBindings;
+    }
+
+    public void setExecutorBindings(Map<String, String> executorBindings) {
+        this.executorBindings = executorBindings;
+    }
+
+    public LoadSheddingConfig getLoadShedding() {
+        return loadShedding;
+    }
+
+    public void setLoadShedding(LoadSheddingConfig loadShedding) {
+        this.loadShedding = loadShedding;
+    }
+
+    public DefaultGrpcCommonConfigProps.AllocatorConfig getAllocator() {
+        return allocator;
+    }
+
+    public void setAllocator(DefaultGrpcCommonConfigProps.AllocatorConfig allocator) {
+        this.allocator = allocator;
+    }
+
+    public DirectMemoryGuardConfig getDirectMemoryGuard() {
+        return directMemoryGuard;
+    }
+
+    public void setDirectMemoryGuard(DirectMemoryGuardConfig directMemoryGuard) {
+        this.directMemoryGuard = directMemoryGuard;
+    }
+
+    public ResponseCacheConfig getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(ResponseCacheConfig responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public CoalescingConfig getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(CoalescingConfig coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public RateLimitConfig getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimitConfig rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public DomainSocketConfig getDomainSocket() {
+        return domainSocket;
+    }
+
+    public void setDomainSocket(DomainSocketConfig domainSocket) {
+        this.domainSocket = domainSocket;
+    }
+
+    public List<String> getZeroCopyMethods() {
+        return zeroCopyMethods;
+    }
+
+    public void setZeroCopyMethods(List<String> zeroCopyMethods) {
+        this.zeroCopyMethods = zeroCopyMethods;
+    }
+
+    public DefaultGrpcCommonConfigProps.CompressionConfig getCompression() {
+        return compression;
+    }
+
+    public void setCompression(DefaultGrpcCommonConfigProps.CompressionConfig compression) {
+        this.compression = compression;
+    }
+
+    public LoadReportConfig getLoadReport() {
+        return loadReport;
+    }
+
+    public void setLoadReport(LoadReportConfig loadReport) {
+        this.loadReport = loadReport;
+    }
+
+    public InProcessConfig getInProcess() {
+        return inProcess;
+    }
+
+    public void setInProcess(InProcessConfig inProcess) {
+        this.inProcess = inProcess;
+    }
+
+    public ReusePortConfig getReusePort() {
+        return reusePort;
+    }
+
+    public void setReusePort(ReusePortConfig reusePort) {
+        this.reusePort = reusePort;
+    }
+
+    public boolean isReflectionEnabled() {
+        return reflectionEnabled;
+    }
+
+    public void setReflectionEnabled(boolean reflectionEnabled) {
+        this.reflectionEnabled = reflectionEnabled;
+    }
+
+    public ShutdownConfig getShutdown() {
+        return shutdown;
+    }
+
+    public void setShutdown(ShutdownConfig shutdown) {
+        this.shutdown = shutdown;
+    }
+
     public Boolean getCallLogEnabled() {
         return callLogEnabled;
     }
@@ -236,6 +487,14 @@ public class DefaultGrpcServerConfigProps {
         this.callLogEnabled = callLogEnabled;
     }
 
+    public DefaultGrpcCommonConfigProps.CallLogConfig getCallLog() {
+        return callLog;
+    }
+
+    public void setCallLog(DefaultGrpcCommonConfigProps.CallLogConfig callLog) {
+        this.callLog = callLog;
+    }
+
     public String[] getConfigurerBeanNames() {
         return configurerBeanNames;
     }
@@ -251,4 +510,640 @@ public class DefaultGrpcServerConfigProps {
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
+
+    public static class LoadSheddingConfig {
+        /**
+         * 是否启用自适应降载
+         */
+        private boolean enabled = true;
+
+        /**
+         * 进程 CPU 使用率阈值, 取值 (0, 1], 超过后开始根据并发数判断是否降载
+         */
+        private double cpuThreshold = 0.9;
+
+        /**
+         * 降载发生后的冷却时间, 冷却期内即使 CPU 回落也继续按并发数判断
+         */
+        private Duration coolOff = Duration.ofSeconds(1);
+
+        /**
+         * 统计通过数和耗时的滑动窗口长度
+         */
+        private Duration window = Duration.ofSeconds(5);
+
+        /**
+         * 滑动窗口的桶数量
+         */
+        private int buckets = 50;
+
+        /**
+         * CPU 使用率采样间隔
+         */
+        private Duration cpuSampleInterval = Duration.ofMillis(250);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getCpuThreshold() {
+            return cpuThreshold;
+        }
+
+        public void setCpuThreshold(double cpuThreshold) {
+            this.cpuThreshold = cpuThreshold;
+        }
+
+        public Duration getCoolOff() {
+            return coolOff;
+        }
+
+        public void setCoolOff(Duration coolOff) {
+            this.coolOff = coolOff;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getBuckets() {
+            return buckets;
+        }
+
+        public void setBuckets(int buckets) {
+            this.buckets = buckets;
+        }
+
+        public Duration getCpuSampleInterval() {
+            return cpuSampleInterval;
+        }
+
+        public void setCpuSampleInterval(Duration cpuSampleInterval) {
+            this.cpuSampleInterval = cpuSampleInterval;
+        }
+    }
+
+    public static class DirectMemoryGuardConfig {
+        /**
+         * 是否启用堆外内存保护
+         */
+        private boolean enabled = false;
+
+        /**
+         * 堆外内存用量占上限的比例阈值, 取值 (0, 1], 超过后新调用直接返回 RESOURCE_EXHAUSTED
+         */
+        private double threshold = 0.9;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(double threshold) {
+            this.threshold = threshold;
+        }
+    }
+
+    public static class ResponseCacheConfig {
+        /**
+         * 是否启用响应缓存
+         */
+        private boolean enabled = false;
+
+        /**
+         * 需要缓存的方法, Key 为完整方法名 (如 {@code com.xxx.ItemService/Get}) 或服务名 (如 {@code com.xxx.ItemService}),
+         * 完整方法名优先, 按服务名配置时服务内的方法共用一个缓存; 仅支持 unary 方法
+         */
+        private Map<String, MethodCacheConfig> methods = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Map<String, MethodCacheConfig> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(Map<String, MethodCacheConfig> methods) {
+            this.methods = methods;
+        }
+    }
+
+    public static class MethodCacheConfig {
+        /**
+         * 缓存有效期, 从写入时开始计算
+         */
+        private Duration ttl = Duration.ofSeconds(10);
+
+        /**
+         * 缓存占用的最大字节数, 按请求和响应序列化后的大小计算
+         */
+        private long maxBytes = 64L * 1024 * 1024;
+
+        /**
+         * 参与缓存 Key 计算的请求头, 响应因调用方而异时 (如按用户返回不同结果) 需要配置
+         */
+        private List<String> metadataKeys = new ArrayList<>();
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public List<String> getMetadataKeys() {
+            return metadataKeys;
+        }
+
+        public void setMetadataKeys(List<String> metadataKeys) {
+            this.metadataKeys = metadataKeys;
+        }
+    }
+
+    public static class CoalescingConfig {
+        /**
+         * 是否启用相同请求合并执行
+         */
+        private boolean enabled = false;
+
+        /**
+         * 需要合并的方法, Key 为完整方法名 (如 {@code com.xxx.ItemService/Get}) 或服务名 (如 {@code com.xxx.ItemService}),
+         * 完整方法名优先; 仅支持 unary 方法
+         */
+        private Map<String, CoalescingMethodConfig> methods = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Map<String, CoalescingMethodConfig> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(Map<String, CoalescingMethodConfig> methods) {
+            this.methods = methods;
+        }
+    }
+
+    public static class CoalescingMethodConfig {
+        /**
+         * 参与判断请求是否相同的请求头, 响应因调用方而异时需要配置
+         */
+        private List<String> metadataKeys = new ArrayList<>();
+
+        public List<String> getMetadataKeys() {
+            return metadataKeys;
+        }
+
+        public void setMetadataKeys(List<String> metadataKeys) {
+            this.metadataKeys = metadataKeys;
+        }
+    }
+
+    public static class RateLimitConfig {
+        /**
+         * 是否启用限流
+         */
+        private boolean enabled = false;
+
+        /**
+         * 标识调用方的请求头, 未配置或请求中不存在时使用对端 IP
+         */
+        private String callerHeader;
+
+        /**
+         * 每个方法保留的调用方令牌桶数量上限, 超出后淘汰最久未使用的
+         */
+        private long maxCallers = 10000;
+
+        /**
+         * 调用方令牌桶闲置超过此时间后回收
+         */
+        private Duration callerIdleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * 限流规则, Key 为完整方法名 (如 {@code com.xxx.ItemService/Get})、服务名 (如 {@code com.xxx.ItemService})
+         * 或 {@value DefaultGrpcServerRateLimiter#ANY} 表示其余所有方法, 依次匹配
+         */
+        private Map<String, RateLimitRule> rules = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getCallerHeader() {
+            return callerHeader;
+        }
+
+        public void setCallerHeader(String callerHeader) {
+            this.callerHeader = callerHeader;
+        }
+
+        public long getMaxCallers() {
+            return maxCallers;
+        }
+
+        public void setMaxCallers(long maxCallers) {
+            this.maxCallers = maxCallers;
+        }
+
+        public Duration getCallerIdleTimeout() {
+            return callerIdleTimeout;
+        }
+
+        public void setCallerIdleTimeout(Duration callerIdleTimeout) {
+            this.callerIdleTimeout = callerIdleTimeout;
+        }
+
+        public Map<String, RateLimitRule> getRules() {
+            return rules;
+        }
+
+        public void setRules(Map<String, RateLimitRule> rules) {
+            this.rules = rules;
+        }
+    }
+
+    public static class RateLimitRule {
+        /**
+         * 方法每秒允许的调用数, 小于等于 0 不限制
+         */
+        private double permitsPerSecond;
+
+        /**
+         * 方法允许的突发调用数, 默认与每秒调用数相同
+         */
+        private Integer burst;
+
+        /**
+         * 每个调用方每秒允许的调用数, 小于等于 0 不按调用方限制
+         */
+        private double callerPermitsPerSecond;
+
+        /**
+         * 每个调用方允许的突发调用数, 默认与每秒调用数相同
+         */
+        private Integer callerBurst;
+
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public Integer getBurst() {
+            return burst;
+        }
+
+        public void setBurst(Integer burst) {
+            this.burst = burst;
+        }
+
+        public double getCallerPermitsPerSecond() {
+            return callerPermitsPerSecond;
+        }
+
+        public void setCallerPermitsPerSecond(double callerPermitsPerSecond) {
+            this.callerPermitsPerSecond = callerPermitsPerSecond;
+        }
+
+        public Integer getCallerBurst() {
+            return callerBurst;
+        }
+
+        public void setCallerBurst(Integer callerBurst) {
+            this.callerBurst = callerBurst;
+        }
+    }
+
+    public static class ShutdownConfig {
+        /**
+         * 等待停止回调 (如从注册中心注销) 完成的最长时间
+         */
+        private Duration callbackTimeout = Duration.ofSeconds(5);
+
+        /**
+         * 注销完成后继续接受调用的时间, 等待客户端感知实例下线
+         */
+        private Duration propagationDelay = Duration.ofSeconds(0);
+
+        /**
+         * 不再接受新调用后, 等待进行中的调用结束的最长时间, 超时后强制关闭
+         */
+        private Duration drainTimeout = Duration.ofSeconds(20);
+
+        public Duration getCallbackTimeout() {
+            return callbackTimeout;
+        }
+
+        public void setCallbackTimeout(Duration callbackTimeout) {
+            this.callbackTimeout = callbackTimeout;
+        }
+
+        public Duration getPropagationDelay() {
+            return propagationDelay;
+        }
+
+        public void setPropagationDelay(Duration propagationDelay) {
+            this.propagationDelay = propagationDelay;
+        }
+
+        public Duration getDrainTimeout() {
+            return drainTimeout;
+        }
+
+        public void setDrainTimeout(Duration drainTimeout) {
+            this.drainTimeout = drainTimeout;
+        }
+    }
+
+    public static class ReusePortConfig {
+        /**
+         * 是否以 SO_REUSEPORT 打开多个监听 socket, 需要共用事件循环 (best.grpc.common.event-loop.shared) 及 epoll 传输, 且端口固定
+         */
+        private boolean enabled = false;
+
+        /**
+         * 监听 socket 数量, 0 表示 CPU 核数; 应不多于 boss 线程数 (best.grpc.common.event-loop.boss-threads),
+         * 否则多个 socket 共用一个接受连接的线程. 数量为 1 时不开启 SO_REUSEPORT
+         */
+        private int listeners = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getListeners() {
+            return listeners;
+        }
+
+        public void setListeners(int listeners) {
+            this.listeners = listeners;
+        }
+    }
+
+    public static class DomainSocketConfig {
+        /**
+         * Unix domain socket 文件路径, 配置后在此路径上监听, 需要共用事件循环 (best.grpc.common.event-loop.shared) 及 epoll 传输;
+         * 启动时删除已存在的同名文件
+         */
+        private String path;
+
+        /**
+         * 配置了 {@link #path} 时是否仍监听 TCP 地址
+         */
+        private boolean tcpEnabled = true;
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public boolean isTcpEnabled() {
+            return tcpEnabled;
+        }
+
+        public void setTcpEnabled(boolean tcpEnabled) {
+            this.tcpEnabled = tcpEnabled;
+        }
+    }
+
+    public static class InProcessConfig {
+        /**
+         * 是否同时启动 in-process Server, 开启后本进程客户端 target 指向本 Server 的 Channel 自动改用 in-process 传输.
+         * in-process Server 与 TCP Server 使用相同的配置器, configurer-bean-names 中的配置器收到的是
+         * {@link io.grpc.inprocess.InProcessServerBuilder}
+         */
+        private boolean enabled = false;
+
+        /**
+         * 按引用传递消息、跳过序列化的服务或方法全名, {@code *} 表示全部; 只适用于非 protobuf 且不可变的消息,
+         * protobuf 消息本身已按引用传递
+         *
+         * @see com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcSharedMessages
+         */
+        private List<String> sharedMessageMethods = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getSharedMessageMethods() {
+            return sharedMessageMethods;
+        }
+
+        public void setSharedMessageMethods(List<String> sharedMessageMethods) {
+            this.sharedMessageMethods = sharedMessageMethods;
+        }
+    }
+
+    public static class LoadReportConfig {
+        /**
+         * 是否上报 ORCA 负载
+         */
+        private boolean enabled = false;
+
+        /**
+         * 负载快照的刷新间隔
+         */
+        private Duration interval = Duration.ofSeconds(1);
+
+        /**
+         * 统计 QPS 和错误数的滑动窗口长度
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * 是否在每个调用的 trailer 中附带负载
+         */
+        private boolean perCallEnabled = true;
+
+        /**
+         * 是否注册带外上报服务 xds.service.orca.v3.OpenRcaService
+         */
+        private boolean oobEnabled = true;
+
+        /**
+         * 带外上报的最小间隔, 客户端请求的间隔小于该值时按该值推送
+         */
+        private Duration minOobInterval = Duration.ofSeconds(1);
+
+        /**
+         * 按负载切换健康状态
+         */
+        private LoadHealthConfig health = new LoadHealthConfig();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public boolean isPerCallEnabled() {
+            return perCallEnabled;
+        }
+
+        public void setPerCallEnabled(boolean perCallEnabled) {
+            this.perCallEnabled = perCallEnabled;
+        }
+
+        public boolean isOobEnabled() {
+            return oobEnabled;
+        }
+
+        public void setOobEnabled(boolean oobEnabled) {
+            this.oobEnabled = oobEnabled;
+        }
+
+        public Duration getMinOobInterval() {
+            return minOobInterval;
+        }
+
+        public void setMinOobInterval(Duration minOobInterval) {
+            this.minOobInterval = minOobInterval;
+        }
+
+        public LoadHealthConfig getHealth() {
+            return health;
+        }
+
+        public void setHealth(LoadHealthConfig health) {
+            this.health = health;
+        }
+    }
+
+    public static class LoadHealthConfig {
+        /**
+         * 是否在持续过载时将健康状态置为 NOT_SERVING
+         */
+        private boolean enabled = false;
+
+        /**
+         * 进程 CPU 使用率阈值, 取值 (0, 1]
+         */
+        private double cpuThreshold = 0.95;
+
+        /**
+         * 执行器排队任务数阈值, 为 0 时不按排队判断
+         */
+        private int queueThreshold = 0;
+
+        /**
+         * 持续过载多久后置为 NOT_SERVING
+         */
+        private Duration overloadDuration = Duration.ofSeconds(10);
+
+        /**
+         * 持续正常多久后恢复 SERVING
+         */
+        private Duration recoveryDuration = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getCpuThreshold() {
+            return cpuThreshold;
+        }
+
+        public void setCpuThreshold(double cpuThreshold) {
+            this.cpuThreshold = cpuThreshold;
+        }
+
+        public int getQueueThreshold() {
+            return queueThreshold;
+        }
+
+        public void setQueueThreshold(int queueThreshold) {
+            this.queueThreshold = queueThreshold;
+        }
+
+        public Duration getOverloadDuration() {
+            return overloadDuration;
+        }
+
+        public void setOverloadDuration(Duration overloadDuration) {
+            this.overloadDuration = overloadDuration;
+        }
+
+        public Duration getRecoveryDuration() {
+            return recoveryDuration;
+        }
+
+        public void setRecoveryDuration(Duration recoveryDuration) {
+            this.recoveryDuration = recoveryDuration;
+        }
+    }
 }
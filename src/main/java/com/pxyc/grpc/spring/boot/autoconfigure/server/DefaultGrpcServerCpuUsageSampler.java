@@ -0,0 +1,66 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import org.slf4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * 定时采样本进程的 CPU 使用率, 并做指数滑动平均, 取值范围 [0, 1]
+ * <p>
+ * 优先使用 {@code com.sun.management.OperatingSystemMXBean#getProcessCpuLoad()},
+ * 不可用时退化为 {@link OperatingSystemMXBean#getSystemLoadAverage() 系统负载} / 可用核数.
+ */
+public class DefaultGrpcServerCpuUsageSampler {
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final ScheduledExecutorService scheduler;
+    private volatile double cpuUsage;
+
+    public DefaultGrpcServerCpuUsageSampler(Duration interval) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GrpcServerCpuUsageSampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 平滑后的进程 CPU 使用率, 1 表示所有可用核均被占满
+     */
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        try {
+            double current = readCpuUsage();
+            if(current >= 0) {
+                cpuUsage = cpuUsage * BETA + current * (1 - BETA);
+            }
+        } catch(Throwable t) {
+            LOGGER.warn("Sample cpu usage error", t);
+        }
+    }
+
+    private double readCpuUsage() {
+        if(osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+        }
+        double loadAverage = osBean.getSystemLoadAverage();
+        return loadAverage < 0 ? -1 : Math.min(1, loadAverage / osBean.getAvailableProcessors());
+    }
+
+    private static final double BETA = 0.95;
+    private static final Logger LOGGER = getLogger(DefaultGrpcServerCpuUsageSampler.class);
+}
@@ -0,0 +1,42 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcByteBufAllocators;
+import io.grpc.*;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 堆外内存保护拦截器.
+ * <p>
+ * 进程堆外内存用量超过上限的一定比例时, 直接以 {@link Status#RESOURCE_EXHAUSTED} 拒绝新调用,
+ * 让已在处理中的调用释放内存, 而不是继续接收大消息直到进程因 OOM 被杀死.
+ */
+public class DefaultGrpcServerDirectMemoryGuardInterceptor implements ServerInterceptor {
+    private final long limitBytes;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public DefaultGrpcServerDirectMemoryGuardInterceptor(DefaultGrpcServerConfigProps.DirectMemoryGuardConfig config) {
+        this.limitBytes = (long) (DefaultGrpcByteBufAllocators.maxDirectMemory() * config.getThreshold());
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        long used = DefaultGrpcByteBufAllocators.usedDirectMemory();
+        if(used > limitBytes) {
+            rejectedCount.increment();
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription(
+                "Direct memory used " + used + " bytes exceeds limit " + limitBytes + " bytes"), new Metadata());
+            return new ServerCall.Listener<ReqT>() {};
+        }
+        return next.startCall(call, headers);
+    }
+
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
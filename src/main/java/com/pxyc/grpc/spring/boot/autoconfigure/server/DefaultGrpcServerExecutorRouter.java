@@ -0,0 +1,290 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcExecutors;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcThreadPoolExecutor;
+import com.pxyc.grpc.spring.boot.autoconfigure.GrpcDeadlineTask;
+import io.grpc.*;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * 按服务/方法将调用分派到各自的执行器上.
+ * <p>
+ * 未配置任何绑定时, 行为与直接使用共用线程池一致;
+ * 配置了绑定时, Server 默认执行器被设为 direct, 方法查找在 Netty 事件循环线程上完成,
+ * 再由 {@link #getExecutor(ServerCall, Metadata)} 切换到绑定的隔离线程池、共用线程池或继续留在事件循环线程上.
+ * <p>
+ * 目标线程池感知 deadline 时, 调用的任务会带上调用的 deadline; 调用已超时、已取消或被队列丢弃时,
+ * 尚未开始执行的调用直接丢弃, 已开始的调用不再把请求消息交给业务处理, 只保留取消/完成通知.
+ * <p>
+ * 配置了限流器时, 在分派前获取令牌, 超限的调用留在事件循环线程上由 {@link DefaultGrpcServerRateLimiter} 直接结束.
+ *
+ * @see DefaultGrpcServerConfigProps#getExecutors()
+ * @see DefaultGrpcServerConfigProps#getExecutorBindings()
+ */
+public class DefaultGrpcServerExecutorRouter implements GrpcServerInternalConfigurer, ServerCallExecutorSupplier {
+    private final Executor defaultExecutor;
+    private final Map<String, String> bindings;
+    private final Map<String, ExecutorService> executors;
+    private final Map<String, Executor> methodExecutors = new ConcurrentHashMap<>();
+    private final DefaultGrpcServerRateLimiter rateLimiter;
+
+    public DefaultGrpcServerExecutorRouter(Executor defaultExecutor, DefaultGrpcServerConfigProps props) {
+        this(defaultExecutor, props, null);
+    }
+
+    public DefaultGrpcServerExecutorRouter(Executor defaultExecutor, DefaultGrpcServerConfigProps props,
+                                           DefaultGrpcServerRateLimiter rateLimiter) {
+        this.defaultExecutor = defaultExecutor;
+        this.rateLimiter = rateLimiter;
+        this.bindings = ImmutableMap.copyOf(props.getExecutorBindings());
+
+        ImmutableMap.Builder<String, ExecutorService> executorsBuilder = ImmutableMap.builder();
+        props.getExecutors().forEach((name, config) -> {
+            if(DIRECT.equals(name)) {
+                throw new RuntimeException("Executor name [" + DIRECT + "] is reserved");
+            }
+            executorsBuilder.put(name, DefaultGrpcExecutors.newExecutor(config, config.getThreadNamePrefix() + "-" + name));
+        });
+        this.executors = executorsBuilder.build();
+
+        bindings.forEach((key, executorName) -> {
+            if(!DIRECT.equals(executorName) && !executors.containsKey(executorName)) {
+                throw new RuntimeException("Unknown executor [" + executorName + "] bound to [" + key + "]");
+            }
+        });
+    }
+
+    /**
+     * 解析服务下每个方法所绑定的执行器, 方法级绑定优先于服务级绑定
+     */
+    public void bind(ServerServiceDefinition serviceDefinition) {
+        String serviceName = serviceDefinition.getServiceDescriptor().getName();
+        for(ServerMethodDefinition<?, ?> method : serviceDefinition.getMethods()) {
+            String fullMethodName = method.getMethodDescriptor().getFullMethodName();
+            String executorName = bindings.get(fullMethodName);
+            if(executorName == null) {
+                executorName = bindings.get(serviceName);
+            }
+            if(executorName == null) {
+                continue;
+            }
+            methodExecutors.put(fullMethodName, DIRECT.equals(executorName) ? MoreExecutors.directExecutor() : executors.get(executorName));
+            LOGGER.info("Grpc method [" + fullMethodName + "] bound to executor [" + executorName + "]");
+        }
+    }
+
+    @Override
+    public void accept(ServerBuilder<?> serverBuilder) {
+        if(bindings.isEmpty() && !isDeadlineAware(defaultExecutor) && rateLimiter == null) {
+            serverBuilder.executor(defaultExecutor);
+        } else {
+            serverBuilder.directExecutor().callExecutor(this);
+            if(rateLimiter != null) {
+                rateLimiter.setCheckedBeforeDispatch(true);
+            }
+        }
+        if(isDeadlineAware(defaultExecutor) || executors.values().stream().anyMatch(DefaultGrpcServerExecutorRouter::isDeadlineAware)) {
+            serverBuilder.intercept(new ExpiredCallFilter());
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+        if(rateLimiter != null && !rateLimiter.admitBeforeDispatch(call, metadata)) {
+            return MoreExecutors.directExecutor();
+        }
+        Executor executor = resolve(call.getMethodDescriptor().getFullMethodName());
+        // 此方法在调用的 Context 中执行
+        return isDeadlineAware(executor) ? new DeadlineCallExecutor((DefaultGrpcThreadPoolExecutor) executor, Context.current()) :
+               executor;
+    }
+
+    /**
+     * 配置的隔离线程池, Key 为线程池名称
+     */
+    public Map<String, ExecutorService> getExecutors() {
+        return executors;
+    }
+
+    public void shutdown() {
+        for(ExecutorService executor : executors.values()) {
+            executor.shutdown();
+        }
+        for(Map.Entry<String, ExecutorService> entry : executors.entrySet()) {
+            try {
+                if(!entry.getValue().awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Executor [" + entry.getKey() + "] not terminated in " + SHUTDOWN_TIMEOUT_SECONDS + "s");
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Executor resolve(String fullMethodName) {
+        Executor executor = methodExecutors.get(fullMethodName);
+        return executor == null ? defaultExecutor : executor;
+    }
+
+    private static boolean isExpired(Context context) {
+        Deadline deadline = context.getDeadline();
+        return context.isCancelled() || (deadline != null && deadline.isExpired());
+    }
+
+    private static boolean isDeadlineAware(Executor executor) {
+        return executor instanceof DefaultGrpcThreadPoolExecutor && ((DefaultGrpcThreadPoolExecutor) executor).isDeadlineAware();
+    }
+
+    /**
+     * 单个调用的执行器, 调用的所有任务经 SerializingExecutor 串行提交到此
+     */
+    private static class DeadlineCallExecutor implements Executor {
+        private final DefaultGrpcThreadPoolExecutor delegate;
+        private final Context context;
+        private final long deadlineNanos;
+        private volatile boolean dispatched;
+        private volatile boolean shed;
+
+        DeadlineCallExecutor(DefaultGrpcThreadPoolExecutor delegate, Context context) {
+            this.delegate = delegate;
+            this.context = context;
+            Deadline deadline = context.getDeadline();
+            this.deadlineNanos = deadline == null ? GrpcDeadlineTask.NO_DEADLINE :
+                                 System.nanoTime() + deadline.timeRemaining(TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if(shouldDrop()) {
+                delegate.getMetrics().recordShed();
+                return;
+            }
+            delegate.execute(new DeadlineTask(command));
+        }
+
+        /**
+         * 只丢弃尚未开始执行且已超时或已取消的调用, 传输层会负责结束这些调用;
+         * 已开始的调用需要继续执行后续任务, 以便业务收到取消通知
+         */
+        private boolean shouldDrop() {
+            if(dispatched) {
+                return false;
+            }
+            return isExpired(context);
+        }
+
+        private class DeadlineTask implements GrpcDeadlineTask {
+            private final Runnable command;
+
+            DeadlineTask(Runnable command) {
+                this.command = command;
+            }
+
+            @Override
+            public long getDeadlineNanos() {
+                return deadlineNanos;
+            }
+
+            /**
+             * 由 {@link ExpiredCallFilter} 在调用线程上以 RESOURCE_EXHAUSTED 结束调用
+             */
+            @Override
+            public void shed() {
+                shed = true;
+            }
+
+            @Override
+            public void run() {
+                if(shouldDrop()) {
+                    delegate.getMetrics().recordShed();
+                    return;
+                }
+                dispatched = true;
+                CURRENT_CALL_EXECUTOR.set(DeadlineCallExecutor.this);
+                try {
+                    command.run();
+                } finally {
+                    CURRENT_CALL_EXECUTOR.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 调用已超时、已取消或被队列丢弃时, 不再把尚未交给业务的请求消息及 halfClose 交给业务;
+     * 被队列丢弃的调用在业务方法执行前以 RESOURCE_EXHAUSTED 结束
+     */
+    private static class ExpiredCallFilter implements ServerInterceptor {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                     ServerCallHandler<ReqT, RespT> next) {
+            // 调用的首个任务在 DeadlineTask 中执行, 未经感知 deadline 的线程池时为 null
+            DeadlineCallExecutor callExecutor = CURRENT_CALL_EXECUTOR.get();
+            if(callExecutor == null) {
+                return next.startCall(call, headers);
+            }
+            if(callExecutor.shed) {
+                callExecutor.delegate.getMetrics().recordShed();
+                call.close(SHED_STATUS, new Metadata());
+                return new ServerCall.Listener<ReqT>() {};
+            }
+            // 客户端流/双向流在 startCall 时业务方法已开始执行, 之后只能等待其自行结束
+            boolean handlerPending = call.getMethodDescriptor().getType().clientSendsOneMessage();
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(next.startCall(call, headers)) {
+                private boolean shed;
+
+                @Override
+                public void onMessage(ReqT message) {
+                    if(!shouldShed()) {
+                        super.onMessage(message);
+                    }
+                }
+
+                @Override
+                public void onHalfClose() {
+                    if(!shouldShed()) {
+                        super.onHalfClose();
+                    }
+                }
+
+                private boolean shouldShed() {
+                    if(shed) {
+                        return true;
+                    }
+                    if(isExpired(callExecutor.context)) {
+                        shed = true;
+                    } else if(callExecutor.shed && handlerPending) {
+                        shed = true;
+                        call.close(SHED_STATUS, new Metadata());
+                    }
+                    if(shed) {
+                        callExecutor.delegate.getMetrics().recordShed();
+                    }
+                    return shed;
+                }
+            };
+        }
+    }
+
+    /**
+     * 绑定为此值的服务/方法直接在 Netty 事件循环线程上执行, 仅适用于完全非阻塞的业务实现
+     */
+    public static final String DIRECT = "direct";
+
+    private static final Status SHED_STATUS = Status.RESOURCE_EXHAUSTED.withDescription("Shed by overloaded executor");
+    private static final ThreadLocal<DeadlineCallExecutor> CURRENT_CALL_EXECUTOR = new ThreadLocal<>();
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final Logger LOGGER = getLogger(DefaultGrpcServerExecutorRouter.class);
+}
@@ -0,0 +1,128 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.base.Strings;
+import com.google.common.net.HostAndPort;
+import com.google.common.net.InetAddresses;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMarshallers;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcSharedMessages;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcTargets;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.function.Predicate;
+
+/**
+ * 本进程 gRPC Server 的 in-process 入口, 客户端据此判断 target 是否指向本进程, 是则改用 in-process 传输直接调用,
+ * 省去 Netty 和 HTTP/2 的开销.
+ * <p>
+ * 以下 target 视为指向本进程: 主机为 localhost、回环地址、通配地址或本机网卡地址且端口与 {@link DefaultGrpcServerConfigProps#getPort() port}
+ * 相同 (可带 {@code dns:} 前缀), 或 {@code unix:} 路径与 {@link DefaultGrpcServerConfigProps.DomainSocketConfig#getPath() socket 文件} 相同.
+ * 经注册中心等其他名称解析的 target 不做判断.
+ */
+public class DefaultGrpcServerInProcessEndpoint {
+    private final String name = "best-grpc-server-" + InProcessServerBuilder.generateName();
+    private final String host;
+    private final int port;
+    private final String domainSocketPath;
+    private final boolean messageSharingEnabled;
+    private final Predicate<String> sharedMessageMethods;
+
+    public DefaultGrpcServerInProcessEndpoint(DefaultGrpcServerConfigProps props) {
+        this.host = props.getHost();
+        this.port = props.getDomainSocket().getPath() != null && !props.getDomainSocket().isTcpEnabled() ? 0 : props.getPort();
+        this.domainSocketPath = props.getDomainSocket().getPath();
+        this.messageSharingEnabled = !props.getInProcess().getSharedMessageMethods().isEmpty();
+        this.sharedMessageMethods = DefaultGrpcMarshallers.methodFilter(props.getInProcess().getSharedMessageMethods());
+    }
+
+    /**
+     * in-process Server 名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * target 是否指向本进程的 gRPC Server
+     */
+    public boolean matches(String target) {
+        if(Strings.isNullOrEmpty(target)) {
+            return false;
+        }
+        String targetSocketPath = DefaultGrpcTargets.domainSocketPath(target);
+        if(targetSocketPath != null) {
+            return domainSocketPath != null && Paths.get(targetSocketPath).normalize().equals(Paths.get(domainSocketPath).normalize());
+        }
+        if(port <= 0) {
+            return false;
+        }
+        String authority = target;
+        if(target.startsWith(DNS_SCHEME)) {
+            try {
+                String path = new URI(target).getPath();
+                authority = path == null || path.isEmpty() ? null : path.substring(1);
+            } catch(URISyntaxException e) {
+                return false;
+            }
+        } else if(target.contains("://")) {
+            return false;
+        }
+        HostAndPort hostAndPort;
+        try {
+            hostAndPort = authority == null ? null : HostAndPort.fromString(authority);
+        } catch(IllegalArgumentException e) {
+            return false;
+        }
+        return hostAndPort != null && hostAndPort.hasPort() && hostAndPort.getPort() == port && isLocalHost(hostAndPort.getHost());
+    }
+
+    /**
+     * 是否配置了按引用传递消息的方法
+     */
+    public boolean isMessageSharingEnabled() {
+        return messageSharingEnabled;
+    }
+
+    /**
+     * 方法是否按引用传递消息
+     *
+     * @see DefaultGrpcServerConfigProps.InProcessConfig#getSharedMessageMethods()
+     */
+    public boolean isMessageSharing(String fullMethodName) {
+        return sharedMessageMethods.test(fullMethodName);
+    }
+
+    /**
+     * 按 {@link #isMessageSharing(String)} 包装服务的方法, 仅用于 in-process Server
+     */
+    ServerServiceDefinition shareMessages(ServerServiceDefinition service) {
+        return messageSharingEnabled ? DefaultGrpcSharedMessages.share(service, sharedMessageMethods) : service;
+    }
+
+    private boolean isLocalHost(String targetHost) {
+        if(LOCALHOST.equalsIgnoreCase(targetHost) || targetHost.equalsIgnoreCase(host)) {
+            return true;
+        }
+        if(!InetAddresses.isInetAddress(targetHost)) {
+            return false;
+        }
+        InetAddress address = InetAddresses.forString(targetHost);
+        if(address.isLoopbackAddress() || address.isAnyLocalAddress()) {
+            return true;
+        }
+        try {
+            return NetworkInterface.getByInetAddress(address) != null;
+        } catch(SocketException e) {
+            return false;
+        }
+    }
+
+    private static final String LOCALHOST = "localhost";
+    private static final String DNS_SCHEME = "dns:";
+}
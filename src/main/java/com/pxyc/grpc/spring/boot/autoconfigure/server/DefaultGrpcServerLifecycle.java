@@ -9,24 +9,63 @@ import org.slf4j.Logger;
 import org.springframework.context.SmartLifecycle;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
-
+/**
+ * gRPC Server 生命周期.
+ * <p>
+ * 停止时依次: 健康检查置为 NOT_SERVING, 执行停止回调 (如从 Nacos 注销) 并等待完成, 等待客户端感知实例下线,
+ * 不再接受新调用并等待进行中的调用结束, 超时后强制关闭.
+ * 通过 {@link #stop(Runnable)} 停止时以上过程在独立线程上执行, Spring 等待其完成.
+ * <p>
+ * 同时监听 TCP 和 Unix domain socket 时, 两者的 Netty 传输不同, 分别由两个 Server 提供相同的服务;
+ * 开启 in-process 时另有一个 in-process Server. 生命周期回调收到的是 TCP Server, 未监听 TCP 时为 Unix domain socket Server.
+ *
+ * @see DefaultGrpcServerConfigProps.ShutdownConfig
+ */
 class DefaultGrpcServerLifecycle implements SmartLifecycle {
     private final Supplier<? extends ServerBuilder<?>> serverBuilderSupplier;
+    private final List<Supplier<? extends ServerBuilder<?>>> secondaryServerBuilderSuppliers = new ArrayList<>();
     private final List<? extends GrpcServerLifecycleCallback> grpcServerLifecycleCallbacks;
+    private final boolean reflectionEnabled;
+    private final DefaultGrpcServerConfigProps.ShutdownConfig shutdownConfig;
     private Server grpcServer;
+    private final List<Server> secondaryServers = new ArrayList<>();
     private io.grpc.protobuf.services.HealthStatusManager healthStatusManager;
 
+    /**
+     * @param serverBuilderSupplier             TCP Server 的 ServerBuilder 工厂, 不监听 TCP 时为 null
+     * @param domainSocketServerBuilderSupplier Unix domain socket Server 的 ServerBuilder 工厂, 不监听时为 null
+     * @param inProcessServerBuilderSupplier    in-process Server 的 ServerBuilder 工厂, 未开启时为 null
+     */
     public DefaultGrpcServerLifecycle(Supplier<? extends ServerBuilder<?>> serverBuilderSupplier,
-                                      List<? extends GrpcServerLifecycleCallback> grpcServerLifecycleCallbacks) {
-        this.serverBuilderSupplier = serverBuilderSupplier;
+                                      Supplier<? extends ServerBuilder<?>> domainSocketServerBuilderSupplier,
+                                      Supplier<? extends ServerBuilder<?>> inProcessServerBuilderSupplier,
+                                      List<? extends GrpcServerLifecycleCallback> grpcServerLifecycleCallbacks,
+                                      boolean reflectionEnabled, DefaultGrpcServerConfigProps.ShutdownConfig shutdownConfig) {
+        if(serverBuilderSupplier == null && domainSocketServerBuilderSupplier == null) {
+            throw new RuntimeException("Neither tcp nor unix domain socket listener configured");
+        }
+        this.serverBuilderSupplier = serverBuilderSupplier == null ? domainSocketServerBuilderSupplier : serverBuilderSupplier;
+        if(serverBuilderSupplier != null && domainSocketServerBuilderSupplier != null) {
+            secondaryServerBuilderSuppliers.add(domainSocketServerBuilderSupplier);
+        }
+        if(inProcessServerBuilderSupplier != null) {
+            secondaryServerBuilderSuppliers.add(inProcessServerBuilderSupplier);
+        }
         this.grpcServerLifecycleCallbacks = grpcServerLifecycleCallbacks;
+        this.reflectionEnabled = reflectionEnabled;
+        this.shutdownConfig = shutdownConfig;
         healthStatusManager = new io.grpc.protobuf.services.HealthStatusManager();
     }
 
@@ -37,24 +76,31 @@ class DefaultGrpcServerLifecycle implements SmartLifecycle {
         }
 
         healthStatusManager = new io.grpc.protobuf.services.HealthStatusManager();
-        grpcServer = serverBuilderSupplier
-                .get()
-//                .intercept(ExtServerInterceptor.INSTANCE)
-                .addService(ProtoReflectionService.newInstance())
-                .addService(healthStatusManager.getHealthService())
-                .build();
+        grpcServer = build(serverBuilderSupplier);
         for(ServerServiceDefinition service : grpcServer.getServices()) {
             healthStatusManager.setStatus(service.getServiceDescriptor().getName(), ServingStatus.SERVING);
         }
+        for(Supplier<? extends ServerBuilder<?>> supplier : secondaryServerBuilderSuppliers) {
+            secondaryServers.add(build(supplier));
+        }
 
         try {
             grpcServer.start();
+            for(Server server : secondaryServers) {
+                server.start();
+            }
         } catch(IOException e) {
+            grpcServer.shutdownNow();
+            secondaryServers.forEach(Server::shutdownNow);
             throw new RuntimeException("Failed to start grpc server", e);
         }
 
+        List<Object> listenSockets = new ArrayList<>(grpcServer.getListenSockets());
+        for(Server server : secondaryServers) {
+            listenSockets.addAll(server.getListenSockets());
+        }
         LOGGER.info("grpc server started on " +
-                    grpcServer.getListenSockets().stream().map(String::valueOf).collect(Collectors.joining(", ", "[", "]")));
+                    listenSockets.stream().distinct().map(String::valueOf).collect(Collectors.joining(", ", "[", "]")));
         LOGGER.info("grpc serving such services: " + grpcServer
                 .getServices()
                 .stream()
@@ -76,20 +122,24 @@ class DefaultGrpcServerLifecycle implements SmartLifecycle {
         thread.start();
 
         for(GrpcServerLifecycleCallback callback : grpcServerLifecycleCallbacks) {
-            callback.onStart(new GrpcServerLifecycleCallback.ServerInfo(grpcServer));
+            callback.onStart(new GrpcServerLifecycleCallback.ServerInfo(grpcServer, healthStatusManager));
+        }
+    }
+
+    private Server build(Supplier<? extends ServerBuilder<?>> builderSupplier) {
+        ServerBuilder<?> serverBuilder = builderSupplier.get();
+//        serverBuilder.intercept(ExtServerInterceptor.INSTANCE);
+        if(reflectionEnabled) {
+            serverBuilder.addService(ProtoReflectionService.newInstance());
         }
+        return serverBuilder.addService(healthStatusManager.getHealthService()).build();
     }
 
     @Override
-    public synchronized void stop() {
-        if(grpcServer != null) {
-            for(GrpcServerLifecycleCallback callback : grpcServerLifecycleCallbacks) {
-                callback.onStop();
-            }
-            healthStatusManager.enterTerminalState();
-            grpcServer.shutdown();
-            grpcServer = null;
-            LOGGER.info("GRPC server is shutting down");
+    public void stop() {
+        List<Server> servers = beginStop();
+        if(servers != null) {
+            drain(servers);
         }
     }
 
@@ -99,9 +149,89 @@ class DefaultGrpcServerLifecycle implements SmartLifecycle {
     }
 
     @Override
-    public synchronized void stop(Runnable callback) {
-        stop();
-        callback.run();
+    public void stop(Runnable callback) {
+        List<Server> servers = beginStop();
+        if(servers == null) {
+            callback.run();
+            return;
+        }
+        Thread thread = new Thread("GRPC-Server-Drain-" + SERVER_WAITER_COUNTER.getAndIncrement()) {
+            @Override
+            public void run() {
+                try {
+                    drain(servers);
+                } finally {
+                    callback.run();
+                }
+            }
+        };
+        thread.setDaemon(false);
+        thread.start();
+    }
+
+    /**
+     * 健康检查置为 NOT_SERVING, 之后 {@link #isRunning()} 返回 false
+     */
+    private synchronized List<Server> beginStop() {
+        if(grpcServer == null) {
+            return null;
+        }
+        List<Server> servers = new ArrayList<>();
+        servers.add(grpcServer);
+        servers.addAll(secondaryServers);
+        grpcServer = null;
+        secondaryServers.clear();
+        healthStatusManager.enterTerminalState();
+        LOGGER.info("GRPC server is draining");
+        return servers;
+    }
+
+    private void drain(List<Server> servers) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[grpcServerLifecycleCallbacks.size()];
+        for(int i = 0; i < futures.length; i++) {
+            try {
+                futures[i] = grpcServerLifecycleCallbacks.get(i).onStopAsync();
+            } catch(RuntimeException e) {
+                LOGGER.error("GRPC server lifecycle callback onStop() error", e);
+                futures[i] = CompletableFuture.completedFuture(null);
+            }
+        }
+        try {
+            CompletableFuture.allOf(futures).get(shutdownConfig.getCallbackTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch(TimeoutException e) {
+            LOGGER.warn("GRPC server lifecycle callbacks not completed in [" + shutdownConfig.getCallbackTimeout() + "]");
+        } catch(ExecutionException e) {
+            LOGGER.error("GRPC server lifecycle callback onStop() error", e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 客户端的服务发现和连接状态更新有延迟, 此期间仍可能有新调用到达
+        long delayMillis = shutdownConfig.getPropagationDelay().toMillis();
+        if(delayMillis > 0 && !Thread.currentThread().isInterrupted()) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        servers.forEach(Server::shutdown);
+        long drainDeadline = System.nanoTime() + shutdownConfig.getDrainTimeout().toNanos();
+        try {
+            for(Server server : servers) {
+                if(!server.awaitTermination(drainDeadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    LOGGER.warn("GRPC server calls not finished in [" + shutdownConfig.getDrainTimeout() + "], force shutdown");
+                    servers.forEach(Server::shutdownNow);
+                    server.awaitTermination(FORCE_SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            servers.forEach(Server::shutdownNow);
+        }
+        LOGGER.info("GRPC server stopped in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms");
     }
 
     @Override
@@ -114,6 +244,7 @@ class DefaultGrpcServerLifecycle implements SmartLifecycle {
         return 0;
     }
 
+    private static final long FORCE_SHUTDOWN_WAIT_MILLIS = 1000;
     private static final AtomicInteger SERVER_WAITER_COUNTER = new AtomicInteger(0);
     private static final Logger LOGGER = getLogger(DefaultGrpcServerLifecycle.class);
 }
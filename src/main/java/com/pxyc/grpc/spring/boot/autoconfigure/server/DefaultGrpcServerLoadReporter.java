@@ -0,0 +1,455 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Duration;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcExecutorMetrics;
+import com.pxyc.grpc.spring.boot.autoconfigure.RollingWindow;
+import io.grpc.*;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * 以 ORCA (Open Request Cost Aggregation) 格式上报本实例负载, 供 xDS 加权轮询等负载均衡按实际负载分配流量.
+ * <p>
+ * 定时生成负载快照: 进程 CPU 使用率、堆内存使用率、窗口内的 QPS 和错误数/秒, 以及进行中的调用数和执行器排队任务数 (named metrics).
+ * 快照编码一次后复用, 通过两种方式上报:
+ * <ul>
+ *     <li>逐调用: 作为拦截器在每个调用的 trailer {@code endpoint-load-metrics-bin} 中附带</li>
+ *     <li>带外: 提供 {@code xds.service.orca.v3.OpenRcaService/StreamCoreMetrics}, 按客户端请求的间隔持续推送</li>
+ * </ul>
+ * 开启健康联动时, 持续过载超过设定时长后将所有服务的健康状态置为 NOT_SERVING, 恢复正常一段时间后再置回 SERVING;
+ * 集群整体过载时所有实例可能同时被摘除, 阈值应高于自适应降载的阈值, 只用于摘除个别异常实例.
+ * <p>
+ * ORCA 消息按 xds/data/orca/v3/orca_load_report.proto 的字段编号直接编码, 不依赖 grpc-xds.
+ *
+ * @see DefaultGrpcServerConfigProps.LoadReportConfig
+ */
+public class DefaultGrpcServerLoadReporter implements ServerInterceptor, GrpcServerLifecycleCallback {
+    private final DefaultGrpcServerCpuUsageSampler cpuUsageSampler;
+    private final DefaultGrpcServerConfigProps.LoadReportConfig config;
+    private final RollingWindow requestWindow;
+    private final RollingWindow errorWindow;
+    private final double windowSeconds;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final Map<ServerCallStreamObserver<byte[]>, ScheduledFuture<?>> oobStreams = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+    private volatile Snapshot snapshot = new Snapshot(0, 0, 0, 0, 0, 0);
+    private volatile byte[] encodedSnapshot = encode(snapshot);
+    private volatile HealthStatusManager healthStatusManager;
+    private volatile List<String> serviceNames = Collections.emptyList();
+    private volatile boolean overloaded;
+    private long overloadStartNanos;
+    private long normalStartNanos;
+    private boolean overloadObserved;
+
+    public DefaultGrpcServerLoadReporter(DefaultGrpcServerCpuUsageSampler cpuUsageSampler,
+                                         DefaultGrpcServerConfigProps.LoadReportConfig config) {
+        this.cpuUsageSampler = cpuUsageSampler;
+        this.config = config;
+        this.requestWindow = new RollingWindow(WINDOW_BUCKETS, config.getWindow().dividedBy(WINDOW_BUCKETS));
+        this.errorWindow = new RollingWindow(WINDOW_BUCKETS, config.getWindow().dividedBy(WINDOW_BUCKETS));
+        this.windowSeconds = config.getWindow().toNanos() / 1e9;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GrpcServerLoadReporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::refresh, 0, config.getInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        requestWindow.add(1);
+        inFlight.incrementAndGet();
+        AtomicBoolean ended = new AtomicBoolean();
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+                @Override
+                public void close(Status status, Metadata trailers) {
+                    if(ended.compareAndSet(false, true)) {
+                        inFlight.decrementAndGet();
+                        if(!status.isOk()) {
+                            errorWindow.add(1);
+                        }
+                    }
+                    if(config.isPerCallEnabled()) {
+                        trailers.put(ORCA_LOAD_METRICS_KEY, encodedSnapshot);
+                    }
+                    super.close(status, trailers);
+                }
+            }, headers);
+        } catch(RuntimeException e) {
+            if(ended.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onCancel() {
+                if(ended.compareAndSet(false, true)) {
+                    inFlight.decrementAndGet();
+                    errorWindow.add(1);
+                }
+                super.onCancel();
+            }
+        };
+    }
+
+    /**
+     * ORCA 带外上报服务
+     */
+    public ServerServiceDefinition getOobService() {
+        return ServerServiceDefinition.builder(OOB_SERVICE_NAME)
+                                      .addMethod(OOB_METHOD, ServerCalls.asyncServerStreamingCall(this::streamCoreMetrics))
+                                      .build();
+    }
+
+    @Override
+    public void onStart(ServerInfo serverInfo) {
+        List<String> names = new ArrayList<>();
+        names.add(HealthStatusManager.SERVICE_NAME_ALL_SERVICES);
+        for(ServerServiceDefinition service : serverInfo.getGrpcServer().getServices()) {
+            names.add(service.getServiceDescriptor().getName());
+        }
+        serviceNames = names;
+        healthStatusManager = serverInfo.getHealthStatusManager();
+        stopped = false;
+    }
+
+    /**
+     * 结束所有带外上报流, 否则客户端保持连接时 Server 优雅关闭需要等到超时
+     */
+    @Override
+    public void onStop() {
+        healthStatusManager = null;
+        stopped = true;
+        oobStreams.keySet().forEach(this::completeOobStream);
+    }
+
+    /**
+     * 当前进行中的调用数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 最近一次生成的负载快照
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 是否因持续过载已将健康状态置为 NOT_SERVING
+     */
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void streamCoreMetrics(Duration request, StreamObserver<byte[]> responseObserver) {
+        ServerCallStreamObserver<byte[]> observer = (ServerCallStreamObserver<byte[]>) responseObserver;
+        long requestedNanos = TimeUnit.SECONDS.toNanos(request.getSeconds()) + request.getNanos();
+        long intervalNanos = Math.max(requestedNanos, config.getMinOobInterval().toNanos());
+        observer.setOnCancelHandler(() -> {
+            ScheduledFuture<?> future = oobStreams.remove(observer);
+            if(future != null) {
+                future.cancel(false);
+            }
+        });
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                // 客户端来不及接收时跳过本次, 不在服务端堆积
+                if(observer.isReady()) {
+                    observer.onNext(encodedSnapshot);
+                }
+            } catch(RuntimeException e) {
+                ScheduledFuture<?> removed = oobStreams.remove(observer);
+                if(removed != null) {
+                    removed.cancel(false);
+                }
+            }
+        }, 0, intervalNanos, TimeUnit.NANOSECONDS);
+        oobStreams.put(observer, future);
+        // 注册前已被取消或 Server 已进入停止流程
+        if(observer.isCancelled() || stopped) {
+            completeOobStream(observer);
+        }
+    }
+
+    /**
+     * 取消推送并结束流; 在调度线程上执行, 与推送串行, 不会与 onNext 并发调用 observer
+     */
+    private void completeOobStream(ServerCallStreamObserver<byte[]> observer) {
+        ScheduledFuture<?> future = oobStreams.remove(observer);
+        if(future == null) {
+            return;
+        }
+        future.cancel(false);
+        Runnable complete = () -> {
+            try {
+                if(!observer.isCancelled()) {
+                    observer.onCompleted();
+                }
+            } catch(RuntimeException e) {
+                LOGGER.debug("Complete orca stream error", e);
+            }
+        };
+        try {
+            scheduler.execute(complete);
+        } catch(RejectedExecutionException e) {
+            complete.run();
+        }
+    }
+
+    private void refresh() {
+        try {
+            Runtime runtime = Runtime.getRuntime();
+            long queueDepth = 0;
+            for(DefaultGrpcExecutorMetrics metrics : DefaultGrpcExecutorMetrics.getAll()) {
+                queueDepth += metrics.getQueueSize();
+            }
+            Snapshot current = new Snapshot(cpuUsageSampler.getCpuUsage(),
+                                            (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory(),
+                                            requestWindow.sum() / windowSeconds, errorWindow.sum() / windowSeconds,
+                                            inFlight.get(), queueDepth);
+            snapshot = current;
+            encodedSnapshot = encode(current);
+            if(config.getHealth().isEnabled()) {
+                updateHealth(current);
+            }
+        } catch(Throwable t) {
+            LOGGER.warn("Refresh load report error", t);
+        }
+    }
+
+    /**
+     * 只在调度线程上执行, 过载和恢复均需持续设定的时长才切换, 避免抖动
+     */
+    private void updateHealth(Snapshot current) {
+        DefaultGrpcServerConfigProps.LoadHealthConfig health = config.getHealth();
+        boolean overloadNow = current.cpuUtilization >= health.getCpuThreshold() ||
+                              (health.getQueueThreshold() > 0 && current.queueDepth >= health.getQueueThreshold());
+        long now = System.nanoTime();
+        if(overloadNow != overloadObserved) {
+            overloadObserved = overloadNow;
+            if(overloadNow) {
+                overloadStartNanos = now;
+            } else {
+                normalStartNanos = now;
+            }
+        }
+        if(!overloaded && overloadNow && now - overloadStartNanos >= health.getOverloadDuration().toNanos()) {
+            setStatus(ServingStatus.NOT_SERVING);
+            overloaded = true;
+            LOGGER.warn("grpc server overloaded, health status set to NOT_SERVING, cpu [" + current.cpuUtilization +
+                        "] executor queue [" + current.queueDepth + "]");
+        } else if(overloaded && !overloadNow && now - normalStartNanos >= health.getRecoveryDuration().toNanos()) {
+            setStatus(ServingStatus.SERVING);
+            overloaded = false;
+            LOGGER.info("grpc server load recovered, health status set to SERVING");
+        }
+    }
+
+    private void setStatus(ServingStatus status) {
+        HealthStatusManager manager = healthStatusManager;
+        if(manager == null) {
+            return;
+        }
+        // 进入下线流程后 HealthStatusManager 会忽略状态变更
+        for(String serviceName : serviceNames) {
+            manager.setStatus(serviceName, status);
+        }
+    }
+
+    /**
+     * 按 OrcaLoadReport 编码; rps 为旧字段, 新版本客户端使用 rps_fractional
+     */
+    static byte[] encode(Snapshot snapshot) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+            output.writeDouble(CPU_UTILIZATION_FIELD, snapshot.cpuUtilization);
+            output.writeDouble(MEM_UTILIZATION_FIELD, snapshot.memUtilization);
+            output.writeUInt64(RPS_FIELD, Math.round(snapshot.qps));
+            output.writeDouble(RPS_FRACTIONAL_FIELD, snapshot.qps);
+            output.writeDouble(EPS_FIELD, snapshot.eps);
+            writeMapEntry(output, NAMED_METRICS_FIELD, IN_FLIGHT_METRIC, snapshot.inFlight);
+            writeMapEntry(output, NAMED_METRICS_FIELD, QUEUE_DEPTH_METRIC, snapshot.queueDepth);
+            output.flush();
+            return bytes.toByteArray();
+        } catch(IOException e) {
+            throw new RuntimeException("Encode orca load report error", e);
+        }
+    }
+
+    /**
+     * map<string, double> 的一项, 即字段 1 为 key, 字段 2 为 value 的嵌套消息
+     */
+    private static void writeMapEntry(CodedOutputStream output, int fieldNumber, String key, double value) throws IOException {
+        output.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(CodedOutputStream.computeStringSize(1, key) + CodedOutputStream.computeDoubleSize(2, value));
+        output.writeString(1, key);
+        output.writeDouble(2, value);
+    }
+
+    /**
+     * 负载快照
+     */
+    public static final class Snapshot {
+        private final double cpuUtilization;
+        private final double memUtilization;
+        private final double qps;
+        private final double eps;
+        private final long inFlight;
+        private final long queueDepth;
+
+        Snapshot(double cpuUtilization, double memUtilization, double qps, double eps, long inFlight, long queueDepth) {
+            this.cpuUtilization = cpuUtilization;
+            this.memUtilization = memUtilization;
+            this.qps = qps;
+            this.eps = eps;
+            this.inFlight = inFlight;
+            this.queueDepth = queueDepth;
+        }
+
+        public double getCpuUtilization() {
+            return cpuUtilization;
+        }
+
+        public double getMemUtilization() {
+            return memUtilization;
+        }
+
+        public double getQps() {
+            return qps;
+        }
+
+        /**
+         * 每秒出错 (状态不为 OK 或被取消) 的调用数
+         */
+        public double getEps() {
+            return eps;
+        }
+
+        public long getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * 所有执行器中排队的任务数
+         */
+        public long getQueueDepth() {
+            return queueDepth;
+        }
+    }
+
+    /**
+     * OrcaLoadReportRequest, 只解析字段 1 report_interval
+     */
+    private static final MethodDescriptor.Marshaller<Duration> OOB_REQUEST_MARSHALLER = new MethodDescriptor.Marshaller<Duration>() {
+        @Override
+        public InputStream stream(Duration value) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+                output.writeMessage(REPORT_INTERVAL_FIELD, value);
+                output.flush();
+                return new ByteArrayInputStream(bytes.toByteArray());
+            } catch(IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to serialize orca request").withCause(e).asRuntimeException();
+            }
+        }
+
+        @Override
+        public Duration parse(InputStream stream) {
+            try {
+                CodedInputStream input = CodedInputStream.newInstance(stream);
+                Duration interval = Duration.getDefaultInstance();
+                int tag;
+                while((tag = input.readTag()) != 0) {
+                    if(WireFormat.getTagFieldNumber(tag) == REPORT_INTERVAL_FIELD && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                        interval = input.readMessage(Duration.parser(), ExtensionRegistryLite.getEmptyRegistry());
+                    } else if(!input.skipField(tag)) {
+                        break;
+                    }
+                }
+                return interval;
+            } catch(IOException e) {
+                throw Status.INTERNAL.withDescription("Invalid orca request").withCause(e).asRuntimeException();
+            }
+        }
+    };
+
+    private static final MethodDescriptor.Marshaller<byte[]> OOB_RESPONSE_MARSHALLER = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch(IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to read orca report").withCause(e).asRuntimeException();
+            }
+        }
+    };
+
+    private static final int CPU_UTILIZATION_FIELD = 1;
+    private static final int MEM_UTILIZATION_FIELD = 2;
+    private static final int RPS_FIELD = 3;
+    private static final int RPS_FRACTIONAL_FIELD = 6;
+    private static final int EPS_FIELD = 7;
+    private static final int NAMED_METRICS_FIELD = 8;
+    private static final int REPORT_INTERVAL_FIELD = 1;
+    private static final String IN_FLIGHT_METRIC = "in_flight";
+    private static final String QUEUE_DEPTH_METRIC = "executor_queue_depth";
+    private static final int WINDOW_BUCKETS = 10;
+    private static final String OOB_SERVICE_NAME = "xds.service.orca.v3.OpenRcaService";
+    private static final MethodDescriptor<Duration, byte[]> OOB_METHOD =
+        MethodDescriptor.<Duration, byte[]>newBuilder()
+                        .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+                        .setFullMethodName(MethodDescriptor.generateFullMethodName(OOB_SERVICE_NAME, "StreamCoreMetrics"))
+                        .setRequestMarshaller(OOB_REQUEST_MARSHALLER)
+                        .setResponseMarshaller(OOB_RESPONSE_MARSHALLER)
+                        .build();
+    static final Metadata.Key<byte[]> ORCA_LOAD_METRICS_KEY = Metadata.Key.of("endpoint-load-metrics-bin", Metadata.BINARY_BYTE_MARSHALLER);
+    private static final Logger LOGGER = getLogger(DefaultGrpcServerLoadReporter.class);
+}
@@ -0,0 +1,156 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.RollingWindow;
+import io.grpc.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应降载拦截器.
+ * <p>
+ * 当进程 CPU 使用率超过阈值(或刚刚发生过降载仍处于冷却期), 且当前并发请求数超过窗口内估算的最大处理能力时,
+ * 直接以 {@link Status#RESOURCE_EXHAUSTED} 拒绝新请求. 最大处理能力按 Little's law 估算:
+ * {@code maxFlight = 窗口内单桶最大通过数 * 每秒桶数 * 窗口内最小平均耗时(秒)}.
+ */
+public class DefaultGrpcServerLoadSheddingInterceptor implements ServerInterceptor {
+    private final DefaultGrpcServerCpuUsageSampler cpuUsageSampler;
+    private final double cpuThreshold;
+    private final long coolOffNanos;
+    private final RollingWindow passWindow;
+    private final RollingWindow rtWindow;
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong avgInFlightBits = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicLong lastDropNanos = new AtomicLong();
+    private final LongAdder shedCount = new LongAdder();
+    private volatile boolean droppedRecently;
+
+    public DefaultGrpcServerLoadSheddingInterceptor(DefaultGrpcServerCpuUsageSampler cpuUsageSampler,
+                                                    DefaultGrpcServerConfigProps.LoadSheddingConfig config) {
+        this.cpuUsageSampler = cpuUsageSampler;
+        this.cpuThreshold = config.getCpuThreshold();
+        this.coolOffNanos = config.getCoolOff().toNanos();
+        this.passWindow = new RollingWindow(config.getBuckets(), config.getWindow().dividedBy(config.getBuckets()));
+        this.rtWindow = new RollingWindow(config.getBuckets(), config.getWindow().dividedBy(config.getBuckets()));
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if(shouldDrop()) {
+            lastDropNanos.set(System.nanoTime());
+            droppedRecently = true;
+            shedCount.increment();
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Server overloaded, request shed"), new Metadata());
+            return new ServerCall.Listener<ReqT>() {};
+        }
+
+        inFlight.incrementAndGet();
+        InFlightCall inFlightCall = new InFlightCall();
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+                @Override
+                public void close(Status status, Metadata trailers) {
+                    inFlightCall.finish(status);
+                    super.close(status, trailers);
+                }
+            }, headers);
+        } catch(RuntimeException e) {
+            inFlightCall.finish(null);
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(listener) {
+            @Override
+            public void onCancel() {
+                inFlightCall.finish(null);
+                super.onCancel();
+            }
+        };
+    }
+
+    /**
+     * 当前正在处理的请求数
+     */
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 累计被降载拒绝的请求数
+     */
+    public long getShedCount() {
+        return shedCount.sum();
+    }
+
+    /**
+     * 按窗口统计估算的最大并发处理能力
+     */
+    public long getMaxFlight() {
+        long[] maxPass = {1};
+        passWindow.reduce(true, (sum, count) -> maxPass[0] = Math.max(maxPass[0], sum));
+        double[] minRtMicros = {Double.MAX_VALUE};
+        rtWindow.reduce(true, (sum, count) -> {
+            if(count > 0) {
+                minRtMicros[0] = Math.min(minRtMicros[0], (double) sum / count);
+            }
+        });
+        if(minRtMicros[0] == Double.MAX_VALUE) {
+            minRtMicros[0] = DEFAULT_MIN_RT_MICROS;
+        }
+        return (long) Math.max(1, maxPass[0] * passWindow.bucketsPerSecond() * minRtMicros[0] / 1e6);
+    }
+
+    private boolean shouldDrop() {
+        if(cpuUsageSampler.getCpuUsage() >= cpuThreshold || stillHot()) {
+            long current = inFlight.get();
+            long maxFlight = getMaxFlight();
+            return current > maxFlight && Double.longBitsToDouble(avgInFlightBits.get()) > maxFlight;
+        }
+        return false;
+    }
+
+    private boolean stillHot() {
+        if(!droppedRecently) {
+            return false;
+        }
+        boolean hot = System.nanoTime() - lastDropNanos.get() < coolOffNanos;
+        if(!hot) {
+            droppedRecently = false;
+        }
+        return hot;
+    }
+
+    private void release() {
+        long current = inFlight.decrementAndGet();
+        long prev;
+        long next;
+        do {
+            prev = avgInFlightBits.get();
+            next = Double.doubleToLongBits(Double.longBitsToDouble(prev) * FLYING_BETA + current * (1 - FLYING_BETA));
+        } while(!avgInFlightBits.compareAndSet(prev, next));
+    }
+
+    private class InFlightCall extends AtomicBoolean {
+        private final long startNanos = System.nanoTime();
+
+        /**
+         * @param status 调用结束状态, 为 null 表示调用被取消或异常退出
+         */
+        void finish(Status status) {
+            if(!compareAndSet(false, true)) {
+                return;
+            }
+            if(status != null && status.getCode() != Status.Code.RESOURCE_EXHAUSTED) {
+                passWindow.add(1);
+                rtWindow.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+            }
+            release();
+        }
+    }
+
+    private static final double FLYING_BETA = 0.9;
+    private static final double DEFAULT_MIN_RT_MICROS = 1_000_000;
+}
@@ -0,0 +1,93 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCallMetrics;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMessageSizes;
+import io.grpc.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 服务端调用统计拦截器, 按方法记录到 {@link DefaultGrpcCallMetrics}.
+ * <p>
+ * 作为最外层拦截器安装, 被限流、熔断等拦截器拒绝的调用同样计入.
+ */
+public class DefaultGrpcServerMetricsInterceptor implements ServerInterceptor {
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        DefaultGrpcCallMetrics metrics = DefaultGrpcCallMetrics.of(DefaultGrpcCallMetrics.Side.SERVER,
+                                                                   call.getMethodDescriptor().getFullMethodName());
+        MetricsServerCall<ReqT, RespT> metricsCall = new MetricsServerCall<>(call, metrics);
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(metricsCall, headers);
+        } catch(RuntimeException | Error e) {
+            // startCall 抛出异常时 Server 直接取消调用, 不经过 close 和 onCancel
+            metricsCall.end(Status.fromThrowable(e).getCode());
+            throw e;
+        }
+        return new MetricsListener<>(listener, metricsCall);
+    }
+
+    private static class MetricsServerCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+        private final DefaultGrpcCallMetrics metrics;
+        private final long startNanos = System.nanoTime();
+        volatile int ended;
+        private long requestBytes;
+        private long responseBytes;
+
+        MetricsServerCall(ServerCall<ReqT, RespT> delegate, DefaultGrpcCallMetrics metrics) {
+            super(delegate);
+            this.metrics = metrics;
+            metrics.callStarted();
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            responseBytes = DefaultGrpcMessageSizes.add(responseBytes, message);
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            end(status.getCode());
+            super.close(status, trailers);
+        }
+
+        void onRequest(Object message) {
+            requestBytes = DefaultGrpcMessageSizes.add(requestBytes, message);
+        }
+
+        void end(Status.Code code) {
+            if(ENDED_UPDATER.compareAndSet(this, 0, 1)) {
+                metrics.callEnded(code, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos), requestBytes, responseBytes);
+            }
+        }
+    }
+
+    private static class MetricsListener<ReqT> extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+        private final MetricsServerCall<ReqT, ?> call;
+
+        MetricsListener(ServerCall.Listener<ReqT> delegate, MetricsServerCall<ReqT, ?> call) {
+            super(delegate);
+            this.call = call;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            call.onRequest(message);
+            super.onMessage(message);
+        }
+
+        @Override
+        public void onCancel() {
+            call.end(Status.Code.CANCELLED);
+            super.onCancel();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<MetricsServerCall> ENDED_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(MetricsServerCall.class, "ended");
+}
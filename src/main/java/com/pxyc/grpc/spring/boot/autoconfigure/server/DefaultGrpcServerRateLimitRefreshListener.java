@@ -0,0 +1,39 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+
+/**
+ * 配置中心刷新限流配置后, 重新绑定并替换 {@link DefaultGrpcServerRateLimiter} 的规则, 无需重启.
+ * <p>
+ * 依赖 Spring Cloud 的 {@link EnvironmentChangeEvent}; 是否启用限流不支持刷新.
+ */
+public class DefaultGrpcServerRateLimitRefreshListener implements ApplicationListener<EnvironmentChangeEvent> {
+    private final Environment environment;
+    private final DefaultGrpcServerRateLimiter rateLimiter;
+
+    public DefaultGrpcServerRateLimitRefreshListener(Environment environment, DefaultGrpcServerRateLimiter rateLimiter) {
+        this.environment = environment;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        boolean changed = false;
+        for(String key : event.getKeys()) {
+            if(key.startsWith(PROPERTY_PREFIX)) {
+                changed = true;
+                break;
+            }
+        }
+        if(!changed) {
+            return;
+        }
+        rateLimiter.update(Binder.get(environment).bind(PROPERTY_PREFIX, DefaultGrpcServerConfigProps.RateLimitConfig.class)
+                                 .orElseGet(DefaultGrpcServerConfigProps.RateLimitConfig::new));
+    }
+
+    private static final String PROPERTY_PREFIX = DefaultGrpcServerAutoConfiguration.CONFIG_PROPS_PREFIX + ".rate-limit";
+}
@@ -0,0 +1,232 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌桶限流拦截器, 按方法限流, 并可按调用方 (指定请求头或对端 IP) 分别限流.
+ * <p>
+ * 令牌桶以 GCRA 算法实现, 每个桶只有一个 {@link AtomicLong} 状态, 获取令牌为一次 CAS, 无锁.
+ * 调用方维度的桶数量有上限, 超出后淘汰最久未使用的桶, 调用方标识基数很大时也不会无限占用内存.
+ * <p>
+ * 与 {@link DefaultGrpcServerExecutorRouter} 同时使用时, 在分派到执行器之前判断, 超限的调用直接在事件循环线程上结束, 不进入执行器队列.
+ * 配置可通过 {@link #update(DefaultGrpcServerConfigProps.RateLimitConfig)} 在运行时替换, 替换后所有桶重新开始计数.
+ */
+public class DefaultGrpcServerRateLimiter implements ServerInterceptor {
+    private volatile Rules rules;
+    private volatile boolean checkedBeforeDispatch;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public DefaultGrpcServerRateLimiter(DefaultGrpcServerConfigProps.RateLimitConfig config) {
+        this.rules = new Rules(config);
+    }
+
+    /**
+     * 替换限流配置
+     */
+    public void update(DefaultGrpcServerConfigProps.RateLimitConfig config) {
+        this.rules = new Rules(config);
+        LOGGER.info("Grpc rate limit rules updated: " + config.getRules().keySet());
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        Status status;
+        if(checkedBeforeDispatch) {
+            status = headers.containsKey(REJECTED_KEY) ? LIMITED_STATUS : null;
+            headers.discardAll(REJECTED_KEY);
+        } else {
+            status = tryAcquire(call, headers) ? null : LIMITED_STATUS;
+        }
+        if(status != null) {
+            call.close(status, new Metadata());
+            return new ServerCall.Listener<ReqT>() {};
+        }
+        return next.startCall(call, headers);
+    }
+
+    /**
+     * 供执行器分派前调用, 超限时返回 false 并在该调用的请求头中加上内部标记, 之后由拦截器据此结束调用.
+     * 判断结果随调用本身传递, 不依赖分派与拦截器在同一线程上执行
+     */
+    boolean admitBeforeDispatch(ServerCall<?, ?> call, Metadata headers) {
+        // 清除调用方自行携带的同名请求头, 标记只能由此处添加
+        headers.discardAll(REJECTED_KEY);
+        if(tryAcquire(call, headers)) {
+            return true;
+        }
+        headers.put(REJECTED_KEY, "1");
+        return false;
+    }
+
+    /**
+     * 所有调用都会先经过 {@link #admitBeforeDispatch(ServerCall, Metadata)}, 拦截器不再重复获取令牌
+     */
+    void setCheckedBeforeDispatch(boolean checkedBeforeDispatch) {
+        this.checkedBeforeDispatch = checkedBeforeDispatch;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private boolean tryAcquire(ServerCall<?, ?> call, Metadata headers) {
+        Rules current = rules;
+        MethodLimiter limiter = current.of(call.getMethodDescriptor());
+        if(limiter == null || limiter.tryAcquire(current, call, headers)) {
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    /**
+     * 一份配置及按方法解析后的限流器, 配置替换时整体丢弃
+     */
+    private static class Rules {
+        private final DefaultGrpcServerConfigProps.RateLimitConfig config;
+        private final Metadata.Key<String> callerKey;
+        private final Map<String, MethodLimiter> limiters = new ConcurrentHashMap<>();
+
+        Rules(DefaultGrpcServerConfigProps.RateLimitConfig config) {
+            this.config = config;
+            this.callerKey = config.getCallerHeader() == null || config.getCallerHeader().isEmpty() ? null :
+                             Metadata.Key.of(config.getCallerHeader(), Metadata.ASCII_STRING_MARSHALLER);
+        }
+
+        MethodLimiter of(MethodDescriptor<?, ?> method) {
+            MethodLimiter limiter = limiters.get(method.getFullMethodName());
+            if(limiter == null) {
+                limiter = limiters.computeIfAbsent(method.getFullMethodName(), name -> resolve(method));
+            }
+            return limiter == NO_LIMIT ? null : limiter;
+        }
+
+        private MethodLimiter resolve(MethodDescriptor<?, ?> method) {
+            Map<String, DefaultGrpcServerConfigProps.RateLimitRule> ruleMap = config.getRules();
+            DefaultGrpcServerConfigProps.RateLimitRule rule = ruleMap.get(method.getFullMethodName());
+            if(rule == null && method.getServiceName() != null) {
+                rule = ruleMap.get(method.getServiceName());
+            }
+            if(rule == null) {
+                rule = ruleMap.get(ANY);
+            }
+            if(rule == null || (rule.getPermitsPerSecond() <= 0 && rule.getCallerPermitsPerSecond() <= 0)) {
+                return NO_LIMIT;
+            }
+            return new MethodLimiter(rule, config);
+        }
+
+        String callerOf(ServerCall<?, ?> call, Metadata headers) {
+            if(callerKey != null) {
+                String caller = headers.get(callerKey);
+                if(caller != null) {
+                    return caller;
+                }
+            }
+            SocketAddress address = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+            if(address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null) {
+                return ((InetSocketAddress) address).getAddress().getHostAddress();
+            }
+            return String.valueOf(address);
+        }
+    }
+
+    private static class MethodLimiter {
+        private final TokenBucket bucket;
+        private final Cache<String, TokenBucket> callerBuckets;
+        private final double callerPermitsPerSecond;
+        private final int callerBurst;
+
+        MethodLimiter(DefaultGrpcServerConfigProps.RateLimitRule rule, DefaultGrpcServerConfigProps.RateLimitConfig config) {
+            this.bucket = rule.getPermitsPerSecond() > 0 ? new TokenBucket(rule.getPermitsPerSecond(), burstOf(rule.getBurst(),
+                                                                                                                 rule.getPermitsPerSecond())) : null;
+            this.callerPermitsPerSecond = rule.getCallerPermitsPerSecond();
+            this.callerBurst = burstOf(rule.getCallerBurst(), callerPermitsPerSecond);
+            this.callerBuckets = callerPermitsPerSecond > 0 ?
+                                 CacheBuilder.newBuilder()
+                                             .maximumSize(config.getMaxCallers())
+                                             .expireAfterAccess(config.getCallerIdleTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                                             .build() : null;
+        }
+
+        /**
+         * 先判断调用方维度, 避免单个调用方超限时消耗方法维度的令牌
+         */
+        boolean tryAcquire(Rules rules, ServerCall<?, ?> call, Metadata headers) {
+            if(callerBuckets != null) {
+                String caller = rules.callerOf(call, headers);
+                TokenBucket callerBucket = callerBuckets.getIfPresent(caller);
+                if(callerBucket == null) {
+                    callerBucket = new TokenBucket(callerPermitsPerSecond, callerBurst);
+                    TokenBucket existing = callerBuckets.asMap().putIfAbsent(caller, callerBucket);
+                    if(existing != null) {
+                        callerBucket = existing;
+                    }
+                }
+                if(!callerBucket.tryAcquire()) {
+                    return false;
+                }
+            }
+            return bucket == null || bucket.tryAcquire();
+        }
+
+        private static int burstOf(Integer burst, double permitsPerSecond) {
+            return burst != null && burst > 0 ? burst : Math.max(1, (int) Math.ceil(permitsPerSecond));
+        }
+    }
+
+    /**
+     * GCRA 令牌桶: 状态为下一个令牌的理论到达时间, 与当前时间之差不超过桶容量对应的时长即可获取
+     */
+    static class TokenBucket {
+        private final long intervalNanos;
+        private final long capacityNanos;
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+        TokenBucket(double permitsPerSecond, int burst) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.capacityNanos = intervalNanos * burst;
+        }
+
+        boolean tryAcquire() {
+            return tryAcquire(System.nanoTime());
+        }
+
+        boolean tryAcquire(long now) {
+            while(true) {
+                long tat = theoreticalArrival.get();
+                long next = (tat == Long.MIN_VALUE || tat - now < 0 ? now : tat) + intervalNanos;
+                if(next - now > capacityNanos) {
+                    return false;
+                }
+                if(theoreticalArrival.compareAndSet(tat, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 规则 Key 为此值时对所有未单独配置的方法生效
+     */
+    public static final String ANY = "*";
+
+    private static final MethodLimiter NO_LIMIT = new MethodLimiter(new DefaultGrpcServerConfigProps.RateLimitRule(),
+                                                                    new DefaultGrpcServerConfigProps.RateLimitConfig());
+    private static final Status LIMITED_STATUS = Status.RESOURCE_EXHAUSTED.withDescription("Rate limit exceeded");
+    private static final Metadata.Key<String> REJECTED_KEY = Metadata.Key.of("x-best-grpc-rate-limited", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcServerRateLimiter.class);
+}
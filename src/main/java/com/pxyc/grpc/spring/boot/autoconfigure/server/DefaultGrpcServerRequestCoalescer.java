@@ -0,0 +1,225 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 相同请求合并执行 (single-flight).
+ * <p>
+ * 被合并的 unary 方法在注册时改写为以 byte[] 收发消息, 请求字节及配置的请求头完全相同的并发调用共享同一次业务方法执行,
+ * 执行结束后所有调用收到相同的响应或错误状态.
+ * <p>
+ * 共享执行运行在不继承任何调用方超时和取消的 Context 中; 每个调用方的超时或取消只结束它自己的调用,
+ * 所有调用方都离开后才取消共享执行.
+ */
+public class DefaultGrpcServerRequestCoalescer {
+    private final DefaultGrpcServerConfigProps.CoalescingConfig config;
+    private final LongAdder executionCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    public DefaultGrpcServerRequestCoalescer(DefaultGrpcServerConfigProps.CoalescingConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 改写服务中配置了合并的方法, 未配置的服务原样返回
+     */
+    public ServerServiceDefinition wrap(ServerServiceDefinition service) {
+        return DefaultGrpcServerSerializedMethods.rewrite(service, this::metadataKeysOf, this::newHandler, "request coalescing");
+    }
+
+    /**
+     * 实际执行业务方法的次数
+     */
+    public long getExecutionCount() {
+        return executionCount.sum();
+    }
+
+    /**
+     * 加入已有执行、未单独执行业务方法的调用数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    private Metadata.Key<?>[] metadataKeysOf(MethodDescriptor<?, ?> method) {
+        DefaultGrpcServerConfigProps.CoalescingMethodConfig methodConfig = config.getMethods().get(method.getFullMethodName());
+        if(methodConfig == null && method.getServiceName() != null) {
+            methodConfig = config.getMethods().get(method.getServiceName());
+        }
+        return methodConfig == null ? null : DefaultGrpcServerSerializedMethods.metadataKeys(methodConfig.getMetadataKeys());
+    }
+
+    private ServerCallHandler<byte[], byte[]> newHandler(ServerMethodDefinition<?, ?> definition, Metadata.Key<?>[] metadataKeys) {
+        Map<DefaultGrpcServerSerializedMethods.RequestKey, Flight<?, ?>> flights = new ConcurrentHashMap<>();
+        return (call, headers) -> {
+            call.request(2);
+            return new CoalescingListener<>(definition, metadataKeys, flights, call, headers);
+        };
+    }
+
+    private class CoalescingListener<ReqT, RespT> extends DefaultGrpcServerSerializedMethods.UnaryBytesListener {
+        private final ServerMethodDefinition<ReqT, RespT> definition;
+        private final Metadata.Key<?>[] metadataKeys;
+        private final Map<DefaultGrpcServerSerializedMethods.RequestKey, Flight<?, ?>> flights;
+        private final Metadata headers;
+
+        CoalescingListener(ServerMethodDefinition<ReqT, RespT> definition, Metadata.Key<?>[] metadataKeys,
+                           Map<DefaultGrpcServerSerializedMethods.RequestKey, Flight<?, ?>> flights,
+                           ServerCall<byte[], byte[]> call, Metadata headers) {
+            super(call);
+            this.definition = definition;
+            this.metadataKeys = metadataKeys;
+            this.flights = flights;
+            this.headers = headers;
+        }
+
+        @Override
+        protected void onRequest(byte[] request) {
+            DefaultGrpcServerSerializedMethods.RequestKey key = DefaultGrpcServerSerializedMethods.RequestKey.of(request, headers, metadataKeys);
+            ReqT parsed = null;
+            while(true) {
+                Flight<?, ?> existing = flights.get(key);
+                if(existing != null) {
+                    if(existing.join(call)) {
+                        coalescedCount.increment();
+                        leaveOnCancel(existing);
+                        return;
+                    }
+                    flights.remove(key, existing);
+                    continue;
+                }
+                if(parsed == null) {
+                    parsed = DefaultGrpcServerSerializedMethods.parseRequest(definition.getMethodDescriptor(), request, call);
+                    if(parsed == null) {
+                        return;
+                    }
+                }
+                Flight<ReqT, RespT> created = new Flight<>(definition, key, flights, call);
+                if(flights.putIfAbsent(key, created) == null) {
+                    executionCount.increment();
+                    leaveOnCancel(created);
+                    created.start(parsed, headers);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 以调用的 Context 而不是 onCancel 感知离开: 业务方法同步执行时, 发起执行的调用的 Listener 线程被占用,
+         * onCancel 要等执行结束才能送达, 而 Context 在传输线程上即被取消
+         */
+        private void leaveOnCancel(Flight<?, ?> joined) {
+            Context.current().addListener(context -> joined.leave(call), MoreExecutors.directExecutor());
+        }
+    }
+
+    /**
+     * 一次共享执行及其所有调用方
+     */
+    private static class Flight<ReqT, RespT> {
+        private final ServerMethodDefinition<ReqT, RespT> definition;
+        private final DefaultGrpcServerSerializedMethods.RequestKey key;
+        private final Map<DefaultGrpcServerSerializedMethods.RequestKey, Flight<?, ?>> flights;
+        private final ServerCall<byte[], byte[]> leader;
+        private final List<ServerCall<byte[], byte[]>> participants = new ArrayList<>();
+        private final Context.CancellableContext context = Context.current().fork().withCancellation();
+        private volatile ServerCall.Listener<ReqT> delegate;
+        private boolean done;
+
+        Flight(ServerMethodDefinition<ReqT, RespT> definition, DefaultGrpcServerSerializedMethods.RequestKey key,
+               Map<DefaultGrpcServerSerializedMethods.RequestKey, Flight<?, ?>> flights, ServerCall<byte[], byte[]> leader) {
+            this.definition = definition;
+            this.key = key;
+            this.flights = flights;
+            this.leader = leader;
+            participants.add(leader);
+        }
+
+        void start(ReqT request, Metadata headers) {
+            Context previous = context.attach();
+            try {
+                ServerCall.Listener<ReqT> listener = definition.getServerCallHandler().startCall(
+                    new DefaultGrpcServerSerializedMethods.SerializingServerCall<ReqT, RespT>(definition.getMethodDescriptor(), leader) {
+                        @Override
+                        protected void onClose(DefaultGrpcServerSerializedMethods.Result result) {
+                            complete(result);
+                        }
+
+                        @Override
+                        public boolean isCancelled() {
+                            return context.isCancelled();
+                        }
+                    }, headers);
+                delegate = listener;
+                listener.onMessage(request);
+                listener.onHalfClose();
+            } catch(Throwable t) {
+                // 业务方法抛出异常时结束共享执行, 否则后续相同请求会一直加入这次不会结束的执行
+                LOGGER.debug("Coalesced call [{}] failed", definition.getMethodDescriptor().getFullMethodName(), t);
+                flights.remove(key, this);
+                complete(new DefaultGrpcServerSerializedMethods.Result(
+                    null, null, Status.fromThrowable(t), Status.trailersFromThrowable(t)));
+            } finally {
+                context.detach(previous);
+            }
+        }
+
+        synchronized boolean join(ServerCall<byte[], byte[]> call) {
+            if(done) {
+                return false;
+            }
+            participants.add(call);
+            return true;
+        }
+
+        void leave(ServerCall<byte[], byte[]> call) {
+            synchronized(this) {
+                if(done || !participants.remove(call) || !participants.isEmpty()) {
+                    return;
+                }
+                done = true;
+            }
+            flights.remove(key, this);
+            context.cancel(null);
+            ServerCall.Listener<ReqT> listener = delegate;
+            if(listener != null) {
+                listener.onCancel();
+            }
+        }
+
+        private void complete(DefaultGrpcServerSerializedMethods.Result result) {
+            List<ServerCall<byte[], byte[]>> receivers;
+            synchronized(this) {
+                if(done) {
+                    return;
+                }
+                done = true;
+                receivers = new ArrayList<>(participants);
+            }
+            flights.remove(key, this);
+            for(ServerCall<byte[], byte[]> call : receivers) {
+                try {
+                    DefaultGrpcServerSerializedMethods.sendResult(call, result);
+                } catch(RuntimeException e) {
+                    LOGGER.debug("Send coalesced result failed", e);
+                }
+            }
+            context.cancel(null);
+            ServerCall.Listener<ReqT> listener = delegate;
+            if(listener != null) {
+                listener.onComplete();
+            }
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcServerRequestCoalescer.class);
+}
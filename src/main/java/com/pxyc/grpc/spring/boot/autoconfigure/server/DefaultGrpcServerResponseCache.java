@@ -0,0 +1,157 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.grpc.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * unary 方法的服务端响应缓存.
+ * <p>
+ * 被缓存的方法在注册时改写为以 byte[] 收发消息: 以序列化后的请求字节及配置的请求头为 Key, 缓存序列化后的响应字节.
+ * 按服务名配置时服务内的方法共用一个缓存及容量上限, 完整方法名的配置优先.
+ * 命中时直接发送缓存的字节, 既不反序列化请求、不执行业务方法, 也不再序列化响应; 未命中时照常调用业务方法, 响应状态为 OK 时写入缓存.
+ * 只缓存响应消息本身, 业务方法设置的响应头和 trailers 不会被缓存.
+ * <p>
+ * 由于消息类型变为 byte[], 对这些方法生效的拦截器看到的也是 byte[] 消息.
+ */
+public class DefaultGrpcServerResponseCache {
+    private final Map<String, MethodCache> caches;
+
+    public DefaultGrpcServerResponseCache(DefaultGrpcServerConfigProps.ResponseCacheConfig config) {
+        ImmutableMap.Builder<String, MethodCache> builder = ImmutableMap.builder();
+        config.getMethods().forEach((method, methodConfig) -> builder.put(method, new MethodCache(methodConfig)));
+        this.caches = builder.build();
+    }
+
+    /**
+     * 改写服务中配置了缓存的方法, 未配置缓存的服务原样返回
+     */
+    public ServerServiceDefinition wrap(ServerServiceDefinition service) {
+        return DefaultGrpcServerSerializedMethods.rewrite(service, method -> cacheOf(method.getFullMethodName()),
+                                                          DefaultGrpcServerResponseCache::newHandler, "response cache");
+    }
+
+    /**
+     * 清空方法的缓存, 数据变更后需要立即生效时调用; 方法按服务名配置时清空整个服务的缓存
+     *
+     * @param name 完整方法名或配置中的服务名
+     */
+    public void invalidateAll(String name) {
+        MethodCache cache = cacheOf(name);
+        if(cache != null) {
+            cache.cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 各配置的缓存, Key 为配置中的完整方法名或服务名, 可读取命中率等统计
+     */
+    public Map<String, Cache<?, ?>> getCaches() {
+        Map<String, Cache<?, ?>> result = new HashMap<>();
+        caches.forEach((method, cache) -> result.put(method, cache.cache));
+        return result;
+    }
+
+    private MethodCache cacheOf(String name) {
+        MethodCache cache = caches.get(name);
+        if(cache == null) {
+            String serviceName = MethodDescriptor.extractFullServiceName(name);
+            cache = serviceName == null ? null : caches.get(serviceName);
+        }
+        return cache;
+    }
+
+    private static ServerCallHandler<byte[], byte[]> newHandler(ServerMethodDefinition<?, ?> definition, MethodCache cache) {
+        return (call, headers) -> {
+            call.request(2);
+            return new CachingListener<>(definition, cache, call, headers);
+        };
+    }
+
+    private static class MethodCache {
+        private final Cache<DefaultGrpcServerSerializedMethods.RequestKey, byte[]> cache;
+        private final Metadata.Key<?>[] metadataKeys;
+
+        MethodCache(DefaultGrpcServerConfigProps.MethodCacheConfig config) {
+            this.cache = CacheBuilder.newBuilder()
+                                     .maximumWeight(config.getMaxBytes())
+                                     .weigher((DefaultGrpcServerSerializedMethods.RequestKey key, byte[] value) -> key.weight() + value.length)
+                                     .expireAfterWrite(config.getTtl().toNanos(), TimeUnit.NANOSECONDS)
+                                     .recordStats()
+                                     .build();
+            this.metadataKeys = DefaultGrpcServerSerializedMethods.metadataKeys(config.getMetadataKeys());
+        }
+    }
+
+    /**
+     * 收到完整请求后查询缓存, 未命中时才解析请求并交给原方法处理
+     */
+    private static class CachingListener<ReqT, RespT> extends DefaultGrpcServerSerializedMethods.UnaryBytesListener {
+        private final ServerMethodDefinition<ReqT, RespT> definition;
+        private final MethodCache cache;
+        private final Metadata headers;
+        private ServerCall.Listener<ReqT> delegate;
+
+        CachingListener(ServerMethodDefinition<ReqT, RespT> definition, MethodCache cache, ServerCall<byte[], byte[]> call,
+                        Metadata headers) {
+            super(call);
+            this.definition = definition;
+            this.cache = cache;
+            this.headers = headers;
+        }
+
+        @Override
+        protected void onRequest(byte[] request) {
+            DefaultGrpcServerSerializedMethods.RequestKey key =
+                DefaultGrpcServerSerializedMethods.RequestKey.of(definition.getMethodDescriptor().getFullMethodName(), request, headers,
+                                                                 cache.metadataKeys);
+            byte[] response = cache.cache.getIfPresent(key);
+            if(response != null) {
+                DefaultGrpcServerSerializedMethods.sendResult(call, new DefaultGrpcServerSerializedMethods.Result(response));
+                return;
+            }
+            ReqT parsed = DefaultGrpcServerSerializedMethods.parseRequest(definition.getMethodDescriptor(), request, call);
+            if(parsed == null) {
+                return;
+            }
+            delegate = definition.getServerCallHandler().startCall(
+                new DefaultGrpcServerSerializedMethods.SerializingServerCall<ReqT, RespT>(definition.getMethodDescriptor(), call) {
+                    @Override
+                    protected void onClose(DefaultGrpcServerSerializedMethods.Result result) {
+                        if(result.response != null) {
+                            cache.cache.put(key, result.response);
+                        }
+                        DefaultGrpcServerSerializedMethods.sendResult(call, result);
+                    }
+                }, headers);
+            delegate.onMessage(parsed);
+            delegate.onHalfClose();
+        }
+
+        @Override
+        public void onCancel() {
+            if(delegate != null) {
+                delegate.onCancel();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if(delegate != null) {
+                delegate.onComplete();
+            }
+        }
+
+        @Override
+        public void onReady() {
+            if(delegate != null) {
+                delegate.onReady();
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.base.Strings;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcCommonConfigProps;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcEventLoopGroups;
+import io.grpc.ServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollChannelOption;
+import io.grpc.netty.shaded.io.netty.util.concurrent.MultithreadEventExecutorGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 以 SO_REUSEPORT 在同一端口上打开多个监听 socket, 由内核将新连接分散到各个 socket 上,
+ * 每个 socket 由 boss 事件循环中不同的线程接受连接, 避免连接风暴时单个 acceptor 成为瓶颈.
+ * <p>
+ * 仅在共用事件循环且传输类型为 epoll 时生效, 其他情况下或监听 socket 数量为 1 时保持单个监听 socket,
+ * 不开启 SO_REUSEPORT, 以保留端口被占用时的启动检查.
+ *
+ * @see DefaultGrpcServerConfigProps.ReusePortConfig
+ */
+public class DefaultGrpcServerReusePortConfigurer implements GrpcServerInternalConfigurer {
+    private final DefaultGrpcEventLoopGroups eventLoopGroups;
+    private final DefaultGrpcServerConfigProps props;
+
+    public DefaultGrpcServerReusePortConfigurer(DefaultGrpcEventLoopGroups eventLoopGroups, DefaultGrpcServerConfigProps props) {
+        this.eventLoopGroups = eventLoopGroups;
+        this.props = props;
+    }
+
+    @Override
+    public void accept(ServerBuilder<?> serverBuilder) {
+        if(!(serverBuilder instanceof NettyServerBuilder)) {
+            return;
+        }
+        if(eventLoopGroups.getTransport() != DefaultGrpcCommonConfigProps.EventLoopConfig.Transport.EPOLL) {
+            LOGGER.warn("SO_REUSEPORT requires epoll transport, current transport [" + eventLoopGroups.getTransport() +
+                        "], using single listener");
+            return;
+        }
+        if(props.getPort() <= 0) {
+            throw new RuntimeException("SO_REUSEPORT listeners require a fixed port, but port is [" + props.getPort() + "]");
+        }
+
+        int bossThreads = eventLoopGroups.getBossGroup() instanceof MultithreadEventExecutorGroup ?
+                          ((MultithreadEventExecutorGroup) eventLoopGroups.getBossGroup()).executorCount() : 1;
+        int listeners = props.getReusePort().getListeners() > 0 ? props.getReusePort().getListeners() :
+                        Runtime.getRuntime().availableProcessors();
+        if(listeners <= 1) {
+            LOGGER.warn("SO_REUSEPORT listeners resolved to [" + listeners + "], using single listener without SO_REUSEPORT");
+            return;
+        }
+        if(listeners > bossThreads) {
+            LOGGER.warn("SO_REUSEPORT listeners [" + listeners + "] more than boss threads [" + bossThreads +
+                        "], some listeners share an acceptor thread");
+        }
+
+        // 与 DefaultGrpcServerBuilderSupplier 中的第一个监听地址相同
+        InetSocketAddress address = Strings.isNullOrEmpty(props.getHost()) ? new InetSocketAddress(props.getPort()) :
+                                    new InetSocketAddress(props.getHost(), props.getPort());
+        NettyServerBuilder nettyServerBuilder = (NettyServerBuilder) serverBuilder;
+        nettyServerBuilder.withOption(EpollChannelOption.SO_REUSEPORT, true);
+        for(int i = 1; i < listeners; i++) {
+            nettyServerBuilder.addListenAddress(address);
+        }
+        LOGGER.info("Grpc server listening on [" + address + "] with " + listeners + " SO_REUSEPORT sockets");
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcServerReusePortConfigurer.class);
+}
@@ -0,0 +1,352 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.io.ByteStreams;
+import com.pxyc.grpc.spring.boot.autoconfigure.DefaultGrpcMarshallers;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 将 unary 方法改写为以 byte[] 收发消息, 供响应缓存、请求合并等需要直接处理序列化字节的功能使用.
+ * <p>
+ * 改写后的方法由 {@link UnaryBytesListener} 收齐请求字节, 需要执行原方法时通过 {@link SerializingServerCall}
+ * 解析请求、调用原方法并把响应序列化为字节.
+ */
+final class DefaultGrpcServerSerializedMethods {
+    private DefaultGrpcServerSerializedMethods() {}
+
+    /**
+     * 改写服务中匹配的方法, 没有方法匹配时原样返回
+     *
+     * @param configLookup   按方法返回功能配置, 返回 null 表示该方法不改写
+     * @param handlerFactory 根据原方法和配置创建改写后的处理器
+     * @param feature        功能名称, 用于日志
+     */
+    static <C> ServerServiceDefinition rewrite(ServerServiceDefinition service, Function<MethodDescriptor<?, ?>, C> configLookup,
+                                               BiFunction<ServerMethodDefinition<?, ?>, C, ServerCallHandler<byte[], byte[]>> handlerFactory,
+                                               String feature) {
+        return DefaultGrpcMarshallers.rewrite(service, method -> {
+            MethodDescriptor<?, ?> descriptor = method.getMethodDescriptor();
+            C config = configLookup.apply(descriptor);
+            if(config == null) {
+                return method;
+            }
+            if(descriptor.getType() != MethodDescriptor.MethodType.UNARY) {
+                LOGGER.warn("Grpc method [" + descriptor.getFullMethodName() + "] is not unary, " + feature + " ignored");
+                return method;
+            }
+            LOGGER.info("Grpc method [" + descriptor.getFullMethodName() + "] " + feature + " enabled");
+            return ServerMethodDefinition.create(descriptor.toBuilder(BYTES_MARSHALLER, BYTES_MARSHALLER).build(),
+                                                 handlerFactory.apply(method, config));
+        });
+    }
+
+    /**
+     * 解析请求字节, 失败时以 INTERNAL 结束调用并返回 null
+     */
+    static <ReqT> ReqT parseRequest(MethodDescriptor<ReqT, ?> method, byte[] request, ServerCall<byte[], byte[]> call) {
+        try {
+            return method.parseRequest(new BytesInputStream(request));
+        } catch(RuntimeException e) {
+            call.close(Status.INTERNAL.withDescription("Failed to parse request").withCause(e), new Metadata());
+            return null;
+        }
+    }
+
+    /**
+     * 将执行结果发送给调用方, 响应头和 trailers 均复制后发送, 同一结果可发送给多个调用
+     */
+    static void sendResult(ServerCall<byte[], byte[]> call, Result result) {
+        if(result.response != null) {
+            Metadata headers = new Metadata();
+            if(result.headers != null) {
+                headers.merge(result.headers);
+            }
+            call.sendHeaders(headers);
+            call.sendMessage(result.response);
+        }
+        Metadata trailers = new Metadata();
+        if(result.trailers != null) {
+            trailers.merge(result.trailers);
+        }
+        call.close(result.status, trailers);
+    }
+
+    static byte[] toBytes(InputStream stream) throws IOException {
+        if(stream instanceof BytesInputStream) {
+            byte[] bytes = ((BytesInputStream) stream).remaining();
+            if(bytes != null) {
+                return bytes;
+            }
+        }
+        if(stream instanceof KnownLength) {
+            byte[] bytes = new byte[stream.available()];
+            ByteStreams.readFully(stream, bytes);
+            return bytes;
+        }
+        return ByteStreams.toByteArray(stream);
+    }
+
+    /**
+     * 根据请求头名称创建 Key, 以 {@value Metadata#BINARY_HEADER_SUFFIX} 结尾的按二进制处理
+     */
+    static Metadata.Key<?>[] metadataKeys(List<String> names) {
+        Metadata.Key<?>[] keys = new Metadata.Key<?>[names.size()];
+        for(int i = 0; i < keys.length; i++) {
+            String name = names.get(i);
+            keys[i] = name.endsWith(Metadata.BINARY_HEADER_SUFFIX) ? Metadata.Key.of(name, Metadata.BINARY_BYTE_MARSHALLER) :
+                      Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER);
+        }
+        return keys;
+    }
+
+    /**
+     * 由请求字节和指定请求头的值组成的 Key, 多个方法共用时以方法全名区分
+     */
+    static final class RequestKey {
+        private final String fullMethodName;
+        private final byte[] request;
+        private final Object[] metadataValues;
+        private final int hash;
+
+        private RequestKey(String fullMethodName, byte[] request, Object[] metadataValues) {
+            this.fullMethodName = fullMethodName;
+            this.request = request;
+            this.metadataValues = metadataValues;
+            this.hash = 31 * (31 * Objects.hashCode(fullMethodName) + Arrays.hashCode(request)) + Arrays.deepHashCode(metadataValues);
+        }
+
+        static RequestKey of(byte[] request, Metadata headers, Metadata.Key<?>[] metadataKeys) {
+            return of(null, request, headers, metadataKeys);
+        }
+
+        /**
+         * @param fullMethodName 方法全名, 仅在一个方法内使用时可为 null
+         */
+        static RequestKey of(String fullMethodName, byte[] request, Metadata headers, Metadata.Key<?>[] metadataKeys) {
+            Object[] values = new Object[metadataKeys.length];
+            for(int i = 0; i < values.length; i++) {
+                values[i] = headers.get(metadataKeys[i]);
+            }
+            return new RequestKey(fullMethodName, request, values);
+        }
+
+        /**
+         * 近似占用的字节数
+         */
+        int weight() {
+            int weight = request.length;
+            for(Object value : metadataValues) {
+                if(value instanceof byte[]) {
+                    weight += ((byte[]) value).length;
+                } else if(value != null) {
+                    weight += ((String) value).length();
+                }
+            }
+            return weight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof RequestKey)) {
+                return false;
+            }
+            RequestKey other = (RequestKey) o;
+            return hash == other.hash && Objects.equals(fullMethodName, other.fullMethodName) && Arrays.equals(request, other.request) &&
+                   Arrays.deepEquals(metadataValues, other.metadataValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 改写后方法的执行结果
+     */
+    static final class Result {
+        final Metadata headers;
+        final byte[] response;
+        final Status status;
+        final Metadata trailers;
+
+        Result(Metadata headers, byte[] response, Status status, Metadata trailers) {
+            this.headers = headers;
+            this.response = response;
+            this.status = status;
+            this.trailers = trailers;
+        }
+
+        Result(byte[] response) {
+            this(null, response, Status.OK, null);
+        }
+    }
+
+    /**
+     * 收齐 unary 请求的字节后回调 {@link #onRequest(byte[])}
+     */
+    abstract static class UnaryBytesListener extends ServerCall.Listener<byte[]> {
+        protected final ServerCall<byte[], byte[]> call;
+        private byte[] request;
+
+        UnaryBytesListener(ServerCall<byte[], byte[]> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void onMessage(byte[] message) {
+            if(request != null) {
+                call.close(Status.INTERNAL.withDescription("Too many requests"), new Metadata());
+                return;
+            }
+            request = message;
+        }
+
+        @Override
+        public void onHalfClose() {
+            if(request == null) {
+                call.close(Status.INTERNAL.withDescription("Half-closed without a request"), new Metadata());
+                return;
+            }
+            onRequest(request);
+        }
+
+        protected abstract void onRequest(byte[] request);
+    }
+
+    /**
+     * 交给原方法的 ServerCall: 请求已由改写后的方法收齐, 响应序列化为字节暂存, 原方法结束时回调 {@link #onClose(Result)}
+     */
+    abstract static class SerializingServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final ServerCall<?, ?> source;
+        private Metadata headers;
+        private byte[] response;
+
+        SerializingServerCall(MethodDescriptor<ReqT, RespT> method, ServerCall<?, ?> source) {
+            this.method = method;
+            this.source = source;
+        }
+
+        protected abstract void onClose(Result result);
+
+        @Override
+        public void request(int numMessages) {}
+
+        @Override
+        public void sendHeaders(Metadata headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            if(response != null) {
+                throw Status.INTERNAL.withDescription("Too many responses").asRuntimeException();
+            }
+            try {
+                response = toBytes(method.streamResponse(message));
+            } catch(IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to serialize response").withCause(e).asRuntimeException();
+            }
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            onClose(new Result(headers, status.isOk() ? response : null, status, trailers));
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return source.isCancelled();
+        }
+
+        @Override
+        public void setMessageCompression(boolean enabled) {
+            source.setMessageCompression(enabled);
+        }
+
+        @Override
+        public void setCompression(String compressor) {
+            source.setCompression(compressor);
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return source.getAttributes();
+        }
+
+        @Override
+        public String getAuthority() {
+            return source.getAuthority();
+        }
+
+        @Override
+        public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+            return method;
+        }
+    }
+
+    /**
+     * 可直接写入传输层缓冲区的字节流, 发送时不再额外复制; 改写嵌套时 (如缓存内再做请求合并) 直接取回原数组
+     */
+    private static final class BytesInputStream extends ByteArrayInputStream implements KnownLength, Drainable {
+        BytesInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        /**
+         * 尚未读取过时返回原数组
+         */
+        byte[] remaining() {
+            if(pos != 0 || count != buf.length) {
+                return null;
+            }
+            pos = count;
+            return buf;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int length = count - pos;
+            target.write(buf, pos, length);
+            pos = count;
+            return length;
+        }
+    }
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES_MARSHALLER = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new BytesInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return toBytes(stream);
+            } catch(IOException e) {
+                throw Status.INTERNAL.withDescription("Failed to read message").withCause(e).asRuntimeException();
+            }
+        }
+    };
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultGrpcServerSerializedMethods.class);
+}
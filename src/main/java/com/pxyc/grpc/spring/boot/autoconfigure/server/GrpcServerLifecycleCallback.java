@@ -1,6 +1,13 @@
 package com.pxyc.grpc.spring.boot.autoconfigure.server;
 
 import io.grpc.Server;
+import io.grpc.protobuf.services.HealthStatusManager;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public interface GrpcServerLifecycleCallback {
@@ -8,15 +15,45 @@ public interface GrpcServerLifecycleCallback {
 
     void onStop();
 
+    /**
+     * 停止时调用, 返回的 future 完成后才继续关闭 gRPC Server, 用于等待从注册中心注销等异步操作完成
+     *
+     * @see DefaultGrpcServerConfigProps.ShutdownConfig#getCallbackTimeout()
+     */
+    default CompletableFuture<?> onStopAsync() {
+        onStop();
+        return CompletableFuture.completedFuture(null);
+    }
+
     class ServerInfo {
         private final Server grpcServer;
+        private final HealthStatusManager healthStatusManager;
 
         public ServerInfo(Server grpcServer) {
+            this(grpcServer, null);
+        }
+
+        public ServerInfo(Server grpcServer, HealthStatusManager healthStatusManager) {
             this.grpcServer = grpcServer;
+            this.healthStatusManager = healthStatusManager;
         }
 
         public Server getGrpcServer() {
             return grpcServer;
         }
+
+        /**
+         * 本 Server 的健康状态, 未注册健康服务时为 null
+         */
+        public HealthStatusManager getHealthStatusManager() {
+            return healthStatusManager;
+        }
+
+        /**
+         * 去重后的监听地址, 以 SO_REUSEPORT 在同一端口上打开多个监听 socket 时只返回一次
+         */
+        public List<SocketAddress> getListenAddresses() {
+            return new ArrayList<>(new LinkedHashSet<>(grpcServer.getListenSockets()));
+        }
     }
 }
@@ -15,6 +15,7 @@ import java.math.BigInteger;
 import java.net.*;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -59,7 +60,7 @@ class DefaultGrpcServerNacosRegisterLifecycleCallback implements GrpcServerLifec
         }
 
         HashSet<InetSocketAddress> socketAddressSet = new HashSet<>();
-        for(SocketAddress socketAddress : serverInfo.getGrpcServer().getListenSockets()) {
+        for(SocketAddress socketAddress : serverInfo.getListenAddresses()) {
             if(socketAddress instanceof InetSocketAddress) {
                 InetSocketAddress inetSocketAddress = (InetSocketAddress) socketAddress;
                 InetAddress inetAddress = inetSocketAddress.getAddress();
@@ -114,11 +115,20 @@ class DefaultGrpcServerNacosRegisterLifecycleCallback implements GrpcServerLifec
     }
 
     @Override
-    public synchronized void onStop() {
+    public void onStop() {
+        onStopAsync();
+    }
+
+    /**
+     * 返回的 future 在注销成功后完成
+     */
+    @Override
+    public synchronized CompletableFuture<?> onStopAsync() {
         if(instance == null) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         final Instance finalInstance = instance;
+        CompletableFuture<Void> future = new CompletableFuture<>();
         executor.submit(() -> {
             while(true) {
                 try {
@@ -134,8 +144,10 @@ class DefaultGrpcServerNacosRegisterLifecycleCallback implements GrpcServerLifec
                 }
             }
             LOGGER.info("Nacos Instance deregistered, " + finalInstance);
+            future.complete(null);
         });
         instance = null;
+        return future;
     }
 
     private <T> List<T> applySelectPolicy(Collection<T> inList) {
@@ -0,0 +1,132 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultGrpcCodelBlockingQueueTest {
+    private final DefaultGrpcCodelBlockingQueue queue =
+        new DefaultGrpcCodelBlockingQueue(16, Duration.ofMillis(TARGET_MILLIS), Duration.ofMillis(INTERVAL_MILLIS));
+
+    @Test
+    void fifoWhileNotOverloaded() {
+        offer("a");
+        offer("b");
+        offer("c");
+        assertEquals("a", queue.poll().toString());
+        assertEquals("b", queue.poll().toString());
+        assertEquals("c", queue.poll().toString());
+        assertFalse(queue.isOverloaded());
+    }
+
+    @Test
+    void firstIntervalWithoutDequeueIsNotOverload() throws Exception {
+        Thread.sleep(INTERVAL_MILLIS + INTERVAL_MILLIS / 4);
+        offer("a");
+        offer("b");
+        assertEquals("a", queue.poll().toString());
+        assertFalse(queue.isOverloaded());
+        assertEquals("b", queue.poll().toString());
+    }
+
+    @Test
+    void standingQueueSwitchesToLifoAndShedsStaleCalls() throws Exception {
+        Task[] stale = new Task[4];
+        for(int i = 0; i < stale.length; i++) {
+            stale[i] = offer("stale-" + i);
+        }
+        // 第一个 interval 结束后出队, 观测到的排队耗时超过 target
+        Thread.sleep(INTERVAL_MILLIS + INTERVAL_MILLIS / 4);
+        assertEquals("stale-0", queue.poll().toString());
+        assertFalse(queue.isOverloaded());
+        // 整个 interval 内最小排队耗时仍超过 target, 下一次出队时进入过载
+        Thread.sleep(INTERVAL_MILLIS + INTERVAL_MILLIS / 4);
+        assertEquals("stale-1", queue.poll().toString());
+        assertTrue(queue.isOverloaded());
+        assertTrue(stale[1].shed);
+        assertFalse(stale[0].shed);
+
+        // 过载时后进先出, 新到达的调用排队耗时短, 不被丢弃
+        Task fresh = offer("fresh");
+        assertEquals("fresh", queue.take().toString());
+        assertFalse(fresh.shed);
+        assertEquals("stale-3", queue.poll(1, TimeUnit.SECONDS).toString());
+        assertTrue(stale[3].shed);
+        assertEquals("stale-2", queue.poll().toString());
+        assertTrue(stale[2].shed);
+    }
+
+    @Test
+    void recoversWhenMinimumDelayDropsBelowTarget() throws Exception {
+        overload();
+        // 接下来一个 interval 内有排队耗时低于 target 的出队
+        offer("fresh");
+        assertEquals("fresh", queue.poll().toString());
+        Thread.sleep(INTERVAL_MILLIS + INTERVAL_MILLIS / 4);
+        offer("a");
+        offer("b");
+        // 出队方式在观测前决定, 本次仍为后进先出, 观测后恢复先进先出
+        assertEquals("b", queue.poll().toString());
+        assertFalse(queue.isOverloaded());
+        assertEquals("a", queue.poll().toString());
+    }
+
+    @Test
+    void idleGapResetsOverload() throws Exception {
+        overload();
+        Thread.sleep(INTERVAL_MILLIS * 3);
+        Task task = offer("after-idle");
+        assertEquals("after-idle", queue.poll().toString());
+        assertFalse(queue.isOverloaded());
+        assertFalse(task.shed);
+    }
+
+    private void overload() throws Exception {
+        offer("stale-0");
+        offer("stale-1");
+        Thread.sleep(INTERVAL_MILLIS + INTERVAL_MILLIS / 4);
+        queue.poll();
+        Thread.sleep(INTERVAL_MILLIS + INTERVAL_MILLIS / 4);
+        queue.poll();
+        assertTrue(queue.isOverloaded());
+    }
+
+    private Task offer(String name) {
+        Task task = new Task();
+        assertTrue(queue.offer(queue.newEntry(new Runnable() {
+            @Override
+            public void run() {
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        }, task)));
+        return task;
+    }
+
+    private static class Task implements GrpcDeadlineTask {
+        volatile boolean shed;
+
+        @Override
+        public long getDeadlineNanos() {
+            return NO_DEADLINE;
+        }
+
+        @Override
+        public void shed() {
+            shed = true;
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private static final long TARGET_MILLIS = 10;
+    private static final long INTERVAL_MILLIS = 100;
+}
@@ -0,0 +1,152 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultGrpcDeadlineBlockingQueueTest {
+    private final DefaultGrpcDeadlineBlockingQueue queue = new DefaultGrpcDeadlineBlockingQueue(4);
+
+    @Test
+    void earliestDeadlineFirst() {
+        offer(new Task("c", 300));
+        offer(new Task("none", GrpcDeadlineTask.NO_DEADLINE));
+        offer(new Task("a", 100));
+        offer(new Task("b", 200));
+        assertEquals("[a, b, c, none]", drain().toString());
+    }
+
+    @Test
+    void equalDeadlinesKeepSubmissionOrder() {
+        offer(new Task("x", 100));
+        offer(() -> {
+        }, "plain-1");
+        offer(new Task("y", 100));
+        offer(() -> {
+        }, "plain-2");
+        // 非 GrpcDeadlineTask 视为没有 deadline, 排在最后且保持提交顺序
+        assertEquals("[x, y, plain-1, plain-2]", drain().toString());
+    }
+
+    @Test
+    void boundedByCapacity() {
+        for(int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(queue.newEntry(() -> {
+            }, new Task("t" + i, i))));
+        }
+        assertEquals(0, queue.remainingCapacity());
+        Runnable overflow = queue.newEntry(() -> {
+        }, new Task("overflow", 0));
+        assertFalse(queue.offer(overflow));
+        assertThrows(IllegalStateException.class, () -> queue.add(overflow));
+        assertEquals(4, queue.size());
+        assertEquals(4, queue.getCapacity());
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new DefaultGrpcDeadlineBlockingQueue(0));
+    }
+
+    @Test
+    void executorRunsQueuedTasksByDeadline() throws Exception {
+        DefaultGrpcThreadPoolExecutor executor = new DefaultGrpcThreadPoolExecutor("deadline-test", 1, 1, 0, TimeUnit.SECONDS,
+                                                                                   new DefaultGrpcDeadlineBlockingQueue(16),
+                                                                                   Executors.defaultThreadFactory(),
+                                                                                   new ThreadPoolExecutor.AbortPolicy());
+        try {
+            assertTrue(executor.isDeadlineAware());
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> {
+                blocked.countDown();
+                await(release);
+            });
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            List<String> executed = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(3);
+            for(String name : new String[] {"c", "a", "b"}) {
+                executor.execute(new Task(name, name.charAt(0)) {
+                    @Override
+                    public void run() {
+                        executed.add(name);
+                        done.countDown();
+                    }
+                });
+            }
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals("[a, b, c]", executed.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void offer(Task task) {
+        offer(task, task.name);
+    }
+
+    /**
+     * 队列元素的 toString 取自实际执行的任务, 以此记录出队顺序
+     */
+    private void offer(Runnable command, String name) {
+        assertTrue(queue.offer(queue.newEntry(new Runnable() {
+            @Override
+            public void run() {
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        }, command)));
+    }
+
+    private List<String> drain() {
+        List<String> names = new ArrayList<>();
+        Runnable entry;
+        while((entry = queue.poll()) != null) {
+            names.add(entry.toString());
+        }
+        return names;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Task implements GrpcDeadlineTask {
+        private final String name;
+        private final long deadlineNanos;
+
+        Task(String name, long deadlineNanos) {
+            this.name = name;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+
+        @Override
+        public void shed() {
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    void emptyHistogramReportsZero() {
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.snapshot().getMax());
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        for(long value = 0; value < 16; value++) {
+            histogram.record(value);
+        }
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(7, histogram.getValueAtPercentile(50));
+        assertEquals(15, histogram.getValueAtPercentile(100));
+        assertEquals(120, histogram.getSum());
+        assertEquals(16, histogram.getCount());
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(100));
+        assertEquals(0, histogram.getSum());
+        assertEquals(1, histogram.getCount());
+    }
+
+    @Test
+    void bucketsCoverAllValuesContiguously() {
+        long[] values = {16, 17, 31, 32, 33, 1000, 1023, 1024, 123_456_789, 1L << 40, (1L << 40) - 1, Long.MAX_VALUE};
+        for(long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(upper >= value, "upper bound [" + upper + "] below value [" + value + "]");
+            // 上界不超过真实值的 1 + 1/16 倍
+            assertTrue(upper - value <= value / 16, "upper bound [" + upper + "] too far from value [" + value + "]");
+        }
+        for(int index = 0; index < LatencyHistogram.bucketIndex(Long.MAX_VALUE); index++) {
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertEquals(index, LatencyHistogram.bucketIndex(upper));
+            assertEquals(index + 1, LatencyHistogram.bucketIndex(upper + 1));
+        }
+    }
+
+    @Test
+    void percentilesStayWithinRelativeError() {
+        Random random = new Random(42);
+        long[] values = new long[10_000];
+        for(int i = 0; i < values.length; i++) {
+            // 覆盖微秒到秒的对数分布
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(10_000_000));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for(double percentile : new double[] {1, 25, 50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = histogram.getValueAtPercentile(percentile);
+            assertTrue(estimate >= exact && estimate - exact <= exact / 16,
+                       "p" + percentile + " estimate [" + estimate + "], exact [" + exact + "]");
+        }
+        assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @Test
+    void snapshotMinusKeepsOnlyLaterValues() {
+        for(int i = 0; i < 100; i++) {
+            histogram.record(1000);
+        }
+        LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        for(int i = 0; i < 10; i++) {
+            histogram.record(5);
+        }
+        LatencyHistogram.Snapshot delta = histogram.snapshot().minus(earlier);
+        assertEquals(10, delta.getCount());
+        assertEquals(5, delta.getValueAtPercentile(99));
+        assertEquals(5, delta.getMax());
+    }
+
+    @Test
+    void windowedSnapshotRotatesAfterWindow() throws Exception {
+        for(int i = 0; i < 100; i++) {
+            histogram.record(1000);
+        }
+        LatencyHistogram.WindowedSnapshot windowed = new LatencyHistogram.WindowedSnapshot(histogram, Duration.ofMillis(WINDOW_MILLIS));
+        assertEquals(0, windowed.get().getCount());
+        for(int i = 0; i < 10; i++) {
+            histogram.record(5);
+        }
+        // 窗口未结束前仍返回上一个窗口
+        assertEquals(0, windowed.get().getCount());
+        Thread.sleep(WINDOW_MILLIS * 2);
+        LatencyHistogram.Snapshot snapshot = windowed.get();
+        assertEquals(10, snapshot.getCount());
+        assertEquals(5, snapshot.getValueAtPercentile(50));
+        assertSame(snapshot, windowed.get());
+        Thread.sleep(WINDOW_MILLIS * 2);
+        assertEquals(0, windowed.get().getCount());
+    }
+
+    private static final long WINDOW_MILLIS = 50;
+}
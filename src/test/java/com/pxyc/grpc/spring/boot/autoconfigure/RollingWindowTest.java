@@ -0,0 +1,93 @@
+package com.pxyc.grpc.spring.boot.autoconfigure;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingWindowTest {
+    private final RollingWindow window = new RollingWindow(4, Duration.ofNanos(BUCKET_NANOS));
+
+    @Test
+    void sumsAllBucketsInWindow() {
+        window.add(3, at(0));
+        window.add(5, at(0));
+        window.add(7, at(1));
+        window.add(11, at(3));
+        assertEquals(26, sum(at(3)));
+        assertEquals(4, count(at(3)));
+        assertEquals(3, buckets(false, at(3)).size());
+    }
+
+    @Test
+    void rotationExpiresOldestBucket() {
+        window.add(1, at(0));
+        window.add(2, at(1));
+        window.add(4, at(2));
+        window.add(8, at(3));
+        assertEquals(15, sum(at(3)));
+        // 进入第 5 个桶时第 1 个桶已滑出窗口, 即使还没有写入覆盖它
+        assertEquals(14, sum(at(4)));
+        assertEquals(12, sum(at(5)));
+        assertEquals(0, sum(at(7)));
+        assertEquals(0, count(at(7)));
+    }
+
+    @Test
+    void rotationResetsReusedBucket() {
+        window.add(100, at(0));
+        window.add(100, at(0));
+        // 与第 1 个桶同一位置, 写入前重置旧值
+        window.add(1, at(4));
+        assertEquals(1, sum(at(4)));
+        assertEquals(1, count(at(4)));
+    }
+
+    @Test
+    void ignoreCurrentSkipsOpenBucket() {
+        window.add(1, at(0));
+        window.add(2, at(1));
+        window.add(4, at(2));
+        assertEquals(7, sum(at(2)));
+        List<long[]> closed = buckets(true, at(2));
+        assertEquals(2, closed.size());
+        assertEquals(3, closed.stream().mapToLong(bucket -> bucket[0]).sum());
+    }
+
+    @Test
+    void bucketsPerSecondFollowsInterval() {
+        assertEquals(4.0, new RollingWindow(2, Duration.ofMillis(250)).bucketsPerSecond(), 1e-9);
+    }
+
+    @Test
+    void rejectsNonPositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new RollingWindow(0, Duration.ofSeconds(1)));
+    }
+
+    private long sum(long nowNanos) {
+        return buckets(false, nowNanos).stream().mapToLong(bucket -> bucket[0]).sum();
+    }
+
+    private long count(long nowNanos) {
+        return buckets(false, nowNanos).stream().mapToLong(bucket -> bucket[1]).sum();
+    }
+
+    private List<long[]> buckets(boolean ignoreCurrent, long nowNanos) {
+        List<long[]> buckets = new ArrayList<>();
+        window.reduce(ignoreCurrent, (sum, count) -> buckets.add(new long[] {sum, count}), nowNanos);
+        return buckets;
+    }
+
+    /**
+     * 第 index 个桶中间的时刻, 起点取任意值以覆盖 nanoTime 为负数的情况
+     */
+    private static long at(int index) {
+        return ORIGIN + index * BUCKET_NANOS + BUCKET_NANOS / 2;
+    }
+
+    private static final long BUCKET_NANOS = 1_000_000;
+    private static final long ORIGIN = -123_456_789_000L;
+}
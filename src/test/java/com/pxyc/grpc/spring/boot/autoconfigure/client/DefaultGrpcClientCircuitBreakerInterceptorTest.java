@@ -0,0 +1,261 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import io.grpc.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultGrpcClientCircuitBreakerInterceptorTest {
+    private final FakeChannel channel = new FakeChannel();
+
+    @Test
+    void noRejectionBelowMinRequests() {
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config(), null);
+        channel.status = Status.UNAVAILABLE;
+        for(int i = 0; i < MIN_REQUESTS - 1; i++) {
+            assertEquals(Status.Code.UNAVAILABLE, call(interceptor, UNARY).awaitClose().getCode());
+        }
+        assertEquals(0, interceptor.getDropRatio(UNARY.getFullMethodName()));
+        assertEquals(MIN_REQUESTS - 1, channel.forwarded.get());
+        assertEquals(0, interceptor.getRejectedCount());
+    }
+
+    @Test
+    void dropRatioFollowsAcceptRate() {
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config(), null);
+        record(interceptor, Status.OK, 10);
+        record(interceptor, Status.DEADLINE_EXCEEDED, 20);
+        // requests = 30, accepts = 10: (30 - 2 * 10) / 31
+        assertEquals(10.0 / 31, interceptor.getDropRatio(UNARY.getFullMethodName()), 1e-9);
+        record(interceptor, Status.OK, 10);
+        // requests = 40, accepts = 20: 接受数达到 requests / k 后不再拒绝
+        assertEquals(0, interceptor.getDropRatio(UNARY.getFullMethodName()));
+    }
+
+    @Test
+    void businessErrorsCountAsAccepted() {
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config(), null);
+        record(interceptor, Status.NOT_FOUND, 20);
+        record(interceptor, Status.INVALID_ARGUMENT, 20);
+        assertEquals(0, interceptor.getDropRatio(UNARY.getFullMethodName()));
+    }
+
+    @Test
+    void methodsAreTrackedSeparately() {
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config(), null);
+        record(interceptor, Status.UNAVAILABLE, 30);
+        assertTrue(interceptor.getDropRatio(UNARY.getFullMethodName()) > 0.9);
+        assertEquals(0, interceptor.getDropRatio(STREAMING.getFullMethodName()));
+    }
+
+    @Test
+    void rejectedCallFailsLocallyAndIsNotCounted() {
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config(), null);
+        record(interceptor, Status.UNAVAILABLE, 200);
+        double dropRatio = interceptor.getDropRatio(UNARY.getFullMethodName());
+        RecordingListener rejected = callUntilRejected(interceptor, UNARY);
+        Status status = rejected.awaitClose();
+        assertEquals(Status.Code.UNAVAILABLE, status.getCode());
+        assertTrue(status.getDescription().startsWith("Circuit breaker rejected [" + UNARY.getFullMethodName() + "]"));
+        assertNotSame(Thread.currentThread(), rejected.closeThread);
+        // 本地拒绝的调用不计入 requests, 拒绝概率不因拒绝而上升
+        assertEquals(dropRatio, interceptor.getDropRatio(UNARY.getFullMethodName()), 0.05);
+        assertTrue(interceptor.getRejectedCount() >= 1);
+    }
+
+    @Test
+    void rejectedUnaryCallUsesFallback() {
+        GrpcClientFallback fallback = new GrpcClientFallback() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <ReqT, RespT> RespT fallback(MethodDescriptor<ReqT, RespT> method, ReqT request, Status status) {
+                return "null".equals(request) ? null : (RespT) ("fallback:" + request);
+            }
+        };
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config(), fallback);
+        record(interceptor, Status.UNAVAILABLE, 200);
+        RecordingListener rejected = callUntilRejected(interceptor, UNARY);
+        assertEquals(Status.Code.OK, rejected.awaitClose().getCode());
+        assertEquals("fallback:req", rejected.message);
+
+        channel.request = "null";
+        RecordingListener noFallback = callUntilRejected(interceptor, UNARY);
+        assertEquals(Status.Code.UNAVAILABLE, noFallback.awaitClose().getCode());
+        assertNull(noFallback.message);
+    }
+
+    @Test
+    void rejectedStreamingCallIgnoresFallback() {
+        GrpcClientFallback fallback = new GrpcClientFallback() {
+            @Override
+            public <ReqT, RespT> RespT fallback(MethodDescriptor<ReqT, RespT> method, ReqT request, Status status) {
+                throw new AssertionError("fallback used for [" + method.getFullMethodName() + "]");
+            }
+        };
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config(), fallback);
+        channel.status = Status.UNAVAILABLE;
+        for(int i = 0; i < 200; i++) {
+            call(interceptor, STREAMING).awaitClose();
+        }
+        RecordingListener rejected = callUntilRejected(interceptor, STREAMING);
+        assertEquals(Status.Code.UNAVAILABLE, rejected.awaitClose().getCode());
+    }
+
+    @Test
+    void recoversAfterWindowExpires() throws Exception {
+        DefaultGrpcClientConfigProps.CircuitBreakerConfig config = config();
+        config.setWindow(Duration.ofMillis(100));
+        config.setBuckets(4);
+        DefaultGrpcClientCircuitBreakerInterceptor interceptor = new DefaultGrpcClientCircuitBreakerInterceptor(config, null);
+        record(interceptor, Status.UNAVAILABLE, 30);
+        assertTrue(interceptor.getDropRatio(UNARY.getFullMethodName()) > 0.9);
+        Thread.sleep(150);
+        assertEquals(0, interceptor.getDropRatio(UNARY.getFullMethodName()));
+    }
+
+    /**
+     * 写入 n 个发送到服务端并以 status 结束的调用, 期间被本地拒绝的调用不计入
+     */
+    private void record(DefaultGrpcClientCircuitBreakerInterceptor interceptor, Status status, int n) {
+        channel.status = status;
+        int forwarded = channel.forwarded.get();
+        while(channel.forwarded.get() - forwarded < n) {
+            call(interceptor, UNARY).awaitClose();
+        }
+    }
+
+    private RecordingListener callUntilRejected(DefaultGrpcClientCircuitBreakerInterceptor interceptor, MethodDescriptor<String, String> method) {
+        for(int i = 0; i < 1000; i++) {
+            int forwarded = channel.forwarded.get();
+            RecordingListener listener = call(interceptor, method);
+            if(channel.forwarded.get() == forwarded) {
+                return listener;
+            }
+            listener.awaitClose();
+        }
+        throw new AssertionError("no call rejected in 1000 attempts");
+    }
+
+    private RecordingListener call(DefaultGrpcClientCircuitBreakerInterceptor interceptor, MethodDescriptor<String, String> method) {
+        RecordingListener listener = new RecordingListener();
+        ClientCall<String, String> call = interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+        call.start(listener, new Metadata());
+        call.sendMessage(channel.request);
+        call.halfClose();
+        call.request(1);
+        return listener;
+    }
+
+    private static DefaultGrpcClientConfigProps.CircuitBreakerConfig config() {
+        DefaultGrpcClientConfigProps.CircuitBreakerConfig config = new DefaultGrpcClientConfigProps.CircuitBreakerConfig();
+        config.setK(2);
+        config.setMinRequests(MIN_REQUESTS);
+        return config;
+    }
+
+    /**
+     * 每个调用在 halfClose 时以当前 status 同步结束
+     */
+    private static class FakeChannel extends Channel {
+        final AtomicInteger forwarded = new AtomicInteger();
+        volatile Status status = Status.OK;
+        volatile String request = "req";
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+            forwarded.incrementAndGet();
+            Status closeStatus = status;
+            return (ClientCall<ReqT, RespT>) new ClientCall<String, String>() {
+                private Listener<String> listener;
+
+                @Override
+                public void start(Listener<String> responseListener, Metadata headers) {
+                    listener = responseListener;
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void halfClose() {
+                    listener.onClose(closeStatus, new Metadata());
+                }
+
+                @Override
+                public void sendMessage(String message) {
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "fake";
+        }
+    }
+
+    private static class RecordingListener extends ClientCall.Listener<String> {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        volatile String message;
+        volatile Status status;
+        volatile Thread closeThread;
+
+        @Override
+        public void onMessage(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            this.status = status;
+            this.closeThread = Thread.currentThread();
+            closed.countDown();
+        }
+
+        Status awaitClose() {
+            try {
+                assertTrue(closed.await(5, TimeUnit.SECONDS), "call not closed in 5s");
+            } catch(InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return status;
+        }
+    }
+
+    private static final int MIN_REQUESTS = 20;
+    private static final MethodDescriptor.Marshaller<String> STRING_MARSHALLER = new MethodDescriptor.Marshaller<String>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes());
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            throw new UnsupportedOperationException();
+        }
+    };
+    private static final MethodDescriptor<String, String> UNARY =
+        MethodDescriptor.<String, String>newBuilder().setType(MethodDescriptor.MethodType.UNARY)
+                        .setFullMethodName("test.Echo/Echo")
+                        .setRequestMarshaller(STRING_MARSHALLER)
+                        .setResponseMarshaller(STRING_MARSHALLER)
+                        .build();
+    private static final MethodDescriptor<String, String> STREAMING =
+        MethodDescriptor.<String, String>newBuilder().setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+                        .setFullMethodName("test.Echo/Stream")
+                        .setRequestMarshaller(STRING_MARSHALLER)
+                        .setResponseMarshaller(STRING_MARSHALLER)
+                        .build();
+}
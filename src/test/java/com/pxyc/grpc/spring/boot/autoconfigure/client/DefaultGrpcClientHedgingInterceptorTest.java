@@ -0,0 +1,306 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.client;
+
+import io.grpc.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultGrpcClientHedgingInterceptorTest {
+    private final FakeChannel channel = new FakeChannel();
+
+    @Test
+    void noHedgeBeforeEnoughSamples() throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = new DefaultGrpcClientHedgingInterceptor(config(0.05, 10));
+        RecordingListener listener = new RecordingListener();
+        start(interceptor, listener);
+        FakeCall primary = channel.next();
+        Thread.sleep(MIN_DELAY_MILLIS * 2);
+        assertNull(channel.calls.poll());
+        primary.succeed("resp");
+        assertEquals(Status.Code.OK, listener.awaitClose().getCode());
+        assertEquals("resp", listener.message);
+        assertEquals(-1, interceptor.getHedgeDelayMicros(METHOD.getFullMethodName()));
+        assertEquals(0, interceptor.getHedgedCount());
+    }
+
+    @Test
+    void hedgeWinsAndCancelsPrimary() throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = warmedUp(config(0.05, 10));
+        RecordingListener listener = new RecordingListener();
+        start(interceptor, listener);
+        assertEquals(TimeUnit.MILLISECONDS.toMicros(MIN_DELAY_MILLIS), interceptor.getHedgeDelayMicros(METHOD.getFullMethodName()));
+        FakeCall primary = channel.next();
+        FakeCall hedge = channel.next();
+        assertNull(primary.headers.get(PREVIOUS_ATTEMPTS_KEY));
+        assertEquals("1", hedge.headers.get(PREVIOUS_ATTEMPTS_KEY));
+        assertEquals("req", hedge.message);
+        assertTrue(hedge.halfClosed);
+        assertEquals(1, hedge.requested);
+
+        hedge.succeed("from-hedge");
+        assertEquals(Status.Code.OK, listener.awaitClose().getCode());
+        assertEquals("from-hedge", listener.message);
+        assertTrue(primary.cancelled);
+        // 已生效后其他调用的结束不再回调
+        primary.close(Status.CANCELLED);
+        assertEquals(1, listener.closeCount);
+        assertEquals(1, interceptor.getHedgedCount());
+        assertEquals(1, interceptor.getHedgeWonCount());
+    }
+
+    @Test
+    void primaryWinsAndCancelsHedge() throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = warmedUp(config(0.05, 10));
+        RecordingListener listener = new RecordingListener();
+        start(interceptor, listener);
+        FakeCall primary = channel.next();
+        FakeCall hedge = channel.next();
+        primary.succeed("from-primary");
+        assertEquals("from-primary", listener.message);
+        assertEquals(Status.Code.OK, listener.awaitClose().getCode());
+        assertTrue(hedge.cancelled);
+        assertEquals(0, interceptor.getHedgeWonCount());
+    }
+
+    @Test
+    void failedAttemptWaitsForPendingAttempt() throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = warmedUp(config(0.05, 10));
+        RecordingListener listener = new RecordingListener();
+        start(interceptor, listener);
+        FakeCall primary = channel.next();
+        FakeCall hedge = channel.next();
+        primary.close(Status.UNAVAILABLE);
+        assertEquals(0, listener.closeCount);
+        hedge.succeed("from-hedge");
+        assertEquals(Status.Code.OK, listener.awaitClose().getCode());
+        assertEquals("from-hedge", listener.message);
+    }
+
+    @Test
+    void lastFailureIsDeliveredWhenAllAttemptsFail() throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = warmedUp(config(0.05, 10));
+        RecordingListener listener = new RecordingListener();
+        start(interceptor, listener);
+        FakeCall primary = channel.next();
+        FakeCall hedge = channel.next();
+        hedge.close(Status.UNAVAILABLE);
+        assertEquals(0, listener.closeCount);
+        primary.close(Status.INTERNAL);
+        assertEquals(Status.Code.INTERNAL, listener.awaitClose().getCode());
+        assertEquals(1, listener.closeCount);
+    }
+
+    @Test
+    void primaryFailureBeforeDelayEndsCallWithoutHedge() throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = warmedUp(config(0.05, 10));
+        RecordingListener listener = new RecordingListener();
+        start(interceptor, listener);
+        channel.next().close(Status.UNAVAILABLE);
+        assertEquals(Status.Code.UNAVAILABLE, listener.awaitClose().getCode());
+        Thread.sleep(MIN_DELAY_MILLIS * 2);
+        assertNull(channel.calls.poll());
+        assertEquals(0, interceptor.getHedgedCount());
+    }
+
+    @Test
+    void callerCancelCancelsAllAttemptsAndTimer() throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = warmedUp(config(0.05, 10));
+        RecordingListener listener = new RecordingListener();
+        ClientCall<String, String> call = start(interceptor, listener);
+        FakeCall primary = channel.next();
+        call.cancel("caller cancelled", null);
+        assertTrue(primary.cancelled);
+        Thread.sleep(MIN_DELAY_MILLIS * 2);
+        assertNull(channel.calls.poll());
+        primary.close(Status.CANCELLED);
+        assertEquals(Status.Code.CANCELLED, listener.awaitClose().getCode());
+    }
+
+    @Test
+    void hedgesAreLimitedByTokenBudget() throws Exception {
+        // 不积累令牌, 只有初始的 1 个令牌
+        DefaultGrpcClientHedgingInterceptor interceptor = warmedUp(config(0, 1));
+        RecordingListener first = new RecordingListener();
+        start(interceptor, first);
+        FakeCall primary = channel.next();
+        channel.next().succeed("from-hedge");
+        first.awaitClose();
+        primary.close(Status.CANCELLED);
+
+        RecordingListener second = new RecordingListener();
+        start(interceptor, second);
+        FakeCall unhedged = channel.next();
+        Thread.sleep(MIN_DELAY_MILLIS * 2);
+        assertNull(channel.calls.poll());
+        unhedged.succeed("resp");
+        assertEquals(Status.Code.OK, second.awaitClose().getCode());
+        assertEquals(1, interceptor.getHedgedCount());
+    }
+
+    @Test
+    void methodsNotConfiguredAreNotWrapped() {
+        DefaultGrpcClientHedgingInterceptor interceptor = new DefaultGrpcClientHedgingInterceptor(config(0.05, 10));
+        MethodDescriptor<String, String> other = METHOD.toBuilder().setFullMethodName("test.Other/Call").build();
+        ClientCall<String, String> call = interceptor.interceptCall(other, CallOptions.DEFAULT, channel);
+        assertTrue(call instanceof FakeCall);
+    }
+
+    /**
+     * 以一次快速完成的调用作为样本并等待窗口结束, 下一次调用时对冲延迟更新为下限 MIN_DELAY_MILLIS
+     */
+    private DefaultGrpcClientHedgingInterceptor warmedUp(DefaultGrpcClientConfigProps.HedgingConfig config) throws Exception {
+        DefaultGrpcClientHedgingInterceptor interceptor = new DefaultGrpcClientHedgingInterceptor(config);
+        RecordingListener listener = new RecordingListener();
+        start(interceptor, listener);
+        channel.next().succeed("warm-up");
+        listener.awaitClose();
+        Thread.sleep(WINDOW_MILLIS * 2);
+        return interceptor;
+    }
+
+    private ClientCall<String, String> start(DefaultGrpcClientHedgingInterceptor interceptor, RecordingListener listener) {
+        ClientCall<String, String> call = interceptor.interceptCall(METHOD, CallOptions.DEFAULT, channel);
+        call.start(listener, new Metadata());
+        call.request(1);
+        call.sendMessage("req");
+        call.halfClose();
+        return call;
+    }
+
+    private static DefaultGrpcClientConfigProps.HedgingConfig config(double budgetRatio, double budgetBurst) {
+        DefaultGrpcClientConfigProps.HedgingConfig config = new DefaultGrpcClientConfigProps.HedgingConfig();
+        config.getMethods().add(METHOD.getServiceName());
+        config.setWindow(Duration.ofMillis(WINDOW_MILLIS));
+        config.setMinSamples(1);
+        config.setMinDelay(Duration.ofMillis(MIN_DELAY_MILLIS));
+        config.setBudgetRatio(budgetRatio);
+        config.setBudgetBurst(budgetBurst);
+        return config;
+    }
+
+    private static class FakeChannel extends Channel {
+        final BlockingQueue<FakeCall> calls = new LinkedBlockingQueue<>();
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+            FakeCall call = new FakeCall();
+            calls.add(call);
+            return (ClientCall<ReqT, RespT>) call;
+        }
+
+        @Override
+        public String authority() {
+            return "fake";
+        }
+
+        FakeCall next() throws InterruptedException {
+            FakeCall call = calls.poll(5, TimeUnit.SECONDS);
+            assertNotNull(call, "no call created in 5s");
+            // 对冲调用在定时线程上先创建再 start, 等 start 完成后再交给测试
+            assertTrue(call.started.await(5, TimeUnit.SECONDS), "call not started in 5s");
+            return call;
+        }
+    }
+
+    private static class FakeCall extends ClientCall<String, String> {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile Listener<String> listener;
+        volatile Metadata headers;
+        volatile String message;
+        volatile int requested;
+        volatile boolean halfClosed;
+        volatile boolean cancelled;
+
+        @Override
+        public void start(Listener<String> responseListener, Metadata headers) {
+            this.listener = responseListener;
+            this.headers = headers;
+            started.countDown();
+        }
+
+        @Override
+        public void request(int numMessages) {
+            requested += numMessages;
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            cancelled = true;
+        }
+
+        @Override
+        public void halfClose() {
+            halfClosed = true;
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            this.message = message;
+        }
+
+        void succeed(String response) {
+            listener.onHeaders(new Metadata());
+            listener.onMessage(response);
+            close(Status.OK);
+        }
+
+        void close(Status status) {
+            listener.onClose(status, new Metadata());
+        }
+    }
+
+    private static class RecordingListener extends ClientCall.Listener<String> {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        volatile String message;
+        volatile Status status;
+        volatile int closeCount;
+
+        @Override
+        public void onMessage(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            this.status = status;
+            closeCount++;
+            closed.countDown();
+        }
+
+        Status awaitClose() throws InterruptedException {
+            assertTrue(closed.await(5, TimeUnit.SECONDS), "call not closed in 5s");
+            return status;
+        }
+    }
+
+    private static final long WINDOW_MILLIS = 5;
+    private static final long MIN_DELAY_MILLIS = 50;
+    private static final MethodDescriptor.Marshaller<String> STRING_MARSHALLER = new MethodDescriptor.Marshaller<String>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes());
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            throw new UnsupportedOperationException();
+        }
+    };
+    private static final MethodDescriptor<String, String> METHOD =
+        MethodDescriptor.<String, String>newBuilder().setType(MethodDescriptor.MethodType.UNARY)
+                        .setFullMethodName("test.Echo/Echo")
+                        .setRequestMarshaller(STRING_MARSHALLER)
+                        .setResponseMarshaller(STRING_MARSHALLER)
+                        .build();
+    private static final Metadata.Key<String> PREVIOUS_ATTEMPTS_KEY =
+        Metadata.Key.of("grpc-previous-rpc-attempts", Metadata.ASCII_STRING_MARSHALLER);
+}
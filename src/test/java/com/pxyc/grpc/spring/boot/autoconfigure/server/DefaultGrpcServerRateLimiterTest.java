@@ -0,0 +1,218 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import io.grpc.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultGrpcServerRateLimiterTest {
+    @Test
+    void tokenBucketAllowsBurstThenOnePermitPerInterval() {
+        DefaultGrpcServerRateLimiter.TokenBucket bucket = new DefaultGrpcServerRateLimiter.TokenBucket(10, 3);
+        long now = 1_000_000_000L;
+        for(int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(now));
+        }
+        assertFalse(bucket.tryAcquire(now));
+        // 10 permits/s, 100ms 补充一个令牌
+        assertFalse(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(99)));
+        assertTrue(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(100)));
+        assertFalse(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+    @Test
+    void tokenBucketDoesNotAccumulateBeyondBurstWhenIdle() {
+        DefaultGrpcServerRateLimiter.TokenBucket bucket = new DefaultGrpcServerRateLimiter.TokenBucket(10, 3);
+        long now = 1_000_000_000L;
+        assertTrue(bucket.tryAcquire(now));
+        long later = now + TimeUnit.MINUTES.toNanos(10);
+        int acquired = 0;
+        while(bucket.tryAcquire(later)) {
+            acquired++;
+        }
+        assertEquals(3, acquired);
+    }
+
+    @Test
+    void tokenBucketHandlesNanoTimeWrapAround() {
+        DefaultGrpcServerRateLimiter.TokenBucket bucket = new DefaultGrpcServerRateLimiter.TokenBucket(10, 1);
+        long now = Long.MAX_VALUE - TimeUnit.MILLISECONDS.toNanos(50);
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(60)));
+        assertTrue(bucket.tryAcquire(now + TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+    @Test
+    void tokenBucketGrantsExactlyBurstUnderContention() throws Exception {
+        DefaultGrpcServerRateLimiter.TokenBucket bucket = new DefaultGrpcServerRateLimiter.TokenBucket(1, 100);
+        long now = System.nanoTime();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger acquired = new AtomicInteger();
+        try {
+            for(int i = 0; i < threads; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                    for(int j = 0; j < 1000; j++) {
+                        if(bucket.tryAcquire(now)) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(100, acquired.get());
+    }
+
+    @Test
+    void rejectionDecidedBeforeDispatchIsAppliedOnAnotherThread() throws Exception {
+        DefaultGrpcServerRateLimiter limiter = newLimiter(1, 1);
+        limiter.setCheckedBeforeDispatch(true);
+        RecordingCall admittedCall = new RecordingCall();
+        RecordingCall rejectedCall = new RecordingCall();
+        Metadata admittedHeaders = new Metadata();
+        Metadata rejectedHeaders = new Metadata();
+        assertTrue(limiter.admitBeforeDispatch(admittedCall, admittedHeaders));
+        assertFalse(limiter.admitBeforeDispatch(rejectedCall, rejectedHeaders));
+
+        // 分派后拦截器在执行器线程上运行, 判断结果随请求头传递
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicInteger started = new AtomicInteger();
+        try {
+            executor.submit(() -> limiter.interceptCall(admittedCall, admittedHeaders, countingHandler(started))).get();
+            executor.submit(() -> limiter.interceptCall(rejectedCall, rejectedHeaders, countingHandler(started))).get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, started.get());
+        assertNull(admittedCall.status);
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, rejectedCall.status.getCode());
+        assertFalse(rejectedHeaders.containsKey(REJECTED_KEY));
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    void markerSentByClientIsIgnored() {
+        DefaultGrpcServerRateLimiter limiter = newLimiter(1, 1);
+        limiter.setCheckedBeforeDispatch(true);
+        RecordingCall call = new RecordingCall();
+        Metadata headers = new Metadata();
+        headers.put(REJECTED_KEY, "1");
+        assertTrue(limiter.admitBeforeDispatch(call, headers));
+        AtomicInteger started = new AtomicInteger();
+        limiter.interceptCall(call, headers, countingHandler(started));
+        assertEquals(1, started.get());
+        assertNull(call.status);
+        assertFalse(headers.containsKey(REJECTED_KEY));
+    }
+
+    @Test
+    void interceptorAcquiresWhenNotCheckedBeforeDispatch() {
+        DefaultGrpcServerRateLimiter limiter = newLimiter(1, 2);
+        AtomicInteger started = new AtomicInteger();
+        RecordingCall[] calls = {new RecordingCall(), new RecordingCall(), new RecordingCall()};
+        for(RecordingCall call : calls) {
+            limiter.interceptCall(call, new Metadata(), countingHandler(started));
+        }
+        assertEquals(2, started.get());
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, calls[2].status.getCode());
+    }
+
+    @Test
+    void callerBucketsLimitEachCallerSeparately() {
+        DefaultGrpcServerConfigProps.RateLimitConfig config = new DefaultGrpcServerConfigProps.RateLimitConfig();
+        config.setCallerHeader("x-app-id");
+        DefaultGrpcServerConfigProps.RateLimitRule rule = new DefaultGrpcServerConfigProps.RateLimitRule();
+        rule.setCallerPermitsPerSecond(1);
+        rule.setCallerBurst(2);
+        config.getRules().put(METHOD.getServiceName(), rule);
+        DefaultGrpcServerRateLimiter limiter = new DefaultGrpcServerRateLimiter(config);
+        AtomicInteger started = new AtomicInteger();
+        for(String caller : new String[] {"a", "a", "a", "b", "b"}) {
+            Metadata headers = new Metadata();
+            headers.put(Metadata.Key.of("x-app-id", Metadata.ASCII_STRING_MARSHALLER), caller);
+            limiter.interceptCall(new RecordingCall(), headers, countingHandler(started));
+        }
+        assertEquals(4, started.get());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    private static DefaultGrpcServerRateLimiter newLimiter(double permitsPerSecond, int burst) {
+        DefaultGrpcServerConfigProps.RateLimitConfig config = new DefaultGrpcServerConfigProps.RateLimitConfig();
+        DefaultGrpcServerConfigProps.RateLimitRule rule = new DefaultGrpcServerConfigProps.RateLimitRule();
+        rule.setPermitsPerSecond(permitsPerSecond);
+        rule.setBurst(burst);
+        config.getRules().put(METHOD.getFullMethodName(), rule);
+        return new DefaultGrpcServerRateLimiter(config);
+    }
+
+    private static ServerCallHandler<String, String> countingHandler(AtomicInteger started) {
+        return (call, headers) -> {
+            assertFalse(headers.containsKey(REJECTED_KEY));
+            started.incrementAndGet();
+            return new ServerCall.Listener<String>() {};
+        };
+    }
+
+    private static class RecordingCall extends ServerCall<String, String> {
+        volatile Status status;
+
+        @Override
+        public void request(int numMessages) {}
+
+        @Override
+        public void sendHeaders(Metadata headers) {}
+
+        @Override
+        public void sendMessage(String message) {}
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<String, String> getMethodDescriptor() {
+            return METHOD;
+        }
+    }
+
+    private static final MethodDescriptor.Marshaller<String> STRING_MARSHALLER = new MethodDescriptor.Marshaller<String>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes());
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            throw new UnsupportedOperationException();
+        }
+    };
+    private static final MethodDescriptor<String, String> METHOD =
+        MethodDescriptor.<String, String>newBuilder().setType(MethodDescriptor.MethodType.UNARY)
+                        .setFullMethodName("test.Echo/Echo")
+                        .setRequestMarshaller(STRING_MARSHALLER)
+                        .setResponseMarshaller(STRING_MARSHALLER)
+                        .build();
+    private static final Metadata.Key<String> REJECTED_KEY = Metadata.Key.of("x-best-grpc-rate-limited", Metadata.ASCII_STRING_MARSHALLER);
+}
@@ -0,0 +1,245 @@
+package com.pxyc.grpc.spring.boot.autoconfigure.server;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultGrpcServerRequestCoalescerTest {
+    private final AtomicInteger executions = new AtomicInteger();
+    private final AtomicReference<CountDownLatch> gate = new AtomicReference<>(new CountDownLatch(0));
+    private final List<Context> executionContexts = Collections.synchronizedList(new ArrayList<>());
+    private DefaultGrpcServerRequestCoalescer coalescer;
+    private ExecutorService serverExecutor;
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        DefaultGrpcServerConfigProps.CoalescingMethodConfig methodConfig = new DefaultGrpcServerConfigProps.CoalescingMethodConfig();
+        methodConfig.getMetadataKeys().add(USER_KEY.name());
+        DefaultGrpcServerConfigProps.CoalescingConfig config = new DefaultGrpcServerConfigProps.CoalescingConfig();
+        config.getMethods().put(METHOD.getServiceName(), methodConfig);
+        coalescer = new DefaultGrpcServerRequestCoalescer(config);
+
+        ServerServiceDefinition service = ServerServiceDefinition.builder(METHOD.getServiceName()).addMethod(
+            METHOD, ServerCalls.asyncUnaryCall((request, observer) -> {
+                executions.incrementAndGet();
+                executionContexts.add(Context.current());
+                try {
+                    gate.get().await();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if(request.startsWith("boom")) {
+                    throw new IllegalStateException("boom");
+                }
+                observer.onNext("resp-" + request);
+                observer.onCompleted();
+            })).build();
+        String name = InProcessServerBuilder.generateName();
+        serverExecutor = Executors.newCachedThreadPool();
+        server = InProcessServerBuilder.forName(name).executor(serverExecutor).addService(coalescer.wrap(service)).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        gate.get().countDown();
+        channel.shutdownNow();
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneExecution() throws Exception {
+        CountDownLatch release = block();
+        List<ListenableFuture<String>> responses = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            responses.add(call("a", "u1", CallOptions.DEFAULT));
+        }
+        await(() -> coalescer.getCoalescedCount() == 9);
+        release.countDown();
+        for(ListenableFuture<String> response : responses) {
+            assertEquals("resp-a", response.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(1, coalescer.getExecutionCount());
+    }
+
+    @Test
+    void differentRequestBytesOrMetadataAreNotCoalesced() throws Exception {
+        CountDownLatch release = block();
+        ListenableFuture<String> first = call("a", "u1", CallOptions.DEFAULT);
+        ListenableFuture<String> otherUser = call("a", "u2", CallOptions.DEFAULT);
+        ListenableFuture<String> otherRequest = call("b", "u1", CallOptions.DEFAULT);
+        await(() -> executions.get() == 3);
+        release.countDown();
+        assertEquals("resp-a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("resp-a", otherUser.get(5, TimeUnit.SECONDS));
+        assertEquals("resp-b", otherRequest.get(5, TimeUnit.SECONDS));
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void leaderDeadlineDoesNotCancelSharedExecution() throws Exception {
+        CountDownLatch release = block();
+        ListenableFuture<String> leader = call("a", "u1", CallOptions.DEFAULT.withDeadlineAfter(100, TimeUnit.MILLISECONDS));
+        await(() -> executions.get() == 1);
+        ListenableFuture<String> follower1 = call("a", "u1", CallOptions.DEFAULT);
+        ListenableFuture<String> follower2 = call("a", "u1", CallOptions.DEFAULT);
+        await(() -> coalescer.getCoalescedCount() == 2);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(e.getCause()).getCode());
+        assertFalse(executionContexts.get(0).isCancelled());
+        release.countDown();
+        assertEquals("resp-a", follower1.get(5, TimeUnit.SECONDS));
+        assertEquals("resp-a", follower2.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void sharedExecutionIsCancelledWhenAllCallersLeave() throws Exception {
+        block();
+        Context.CancellableContext first = Context.current().withCancellation();
+        Context.CancellableContext second = Context.current().withCancellation();
+        ListenableFuture<String> leader = first.call(() -> call("a", "u1", CallOptions.DEFAULT));
+        await(() -> executions.get() == 1);
+        ListenableFuture<String> follower = second.call(() -> call("a", "u1", CallOptions.DEFAULT));
+        await(() -> coalescer.getCoalescedCount() == 1);
+
+        first.cancel(null);
+        assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertFalse(executionContexts.get(0).isCancelled());
+        second.cancel(null);
+        assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        await(() -> executionContexts.get(0).isCancelled());
+
+        // 已取消的执行不再被加入, 相同请求重新执行
+        gate.set(new CountDownLatch(0));
+        assertEquals("resp-a", call("a", "u1", CallOptions.DEFAULT).get(5, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void handlerFailureCompletesAllCallersAndAllowsRetry() throws Exception {
+        CountDownLatch release = block();
+        List<ListenableFuture<String>> responses = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            responses.add(call("boom", "u1", CallOptions.DEFAULT));
+        }
+        await(() -> coalescer.getCoalescedCount() == 2);
+        release.countDown();
+        for(ListenableFuture<String> response : responses) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.UNKNOWN, Status.fromThrowable(e.getCause()).getCode());
+        }
+        assertThrows(ExecutionException.class, () -> call("boom", "u1", CallOptions.DEFAULT).get(5, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void requestAfterCompletionStartsNewExecution() throws Exception {
+        assertEquals("resp-a", call("a", "u1", CallOptions.DEFAULT).get(5, TimeUnit.SECONDS));
+        assertEquals("resp-a", call("a", "u1", CallOptions.DEFAULT).get(5, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void racingJoinLeaveAndCompleteAlwaysFinishEveryCall() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ScheduledExecutorService canceller = Executors.newScheduledThreadPool(2);
+        try {
+            for(int round = 0; round < 200; round++) {
+                String request = "r" + (round % 3);
+                List<ListenableFuture<String>> responses = new ArrayList<>();
+                for(int i = 0; i < 6; i++) {
+                    Context.CancellableContext context = Context.current().withCancellation();
+                    responses.add(context.call(() -> call(request, "u1", CallOptions.DEFAULT)));
+                    if(random.nextBoolean()) {
+                        canceller.schedule(() -> context.cancel(null), random.nextInt(500), TimeUnit.MICROSECONDS);
+                    }
+                }
+                for(ListenableFuture<String> response : responses) {
+                    try {
+                        assertEquals("resp-" + request, response.get(5, TimeUnit.SECONDS));
+                    } catch(ExecutionException e) {
+                        assertEquals(Status.Code.CANCELLED, Status.fromThrowable(e.getCause()).getCode());
+                    }
+                }
+            }
+        } finally {
+            canceller.shutdownNow();
+        }
+        // 没有遗留未结束的共享执行
+        int before = executions.get();
+        assertEquals("resp-r0", call("r0", "u1", CallOptions.DEFAULT).get(5, TimeUnit.SECONDS));
+        assertEquals(before + 1, executions.get());
+    }
+
+    private CountDownLatch block() {
+        CountDownLatch release = new CountDownLatch(1);
+        gate.set(release);
+        return release;
+    }
+
+    private ListenableFuture<String> call(String request, String user, CallOptions callOptions) {
+        Metadata headers = new Metadata();
+        headers.put(USER_KEY, user);
+        Channel intercepted = ClientInterceptors.intercept(channel, MetadataUtils.newAttachHeadersInterceptor(headers));
+        return ClientCalls.futureUnaryCall(intercepted.newCall(METHOD, callOptions), request);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "condition not met in 5s");
+            Thread.sleep(1);
+        }
+    }
+
+    private static final MethodDescriptor.Marshaller<String> STRING_MARSHALLER = new MethodDescriptor.Marshaller<String>() {
+        @Override
+        public InputStream stream(String value) {
+            return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String parse(InputStream stream) {
+            try {
+                return new String(DefaultGrpcServerSerializedMethods.toBytes(stream), StandardCharsets.UTF_8);
+            } catch(IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+    private static final MethodDescriptor<String, String> METHOD =
+        MethodDescriptor.<String, String>newBuilder().setType(MethodDescriptor.MethodType.UNARY)
+                        .setFullMethodName("test.Echo/Echo")
+                        .setRequestMarshaller(STRING_MARSHALLER)
+                        .setResponseMarshaller(STRING_MARSHALLER)
+                        .build();
+    private static final Metadata.Key<String> USER_KEY = Metadata.Key.of("x-user", Metadata.ASCII_STRING_MARSHALLER);
+}